@@ -0,0 +1,199 @@
+package com.nvs.task.slideshow.config;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how many connections are checked out of the pool at once, and moves that limit between
+ * bounds according to how long acquisitions take.
+ * <p>
+ * The pool itself is sized at the upper bound; the limit decides how much of it is used. At the
+ * end of every adjustment interval the mean acquire time of the interval is compared with the
+ * target: above it, the limit grows by a quarter; at half of it or below, with the limit never
+ * reached, the limit shrinks by one. Connections the pool no longer hands out are closed once
+ * they have been idle for {@code spring.r2dbc.pool.max-idle-time}.
+ * <p>
+ * An acquisition made while the limit is reached waits, without blocking a thread, until a
+ * connection is closed or the limit grows.
+ */
+final class AdaptiveConnectionLimit {
+
+    private final int minSize;
+    private final int maxSize;
+    private final long targetAcquireNanos;
+    private final long adjustIntervalNanos;
+    private final LongSupplier nanoClock;
+
+    private final ArrayDeque<MonoSink<Permit>> waiting = new ArrayDeque<>();
+    private int limit;
+    private int active;
+
+    // Statistics of the current adjustment interval
+    private long intervalStart;
+    private long acquisitions;
+    private long acquireNanos;
+    private int peakActive;
+
+    /**
+     * Creates a limit.
+     *
+     * @param minSize           the lowest the limit shrinks to
+     * @param maxSize           the highest the limit grows to, the size of the pool
+     * @param initialSize       the limit to start with
+     * @param targetAcquireTime the mean acquire time above which the limit grows
+     * @param adjustInterval    how often the limit is adjusted
+     * @param nanoClock         the clock acquisitions are timed with, in nanoseconds
+     */
+    AdaptiveConnectionLimit(int minSize, int maxSize, int initialSize, Duration targetAcquireTime,
+                            Duration adjustInterval, LongSupplier nanoClock) {
+        if (minSize <= 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Pool bounds must satisfy 0 < min <= max: " + minSize + ", " + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetAcquireNanos = targetAcquireTime.toNanos();
+        this.adjustIntervalNanos = adjustInterval.toNanos();
+        this.nanoClock = nanoClock;
+        this.limit = Math.min(maxSize, Math.max(minSize, initialSize));
+        this.intervalStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes a permit to check out a connection, once the limit allows it.
+     *
+     * @return a Mono emitting the permit, to be released when the connection is closed
+     */
+    Mono<Permit> acquire() {
+        return Mono.create(this::acquire);
+    }
+
+    /**
+     * Records how long an acquisition took, adjusting the limit if the interval is over.
+     *
+     * @param nanos the time from asking for the connection to receiving it
+     */
+    void record(long nanos) {
+        List<MonoSink<Permit>> granted;
+        synchronized (this) {
+            acquisitions++;
+            acquireNanos += nanos;
+            granted = adjust(nanoClock.getAsLong());
+        }
+        granted.forEach(sink -> sink.success(new Permit()));
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return the maximum number of connections checked out at once
+     */
+    synchronized int limit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of connections checked out.
+     *
+     * @return the number of permits taken
+     */
+    synchronized int active() {
+        return active;
+    }
+
+    /**
+     * Returns the number of acquisitions waiting for the limit.
+     *
+     * @return the number of waiting acquisitions
+     */
+    synchronized int pending() {
+        return waiting.size();
+    }
+
+    private void acquire(MonoSink<Permit> sink) {
+        synchronized (this) {
+            if (active >= limit) {
+                waiting.add(sink);
+                sink.onCancel(() -> cancel(sink));
+                return;
+            }
+            take();
+        }
+        sink.success(new Permit());
+    }
+
+    private void release() {
+        MonoSink<Permit> next;
+        synchronized (this) {
+            // A limit that shrank below the connections checked out is reached by not handing the permit over
+            next = active <= limit ? waiting.poll() : null;
+            if (next == null) {
+                active--;
+                return;
+            }
+        }
+        // The permit is handed over to the next waiting acquisition instead of being returned
+        next.success(new Permit());
+    }
+
+    private void cancel(MonoSink<Permit> sink) {
+        synchronized (this) {
+            if (waiting.remove(sink)) {
+                return;
+            }
+        }
+        // The permit was handed to the sink concurrently with its cancellation
+        release();
+    }
+
+    private void take() {
+        active++;
+        peakActive = Math.max(peakActive, active);
+    }
+
+    private List<MonoSink<Permit>> adjust(long now) {
+        if (now - intervalStart < adjustIntervalNanos) {
+            return List.of();
+        }
+        long meanAcquireNanos = acquireNanos / acquisitions;
+        if (meanAcquireNanos > targetAcquireNanos && limit < maxSize) {
+            limit = Math.min(maxSize, limit + Math.max(1, limit / 4));
+        } else if (meanAcquireNanos <= targetAcquireNanos / 2 && peakActive < limit && limit > minSize) {
+            limit--;
+        }
+        intervalStart = now;
+        acquisitions = 0;
+        acquireNanos = 0;
+        peakActive = active;
+
+        List<MonoSink<Permit>> granted = new ArrayList<>();
+        while (active < limit && !waiting.isEmpty()) {
+            take();
+            granted.add(waiting.poll());
+        }
+        return granted;
+    }
+
+    /**
+     * The right to hold one connection. Releasing it more than once has no effect.
+     */
+    final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * Returns the permit, handing it to the next waiting acquisition if there is one.
+         */
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConnectionLimit.this.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.nvs.task.slideshow.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Batch;
+import io.r2dbc.spi.Closeable;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.ConnectionMetadata;
+import io.r2dbc.spi.IsolationLevel;
+import io.r2dbc.spi.Statement;
+import io.r2dbc.spi.TransactionDefinition;
+import io.r2dbc.spi.ValidationDepth;
+import io.r2dbc.spi.Wrapped;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorates the connection pool with acquire time metrics and, optionally, an
+ * {@link AdaptiveConnectionLimit}.
+ * <p>
+ * Every acquisition is timed into {@code r2dbc.pool.acquire}, published as a histogram so
+ * percentiles can be read per instance and aggregated across instances. The gauges of the pool
+ * itself ({@code r2dbc.pool.acquired}, {@code r2dbc.pool.idle}, {@code r2dbc.pool.pending} and
+ * {@code r2dbc.pool.allocated}) are registered by Spring Boot, which finds the pool behind this
+ * decorator through {@link Wrapped}. With the adaptive limit, {@code r2dbc.pool.limit} and
+ * {@code r2dbc.pool.limit.pending} show the current limit and the acquisitions waiting for it.
+ */
+final class MeteredConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory>, Closeable {
+
+    private final ConnectionFactory delegate;
+    private final AdaptiveConnectionLimit limit;
+    private final Timer acquireTimer;
+
+    /**
+     * Creates a decorator and registers its meters.
+     *
+     * @param delegate the connection pool
+     * @param limit    the limit on connections checked out at once, or null to use the whole pool
+     * @param registry the registry the meters are registered with
+     * @param name     the name of the connection factory, the {@code name} tag of the meters
+     */
+    MeteredConnectionFactory(ConnectionFactory delegate, AdaptiveConnectionLimit limit,
+                             MeterRegistry registry, String name) {
+        this.delegate = delegate;
+        this.limit = limit;
+        this.acquireTimer = Timer.builder("r2dbc.pool.acquire")
+                .description("Time taken to acquire a connection from the pool")
+                .tag("name", name)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+        if (limit != null) {
+            Gauge.builder("r2dbc.pool.limit", limit, AdaptiveConnectionLimit::limit)
+                    .description("Maximum number of connections checked out at once, as adjusted by acquire time")
+                    .tag("name", name)
+                    .register(registry);
+            Gauge.builder("r2dbc.pool.limit.pending", limit, AdaptiveConnectionLimit::pending)
+                    .description("Number of acquisitions waiting for the adaptive limit")
+                    .tag("name", name)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Acquires a connection from the pool, timing the acquisition.
+     *
+     * @return a Mono emitting the connection; closing it returns it to the pool
+     */
+    @Override
+    public Mono<Connection> create() {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Mono<Connection> connection = limit == null
+                    ? Mono.from(delegate.create())
+                    : limit.acquire().flatMap(permit -> Mono.<Connection>from(delegate.create())
+                            .<Connection>map(pooled -> new LimitedConnection(pooled, permit))
+                            .doOnError(e -> permit.release())
+                            .doOnCancel(permit::release));
+            return connection.doOnNext(acquired -> {
+                long elapsed = System.nanoTime() - start;
+                acquireTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                if (limit != null) {
+                    limit.record(elapsed);
+                }
+            });
+        });
+    }
+
+    /**
+     * Returns the metadata of the pool.
+     *
+     * @return the metadata
+     */
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return delegate.getMetadata();
+    }
+
+    /**
+     * Returns the connection pool, so that its own metrics are still found.
+     *
+     * @return the decorated connection factory
+     */
+    @Override
+    public ConnectionFactory unwrap() {
+        return delegate;
+    }
+
+    /**
+     * Closes the pool when the application shuts down.
+     *
+     * @return a Publisher completing once the pool is closed
+     */
+    @Override
+    public Publisher<Void> close() {
+        return delegate instanceof Closeable closeable ? closeable.close() : Mono.empty();
+    }
+
+    /**
+     * A pooled connection holding a permit of the adaptive limit until it is closed.
+     */
+    private static final class LimitedConnection implements Connection, Wrapped<Connection> {
+
+        private final Connection delegate;
+        private final AdaptiveConnectionLimit.Permit permit;
+
+        LimitedConnection(Connection delegate, AdaptiveConnectionLimit.Permit permit) {
+            this.delegate = delegate;
+            this.permit = permit;
+        }
+
+        @Override
+        public Publisher<Void> close() {
+            return Mono.from(delegate.close()).doFinally(signal -> permit.release());
+        }
+
+        @Override
+        public Connection unwrap() {
+            return delegate;
+        }
+
+        @Override
+        public Publisher<Void> beginTransaction() {
+            return delegate.beginTransaction();
+        }
+
+        @Override
+        public Publisher<Void> beginTransaction(TransactionDefinition definition) {
+            return delegate.beginTransaction(definition);
+        }
+
+        @Override
+        public Publisher<Void> commitTransaction() {
+            return delegate.commitTransaction();
+        }
+
+        @Override
+        public Batch createBatch() {
+            return delegate.createBatch();
+        }
+
+        @Override
+        public Publisher<Void> createSavepoint(String name) {
+            return delegate.createSavepoint(name);
+        }
+
+        @Override
+        public Statement createStatement(String sql) {
+            return delegate.createStatement(sql);
+        }
+
+        @Override
+        public boolean isAutoCommit() {
+            return delegate.isAutoCommit();
+        }
+
+        @Override
+        public ConnectionMetadata getMetadata() {
+            return delegate.getMetadata();
+        }
+
+        @Override
+        public IsolationLevel getTransactionIsolationLevel() {
+            return delegate.getTransactionIsolationLevel();
+        }
+
+        @Override
+        public Publisher<Void> releaseSavepoint(String name) {
+            return delegate.releaseSavepoint(name);
+        }
+
+        @Override
+        public Publisher<Void> rollbackTransaction() {
+            return delegate.rollbackTransaction();
+        }
+
+        @Override
+        public Publisher<Void> rollbackTransactionToSavepoint(String name) {
+            return delegate.rollbackTransactionToSavepoint(name);
+        }
+
+        @Override
+        public Publisher<Void> setAutoCommit(boolean autoCommit) {
+            return delegate.setAutoCommit(autoCommit);
+        }
+
+        @Override
+        public Publisher<Void> setLockWaitTimeout(Duration timeout) {
+            return delegate.setLockWaitTimeout(timeout);
+        }
+
+        @Override
+        public Publisher<Void> setStatementTimeout(Duration timeout) {
+            return delegate.setStatementTimeout(timeout);
+        }
+
+        @Override
+        public Publisher<Void> setTransactionIsolationLevel(IsolationLevel isolationLevel) {
+            return delegate.setTransactionIsolationLevel(isolationLevel);
+        }
+
+        @Override
+        public Publisher<Boolean> validate(ValidationDepth depth) {
+            return delegate.validate(depth);
+        }
+    }
+}
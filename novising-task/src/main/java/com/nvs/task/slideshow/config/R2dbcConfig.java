@@ -1,10 +1,14 @@
 package com.nvs.task.slideshow.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import io.r2dbc.pool.ConnectionPool;
 import io.r2dbc.pool.ConnectionPoolConfiguration;
 import io.r2dbc.postgresql.PostgresqlConnectionConfiguration;
 import io.r2dbc.postgresql.PostgresqlConnectionFactory;
 import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
 import org.springframework.context.annotation.Bean;
@@ -21,6 +25,8 @@ import java.time.Duration;
  * Configuration class for R2DBC database connections.
  * This class sets up the connection factory for different database types (H2, TestContainers, PostgreSQL)
  * and configures the connection pool.
+ * The PostgreSQL pool is metered, and can optionally adapt how many of its connections are used
+ * to the observed acquire time (see {@link AdaptiveConnectionLimit}).
  */
 @Configuration
 @EnableR2dbcRepositories(basePackages = "com.nvs.task.slideshow.repository")
@@ -45,13 +51,29 @@ public class R2dbcConfig extends AbstractR2dbcConfiguration {
     @Value("${spring.r2dbc.pool.max-idle-time:30m}")
     private String maxIdleTime;
 
+    @Value("${spring.r2dbc.pool.adaptive.enabled:false}")
+    private boolean adaptive;
+
+    @Value("${spring.r2dbc.pool.adaptive.min-size:5}")
+    private int adaptiveMinSize;
+
+    @Value("${spring.r2dbc.pool.adaptive.target-acquire-time:10ms}")
+    private Duration targetAcquireTime;
+
+    @Value("${spring.r2dbc.pool.adaptive.adjust-interval:5s}")
+    private Duration adjustInterval;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
     /**
      * Creates and configures a ConnectionFactory based on the database type specified in the URL.
      * Supports H2 (for tests), TestContainers, and PostgreSQL databases.
-     * For PostgreSQL, it sets up a connection pool with the specified configuration.
+     * For PostgreSQL, it sets up a connection pool with the specified configuration, metered and,
+     * if enabled, used only up to the adaptive limit.
      *
      * @return A ConnectionFactory instance configured for the appropriate database type.
-     * For PostgreSQL, returns a ConnectionPool instance.
+     * For PostgreSQL, returns the ConnectionPool instance wrapped in a MeteredConnectionFactory.
      */
     @Override
     @Bean
@@ -104,8 +126,16 @@ public class R2dbcConfig extends AbstractR2dbcConfiguration {
                 .validationQuery("SELECT 1")
                 .build();
 
-        // Create and return the connection pool
-        return new ConnectionPool(poolConfig);
+        // Create the connection pool, sized at the upper bound of the adaptive limit if enabled
+        ConnectionPool pool = new ConnectionPool(poolConfig);
+        AdaptiveConnectionLimit limit = adaptive
+                ? new AdaptiveConnectionLimit(adaptiveMinSize, maxSize, initialSize, targetAcquireTime,
+                        adjustInterval, System::nanoTime)
+                : null;
+
+        // Meter the pool and return it
+        return new MeteredConnectionFactory(pool, limit,
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), "connectionFactory");
     }
 
     /**
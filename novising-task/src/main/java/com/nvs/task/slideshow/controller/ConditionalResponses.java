@@ -0,0 +1,39 @@
+package com.nvs.task.slideshow.controller;
+
+import com.nvs.task.slideshow.util.EntityTags;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Answers requests carrying {@code If-None-Match} with a 304 when the client holds the current version.
+ */
+final class ConditionalResponses {
+
+    private ConditionalResponses() {
+    }
+
+    /**
+     * Returns a 304 if the {@code If-None-Match} header matches the current tag of the resource,
+     * and the full response otherwise. The current tag is only looked up when the header is present,
+     * and the full response is only built when it does not match.
+     *
+     * @param ifNoneMatch the value of the {@code If-None-Match} header, or null
+     * @param currentTag  looks up the current tag from the version index; empty if the resource does not exist
+     * @param response    builds the full response, which carries the tag of what it returns
+     * @param <T>         the type of the response body
+     * @return a Mono emitting the 304 or the full response
+     */
+    static <T> Mono<ResponseEntity<T>> ifNoneMatch(String ifNoneMatch, Supplier<Mono<String>> currentTag,
+                                                   Supplier<Mono<ResponseEntity<T>>> response) {
+        if (ifNoneMatch == null) {
+            return response.get();
+        }
+        return Mono.defer(currentTag)
+                .filter(tag -> EntityTags.matches(ifNoneMatch, tag))
+                .map(tag -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tag).<T>build())
+                .switchIfEmpty(Mono.defer(response));
+    }
+}
@@ -1,14 +1,26 @@
 package com.nvs.task.slideshow.controller;
 
 import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.ImageImportResult;
 import com.nvs.task.slideshow.service.ImageService;
+import com.nvs.task.slideshow.util.EntityTags;
+import com.nvs.task.slideshow.util.ImageCsvReader;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.List;
+
 /**
  * REST controller for managing Image resources.
  */
@@ -16,6 +28,8 @@ import reactor.core.publisher.Mono;
 @RequestMapping("/api")  // Base path for all endpoints in this controller
 public class ImageController {
 
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
     private final ImageService imageService;
 
     /**
@@ -40,6 +54,35 @@ public class ImageController {
         return imageService.addImage(image);
     }
 
+    /**
+     * Imports many images at once from a JSON array or an NDJSON stream.
+     * The results are streamed back as NDJSON when requested, and as a JSON array otherwise.
+     *
+     * @param images the images to import
+     * @return a Flux emitting the outcome of every image, in input order
+     */
+    @PostMapping(value = "/images/import",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<ImageImportResult> importImages(@RequestBody Flux<Image> images) {
+        return imageService.importImages(images);
+    }
+
+    /**
+     * Imports many images at once from a CSV document with a header line.
+     * The columns {@code name}, {@code url}, {@code description} and {@code duration} are read;
+     * the results are streamed back as NDJSON when requested, and as a JSON array otherwise.
+     *
+     * @param lines the lines of the CSV document
+     * @return a Flux emitting the outcome of every image, in input order
+     */
+    @PostMapping(value = "/images/import",
+            consumes = TEXT_CSV_VALUE,
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<ImageImportResult> importImagesCsv(@RequestBody Flux<String> lines) {
+        return imageService.importImages(ImageCsvReader.read(lines));
+    }
+
     /**
      * Deletes an image from the system by its ID.
      *
@@ -64,37 +107,99 @@ public class ImageController {
     }
 
     /**
-     * Retrieves all images from the system.
+     * Retrieves one page of images, ordered by ID.
+     * The next page is requested with {@code after} set to the ID of the last image on this one;
+     * when the page is full, the {@code Link} header carries that URL. A request whose
+     * {@code If-None-Match} matches the versions of the images on the page gets a 304.
      *
-     * @return a Flux emitting all Images in the system
+     * @param after       the ID after which the page starts; omit for the first page
+     * @param limit       the maximum number of images on the page, at most 1000
+     * @param ifNoneMatch the ETags of the page the client holds
+     * @param request     the current request
+     * @return a Mono emitting a ResponseEntity containing the images on the page
      */
     @GetMapping("/images")
-    public Flux<Image> getAllImages() {
-        return imageService.getAllImages();
+    public Mono<ResponseEntity<List<Image>>> getAllImages(@RequestParam(required = false) Long after,
+                                                          @RequestParam(defaultValue = "100") int limit,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                          ServerHttpRequest request) {
+        return ConditionalResponses.ifNoneMatch(ifNoneMatch,
+                () -> imageService.getImagePageTag(after, limit),
+                () -> PageResponses.of(imageService.getImages(after, limit), limit, Image::getId, Image::getVersion, request));
+    }
+
+    /**
+     * Streams all images as NDJSON, ordered by ID.
+     * Images are written as they are loaded and loaded only as fast as the client reads them.
+     *
+     * @param after the ID after which the stream starts; omit to stream all images
+     * @return a Flux emitting the images
+     */
+    @GetMapping(value = "/images", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Image> streamAllImages(@RequestParam(required = false) Long after) {
+        return imageService.streamImages(after);
     }
 
     /**
      * Retrieves a specific image by its ID.
+     * The response carries the version of the image as ETag; a request whose {@code If-None-Match}
+     * matches it gets a 304, answered from the version index without loading the image.
      *
-     * @param id the ID of the image to retrieve
+     * @param id          the ID of the image to retrieve
+     * @param ifNoneMatch the ETags of the image the client holds
      * @return a Mono emitting a ResponseEntity containing the Image if found, or a not found status
      */
     @GetMapping("/images/{id}")
-    public Mono<ResponseEntity<Image>> getImage(@PathVariable Long id) {
-        return imageService.getImage(id)
-                .map(ResponseEntity::ok)
-                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+    public Mono<ResponseEntity<Image>> getImage(@PathVariable Long id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalResponses.ifNoneMatch(ifNoneMatch,
+                () -> imageService.getImageTag(id),
+                () -> imageService.getImage(id)
+                        .map(image -> ResponseEntity.ok().eTag(EntityTags.of(image.getVersion())).body(image))
+                        .switchIfEmpty(Mono.just(ResponseEntity.notFound().build())));
+    }
+
+    /**
+     * Serves the content of an image from the local cache.
+     * The file is written with zero-copy transfer where the server supports it. Requests with
+     * {@code If-None-Match} or {@code If-Modified-Since} get a 304 when the content is unchanged,
+     * and {@code Range} requests get a 206 with the requested part. With {@code width}, the
+     * smallest downscaled variant at least that wide is served when one has been rendered.
+     * Only content recognized as an image is served; the response forbids browsers from guessing
+     * another type and sandboxes it, so an SVG image cannot run scripts.
+     *
+     * @param id    the ID of the image
+     * @param width the width in pixels the display needs; omit for the original
+     * @return a Mono emitting a ResponseEntity containing the image content
+     */
+    @GetMapping("/images/{id}/content")
+    public Mono<ResponseEntity<Resource>> getImageContent(@PathVariable Long id,
+                                                          @RequestParam(required = false) Integer width) {
+        return imageService.getImageContent(id, width)
+                .map(content -> ResponseEntity.ok()
+                        .eTag(content.sha256())
+                        .lastModified(content.fetchedAt())
+                        .cacheControl(CacheControl.maxAge(Duration.ofHours(1)).cachePublic())
+                        .header("X-Content-Type-Options", "nosniff")
+                        .header("Content-Security-Policy", "default-src 'none'; style-src 'unsafe-inline'; sandbox")
+                        .contentType(MediaType.parseMediaType(content.contentType()))
+                        .body(new FileSystemResource(content.file())));
     }
 
     /**
      * Updates an existing image in the system.
+     * With {@code If-Match} set to the ETag of the image, the update only succeeds if nobody
+     * changed the image since, and fails with 409 otherwise.
      *
-     * @param id    the ID of the image to update
-     * @param image the updated Image object
-     * @return a Mono emitting the updated Image
+     * @param id      the ID of the image to update
+     * @param image   the updated Image object
+     * @param ifMatch the ETag of the version the update is based on; omit to update any version
+     * @return a Mono emitting a ResponseEntity containing the updated Image, with its new version as ETag
      */
     @PutMapping("/images/{id}")
-    public Mono<Image> updateImage(@PathVariable Long id, @RequestBody Image image) {
-        return imageService.updateImage(id, image);
+    public Mono<ResponseEntity<Image>> updateImage(@PathVariable Long id, @RequestBody Image image,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return imageService.updateImage(id, image, EntityTags.parseVersion(ifMatch))
+                .map(updated -> ResponseEntity.ok().eTag(EntityTags.of(updated.getVersion())).body(updated));
     }
 }
\ No newline at end of file
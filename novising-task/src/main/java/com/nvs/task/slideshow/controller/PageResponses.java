@@ -0,0 +1,55 @@
+package com.nvs.task.slideshow.controller;
+
+import com.nvs.task.slideshow.model.EntityVersion;
+import com.nvs.task.slideshow.util.EntityTags;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Builds responses for pages of a keyset-paginated list endpoint.
+ */
+final class PageResponses {
+
+    private PageResponses() {
+    }
+
+    /**
+     * Collects a page into a JSON array response. When the page is full, a {@code Link} header
+     * with {@code rel="next"} points to the following page, which starts after the last ID on this one.
+     * The ETag is derived from the IDs and versions of the rows.
+     *
+     * @param page      the rows of the page, ordered by ID
+     * @param limit     the requested page size
+     * @param idOf      returns the ID of a row
+     * @param versionOf returns the version of a row
+     * @param request   the request for this page
+     * @param <T>       the type of the rows
+     * @return a Mono emitting the response
+     */
+    static <T> Mono<ResponseEntity<List<T>>> of(Flux<T> page, int limit, Function<T, Long> idOf,
+                                                Function<T, Long> versionOf, ServerHttpRequest request) {
+        return page.collectList()
+                .map(rows -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                            .eTag(EntityTags.of(rows.stream()
+                                    .map(row -> new EntityVersion(idOf.apply(row), versionOf.apply(row)))
+                                    .toList()));
+                    if (rows.size() == limit) {
+                        String next = UriComponentsBuilder.fromUri(request.getURI())
+                                .replaceQueryParam("after", idOf.apply(rows.get(rows.size() - 1)))
+                                .replaceQueryParam("limit", limit)
+                                .build()
+                                .toUriString();
+                        response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+                    }
+                    return response.body(rows);
+                });
+    }
+}
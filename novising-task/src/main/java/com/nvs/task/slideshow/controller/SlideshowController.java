@@ -1,13 +1,30 @@
 package com.nvs.task.slideshow.controller;
 
+import com.nvs.task.slideshow.model.NowPlaying;
+import com.nvs.task.slideshow.model.PlaybackSession;
+import com.nvs.task.slideshow.model.PlayStats;
+import com.nvs.task.slideshow.model.ProofOfPlayRecord;
+import com.nvs.task.slideshow.model.ProofOfPlayResult;
 import com.nvs.task.slideshow.model.Slideshow;
+import com.nvs.task.slideshow.service.SlideshowResponseCache;
 import com.nvs.task.slideshow.service.SlideshowService;
+import com.nvs.task.slideshow.util.EntityTags;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.List;
+
 /**
  * REST controller for managing slideshow operations.
  */
@@ -43,48 +60,215 @@ public class SlideshowController {
     }
 
     /**
-     * Retrieves the order of slides in a specific slideshow.
+     * Retrieves the images of a specific slideshow in the order they were added to it.
+     * The JSON is served from a cache of ready-made bytes, gzip-compressed when the client accepts it.
+     * The ETag is derived from the versions of the images; a request whose {@code If-None-Match}
+     * matches it gets a 304 without the images being loaded.
      *
-     * @param id The ID of the slideshow
-     * @return A Mono&lt;Slideshow&gt; containing the slideshow with its order
+     * @param id             The ID of the slideshow
+     * @param acceptEncoding The encodings the client accepts
+     * @param ifNoneMatch    The ETags of the images the client holds
+     * @param response       The current response, whose buffer factory wraps the cached bytes
+     * @return A Mono&lt;ResponseEntity&gt; with the JSON array of the fully resolved images in display order
      */
     @GetMapping("/slideShow/{id}/slideshowOrder")
-    public Mono<Slideshow> getSlideshowOrder(@PathVariable Long id) {
-        return slideshowService.getSlideshow(id);
+    public Mono<ResponseEntity<DataBuffer>> getSlideshowOrder(@PathVariable Long id,
+                                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                              ServerHttpResponse response) {
+        boolean gzip = SlideshowResponseCache.acceptsGzip(acceptEncoding);
+        return ConditionalResponses.ifNoneMatch(ifNoneMatch,
+                () -> slideshowService.getSlideshowOrderTag(id),
+                () -> slideshowService.getSlideshowOrderResponse(id)
+                        .map(cached -> {
+                            byte[] body = gzip ? cached.gzip() : cached.identity();
+                            ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .contentLength(body.length)
+                                    .eTag(cached.etag())
+                                    .varyBy(HttpHeaders.ACCEPT_ENCODING);
+                            if (gzip) {
+                                builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+                            }
+                            return builder.body(response.bufferFactory().wrap(body));
+                        }));
+    }
+
+    /**
+     * Retrieves the image a display should be showing now.
+     * Displays that join late use it instead of replaying the image durations themselves.
+     *
+     * @param id         The ID of the slideshow
+     * @param epochStart The moment the display started looping through the slideshow (ISO-8601),
+     *                   defaults to the Unix epoch so that displays without a start of their own stay in step
+     * @return A Mono&lt;ResponseEntity&gt; with the image on screen and when it started and ends,
+     * or no content if the slideshow has no image to show
+     */
+    @GetMapping("/slideShow/{id}/now")
+    public Mono<ResponseEntity<NowPlaying>> getNowPlaying(@PathVariable Long id,
+                                                          @RequestParam(required = false) Instant epochStart) {
+        return slideshowService.getNowPlaying(id, epochStart)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.noContent().build());
+    }
+
+    /**
+     * Streams the image transitions of a slideshow as Server-Sent Events.
+     * Each {@code transition} event carries the image that just came on screen; the first event is
+     * the image on screen when the stream is opened. Displays use it instead of polling.
+     *
+     * @param id The ID of the slideshow
+     * @return A Flux&lt;ServerSentEvent&gt; with one event per transition, identified by its start in epoch milliseconds
+     */
+    @GetMapping(value = "/slideShow/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<NowPlaying>> streamTransitions(@PathVariable Long id) {
+        return slideshowService.streamTransitions(id)
+                .map(nowPlaying -> ServerSentEvent.builder(nowPlaying)
+                        .id(String.valueOf(nowPlaying.getStartedAt().toEpochMilli()))
+                        .event("transition")
+                        .build());
+    }
+
+    /**
+     * Starts playing a slideshow on the server for a display that cannot report its own plays.
+     * The server records a proof of play every time an image comes on screen, until the session is stopped.
+     *
+     * @param id         The ID of the slideshow
+     * @param epochStart The moment the playback started (ISO-8601), defaults to the Unix epoch
+     * @return A Mono&lt;PlaybackSession&gt; describing the new session
+     */
+    @PostMapping("/slideShow/{id}/playback")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<PlaybackSession> startPlayback(@PathVariable Long id,
+                                               @RequestParam(required = false) Instant epochStart) {
+        return slideshowService.startPlayback(id, epochStart);
+    }
+
+    /**
+     * Retrieves a running playback session, with the image on screen and the number of plays recorded.
+     *
+     * @param sessionId The ID of the session
+     * @return A Mono&lt;PlaybackSession&gt; describing the session
+     */
+    @GetMapping("/playback/{sessionId}")
+    public Mono<PlaybackSession> getPlayback(@PathVariable String sessionId) {
+        return slideshowService.getPlayback(sessionId);
+    }
+
+    /**
+     * Stops a running playback session.
+     *
+     * @param sessionId The ID of the session
+     * @return A Mono&lt;Void&gt; indicating the completion of the stop operation
+     */
+    @DeleteMapping("/playback/{sessionId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> stopPlayback(@PathVariable String sessionId) {
+        return slideshowService.stopPlayback(sessionId);
     }
 
     /**
      * Records a proof of play for a specific image in a slideshow.
+     * Retries carrying the same {@code Idempotency-Key} header, or the same {@code playedAt}
+     * timestamp, are acknowledged without being recorded twice.
      *
-     * @param id      The ID of the slideshow
-     * @param imageId The ID of the image for which proof of play is being recorded
+     * @param id             The ID of the slideshow
+     * @param imageId        The ID of the image for which proof of play is being recorded
+     * @param playedAt       The moment the image was played (ISO-8601), defaults to the time of receipt
+     * @param idempotencyKey The key identifying the play across retries
      * @return A Mono&lt;Void&gt; indicating the completion of the recording operation
      */
     @PostMapping("/slideShow/{id}/proof-of-play/{imageId}")
     @ResponseStatus(HttpStatus.CREATED)
-    public Mono<Void> recordProofOfPlay(@PathVariable Long id, @PathVariable Long imageId) {
-        return slideshowService.recordProofOfPlay(id, imageId);
+    public Mono<Void> recordProofOfPlay(@PathVariable Long id, @PathVariable Long imageId,
+                                        @RequestParam(required = false) Instant playedAt,
+                                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return slideshowService.recordProofOfPlay(id, imageId, playedAt, idempotencyKey);
     }
 
     /**
-     * Retrieves all slideshows in the system.
+     * Records a batch of proofs of play for a slideshow.
+     * Accepts either a JSON array or an NDJSON stream of records; the results are streamed back
+     * as NDJSON when requested, and as a JSON array otherwise.
      *
-     * @return A Flux&lt;Slideshow&gt; containing all slideshows
+     * @param id      The ID of the slideshow
+     * @param records The proof-of-play records, each holding an image ID and the time it was played
+     * @return A Flux&lt;ProofOfPlayResult&gt; with the outcome of every record
+     */
+    @PostMapping(value = "/slideShow/{id}/proof-of-play",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<ProofOfPlayResult> recordProofOfPlayBatch(@PathVariable Long id,
+                                                          @RequestBody Flux<ProofOfPlayRecord> records) {
+        return slideshowService.recordProofOfPlayBatch(id, records);
+    }
+
+    /**
+     * Retrieves the play counts of a slideshow by minute or by hour.
+     *
+     * @param id          The ID of the slideshow
+     * @param from        The inclusive start of the range (ISO-8601), defaults to one hour before {@code to}
+     * @param to          The exclusive end of the range (ISO-8601), defaults to now
+     * @param granularity The bucket size, {@code minute} or {@code hour}
+     * @return A Mono&lt;PlayStats&gt; with the play counts per bucket and image
+     */
+    @GetMapping("/slideShow/{id}/stats")
+    public Mono<PlayStats> getPlayStats(@PathVariable Long id,
+                                        @RequestParam(required = false) Instant from,
+                                        @RequestParam(required = false) Instant to,
+                                        @RequestParam(defaultValue = "minute") String granularity) {
+        return slideshowService.getPlayStats(id, from, to, granularity);
+    }
+
+    /**
+     * Retrieves one page of slideshows, ordered by ID.
+     * The next page is requested with {@code after} set to the ID of the last slideshow on this one;
+     * when the page is full, the {@code Link} header carries that URL. A request whose
+     * {@code If-None-Match} matches the versions of the slideshows on the page gets a 304.
+     *
+     * @param after       The ID after which the page starts; omit for the first page
+     * @param limit       The maximum number of slideshows on the page, at most 1000
+     * @param ifNoneMatch The ETags of the page the client holds
+     * @param request     The current request
+     * @return A Mono&lt;ResponseEntity&gt; containing the slideshows on the page
      */
     @GetMapping("/slideshows")
-    public Flux<Slideshow> getAllSlideshows() {
-        return slideshowService.getAllSlideshows();
+    public Mono<ResponseEntity<List<Slideshow>>> getAllSlideshows(@RequestParam(required = false) Long after,
+                                                                  @RequestParam(defaultValue = "100") int limit,
+                                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                                  ServerHttpRequest request) {
+        return ConditionalResponses.ifNoneMatch(ifNoneMatch,
+                () -> slideshowService.getSlideshowPageTag(after, limit),
+                () -> PageResponses.of(slideshowService.getSlideshows(after, limit), limit, Slideshow::getId,
+                        Slideshow::getVersion, request));
+    }
+
+    /**
+     * Streams all slideshows as NDJSON, ordered by ID.
+     * Slideshows are written as they are loaded and loaded only as fast as the client reads them.
+     *
+     * @param after The ID after which the stream starts; omit to stream all slideshows
+     * @return A Flux&lt;Slideshow&gt; emitting the slideshows
+     */
+    @GetMapping(value = "/slideshows", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Slideshow> streamAllSlideshows(@RequestParam(required = false) Long after) {
+        return slideshowService.streamSlideshows(after);
     }
 
     /**
      * Updates an existing slideshow.
+     * With {@code If-Match} set to the ETag of the slideshow, the update only succeeds if nobody
+     * changed the slideshow since, and fails with 409 otherwise.
      *
      * @param id        The ID of the slideshow to be updated
      * @param slideshow The updated Slideshow object
-     * @return A Mono&lt;Slideshow&gt; representing the updated slideshow
+     * @param ifMatch   The ETag of the version the update is based on; omit to update any version
+     * @return A Mono&lt;ResponseEntity&gt; containing the updated slideshow, with its new version as ETag
      */
     @PutMapping("/slideshow/{id}")
-    public Mono<Slideshow> updateSlideshow(@PathVariable Long id, @RequestBody Slideshow slideshow) {
-        return slideshowService.updateSlideshow(id, slideshow);
+    public Mono<ResponseEntity<Slideshow>> updateSlideshow(@PathVariable Long id, @RequestBody Slideshow slideshow,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return slideshowService.updateSlideshow(id, slideshow, EntityTags.parseVersion(ifMatch))
+                .map(updated -> ResponseEntity.ok().eTag(EntityTags.of(updated.getVersion())).body(updated));
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.nvs.task.slideshow.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception class for handling conflicting writes.
+ * This exception is thrown when a client updates a resource based on a version that has
+ * since been changed by someone else.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictException extends RuntimeException {
+
+    /**
+     * Constructs a new ConflictException with the specified detail message.
+     *
+     * @param message the detail message (which is saved for later retrieval by the getMessage() method)
+     */
+    public ConflictException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new ConflictException with a formatted message including the resource type, its ID
+     * and the version the client expected.
+     *
+     * @param resourceType    the type of resource that was changed concurrently
+     * @param id              the ID of the resource
+     * @param expectedVersion the version the client based its update on
+     */
+    public ConflictException(String resourceType, Long id, long expectedVersion) {
+        super(String.format("%s with id %d is no longer at version %d", resourceType, id, expectedVersion));
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
 import org.springframework.core.annotation.Order;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.lang.NonNull;
@@ -64,6 +65,12 @@ public class GlobalExceptionHandler implements ErrorWebExceptionHandler {
         } else if (ex instanceof BadRequestException) {
             status = HttpStatus.BAD_REQUEST;
             errorMessage = ex.getMessage();
+        } else if (ex instanceof ConflictException) {
+            status = HttpStatus.CONFLICT;
+            errorMessage = ex.getMessage();
+        } else if (ex instanceof OptimisticLockingFailureException) {
+            status = HttpStatus.CONFLICT;
+            errorMessage = "The resource was changed concurrently, reload it and retry";
         } else if (ex instanceof ResponseStatusException responseStatusException) {
             status = HttpStatus.valueOf(responseStatusException.getStatusCode().value());
             errorMessage = responseStatusException.getReason();
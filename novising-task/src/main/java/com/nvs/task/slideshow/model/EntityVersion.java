@@ -0,0 +1,18 @@
+package com.nvs.task.slideshow.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The ID and version of an image or slideshow, read without the rest of its row
+ * to answer conditional requests.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntityVersion {
+
+    private Long id;
+    private Long version;
+}
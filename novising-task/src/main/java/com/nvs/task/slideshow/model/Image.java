@@ -1,8 +1,10 @@
 package com.nvs.task.slideshow.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Table;
 
 /**
@@ -39,6 +41,34 @@ public class Image {
      */
     private int duration;
 
+    /**
+     * The format of the image, detected from its content; null until the metadata has been extracted.
+     */
+    private ImageFormat format;
+
+    /**
+     * The width of the image in pixels, if known.
+     */
+    private Integer width;
+
+    /**
+     * The height of the image in pixels, if known.
+     */
+    private Integer height;
+
+    /**
+     * The size of the image file in bytes, if known.
+     */
+    private Long byteSize;
+
+    /**
+     * The version of the image, incremented by every write and sent as its ETag.
+     * Set by the server only; null until the image is stored.
+     */
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
     /**
      * Constructs a new Image with the specified ID and URL.
      *
@@ -0,0 +1,98 @@
+package com.nvs.task.slideshow.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Image formats recognized by their leading bytes ("magic numbers").
+ */
+public enum ImageFormat {
+    JPEG("image/jpeg"),
+    PNG("image/png"),
+    GIF("image/gif"),
+    WEBP("image/webp"),
+    BMP("image/bmp"),
+    AVIF("image/avif"),
+    SVG("image/svg+xml");
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final String mediaType;
+
+    ImageFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Returns the media type of the format.
+     *
+     * @return the media type, e.g. {@code image/png}
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Detects the format of an image from its first bytes.
+     *
+     * @param header the first bytes of the resource
+     * @param length the number of valid bytes in {@code header}
+     * @return the detected format, or null if the bytes do not start a supported image
+     */
+    public static ImageFormat detect(byte[] header, int length) {
+        if (length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return JPEG;
+        }
+        if (startsWith(header, length, 0, PNG_SIGNATURE)) {
+            return PNG;
+        }
+        if (startsWithAscii(header, length, 0, "GIF87a") || startsWithAscii(header, length, 0, "GIF89a")) {
+            return GIF;
+        }
+        if (startsWithAscii(header, length, 0, "RIFF") && startsWithAscii(header, length, 8, "WEBP")) {
+            return WEBP;
+        }
+        if (startsWithAscii(header, length, 4, "ftypavif") || startsWithAscii(header, length, 4, "ftypavis")) {
+            return AVIF;
+        }
+        if (startsWithAscii(header, length, 0, "BM") && length >= 14) {
+            return BMP;
+        }
+        if (isSvg(header, length)) {
+            return SVG;
+        }
+        return null;
+    }
+
+    private static boolean isSvg(byte[] header, int length) {
+        int start = 0;
+        if (startsWith(header, length, 0, new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF})) {
+            start = 3;
+        }
+        while (start < length && Character.isWhitespace(header[start])) {
+            start++;
+        }
+        if (start >= length || header[start] != '<') {
+            return false;
+        }
+        // SVG is XML text: the root element must appear within the probed bytes
+        String text = new String(header, start, length - start, StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+        return text.contains("<svg");
+    }
+
+    private static boolean startsWithAscii(byte[] header, int length, int offset, String prefix) {
+        return startsWith(header, length, offset, prefix.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static boolean startsWith(byte[] header, int length, int offset, byte[] prefix) {
+        if (length < offset + prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (header[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
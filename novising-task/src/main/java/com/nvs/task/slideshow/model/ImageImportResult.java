@@ -0,0 +1,49 @@
+package com.nvs.task.slideshow.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of a single image submitted to the bulk import endpoint.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageImportResult {
+
+    /**
+     * The zero-based position of the image in the submitted input.
+     */
+    private long index;
+
+    /**
+     * The ID assigned to the imported image.
+     */
+    private Long id;
+
+    /**
+     * The URL of the submitted image.
+     */
+    private String url;
+
+    /**
+     * Whether the image was imported or rejected.
+     */
+    private Status status;
+
+    /**
+     * The reason an image was rejected.
+     */
+    private String message;
+
+    /**
+     * Possible outcomes of an imported image.
+     */
+    public enum Status {
+        IMPORTED,
+        REJECTED
+    }
+}
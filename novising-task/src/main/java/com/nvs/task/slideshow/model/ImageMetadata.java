@@ -0,0 +1,20 @@
+package com.nvs.task.slideshow.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Format, dimensions and size of an image, as read from the first bytes of the resource.
+ * Dimensions and size are null when they could not be determined.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageMetadata {
+
+    private ImageFormat format;
+    private Integer width;
+    private Integer height;
+    private Long byteSize;
+}
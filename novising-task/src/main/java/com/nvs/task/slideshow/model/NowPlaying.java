@@ -0,0 +1,42 @@
+package com.nvs.task.slideshow.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * The image a slideshow is showing at a given moment, for a display that started the
+ * slideshow at a known time and has looped it ever since.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NowPlaying {
+
+    /**
+     * The ID of the slideshow.
+     */
+    private Long slideshowId;
+
+    /**
+     * The zero-based position of the image among the images the slideshow shows.
+     */
+    private int position;
+
+    /**
+     * The image on screen.
+     */
+    private Image image;
+
+    /**
+     * The moment the image came on screen.
+     */
+    private Instant startedAt;
+
+    /**
+     * The moment the next image replaces it.
+     */
+    private Instant endsAt;
+}
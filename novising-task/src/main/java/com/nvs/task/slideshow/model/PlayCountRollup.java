@@ -0,0 +1,23 @@
+package com.nvs.task.slideshow.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Number of plays of one image in one slideshow within a time bucket.
+ * Maps to a row of the {@code proof_of_play_rollups} table.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlayCountRollup {
+
+    private StatsGranularity granularity;
+    private Instant bucketStart;
+    private long slideshowId;
+    private long imageId;
+    private long playCount;
+}
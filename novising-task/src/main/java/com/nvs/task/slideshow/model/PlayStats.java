@@ -0,0 +1,50 @@
+package com.nvs.task.slideshow.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Play counts of a slideshow over a time range, split into buckets of a fixed granularity.
+ * Buckets without any play are omitted.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlayStats {
+
+    private Long slideshowId;
+    private StatsGranularity granularity;
+    private Instant from;
+    private Instant to;
+    private long totalPlays;
+    private List<Bucket> buckets;
+
+    /**
+     * Play counts within a single time bucket.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bucket {
+
+        /**
+         * The start of the bucket.
+         */
+        private Instant start;
+
+        /**
+         * The number of plays of all images of the slideshow within the bucket.
+         */
+        private long plays;
+
+        /**
+         * The number of plays per image ID within the bucket.
+         */
+        private Map<Long, Long> imagePlays;
+    }
+}
@@ -0,0 +1,47 @@
+package com.nvs.task.slideshow.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A slideshow played by the server on behalf of a display that cannot report its own plays.
+ * Every image the session shows is recorded as a proof of play.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlaybackSession {
+
+    /**
+     * The ID of the session.
+     */
+    private String id;
+
+    /**
+     * The ID of the slideshow being played.
+     */
+    private Long slideshowId;
+
+    /**
+     * The moment the playback of the slideshow started, from which its images loop.
+     */
+    private Instant epochStart;
+
+    /**
+     * The moment the session was started.
+     */
+    private Instant startedAt;
+
+    /**
+     * The ID of the image on screen, or null if the slideshow has no image to show.
+     */
+    private Long currentImageId;
+
+    /**
+     * The number of plays the session has recorded.
+     */
+    private long playCount;
+}
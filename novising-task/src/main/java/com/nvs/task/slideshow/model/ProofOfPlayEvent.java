@@ -0,0 +1,33 @@
+package com.nvs.task.slideshow.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Represents a single proof-of-play event travelling through the ingestion pipeline.
+ * An event is created once the image has been validated as part of the slideshow
+ * and is eventually published to the proof-of-play Kafka topic.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProofOfPlayEvent {
+
+    /**
+     * The ID of the slideshow that was playing.
+     */
+    private long slideshowId;
+
+    /**
+     * The ID of the image that was displayed.
+     */
+    private long imageId;
+
+    /**
+     * The moment the image was played.
+     */
+    private Instant playedAt;
+}
@@ -0,0 +1,43 @@
+package com.nvs.task.slideshow.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A single proof-of-play entry submitted to the batch endpoint.
+ * Displays replaying transitions after an outage send one record per image change.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProofOfPlayRecord {
+
+    /**
+     * The ID of the image that was displayed.
+     */
+    private Long imageId;
+
+    /**
+     * The moment the image was played; the time of receipt is used when absent.
+     */
+    private Instant playedAt;
+
+    /**
+     * An optional key identifying the play across retries.
+     * When absent, the play is identified by its image and {@code playedAt}.
+     */
+    private String idempotencyKey;
+
+    /**
+     * Creates a record without idempotency key.
+     *
+     * @param imageId  the ID of the image that was displayed
+     * @param playedAt the moment the image was played
+     */
+    public ProofOfPlayRecord(Long imageId, Instant playedAt) {
+        this(imageId, playedAt, null);
+    }
+}
@@ -0,0 +1,45 @@
+package com.nvs.task.slideshow.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of a single record submitted to the batch proof-of-play endpoint.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProofOfPlayResult {
+
+    /**
+     * The zero-based position of the record in the submitted batch.
+     */
+    private long index;
+
+    /**
+     * The ID of the image the record referred to.
+     */
+    private Long imageId;
+
+    /**
+     * Whether the record was accepted, rejected or already recorded earlier.
+     */
+    private Status status;
+
+    /**
+     * The reason a record was rejected.
+     */
+    private String message;
+
+    /**
+     * Possible outcomes of a proof-of-play record.
+     */
+    public enum Status {
+        ACCEPTED,
+        REJECTED,
+        DUPLICATE
+    }
+}
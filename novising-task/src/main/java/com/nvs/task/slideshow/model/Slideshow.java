@@ -1,7 +1,10 @@
 package com.nvs.task.slideshow.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Table;
 
 import java.time.LocalDateTime;
@@ -14,6 +17,12 @@ import java.util.List;
  * It contains information about the slideshow, including its ID, name,
  * associated image IDs, and proof of play records.
  * <p>
+ * The image IDs are not a column of the "slideshows" table; they are stored in the
+ * "slideshow_images" table and loaded and saved by the SlideshowService.
+ * <p>
+ * The version is incremented by every write, including changes of the image IDs, and is
+ * set by the server only.
+ * <p>
  * The @Data annotation from Lombok automatically generates getters, setters,
  * equals, hashCode, and toString methods.
  * <p>
@@ -25,7 +34,11 @@ public class Slideshow {
     @Id
     private Long id;
     private String name;
+    @Transient
     private List<Long> imageIds;
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 
     private List<ProofOfPlay> proofOfPlays = new ArrayList<>();
 
@@ -0,0 +1,54 @@
+package com.nvs.task.slideshow.model;
+
+import com.nvs.task.slideshow.exception.BadRequestException;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Size of the time buckets used for play-count statistics.
+ */
+public enum StatsGranularity {
+    MINUTE(Duration.ofMinutes(1)),
+    HOUR(Duration.ofHours(1));
+
+    private final long millis;
+
+    StatsGranularity(Duration size) {
+        this.millis = size.toMillis();
+    }
+
+    /**
+     * Returns the bucket size in milliseconds.
+     *
+     * @return the bucket size
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Returns the start of the bucket containing the given moment.
+     *
+     * @param epochMillis the moment in milliseconds since the epoch
+     * @return the bucket start in milliseconds since the epoch
+     */
+    public long bucketStart(long epochMillis) {
+        return Math.floorDiv(epochMillis, millis) * millis;
+    }
+
+    /**
+     * Parses a granularity name, ignoring case.
+     *
+     * @param value the name, e.g. {@code minute} or {@code hour}
+     * @return the matching granularity
+     * @throws BadRequestException if the name is unknown
+     */
+    public static StatsGranularity parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unsupported granularity: " + value);
+        }
+    }
+}
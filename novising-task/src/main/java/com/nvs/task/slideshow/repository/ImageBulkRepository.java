@@ -0,0 +1,79 @@
+package com.nvs.task.slideshow.repository;
+
+import com.nvs.task.slideshow.model.Image;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Repository for inserting many images at once into the {@code images} table.
+ * Images are written with multi-row inserts through the {@link DatabaseClient}, so a whole
+ * batch costs a single round-trip instead of one per image.
+ */
+@Repository
+public class ImageBulkRepository {
+
+    private static final String INSERT_PREFIX = "INSERT INTO images (name, url, description, duration) VALUES ";
+    private static final String INSERT_SUFFIX = " RETURNING id";
+
+    /**
+     * PostgreSQL accepts at most 65535 bind parameters per statement; each row uses four.
+     */
+    public static final int MAX_ROWS_PER_INSERT = 65535 / 4;
+
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Constructs a new ImageBulkRepository.
+     *
+     * @param databaseClient the client used to execute statements
+     */
+    public ImageBulkRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Inserts all given images with a single multi-row INSERT statement.
+     * The IDs of the images are ignored; new ones are generated by the database.
+     *
+     * @param images the images to insert; at most {@link #MAX_ROWS_PER_INSERT}
+     * @return a Flux emitting the generated IDs, in the order of the given images
+     */
+    public Flux<Long> insertAll(List<Image> images) {
+        if (images.isEmpty()) {
+            return Flux.empty();
+        }
+        if (images.size() > MAX_ROWS_PER_INSERT) {
+            return Flux.error(new IllegalArgumentException("At most " + MAX_ROWS_PER_INSERT + " rows per insert"));
+        }
+
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + images.size() * 24 + INSERT_SUFFIX.length())
+                .append(INSERT_PREFIX);
+        for (int row = 0; row < images.size(); row++) {
+            int parameter = row * 4;
+            sql.append(row == 0 ? "(" : ", (")
+                    .append('$').append(parameter + 1).append(", ")
+                    .append('$').append(parameter + 2).append(", ")
+                    .append('$').append(parameter + 3).append(", ")
+                    .append('$').append(parameter + 4).append(')');
+        }
+        sql.append(INSERT_SUFFIX);
+
+        DatabaseClient.GenericExecuteSpec statement = databaseClient.sql(sql.toString());
+        for (int row = 0; row < images.size(); row++) {
+            Image image = images.get(row);
+            int parameter = row * 4;
+            statement = statement
+                    .bind(parameter, image.getName())
+                    .bind(parameter + 1, image.getUrl())
+                    .bind(parameter + 3, image.getDuration());
+            statement = image.getDescription() != null
+                    ? statement.bind(parameter + 2, image.getDescription())
+                    : statement.bindNull(parameter + 2, String.class);
+        }
+        // PostgreSQL returns the rows of an INSERT ... VALUES in the order of the VALUES list
+        return statement.map(row -> row.get("id", Long.class)).all();
+    }
+}
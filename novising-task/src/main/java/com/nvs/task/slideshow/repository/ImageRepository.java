@@ -1,8 +1,12 @@
 package com.nvs.task.slideshow.repository;
 
+import com.nvs.task.slideshow.model.EntityVersion;
 import com.nvs.task.slideshow.model.Image;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * Repository interface for managing Image entities.
@@ -17,4 +21,103 @@ public interface ImageRepository extends ReactiveCrudRepository<Image, Long> {
      * @return A Flux emitting Image objects whose URLs contain the given keyword
      */
     Flux<Image> findByUrlContainingIgnoreCase(String keyword);
-}
\ No newline at end of file
+
+    /**
+     * Finds a page of images ordered by ID.
+     *
+     * @param afterId The ID after which the page starts; 0 for the first page
+     * @param limit   The maximum number of images on the page
+     * @return A Flux emitting up to {@code limit} images with an ID greater than {@code afterId}, ordered by ID
+     */
+    @Query("SELECT * FROM images WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<Image> findPage(long afterId, int limit);
+
+    /**
+     * Finds the version of an image, read from the version index without loading the row.
+     *
+     * @param id The ID of the image
+     * @return A Mono emitting the version, or empty if the image does not exist
+     */
+    @Query("SELECT version FROM images WHERE id = :id")
+    Mono<Long> findVersionById(Long id);
+
+    /**
+     * Finds the IDs and versions of a page of images ordered by ID, as {@link #findPage} would return them.
+     *
+     * @param afterId The ID after which the page starts; 0 for the first page
+     * @param limit   The maximum number of images on the page
+     * @return A Flux emitting the ID and version of every image on the page, ordered by ID
+     */
+    @Query("SELECT id, version FROM images WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<EntityVersion> findVersionPage(long afterId, int limit);
+
+    /**
+     * Finds the images of a slideshow in display order with a single join.
+     *
+     * @param slideshowId The ID of the slideshow
+     * @return A Flux emitting the images of the slideshow, ordered by the time they were added to it
+     */
+    @Query("SELECT i.* FROM slideshow_images si JOIN images i ON i.id = si.image_id "
+            + "WHERE si.slideshow_id = :slideshowId ORDER BY si.added_at, si.position")
+    Flux<Image> findBySlideshowInOrder(Long slideshowId);
+
+    /**
+     * Finds the IDs and versions of the images of a slideshow in display order, as
+     * {@link #findBySlideshowInOrder} would return them, without loading the image rows.
+     *
+     * @param slideshowId The ID of the slideshow
+     * @return A Flux emitting the ID and version of every image of the slideshow in display order
+     */
+    @Query("SELECT i.id, i.version FROM slideshow_images si JOIN images i ON i.id = si.image_id "
+            + "WHERE si.slideshow_id = :slideshowId ORDER BY si.added_at, si.position")
+    Flux<EntityVersion> findVersionsBySlideshowInOrder(Long slideshowId);
+
+    /**
+     * Finds images whose metadata has not been extracted yet.
+     *
+     * @return A Flux emitting Image objects without a detected format, ordered by ID
+     */
+    @Query("SELECT * FROM images WHERE format IS NULL ORDER BY id")
+    Flux<Image> findWithoutMetadata();
+
+    /**
+     * Updates the editable fields of an image in a single round-trip and returns the stored row.
+     * The metadata extracted from the previous URL is cleared when the URL changes, and the
+     * version is incremented. With an expected version, the row is only updated if it is still
+     * at that version, so concurrent edits cannot overwrite each other.
+     *
+     * @param id              The ID of the image
+     * @param name            The new name
+     * @param url             The new URL
+     * @param description     The new description
+     * @param duration        The new display duration in seconds
+     * @param expectedVersion The version the update is based on, or null to update any version
+     * @return A Mono emitting the updated image, or empty if no image with that ID is at the expected version
+     */
+    @Query("UPDATE images SET name = :name, url = :url, description = :description, duration = :duration, "
+            + "format = CASE WHEN url = :url THEN format END, "
+            + "width = CASE WHEN url = :url THEN width END, "
+            + "height = CASE WHEN url = :url THEN height END, "
+            + "byte_size = CASE WHEN url = :url THEN byte_size END, "
+            + "version = version + 1 "
+            + "WHERE id = :id AND (:expectedVersion IS NULL OR version = :expectedVersion) RETURNING *")
+    Mono<Image> updateFields(Long id, String name, String url, String description, int duration, Long expectedVersion);
+
+    /**
+     * Stores extracted metadata of an image, unless its URL has changed since the extraction started.
+     * Only the metadata columns are written, so concurrent edits of other fields are not overwritten;
+     * the version is incremented like by any other write.
+     *
+     * @param id       The ID of the image
+     * @param url      The URL the metadata was extracted from
+     * @param format   The detected format
+     * @param width    The width in pixels, or null
+     * @param height   The height in pixels, or null
+     * @param byteSize The size in bytes, or null
+     * @return A Mono emitting the number of updated rows
+     */
+    @Modifying
+    @Query("UPDATE images SET format = :format, width = :width, height = :height, byte_size = :byteSize, "
+            + "version = version + 1 WHERE id = :id AND url = :url")
+    Mono<Integer> updateMetadata(Long id, String url, String format, Integer width, Integer height, Long byteSize);
+}
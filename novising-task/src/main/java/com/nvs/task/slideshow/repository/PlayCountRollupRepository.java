@@ -0,0 +1,119 @@
+package com.nvs.task.slideshow.repository;
+
+import com.nvs.task.slideshow.model.PlayCountRollup;
+import com.nvs.task.slideshow.model.StatsGranularity;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Repository for the {@code proof_of_play_rollups} table holding flushed play counters.
+ * Counters are written as increments, so flushing the same bucket several times accumulates
+ * its plays instead of overwriting them.
+ */
+@Repository
+public class PlayCountRollupRepository {
+
+    private static final String UPSERT_PREFIX =
+            "INSERT INTO proof_of_play_rollups (granularity, bucket_start, slideshow_id, image_id, play_count) VALUES ";
+
+    private static final String UPSERT_SUFFIX =
+            " ON CONFLICT (slideshow_id, granularity, bucket_start, image_id)"
+                    + " DO UPDATE SET play_count = proof_of_play_rollups.play_count + EXCLUDED.play_count";
+
+    private static final String SELECT_RANGE =
+            "SELECT granularity, bucket_start, slideshow_id, image_id, play_count FROM proof_of_play_rollups"
+                    + " WHERE slideshow_id = $1 AND granularity = $2 AND bucket_start >= $3 AND bucket_start < $4"
+                    + " ORDER BY bucket_start, image_id";
+
+    private static final int COLUMNS = 5;
+
+    /**
+     * PostgreSQL accepts at most 65535 bind parameters per statement.
+     */
+    private static final int MAX_ROWS_PER_STATEMENT = 65535 / COLUMNS;
+
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Constructs a new PlayCountRollupRepository.
+     *
+     * @param databaseClient the client used to execute statements
+     */
+    public PlayCountRollupRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Adds the play counts of the given rollups to the stored ones, creating missing rows.
+     * Each rollup must refer to a distinct row. All statements run in one transaction, so a
+     * failed flush leaves no increment behind to be added again by the next one.
+     *
+     * @param rollups the increments to apply
+     * @return a Mono emitting the number of inserted or updated rows
+     */
+    @Transactional
+    public Mono<Long> incrementAll(List<PlayCountRollup> rollups) {
+        return Flux.range(0, (rollups.size() + MAX_ROWS_PER_STATEMENT - 1) / MAX_ROWS_PER_STATEMENT)
+                .concatMap(chunk -> increment(rollups.subList(chunk * MAX_ROWS_PER_STATEMENT,
+                        Math.min(rollups.size(), (chunk + 1) * MAX_ROWS_PER_STATEMENT))))
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Finds the stored play counts of a slideshow in the range {@code [from, to)}.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param granularity the bucket size
+     * @param from        the inclusive start of the range
+     * @param to          the exclusive end of the range
+     * @return a Flux emitting the rollups ordered by bucket start
+     */
+    public Flux<PlayCountRollup> findBySlideshow(long slideshowId, StatsGranularity granularity, Instant from, Instant to) {
+        return databaseClient.sql(SELECT_RANGE)
+                .bind(0, slideshowId)
+                .bind(1, granularity.name())
+                .bind(2, OffsetDateTime.ofInstant(from, ZoneOffset.UTC))
+                .bind(3, OffsetDateTime.ofInstant(to, ZoneOffset.UTC))
+                .map(row -> new PlayCountRollup(
+                        StatsGranularity.valueOf(row.get("granularity", String.class)),
+                        row.get("bucket_start", OffsetDateTime.class).toInstant(),
+                        row.get("slideshow_id", Long.class),
+                        row.get("image_id", Long.class),
+                        row.get("play_count", Long.class)))
+                .all();
+    }
+
+    private Mono<Long> increment(List<PlayCountRollup> rollups) {
+        StringBuilder sql = new StringBuilder(UPSERT_PREFIX);
+        for (int row = 0; row < rollups.size(); row++) {
+            int parameter = row * COLUMNS;
+            sql.append(row == 0 ? "(" : ", (");
+            for (int column = 1; column <= COLUMNS; column++) {
+                sql.append(column == 1 ? "$" : ", $").append(parameter + column);
+            }
+            sql.append(')');
+        }
+        sql.append(UPSERT_SUFFIX);
+
+        DatabaseClient.GenericExecuteSpec statement = databaseClient.sql(sql.toString());
+        for (int row = 0; row < rollups.size(); row++) {
+            PlayCountRollup rollup = rollups.get(row);
+            int parameter = row * COLUMNS;
+            statement = statement
+                    .bind(parameter, rollup.getGranularity().name())
+                    .bind(parameter + 1, OffsetDateTime.ofInstant(rollup.getBucketStart(), ZoneOffset.UTC))
+                    .bind(parameter + 2, rollup.getSlideshowId())
+                    .bind(parameter + 3, rollup.getImageId())
+                    .bind(parameter + 4, rollup.getPlayCount());
+        }
+        return statement.fetch().rowsUpdated();
+    }
+}
@@ -0,0 +1,84 @@
+package com.nvs.task.slideshow.repository;
+
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Repository for writing proof-of-play records to the {@code slideshow_proof_of_play} table.
+ * Records are written with multi-row inserts through the {@link DatabaseClient}, so a whole
+ * batch costs a single round-trip. Rows are joined with {@code slideshows} on the way in, so
+ * events of a slideshow deleted in the meantime are skipped instead of failing the whole batch
+ * on the foreign key.
+ */
+@Repository
+public class ProofOfPlayRepository {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO slideshow_proof_of_play (slideshow_id, image_id, played_at) "
+                    + "SELECT e.slideshow_id, e.image_id, e.played_at FROM (VALUES ";
+
+    private static final String INSERT_SUFFIX =
+            ") AS e (slideshow_id, image_id, played_at) JOIN slideshows s ON s.id = e.slideshow_id";
+
+    /**
+     * PostgreSQL accepts at most 65535 bind parameters per statement; each row uses three.
+     */
+    public static final int MAX_ROWS_PER_INSERT = 65535 / 3;
+
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Constructs a new ProofOfPlayRepository.
+     *
+     * @param databaseClient the client used to execute statements
+     */
+    public ProofOfPlayRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Inserts all given events with a single multi-row INSERT statement. Events of slideshows
+     * that no longer exist are skipped.
+     *
+     * @param events the events to insert; at most {@link #MAX_ROWS_PER_INSERT}
+     * @return a Mono emitting the number of inserted rows
+     */
+    public Mono<Long> insertAll(List<ProofOfPlayEvent> events) {
+        if (events.isEmpty()) {
+            return Mono.just(0L);
+        }
+        if (events.size() > MAX_ROWS_PER_INSERT) {
+            return Mono.error(new IllegalArgumentException("At most " + MAX_ROWS_PER_INSERT + " rows per insert"));
+        }
+
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + INSERT_SUFFIX.length() + events.size() * 44)
+                .append(INSERT_PREFIX);
+        for (int row = 0; row < events.size(); row++) {
+            int parameter = row * 3;
+            // The columns of a VALUES list take no type from the target table, so each is cast
+            sql.append(row == 0 ? "(" : ", (")
+                    .append('$').append(parameter + 1).append("::BIGINT, ")
+                    .append('$').append(parameter + 2).append("::BIGINT, ")
+                    .append('$').append(parameter + 3).append("::TIMESTAMP)");
+        }
+        sql.append(INSERT_SUFFIX);
+
+        DatabaseClient.GenericExecuteSpec statement = databaseClient.sql(sql.toString());
+        ZoneId zone = ZoneId.systemDefault();
+        for (int row = 0; row < events.size(); row++) {
+            ProofOfPlayEvent event = events.get(row);
+            int parameter = row * 3;
+            statement = statement
+                    .bind(parameter, event.getSlideshowId())
+                    .bind(parameter + 1, event.getImageId())
+                    .bind(parameter + 2, LocalDateTime.ofInstant(event.getPlayedAt(), zone));
+        }
+        return statement.fetch().rowsUpdated();
+    }
+}
@@ -0,0 +1,131 @@
+package com.nvs.task.slideshow.repository;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repository for the membership of images in slideshows, stored in the {@code slideshow_images} table.
+ * <p>
+ * Images are ordered by the time they were added to a slideshow, and images added together by
+ * their position in the submitted list. Lists of IDs are bound as a single array parameter, so
+ * every statement costs one round-trip regardless of the size of the slideshow.
+ */
+@Repository
+public class SlideshowImageRepository {
+
+    private static final String SELECT_IMAGE_IDS =
+            "SELECT image_id FROM slideshow_images WHERE slideshow_id = $1 ORDER BY added_at, position";
+
+    private static final String SELECT_IMAGE_IDS_OF_SLIDESHOWS =
+            "SELECT slideshow_id, image_id FROM slideshow_images WHERE slideshow_id = ANY($1) "
+                    + "ORDER BY slideshow_id, added_at, position";
+
+    private static final String DELETE_OTHER_IMAGES =
+            "DELETE FROM slideshow_images WHERE slideshow_id = $1 AND NOT (image_id = ANY($2))";
+
+    // Images already in the slideshow keep the time they were added and only move to their new position
+    private static final String UPSERT_IMAGES =
+            "INSERT INTO slideshow_images (slideshow_id, image_id, position) "
+                    + "SELECT $1, t.image_id, t.position FROM unnest($2::bigint[]) WITH ORDINALITY AS t(image_id, position) "
+                    + "ON CONFLICT (slideshow_id, image_id) DO UPDATE SET position = EXCLUDED.position";
+
+    // Removes an image from every slideshow and increments the versions of those slideshows in one statement
+    private static final String REMOVE_IMAGE =
+            "WITH removed AS (DELETE FROM slideshow_images WHERE image_id = $1 RETURNING slideshow_id) "
+                    + "UPDATE slideshows SET version = version + 1 WHERE id IN (SELECT slideshow_id FROM removed) "
+                    + "RETURNING id";
+
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Constructs a new SlideshowImageRepository.
+     *
+     * @param databaseClient the client used to execute statements
+     */
+    public SlideshowImageRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Finds the image IDs of a slideshow in display order.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @return a Flux emitting the image IDs, ordered by the time they were added
+     */
+    public Flux<Long> findImageIds(Long slideshowId) {
+        return databaseClient.sql(SELECT_IMAGE_IDS)
+                .bind(0, slideshowId)
+                .map(row -> row.get("image_id", Long.class))
+                .all();
+    }
+
+    /**
+     * Finds the image IDs of several slideshows with a single query.
+     *
+     * @param slideshowIds the IDs of the slideshows
+     * @return a Mono emitting the image IDs in display order by slideshow ID;
+     * slideshows without images are absent from the map
+     */
+    public Mono<Map<Long, List<Long>>> findImageIds(Collection<Long> slideshowIds) {
+        if (slideshowIds.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return databaseClient.sql(SELECT_IMAGE_IDS_OF_SLIDESHOWS)
+                .bind(0, slideshowIds.toArray(new Long[0]))
+                .map(row -> new Long[]{row.get("slideshow_id", Long.class), row.get("image_id", Long.class)})
+                .all()
+                .collect(LinkedHashMap::new, (Map<Long, List<Long>> imageIds, Long[] row) ->
+                        imageIds.computeIfAbsent(row[0], id -> new ArrayList<>()).add(row[1]));
+    }
+
+    /**
+     * Sets the images of a slideshow. Images that are no longer listed are removed, new ones are
+     * added with the current time, and all listed images take their position in the list.
+     * Should run in a transaction, so that readers never see a partly replaced slideshow.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param imageIds    the image IDs in display order; repeated IDs are kept at their first position
+     * @return a Mono completing once the membership is stored
+     */
+    public Mono<Void> replaceImages(Long slideshowId, List<Long> imageIds) {
+        Long[] distinct = new LinkedHashSet<>(imageIds).toArray(new Long[0]);
+        Mono<Long> delete = databaseClient.sql(DELETE_OTHER_IMAGES)
+                .bind(0, slideshowId)
+                .bind(1, distinct)
+                .fetch()
+                .rowsUpdated();
+        if (distinct.length == 0) {
+            return delete.then();
+        }
+        return delete.then(databaseClient.sql(UPSERT_IMAGES)
+                        .bind(0, slideshowId)
+                        .bind(1, distinct)
+                        .fetch()
+                        .rowsUpdated())
+                .then();
+    }
+
+    /**
+     * Removes an image from every slideshow that contains it, with a single set-based statement
+     * using the membership index on {@code image_id}. The versions of the affected slideshows are
+     * incremented, since their list of images changed.
+     *
+     * @param imageId the ID of the image
+     * @return a Flux emitting the IDs of the slideshows the image was removed from
+     */
+    public Flux<Long> removeImage(Long imageId) {
+        return databaseClient.sql(REMOVE_IMAGE)
+                .bind(0, imageId)
+                .map(row -> row.get("id", Long.class))
+                .all();
+    }
+}
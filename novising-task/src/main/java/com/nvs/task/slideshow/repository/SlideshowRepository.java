@@ -1,7 +1,11 @@
 package com.nvs.task.slideshow.repository;
 
+import com.nvs.task.slideshow.model.EntityVersion;
 import com.nvs.task.slideshow.model.Slideshow;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * Repository interface for managing Slideshow entities.
@@ -9,4 +13,47 @@ import org.springframework.data.r2dbc.repository.R2dbcRepository;
  * It uses reactive programming paradigms for database interactions.
  */
 public interface SlideshowRepository extends R2dbcRepository<Slideshow, Long> {
-}
\ No newline at end of file
+
+    /**
+     * Finds a page of slideshows ordered by ID.
+     *
+     * @param afterId The ID after which the page starts; 0 for the first page
+     * @param limit   The maximum number of slideshows on the page
+     * @return A Flux emitting up to {@code limit} slideshows with an ID greater than {@code afterId}, ordered by ID
+     */
+    @Query("SELECT * FROM slideshows WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<Slideshow> findPage(long afterId, int limit);
+
+    /**
+     * Finds the version of a slideshow, read from the version index without loading the row.
+     *
+     * @param id The ID of the slideshow
+     * @return A Mono emitting the version, or empty if the slideshow does not exist
+     */
+    @Query("SELECT version FROM slideshows WHERE id = :id")
+    Mono<Long> findVersionById(Long id);
+
+    /**
+     * Renames a slideshow in a single round-trip and returns the stored row, incrementing its version.
+     * With an expected version, the row is only updated if it is still at that version, so
+     * concurrent edits cannot overwrite each other.
+     *
+     * @param id              The ID of the slideshow
+     * @param name            The new name
+     * @param expectedVersion The version the update is based on, or null to update any version
+     * @return A Mono emitting the updated slideshow, or empty if no slideshow with that ID is at the expected version
+     */
+    @Query("UPDATE slideshows SET name = :name, version = version + 1 "
+            + "WHERE id = :id AND (:expectedVersion IS NULL OR version = :expectedVersion) RETURNING *")
+    Mono<Slideshow> updateName(Long id, String name, Long expectedVersion);
+
+    /**
+     * Finds the IDs and versions of a page of slideshows ordered by ID, as {@link #findPage} would return them.
+     *
+     * @param afterId The ID after which the page starts; 0 for the first page
+     * @param limit   The maximum number of slideshows on the page
+     * @return A Flux emitting the ID and version of every slideshow on the page, ordered by ID
+     */
+    @Query("SELECT id, version FROM slideshows WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<EntityVersion> findVersionPage(long afterId, int limit);
+}
@@ -0,0 +1,42 @@
+package com.nvs.task.slideshow.service;
+
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+/**
+ * Defers updates of in-memory caches and indexes until the surrounding transaction commits.
+ * <p>
+ * Updated inside the transaction, a cache would show rows other requests cannot read yet, and
+ * would keep them if the transaction rolled back. Outside a transaction the update runs at once.
+ */
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * Runs an action once the transaction of the subscriber context commits, or at once if
+     * there is none. The action does not run if the transaction rolls back.
+     *
+     * @param action the action to run
+     * @return a Mono completing once the action ran or was registered
+     */
+    static Mono<Void> run(Runnable action) {
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .flatMap(manager -> {
+                    if (!manager.isSynchronizationActive()) {
+                        return Mono.<Void>fromRunnable(action);
+                    }
+                    manager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public Mono<Void> afterCommit() {
+                            return Mono.fromRunnable(action);
+                        }
+                    });
+                    return Mono.<Void>empty();
+                })
+                .onErrorResume(NoTransactionException.class, e -> Mono.fromRunnable(action));
+    }
+}
@@ -0,0 +1,110 @@
+package com.nvs.task.slideshow.service;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Bounded queue that hands its elements to a flush function in size- or time-bounded batches.
+ * <p>
+ * Elements are offered without blocking; an offer fails once the queue is full. A single
+ * pipeline drains the queue, emitting a batch when it reaches the batch size or when the
+ * linger time elapses. Batches are flushed on a dedicated thread, and at most
+ * {@code maxInFlightBatches} flushes run at the same time, so a slow sink makes the queue fill
+ * up instead of consuming memory elsewhere.
+ *
+ * @param <T> the type of the queued elements
+ */
+final class BatchingQueue<T> {
+
+    private final int batchSize;
+    private final Duration maxLinger;
+    private final int maxInFlightBatches;
+    private final Function<List<T>, Mono<Void>> flush;
+
+    private final Sinks.Many<T> queue;
+    private final Scheduler flusher;
+
+    private CompletableFuture<Void> pipeline;
+
+    /**
+     * Creates a new queue. The queue accepts elements right away but only drains them after {@link #start()}.
+     *
+     * @param name               the name of the flushing thread
+     * @param capacity           the maximum number of elements waiting to be flushed
+     * @param batchSize          the maximum number of elements per batch
+     * @param maxLinger          the maximum time an element waits before its batch is flushed
+     * @param maxInFlightBatches the maximum number of batches being flushed at the same time
+     * @param flush              the function writing a batch; errors must be handled by the function itself
+     */
+    BatchingQueue(String name, int capacity, int batchSize, Duration maxLinger, int maxInFlightBatches,
+                  Function<List<T>, Mono<Void>> flush) {
+        this.batchSize = batchSize;
+        this.maxLinger = maxLinger;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.flush = flush;
+        this.queue = Sinks.many().unicast().onBackpressureBuffer(Queues.<T>get(capacity).get());
+        this.flusher = Schedulers.newSingle(name);
+    }
+
+    /**
+     * Starts draining the queue.
+     */
+    void start() {
+        pipeline = queue.asFlux()
+                .bufferTimeout(batchSize, maxLinger, true)
+                // Flushes may block (e.g. on producer metadata); keep that off the caller threads
+                .publishOn(flusher, maxInFlightBatches)
+                .flatMap(flush, maxInFlightBatches)
+                .then()
+                .toFuture();
+    }
+
+    /**
+     * Tries to add an element without waiting.
+     *
+     * @param element the element to add
+     * @return true if the element was queued, false if the queue is full or stopped
+     */
+    boolean offer(T element) {
+        Sinks.EmitResult result;
+        // Emissions into the sink must be serialized; the critical section is a single queue offer
+        synchronized (queue) {
+            result = queue.tryEmitNext(element);
+        }
+        return result.isSuccess();
+    }
+
+    /**
+     * Stops accepting elements and waits for the queued ones to be flushed.
+     *
+     * @param timeout the maximum time to wait
+     * @throws TimeoutException     if the queue was not drained in time
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    void stop(Duration timeout) throws TimeoutException, InterruptedException {
+        synchronized (queue) {
+            queue.tryEmitComplete();
+        }
+        try {
+            if (pipeline != null) {
+                pipeline.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (ExecutionException e) {
+            // The flush function handles its own errors, so the pipeline itself does not fail
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            flusher.dispose();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.nvs.task.slideshow.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Directory of files named by the SHA-256 digest of their content.
+ * <p>
+ * Storing the same bytes twice yields the same file, so identical content is kept once. Files are
+ * reference counted and deleted when the last reference is released. Files are spread over
+ * subdirectories named by the first two hex digits of their digest.
+ * <p>
+ * The references do not survive a restart: the owner takes them again on the files it still uses
+ * with {@link #restore(String)}, and then deletes the others with {@link #prune()}. Files the store
+ * did not create are never deleted.
+ */
+@Slf4j
+final class ContentAddressedStore {
+
+    private static final Pattern SUBDIRECTORY = Pattern.compile("[0-9a-f]{2}");
+    // Stored files are named by their digest, files being written by their digest, random digits and .part
+    private static final Pattern STORED_DIGEST = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern STORED_FILE = Pattern.compile("[0-9a-f]{64}([0-9]*\\.part)?");
+
+    private final Path directory;
+    private final Map<String, Integer> references = new HashMap<>();
+
+    /**
+     * Constructs a new ContentAddressedStore.
+     *
+     * @param directory the directory holding the files
+     */
+    ContentAddressedStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Takes a reference to a file stored before a restart.
+     *
+     * @param sha256 the digest of the content
+     * @return the stored file, or null if it does not exist
+     * @throws IOException if the file cannot be read
+     */
+    Entry restore(String sha256) throws IOException {
+        if (!STORED_DIGEST.matcher(sha256).matches()) {
+            return null;
+        }
+        Path file = fileOf(sha256);
+        synchronized (references) {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            long size = Files.size(file);
+            references.merge(sha256, 1, Integer::sum);
+            return new Entry(file, sha256, size);
+        }
+    }
+
+    /**
+     * Creates the directory and deletes the stored files nothing references, along with files
+     * left half-written by a previous run. Files the store did not create, and subdirectories
+     * still holding any, are left alone.
+     *
+     * @throws IOException if the directory cannot be read
+     */
+    void prune() throws IOException {
+        synchronized (references) {
+            Files.createDirectories(directory);
+            try (Stream<Path> subdirectories = Files.list(directory)) {
+                for (Path subdirectory : (Iterable<Path>) subdirectories::iterator) {
+                    if (!Files.isDirectory(subdirectory)
+                            || !SUBDIRECTORY.matcher(subdirectory.getFileName().toString()).matches()) {
+                        continue;
+                    }
+                    try (Stream<Path> files = Files.list(subdirectory)) {
+                        for (Path file : (Iterable<Path>) files::iterator) {
+                            String name = file.getFileName().toString();
+                            if (Files.isRegularFile(file) && STORED_FILE.matcher(name).matches()
+                                    && !references.containsKey(name)) {
+                                Files.delete(file);
+                            }
+                        }
+                    }
+                    try (Stream<Path> remaining = Files.list(subdirectory)) {
+                        if (remaining.findAny().isEmpty()) {
+                            Files.delete(subdirectory);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores content and takes a reference to it.
+     *
+     * @param bytes the content
+     * @return the stored file and its digest
+     * @throws IOException if the file cannot be written
+     */
+    Entry put(byte[] bytes) throws IOException {
+        String sha256 = sha256(bytes);
+        Path file = fileOf(sha256);
+        synchronized (references) {
+            Integer count = references.get(sha256);
+            if (count == null || !Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                Path temp = Files.createTempFile(file.getParent(), sha256, ".part");
+                Files.write(temp, bytes);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            references.merge(sha256, 1, Integer::sum);
+        }
+        return new Entry(file, sha256, bytes.length);
+    }
+
+    /**
+     * Releases a reference taken by {@link #put(byte[])}, deleting the file when none is left.
+     *
+     * @param sha256 the digest of the content
+     */
+    void release(String sha256) {
+        synchronized (references) {
+            Integer count = references.get(sha256);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                references.put(sha256, count - 1);
+                return;
+            }
+            references.remove(sha256);
+            try {
+                Files.deleteIfExists(fileOf(sha256));
+            } catch (IOException e) {
+                log.warn("Could not delete stored file {}", sha256, e);
+            }
+        }
+    }
+
+    private Path fileOf(String sha256) {
+        return directory.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A file in the store.
+     *
+     * @param file   the file holding the content
+     * @param sha256 the hex-encoded SHA-256 digest of the content
+     * @param size   the size of the content in bytes
+     */
+    record Entry(Path file, String sha256, long size) {
+    }
+}
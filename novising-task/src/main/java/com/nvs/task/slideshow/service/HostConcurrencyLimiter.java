@@ -0,0 +1,119 @@
+package com.nvs.task.slideshow.service;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits how many outbound requests run against the same host at once.
+ * <p>
+ * Each host gets a fixed number of permits. A task subscribed while all permits of its host are
+ * taken waits, without blocking a thread, until a running task of that host finishes. Hosts
+ * without running or waiting tasks are forgotten, so the limiter does not grow with the number
+ * of distinct hosts seen.
+ */
+final class HostConcurrencyLimiter {
+
+    private final int maxConcurrencyPerHost;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a limiter.
+     *
+     * @param maxConcurrencyPerHost the maximum number of tasks running against one host
+     */
+    HostConcurrencyLimiter(int maxConcurrencyPerHost) {
+        if (maxConcurrencyPerHost <= 0) {
+            throw new IllegalArgumentException("Concurrency per host must be positive: " + maxConcurrencyPerHost);
+        }
+        this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+    }
+
+    /**
+     * Runs a task once a permit for the host is available and returns the permit when the task
+     * terminates or is cancelled.
+     *
+     * @param host the host the task connects to
+     * @param task the task to run
+     * @param <T>  the type of the result
+     * @return a Mono emitting the result of the task
+     */
+    <T> Mono<T> run(String host, Mono<T> task) {
+        return Mono.usingWhen(Mono.<Host>create(sink -> acquire(host, sink)),
+                permit -> task,
+                permit -> Mono.fromRunnable(() -> release(host, permit)));
+    }
+
+    /**
+     * Returns the number of tasks currently running against a host.
+     *
+     * @param host the host
+     * @return the number of permits taken
+     */
+    int active(String host) {
+        Host state = hosts.get(host);
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            return state.active;
+        }
+    }
+
+    private void acquire(String host, MonoSink<Host> sink) {
+        while (true) {
+            Host state = hosts.computeIfAbsent(host, key -> new Host());
+            synchronized (state) {
+                if (state.removed) {
+                    continue;
+                }
+                if (state.active < maxConcurrencyPerHost) {
+                    state.active++;
+                } else {
+                    state.waiting.add(sink);
+                    sink.onCancel(() -> cancel(host, state, sink));
+                    return;
+                }
+            }
+            sink.success(state);
+            return;
+        }
+    }
+
+    private void release(String host, Host state) {
+        MonoSink<Host> next;
+        synchronized (state) {
+            next = state.waiting.poll();
+            if (next == null) {
+                state.active--;
+                if (state.active == 0) {
+                    state.removed = true;
+                    hosts.remove(host, state);
+                }
+                return;
+            }
+        }
+        // The permit is handed over to the next waiting task instead of being returned
+        next.success(state);
+    }
+
+    private void cancel(String host, Host state, MonoSink<Host> sink) {
+        synchronized (state) {
+            if (state.waiting.remove(sink)) {
+                return;
+            }
+        }
+        // The permit was handed to the sink concurrently with its cancellation
+        release(host, state);
+    }
+
+    private static final class Host {
+
+        private int active;
+        private boolean removed;
+        private final ArrayDeque<MonoSink<Host>> waiting = new ArrayDeque<>();
+    }
+}
@@ -0,0 +1,282 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ImageFormat;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of image content, so that displays do not each download images from the origin.
+ * <p>
+ * The first request for a URL downloads the image into {@code image.cache.directory}; concurrent
+ * requests for the same URL wait for that single download. Later requests are served straight
+ * from the file. Entries are evicted least recently used first once their total size exceeds
+ * {@code image.cache.max-size}.
+ * <p>
+ * Only content whose leading bytes are those of a supported {@link ImageFormat} is cached and
+ * served, with the media type of that format, whatever type the origin reported.
+ * <p>
+ * Files are kept in an {@code entries} subdirectory, named after the digests of their URL and
+ * content, and are indexed again on startup, so the cache survives restarts. Nothing outside
+ * that subdirectory, and nothing in it not named like a cache file, is ever deleted.
+ */
+@Slf4j
+@Component
+public class ImageContentCache {
+
+    private static final String ENTRIES_DIRECTORY = "entries";
+
+    // Cache files are named <SHA-256 of the URL>-<SHA-256 of the content>
+    private static final Pattern ENTRY_FILE = Pattern.compile("([0-9a-f]{64})-([0-9a-f]{64})");
+    // Downloads in progress are written to <SHA-256 of the URL><random>.part
+    private static final Pattern PARTIAL_FILE = Pattern.compile("[0-9a-f]{64}[0-9]*\\.part");
+
+    private static final int SNIFF_BYTES = 1024;
+
+    private final ImageFetcher imageFetcher;
+    private final Path directory;
+    private final long maxSize;
+    private final long maxObjectSize;
+    private final Clock clock;
+
+    private final LinkedHashMap<String, CachedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Mono<CachedImage>> downloads = new ConcurrentHashMap<>();
+    private long totalSize;
+
+    /**
+     * Constructs a new ImageContentCache.
+     *
+     * @param imageFetcher  the fetcher used to download images
+     * @param directory     the directory holding the cache; files are kept in its {@code entries} subdirectory
+     * @param maxSize       the maximum total size of cached files
+     * @param maxObjectSize the maximum size of a single image
+     */
+    @Autowired
+    public ImageContentCache(ImageFetcher imageFetcher,
+                             @Value("${image.cache.directory:data/image-cache}") String directory,
+                             @Value("${image.cache.max-size:1GB}") DataSize maxSize,
+                             @Value("${image.cache.max-object-size:50MB}") DataSize maxObjectSize) {
+        this(imageFetcher, Path.of(directory), maxSize.toBytes(), maxObjectSize.toBytes(), Clock.systemUTC());
+    }
+
+    ImageContentCache(ImageFetcher imageFetcher, Path directory, long maxSize, long maxObjectSize, Clock clock) {
+        this.imageFetcher = imageFetcher;
+        this.directory = directory.resolve(ENTRIES_DIRECTORY);
+        this.maxSize = maxSize;
+        this.maxObjectSize = maxObjectSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates the cache directory and indexes the files cached by a previous run, oldest first.
+     * Unfinished downloads and cached files that do not hold an image are removed.
+     *
+     * @throws IOException if the directory cannot be prepared
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        List<RestoredEntry> restored = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Matcher entry = ENTRY_FILE.matcher(name);
+                if (PARTIAL_FILE.matcher(name).matches()) {
+                    deleteQuietly(file);
+                } else if (entry.matches()) {
+                    ImageFormat format = sniff(file);
+                    if (format == null) {
+                        deleteQuietly(file);
+                        continue;
+                    }
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    restored.add(new RestoredEntry(entry.group(1), new CachedImage(file, format.getMediaType(),
+                            attributes.size(), entry.group(2), attributes.lastModifiedTime().toInstant())));
+                }
+            }
+        }
+        restored.sort(Comparator.comparing(entry -> entry.image().fetchedAt()));
+        synchronized (this) {
+            for (RestoredEntry entry : restored) {
+                CachedImage previous = entries.put(entry.key(), entry.image());
+                if (previous != null) {
+                    // An older download of the same URL
+                    totalSize -= previous.size();
+                    deleteQuietly(previous.file());
+                }
+                totalSize += entry.image().size();
+            }
+            evict(null);
+            if (!restored.isEmpty()) {
+                log.info("Restored {} cached images ({} bytes) from {}", entries.size(), totalSize, directory);
+            }
+        }
+    }
+
+    /**
+     * Returns the cached content of an image, downloading it first if needed.
+     *
+     * @param url the URL of the image
+     * @return a Mono emitting the cached file; errors with 502 if the image cannot be downloaded
+     * or the content is not a supported image
+     */
+    public Mono<CachedImage> get(String url) {
+        URI uri = ImageFetcher.parseHttpUrl(url);
+        if (uri == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Image URL cannot be fetched: " + url));
+        }
+        String key = key(url);
+        CachedImage cached = lookup(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return downloads.computeIfAbsent(key, k -> download(uri, k)
+                .doFinally(signal -> downloads.remove(k))
+                .cache());
+    }
+
+    /**
+     * Returns the total size of the cached files.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long size() {
+        return totalSize;
+    }
+
+    private synchronized CachedImage lookup(String key) {
+        CachedImage cached = entries.get(key);
+        if (cached != null && !Files.exists(cached.file())) {
+            entries.remove(key);
+            totalSize -= cached.size();
+            return null;
+        }
+        return cached;
+    }
+
+    private Mono<CachedImage> download(URI uri, String key) {
+        return Mono.fromCallable(() -> Files.createTempFile(directory, key, ".part"))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(temp -> imageFetcher.download(uri, temp, maxObjectSize)
+                        .publishOn(Schedulers.boundedElastic())
+                        .map(download -> store(key, temp, download))
+                        .doOnError(e -> deleteQuietly(temp)));
+    }
+
+    private CachedImage store(String key, Path temp, ImageFetcher.Download download) {
+        // Origins often serve images as application/octet-stream, and may serve anything else; trust the content only
+        ImageFormat format = sniff(temp);
+        if (format == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Image origin did not serve a supported image");
+        }
+        Path file = directory.resolve(key + "-" + download.sha256());
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        CachedImage cached = new CachedImage(file, format.getMediaType(), download.size(), download.sha256(),
+                clock.instant());
+        synchronized (this) {
+            CachedImage previous = entries.put(key, cached);
+            if (previous != null) {
+                totalSize -= previous.size();
+                if (!previous.file().equals(file)) {
+                    deleteQuietly(previous.file());
+                }
+            }
+            totalSize += cached.size();
+            evict(key);
+        }
+        return cached;
+    }
+
+    /**
+     * Removes least recently used entries until the total size fits, keeping the entry just stored, if any.
+     */
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, CachedImage>> eldest = entries.entrySet().iterator();
+        while (totalSize > maxSize && eldest.hasNext()) {
+            Map.Entry<String, CachedImage> entry = eldest.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            eldest.remove();
+            totalSize -= entry.getValue().size();
+            deleteQuietly(entry.getValue().file());
+        }
+    }
+
+    private static ImageFormat sniff(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] header = in.readNBytes(SNIFF_BYTES);
+            return ImageFormat.detect(header, header.length);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete cached image file {}", file, e);
+        }
+    }
+
+    private static String key(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * An image stored in the cache.
+     *
+     * @param file        the file holding the content
+     * @param contentType the media type of the content
+     * @param size        the size of the content in bytes
+     * @param sha256      the hex-encoded SHA-256 digest of the content, used as strong ETag
+     * @param fetchedAt   the moment the content was downloaded
+     */
+    public record CachedImage(Path file, String contentType, long size, String sha256, Instant fetchedAt) {
+    }
+
+    private record RestoredEntry(String key, CachedImage image) {
+    }
+}
@@ -0,0 +1,463 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.Image;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Background pipeline that produces downscaled variants of images for low-end displays.
+ * <p>
+ * When an image is added, or its URL changes, its original is taken from the
+ * {@link ImageContentCache} and decoded with ImageIO on one of {@code image.derivatives.workers}
+ * threads. For every configured width that is smaller than the original, a variant is rendered
+ * by repeated halving with bilinear interpolation and encoded as JPEG, or as PNG when the image
+ * has transparency. Variants are kept in a {@link ContentAddressedStore}, so identical variants
+ * of different images share one file.
+ * <p>
+ * Only JPEG, PNG and BMP originals are processed: GIF is skipped to keep animations, and the JDK
+ * cannot decode WEBP, AVIF or SVG, so these are always served as they are.
+ * <p>
+ * The variants of each image are listed in a manifest under {@code images/}, written when they
+ * are rendered and deleted with the image, and restored from it on startup. Variants rendered
+ * for other widths than the configured ones are not restored and are rendered again on first
+ * request, and stored variants no manifest lists are deleted.
+ */
+@Slf4j
+@Service
+public class ImageDerivativeService {
+
+    // Manifests are named by the image ID, manifests being written by the ID, random digits and .part
+    private static final Pattern MANIFEST_FILE = Pattern.compile("[0-9]{1,18}");
+    private static final Pattern PARTIAL_MANIFEST_FILE = Pattern.compile("[0-9]+\\.part");
+    private static final String URL_PROPERTY = "url";
+    private static final String WIDTHS_PROPERTY = "widths";
+
+    private final ImageContentCache imageContentCache;
+    private final ContentAddressedStore store;
+    private final Path manifests;
+    private final int[] widths;
+    private final long maxSourcePixels;
+    private final float jpegQuality;
+    private final Clock clock;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<Long, Variants> variants = new ConcurrentHashMap<>();
+    private final Map<Long, String> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new ImageDerivativeService.
+     *
+     * @param imageContentCache the cache the originals are read from
+     * @param directory         the directory holding the variants
+     * @param widths            the widths in pixels of the variants
+     * @param workers           the number of threads rendering variants
+     * @param queueCapacity     the maximum number of images waiting to be rendered
+     * @param maxSourcePixels   the largest original, in pixels, that is decoded
+     * @param jpegQuality       the JPEG compression quality between 0 and 1
+     */
+    @Autowired
+    public ImageDerivativeService(ImageContentCache imageContentCache,
+                                  @Value("${image.derivatives.directory:data/image-derivatives}") String directory,
+                                  @Value("${image.derivatives.widths:480,960,1920}") int[] widths,
+                                  @Value("${image.derivatives.workers:2}") int workers,
+                                  @Value("${image.derivatives.queue-capacity:256}") int queueCapacity,
+                                  @Value("${image.derivatives.max-source-pixels:50000000}") long maxSourcePixels,
+                                  @Value("${image.derivatives.jpeg-quality:0.85}") float jpegQuality) {
+        this(imageContentCache, Path.of(directory), widths, workers, queueCapacity, maxSourcePixels, jpegQuality,
+                Clock.systemUTC());
+    }
+
+    ImageDerivativeService(ImageContentCache imageContentCache, Path directory, int[] widths, int workers,
+                           int queueCapacity, long maxSourcePixels, float jpegQuality, Clock clock) {
+        this.imageContentCache = imageContentCache;
+        this.store = new ContentAddressedStore(directory);
+        this.manifests = directory.resolve("images");
+        this.widths = Arrays.stream(widths).filter(width -> width > 0).sorted().distinct().toArray();
+        this.maxSourcePixels = maxSourcePixels;
+        this.jpegQuality = jpegQuality;
+        this.clock = clock;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("image-derivatives-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+    }
+
+    /**
+     * Creates the variant directory, restores the variants listed in the manifests of a previous
+     * run and deletes the variants and partial files nothing lists.
+     *
+     * @throws IOException if the directory cannot be prepared
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(manifests);
+        try (Stream<Path> files = Files.list(manifests)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (PARTIAL_MANIFEST_FILE.matcher(name).matches()) {
+                    deleteQuietly(file);
+                } else if (MANIFEST_FILE.matcher(name).matches()) {
+                    Variants restored = null;
+                    try {
+                        restored = readManifest(file);
+                    } catch (IOException | IllegalArgumentException | DateTimeException e) {
+                        log.warn("Ignored unreadable variant manifest {}: {}", file, e.toString());
+                    }
+                    if (restored == null) {
+                        deleteQuietly(file);
+                    } else {
+                        variants.put(Long.valueOf(name), restored);
+                    }
+                }
+            }
+        }
+        store.prune();
+        if (!variants.isEmpty()) {
+            log.info("Restored the variants of {} images from {}", variants.size(), manifests);
+        }
+    }
+
+    /**
+     * Stops the workers; queued images are dropped.
+     */
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues an image for rendering its variants without waiting.
+     *
+     * @param image the stored image
+     * @return true if the image was queued, false if it is already queued or the queue is full
+     */
+    public boolean submit(Image image) {
+        if (image.getId() == null || image.getUrl() == null || widths.length == 0) {
+            return false;
+        }
+        Long id = image.getId();
+        String url = image.getUrl();
+        if (url.equals(pending.put(id, url))) {
+            return false;
+        }
+        try {
+            executor.execute(() -> render(id, url));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(id, url);
+            log.debug("Skipped rendering variants of image {}: the queue is full", id);
+            return false;
+        }
+    }
+
+    /**
+     * Finds the smallest variant of an image that is at least as wide as requested.
+     * When the variants of the image have not been rendered yet, they are queued.
+     *
+     * @param image the stored image
+     * @param width the width in pixels the display needs
+     * @return the variant, or null if the original should be served
+     */
+    public ImageContentCache.CachedImage find(Image image, int width) {
+        Variants current = variants.get(image.getId());
+        if (current == null || !current.url().equals(image.getUrl())) {
+            submit(image);
+            return null;
+        }
+        Map.Entry<Integer, Variant> closest = current.byWidth().ceilingEntry(width);
+        if (closest == null || !Files.exists(closest.getValue().entry().file())) {
+            return null;
+        }
+        return closest.getValue().toCachedImage();
+    }
+
+    /**
+     * Drops the variants of a deleted image.
+     *
+     * @param id the ID of the image
+     */
+    public void remove(Long id) {
+        pending.remove(id);
+        variants.compute(id, (key, previous) -> {
+            release(previous);
+            deleteQuietly(manifestOf(id));
+            return null;
+        });
+    }
+
+    private void render(Long id, String url) {
+        ImageContentCache.CachedImage original;
+        try {
+            original = imageContentCache.get(url).block();
+        } catch (Exception e) {
+            // Not remembered, so the next request for a variant tries again
+            pending.remove(id, url);
+            log.warn("Failed to download image {} from {} for rendering variants: {}", id, url, e.toString());
+            return;
+        }
+        NavigableMap<Integer, Variant> rendered = Collections.emptyNavigableMap();
+        try {
+            if (original != null) {
+                rendered = render(original.file());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to render variants of image {} from {}: {}", id, url, e.toString());
+        }
+        Variants current = new Variants(url, rendered);
+        // Computed under the lock of the image, so a concurrent remove cannot leave a manifest behind
+        variants.compute(id, (key, previous) -> {
+            // The image was deleted or its URL changed while rendering
+            if (!pending.remove(id, url)) {
+                release(current);
+                return previous;
+            }
+            release(previous);
+            try {
+                writeManifest(id, current);
+            } catch (IOException e) {
+                log.warn("Failed to write the variant manifest of image {}: {}", id, e.toString());
+            }
+            return current;
+        });
+        log.debug("Rendered {} variants of image {}", rendered.size(), id);
+    }
+
+    private void writeManifest(Long id, Variants current) throws IOException {
+        Properties manifest = new Properties();
+        manifest.setProperty(URL_PROPERTY, current.url());
+        manifest.setProperty(WIDTHS_PROPERTY, configuredWidths());
+        current.byWidth().forEach((width, variant) -> manifest.setProperty(Integer.toString(width),
+                variant.entry().sha256() + " " + variant.contentType() + " " + variant.createdAt().toEpochMilli()));
+        Path temp = Files.createTempFile(manifests, id.toString(), ".part");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                manifest.store(out, null);
+            }
+            Files.move(temp, manifestOf(id), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a manifest and takes references to the variants it lists.
+     *
+     * @return the variants, or null if they were rendered for other widths or a file is missing
+     */
+    private Variants readManifest(Path file) throws IOException {
+        Properties manifest = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            manifest.load(in);
+        }
+        String url = manifest.getProperty(URL_PROPERTY);
+        if (url == null || !configuredWidths().equals(manifest.getProperty(WIDTHS_PROPERTY))) {
+            return null;
+        }
+        // Parsed before taking any reference, so a malformed manifest leaves the store untouched
+        List<ListedVariant> listed = new ArrayList<>();
+        for (int width : widths) {
+            String variant = manifest.getProperty(Integer.toString(width));
+            if (variant != null) {
+                String[] fields = variant.split(" ");
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("Malformed variant: " + variant);
+                }
+                listed.add(new ListedVariant(width, fields[0], fields[1], Instant.ofEpochMilli(Long.parseLong(fields[2]))));
+            }
+        }
+        NavigableMap<Integer, Variant> byWidth = new TreeMap<>();
+        for (ListedVariant variant : listed) {
+            ContentAddressedStore.Entry entry = store.restore(variant.sha256());
+            if (entry == null) {
+                release(new Variants(url, byWidth));
+                return null;
+            }
+            byWidth.put(variant.width(), new Variant(entry, variant.contentType(), variant.createdAt()));
+        }
+        return new Variants(url, byWidth);
+    }
+
+    private String configuredWidths() {
+        return Arrays.stream(widths).mapToObj(Integer::toString).collect(Collectors.joining(","));
+    }
+
+    private Path manifestOf(Long id) {
+        return manifests.resolve(id.toString());
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", file, e);
+        }
+    }
+
+    private NavigableMap<Integer, Variant> render(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                return Collections.emptyNavigableMap();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                if ("gif".equals(reader.getFormatName().toLowerCase(Locale.ROOT))) {
+                    return Collections.emptyNavigableMap();
+                }
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > maxSourcePixels) {
+                    log.debug("Skipped rendering variants of a {}x{} image", sourceWidth, sourceHeight);
+                    return Collections.emptyNavigableMap();
+                }
+                int[] targets = Arrays.stream(widths).filter(width -> width < sourceWidth).toArray();
+                if (targets.length == 0) {
+                    return Collections.emptyNavigableMap();
+                }
+
+                // Skip source pixels while decoding, keeping at least twice the largest width for the halving steps
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, sourceWidth / (2 * targets[targets.length - 1]));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage source = reader.read(0, param);
+                boolean alpha = source.getColorModel().hasAlpha();
+
+                NavigableMap<Integer, Variant> rendered = new TreeMap<>();
+                BufferedImage previous = source;
+                Instant createdAt = clock.instant();
+                for (int i = targets.length - 1; i >= 0; i--) {
+                    int width = targets[i];
+                    int height = Math.max(1, (int) Math.round((double) sourceHeight * width / sourceWidth));
+                    previous = scale(previous, width, height, alpha);
+                    ContentAddressedStore.Entry entry = store.put(encode(previous, alpha));
+                    rendered.put(width, new Variant(entry, alpha ? MediaType.IMAGE_PNG_VALUE : MediaType.IMAGE_JPEG_VALUE,
+                            createdAt));
+                }
+                return rendered;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Downscales by halving until the target size is reached, which keeps bilinear
+     * interpolation from skipping source pixels.
+     */
+    private static BufferedImage scale(BufferedImage source, int width, int height, boolean alpha) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image, boolean alpha) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (alpha) {
+            ImageIO.write(image, "png", bytes);
+            return bytes.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private void release(Variants released) {
+        if (released != null) {
+            released.byWidth().values().forEach(variant -> store.release(variant.entry().sha256()));
+        }
+    }
+
+    /**
+     * The variants of one image, rendered from the given URL; empty if the original is the smallest.
+     */
+    private record Variants(String url, NavigableMap<Integer, Variant> byWidth) {
+    }
+
+    /**
+     * A variant as listed in a manifest.
+     */
+    private record ListedVariant(int width, String sha256, String contentType, Instant createdAt) {
+    }
+
+    /**
+     * A stored variant.
+     */
+    private record Variant(ContentAddressedStore.Entry entry, String contentType, Instant createdAt) {
+
+        private ImageContentCache.CachedImage toCachedImage() {
+            return new ImageContentCache.CachedImage(entry.file(), contentType, entry.size(), entry.sha256(), createdAt);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.nvs.task.slideshow.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches remote images, either their leading bytes or the whole resource into a file.
+ * <p>
+ * For header reads only the requested number of bytes is asked for with a {@code Range} header,
+ * and reading stops there even if the server sends the whole resource. Requests against the same
+ * host are limited to {@code image.fetch.max-concurrency-per-host} at once; further requests wait
+ * without blocking a thread. All outbound image requests share this limit.
+ * <p>
+ * Image URLs come from clients, so unless {@code image.fetch.allow-private-hosts} is set, the HTTP
+ * client resolves hosts with a {@link PublicAddressResolverGroup}: a host resolving to a loopback,
+ * link-local, private or otherwise non-public address is refused when the connection is made, with
+ * the same lookup the connection uses. Redirects are not followed.
+ */
+@Component
+public class ImageFetcher {
+
+    private final WebClient webClient;
+    private final Duration timeout;
+    private final Duration downloadTimeout;
+    private final HostConcurrencyLimiter hostLimiter;
+
+    /**
+     * Constructs a new ImageFetcher.
+     *
+     * @param webClientBuilder      the builder used to create the HTTP client
+     * @param timeout               the maximum time a header read may take
+     * @param downloadTimeout       the maximum time a full download may take
+     * @param maxConcurrencyPerHost the maximum number of requests running against one host
+     * @param allowPrivateHosts     whether hosts resolving to non-public addresses may be fetched
+     */
+    @Autowired
+    public ImageFetcher(WebClient.Builder webClientBuilder,
+                        @Value("${image.fetch.timeout:5s}") Duration timeout,
+                        @Value("${image.fetch.download-timeout:30s}") Duration downloadTimeout,
+                        @Value("${image.fetch.max-concurrency-per-host:4}") int maxConcurrencyPerHost,
+                        @Value("${image.fetch.allow-private-hosts:false}") boolean allowPrivateHosts) {
+        if (!allowPrivateHosts) {
+            webClientBuilder.clientConnector(new ReactorClientHttpConnector(
+                    HttpClient.create().resolver(new PublicAddressResolverGroup())));
+        }
+        this.webClient = webClientBuilder.build();
+        this.timeout = timeout;
+        this.downloadTimeout = downloadTimeout;
+        this.hostLimiter = new HostConcurrencyLimiter(maxConcurrencyPerHost);
+    }
+
+    /**
+     * Fetches up to {@code maxBytes} leading bytes of a resource.
+     *
+     * @param uri      the absolute HTTP or HTTPS URI of the resource
+     * @param maxBytes the maximum number of bytes to read
+     * @return a Mono emitting the bytes read, or empty if the server does not answer with a 2xx status;
+     * errors if the request fails or times out, or if the host is not public
+     */
+    public Mono<ImageHeader> fetchHeader(URI uri, int maxBytes) {
+        Mono<ImageHeader> request = webClient.get()
+                .uri(uri)
+                .header(HttpHeaders.RANGE, "bytes=0-" + (maxBytes - 1))
+                .accept(MediaType.valueOf("image/*"), MediaType.ALL)
+                .exchangeToMono(response -> {
+                    if (!response.statusCode().is2xxSuccessful()) {
+                        return response.releaseBody().then(Mono.<ImageHeader>empty());
+                    }
+                    Long totalSize = totalSize(response);
+                    // Servers ignoring the Range header send the whole body; stop reading after maxBytes
+                    return DataBufferUtils.join(DataBufferUtils.takeUntilByteCount(
+                                    response.body(BodyExtractors.toDataBuffers()), maxBytes))
+                            .map(buffer -> new ImageHeader(read(buffer, maxBytes), totalSize));
+                })
+                .timeout(timeout)
+                .onErrorMap(e -> notPublic(uri, e));
+        return hostLimiter.run(uri.getHost().toLowerCase(Locale.ROOT), request);
+    }
+
+    /**
+     * Downloads a whole resource into a file, computing its SHA-256 digest on the way.
+     *
+     * @param uri      the absolute HTTP or HTTPS URI of the resource
+     * @param target   the file to write; it is created or truncated
+     * @param maxBytes the maximum size of the resource
+     * @return a Mono emitting the result once the file is written; errors with 502 if the host is not
+     * public, the origin does not answer with a 2xx status or the resource exceeds {@code maxBytes}
+     */
+    public Mono<Download> download(URI uri, Path target, long maxBytes) {
+        Mono<Download> request = webClient.get()
+                .uri(uri)
+                .accept(MediaType.valueOf("image/*"), MediaType.ALL)
+                .exchangeToMono(response -> {
+                    if (!response.statusCode().is2xxSuccessful()) {
+                        return response.releaseBody().then(Mono.<Download>error(new ResponseStatusException(
+                                HttpStatus.BAD_GATEWAY, "Image origin responded with " + response.statusCode())));
+                    }
+                    if (response.headers().contentLength().orElse(0) > maxBytes) {
+                        return response.releaseBody().then(Mono.<Download>error(tooLarge(maxBytes)));
+                    }
+                    String contentType = response.headers().contentType().map(MediaType::toString).orElse(null);
+                    MessageDigest digest = sha256();
+                    AtomicLong size = new AtomicLong();
+                    Flux<DataBuffer> body = response.body(BodyExtractors.toDataBuffers())
+                            .handle((buffer, sink) -> {
+                                if (size.addAndGet(buffer.readableByteCount()) > maxBytes) {
+                                    DataBufferUtils.release(buffer);
+                                    sink.error(tooLarge(maxBytes));
+                                    return;
+                                }
+                                try (DataBuffer.ByteBufferIterator chunks = buffer.readableByteBuffers()) {
+                                    chunks.forEachRemaining(digest::update);
+                                }
+                                sink.next(buffer);
+                            });
+                    return DataBufferUtils.write(body, target)
+                            .then(Mono.fromCallable(() -> new Download(contentType, size.get(),
+                                    HexFormat.of().formatHex(digest.digest()))));
+                })
+                .timeout(downloadTimeout)
+                .onErrorMap(e -> notPublic(uri, e));
+        return hostLimiter.run(uri.getHost().toLowerCase(Locale.ROOT), request);
+    }
+
+    /**
+     * Parses an image URL, accepting only absolute HTTP and HTTPS URLs with a host.
+     *
+     * @param url the URL to parse
+     * @return the parsed URI, or null if the URL is not acceptable
+     */
+    public static URI parseHttpUrl(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        try {
+            URI uri = URI.create(url.trim());
+            String scheme = uri.getScheme();
+            if (scheme == null || uri.getHost() == null
+                    || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))) {
+                return null;
+            }
+            return uri;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether an address can be reached from the internet, as opposed to loopback,
+     * link-local, private, shared, unique local, multicast and unspecified addresses.
+     *
+     * @param address the address to check
+     * @return true if the address is public
+     */
+    static boolean isPublicAddress(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            int first = bytes[0] & 0xFF;
+            int second = bytes[1] & 0xFF;
+            // 0.0.0.0/8 "this network", 100.64.0.0/10 shared address space, 192.0.0.0/24 protocol assignments
+            return first != 0 && !(first == 100 && (second & 0xC0) == 64)
+                    && !(first == 192 && second == 0 && bytes[2] == 0);
+        }
+        if (address instanceof Inet6Address) {
+            // fc00::/7 unique local addresses, fec0::/10 is covered by isSiteLocalAddress
+            return (bytes[0] & 0xFE) != 0xFC;
+        }
+        return true;
+    }
+
+    /**
+     * Reports a connection refused by the {@link PublicAddressResolverGroup} as a 502, leaving
+     * other errors as they are.
+     */
+    private static Throwable notPublic(URI uri, Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PublicAddressResolverGroup.NonPublicAddressException) {
+                return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Image host is not public: " + uri.getHost());
+            }
+        }
+        return error;
+    }
+
+    private static ResponseStatusException tooLarge(long maxBytes) {
+        return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Image is larger than " + maxBytes + " bytes");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] read(DataBuffer buffer, int maxBytes) {
+        try {
+            byte[] bytes = new byte[Math.min(buffer.readableByteCount(), maxBytes)];
+            buffer.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    /**
+     * Determines the size of the whole resource from {@code Content-Range}, or from
+     * {@code Content-Length} when the server answered without a range.
+     */
+    private static Long totalSize(ClientResponse response) {
+        String contentRange = response.headers().asHttpHeaders().getFirst(HttpHeaders.CONTENT_RANGE);
+        if (contentRange != null) {
+            int slash = contentRange.lastIndexOf('/');
+            if (slash >= 0 && slash + 1 < contentRange.length() && contentRange.charAt(slash + 1) != '*') {
+                try {
+                    return Long.parseLong(contentRange.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+        long contentLength = response.headers().asHttpHeaders().getContentLength();
+        return contentLength >= 0 ? contentLength : null;
+    }
+
+    /**
+     * The leading bytes of a resource.
+     *
+     * @param bytes     the bytes read, at most the requested number
+     * @param totalSize the size of the whole resource in bytes, or null if the server did not report it
+     */
+    public record ImageHeader(byte[] bytes, Long totalSize) {
+    }
+
+    /**
+     * A resource downloaded into a file.
+     *
+     * @param contentType the content type reported by the origin, or null
+     * @param size        the number of bytes written
+     * @param sha256      the hex-encoded SHA-256 digest of the content
+     */
+    public record Download(String contentType, long size, String sha256) {
+    }
+}
@@ -0,0 +1,190 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.ImageMetadata;
+import com.nvs.task.slideshow.repository.ImageRepository;
+import com.nvs.task.slideshow.util.ImageHeaderParser;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Background pipeline that extracts format, dimensions and byte size of images.
+ * <p>
+ * Images are queued when they are added or their URL changes. A bounded number of workers reads
+ * only the first {@code image.metadata.header-bytes} bytes of each image through the
+ * {@link ImageFetcher}, parses them on a dedicated thread and stores the result in the metadata
+ * columns of the {@code images} table. Extractions are started at most once per
+ * {@code image.metadata.min-interval}, so a burst of new images or a backfill does not compete
+ * with API requests for connections and CPU. When the queue is full the image is skipped; it is
+ * picked up again by the next backfill.
+ */
+@Slf4j
+@Service
+public class ImageMetadataService {
+
+    private final ImageRepository imageRepository;
+    private final ImageFetcher imageFetcher;
+    private final int headerBytes;
+    private final int workers;
+    private final Duration minInterval;
+    private final boolean backfillOnStartup;
+
+    private final Sinks.Many<Image> queue;
+    private final Scheduler scheduler;
+    private Disposable pipeline;
+
+    private SlideshowResponseCache slideshowResponseCache;
+
+    /**
+     * Constructs a new ImageMetadataService.
+     *
+     * @param imageRepository   the repository the metadata is stored in
+     * @param imageFetcher      the fetcher used to read image headers
+     * @param headerBytes       the number of leading bytes read from each image
+     * @param workers           the maximum number of images processed at the same time
+     * @param minInterval       the minimum time between starting two extractions
+     * @param queueCapacity     the maximum number of images waiting for extraction
+     * @param backfillOnStartup whether images without metadata are processed once the application is ready
+     */
+    public ImageMetadataService(ImageRepository imageRepository,
+                                ImageFetcher imageFetcher,
+                                @Value("${image.metadata.header-bytes:65536}") int headerBytes,
+                                @Value("${image.metadata.workers:2}") int workers,
+                                @Value("${image.metadata.min-interval:50ms}") Duration minInterval,
+                                @Value("${image.metadata.queue-capacity:1024}") int queueCapacity,
+                                @Value("${image.metadata.backfill-on-startup:false}") boolean backfillOnStartup) {
+        this.imageRepository = imageRepository;
+        this.imageFetcher = imageFetcher;
+        this.headerBytes = headerBytes;
+        this.workers = workers;
+        this.minInterval = minInterval;
+        this.backfillOnStartup = backfillOnStartup;
+        this.queue = Sinks.many().unicast().onBackpressureBuffer(Queues.<Image>get(queueCapacity).get());
+        this.scheduler = Schedulers.newSingle("image-metadata", true);
+    }
+
+    /**
+     * Evicts the cached responses of slideshows showing an image once its metadata is stored.
+     *
+     * @param slideshowResponseCache the cache of serialized slideshow responses
+     */
+    @Autowired(required = false)
+    public void setSlideshowResponseCache(SlideshowResponseCache slideshowResponseCache) {
+        this.slideshowResponseCache = slideshowResponseCache;
+    }
+
+    /**
+     * Starts the workers.
+     */
+    @PostConstruct
+    public void start() {
+        Flux<Image> images = queue.asFlux();
+        if (!minInterval.isZero()) {
+            images = images.delayElements(minInterval, scheduler);
+        }
+        pipeline = images
+                .flatMap(this::extract, workers)
+                .subscribe();
+    }
+
+    /**
+     * Stops the workers; queued images are dropped.
+     */
+    @PreDestroy
+    public void stop() {
+        synchronized (queue) {
+            queue.tryEmitComplete();
+        }
+        if (pipeline != null) {
+            pipeline.dispose();
+        }
+        scheduler.dispose();
+    }
+
+    /**
+     * Queues an image for metadata extraction without waiting.
+     *
+     * @param image the stored image
+     * @return true if the image was queued, false if the queue is full or the service is stopped
+     */
+    public boolean submit(Image image) {
+        Sinks.EmitResult result;
+        synchronized (queue) {
+            result = queue.tryEmitNext(image);
+        }
+        if (result.isFailure()) {
+            log.debug("Skipped metadata extraction for image {}: {}", image.getId(), result);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Queues every stored image without metadata, waiting for room in the queue as needed.
+     *
+     * @return a Mono emitting the number of queued images once all are queued
+     */
+    public Mono<Long> backfill() {
+        return imageRepository.findWithoutMetadata()
+                .concatMap(image -> Mono.fromCallable(() -> submit(image))
+                        .filter(Boolean::booleanValue)
+                        .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(100))))
+                .count()
+                .doOnNext(count -> log.info("Queued {} images for metadata backfill", count));
+    }
+
+    /**
+     * Starts the backfill once the application is ready, when enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (backfillOnStartup) {
+            backfill().subscribe(count -> {
+            }, e -> log.error("Image metadata backfill failed", e));
+        }
+    }
+
+    private Mono<Void> extract(Image image) {
+        URI uri = ImageFetcher.parseHttpUrl(image.getUrl());
+        if (uri == null) {
+            return Mono.empty();
+        }
+        return imageFetcher.fetchHeader(uri, headerBytes)
+                .publishOn(scheduler)
+                .mapNotNull(header -> ImageHeaderParser.parse(header.bytes(), header.totalSize()))
+                .flatMap(metadata -> store(image, metadata))
+                .onErrorResume(e -> {
+                    log.warn("Failed to extract metadata of image {} from {}: {}", image.getId(), uri, e.toString());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> store(Image image, ImageMetadata metadata) {
+        return imageRepository.updateMetadata(image.getId(), image.getUrl(), metadata.getFormat().name(),
+                        metadata.getWidth(), metadata.getHeight(), metadata.getByteSize())
+                .doOnNext(updated -> {
+                    if (updated == 0) {
+                        log.debug("Discarded metadata of image {}: the image was deleted or its URL changed", image.getId());
+                    } else if (slideshowResponseCache != null) {
+                        slideshowResponseCache.evictImage(image.getId());
+                    }
+                })
+                .then();
+    }
+}
@@ -0,0 +1,241 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.repository.ImageRepository;
+import com.nvs.task.slideshow.util.LongHashSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.LongStream;
+
+/**
+ * In-memory trigram index over image URLs and names, used for substring search.
+ * <p>
+ * Every lowercased URL and name is split into overlapping three-character sequences, and each
+ * trigram maps to the set of image IDs containing it. A search intersects the sets of the
+ * keyword's trigrams, starting from the smallest, and confirms each candidate with a substring
+ * check, so its cost depends on the number of candidates rather than the size of the catalog.
+ * Keywords shorter than three characters have no trigram and are matched by scanning the
+ * indexed texts.
+ * <p>
+ * The index is built from the database once the application is ready and kept current by
+ * {@link ImageService} writes. Until the build has finished, {@link #search(String)} returns
+ * null and callers fall back to the database.
+ */
+@Slf4j
+@Component
+public class ImageSearchIndex {
+
+    private final ImageRepository imageRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final Map<Long, LongHashSet> postings = new HashMap<>();
+    private volatile boolean ready;
+
+    /**
+     * Constructs a new ImageSearchIndex.
+     *
+     * @param imageRepository the repository the index is built from
+     */
+    public ImageSearchIndex(ImageRepository imageRepository) {
+        this.imageRepository = imageRepository;
+    }
+
+    /**
+     * Builds the index in the background once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        build().subscribe(null, e -> log.error("Failed to build the image search index", e));
+    }
+
+    /**
+     * Loads all images into the index and marks it ready.
+     *
+     * @return a Mono that completes once every image is indexed
+     */
+    public Mono<Void> build() {
+        long start = System.nanoTime();
+        return imageRepository.findAll()
+                .doOnNext(this::put)
+                .then(Mono.fromRunnable(() -> {
+                    ready = true;
+                    log.info("Indexed {} images for search in {} ms", size(), (System.nanoTime() - start) / 1_000_000);
+                }));
+    }
+
+    /**
+     * Returns whether the initial build has finished.
+     *
+     * @return true if searches are answered from the index
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the number of indexed images.
+     *
+     * @return the number of images
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an image to the index, replacing its previous URL and name.
+     *
+     * @param image the stored image
+     */
+    public void put(Image image) {
+        if (image.getId() == null) {
+            return;
+        }
+        long id = image.getId();
+        Document document = new Document(lowerCase(image.getUrl()), lowerCase(image.getName()));
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.put(id, document);
+            if (previous != null) {
+                previous.trigrams().forEach(trigram -> removePosting(trigram, id));
+            }
+            document.trigrams().forEach(trigram -> postings.computeIfAbsent(trigram, key -> new LongHashSet()).add(id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an image from the index.
+     *
+     * @param id the ID of the image
+     */
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.remove(id);
+            if (previous != null) {
+                previous.trigrams().forEach(trigram -> removePosting(trigram, id));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the images whose URL or name contains the keyword, ignoring case.
+     *
+     * @param keyword the text to search for
+     * @return the matching image IDs in ascending order, or null if the index is not built yet
+     */
+    public long[] search(String keyword) {
+        if (!ready) {
+            return null;
+        }
+        String needle = lowerCase(keyword);
+        LongStream.Builder matches = LongStream.builder();
+        lock.readLock().lock();
+        try {
+            if (needle.length() < 3) {
+                documents.forEach((id, document) -> {
+                    if (document.contains(needle)) {
+                        matches.add(id);
+                    }
+                });
+            } else {
+                LongHashSet[] candidates = candidates(needle);
+                if (candidates != null) {
+                    candidates[0].forEach(id -> {
+                        for (int i = 1; i < candidates.length; i++) {
+                            if (!candidates[i].contains(id)) {
+                                return;
+                            }
+                        }
+                        if (documents.get(id).contains(needle)) {
+                            matches.add(id);
+                        }
+                    });
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        long[] ids = matches.build().toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Returns the posting sets of the keyword's trigrams, smallest first,
+     * or null if some trigram occurs in no image.
+     */
+    private LongHashSet[] candidates(String needle) {
+        LongHashSet trigrams = new LongHashSet();
+        addTrigrams(needle, trigrams);
+        LongHashSet[] sets = new LongHashSet[trigrams.size()];
+        int[] count = {0};
+        boolean[] missing = {false};
+        trigrams.forEach(trigram -> {
+            LongHashSet set = postings.get(trigram);
+            if (set == null) {
+                missing[0] = true;
+            } else {
+                sets[count[0]++] = set;
+            }
+        });
+        if (missing[0]) {
+            return null;
+        }
+        Arrays.sort(sets, (a, b) -> Integer.compare(a.size(), b.size()));
+        return sets;
+    }
+
+    private void removePosting(long trigram, long id) {
+        LongHashSet set = postings.get(trigram);
+        if (set != null && set.remove(id) && set.isEmpty()) {
+            postings.remove(trigram);
+        }
+    }
+
+    private static void addTrigrams(String text, LongHashSet trigrams) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add((long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2));
+        }
+    }
+
+    private static String lowerCase(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The searchable texts of one image.
+     */
+    private record Document(String url, String name) {
+
+        private boolean contains(String needle) {
+            return url.contains(needle) || name.contains(needle);
+        }
+
+        private LongHashSet trigrams() {
+            LongHashSet trigrams = new LongHashSet();
+            addTrigrams(url, trigrams);
+            addTrigrams(name, trigrams);
+            return trigrams;
+        }
+    }
+}
@@ -1,21 +1,34 @@
 package com.nvs.task.slideshow.service;
 
+import com.nvs.task.slideshow.exception.BadRequestException;
+import com.nvs.task.slideshow.exception.ConflictException;
 import com.nvs.task.slideshow.exception.ResourceNotFoundException;
 import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.ImageImportResult;
+import com.nvs.task.slideshow.repository.ImageBulkRepository;
 import com.nvs.task.slideshow.repository.ImageRepository;
+import com.nvs.task.slideshow.repository.SlideshowImageRepository;
+import com.nvs.task.slideshow.util.EntityTags;
+import com.nvs.task.slideshow.util.KeysetPagination;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Service class for managing image-related operations.
  * This class handles various functionalities such as adding, deleting, updating,
  * and retrieving images from the repository.
  */
+@Slf4j
 @Service
 public class ImageService {
 
@@ -23,18 +36,101 @@ public class ImageService {
     private static final List<String> ALLOWED_EXTENSIONS = Arrays.asList(
             ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".webp", ".svg"
     );
+    // Number of search matches loaded from the database per query
+    private static final int SEARCH_LOAD_BATCH_SIZE = 500;
+    // Maximum length of the text columns of the images table
+    private static final int MAX_TEXT_LENGTH = 255;
+
     /**
      * Autowired instance of ImageRepository for database operations.
      */
     @Autowired
     private ImageRepository imageRepository;
 
+    /**
+     * Autowired instance of SlideshowImageRepository for removing deleted images from slideshows.
+     */
+    @Autowired
+    private SlideshowImageRepository slideshowImageRepository;
+
+    /**
+     * Autowired instance of SlideshowImageIndex for evicting the cached membership of slideshows losing an image.
+     */
+    @Autowired
+    private SlideshowImageIndex slideshowImageIndex;
+
+    /**
+     * Autowired instance of ImageUrlValidator for checking the content behind image URLs.
+     */
+    @Autowired
+    private ImageUrlValidator imageUrlValidator;
+
+    /**
+     * Autowired instance of ImageMetadataService for extracting format and dimensions in the background.
+     */
+    @Autowired
+    private ImageMetadataService imageMetadataService;
+
+    /**
+     * Autowired instance of ImageContentCache for serving image content from local disk.
+     */
+    @Autowired
+    private ImageContentCache imageContentCache;
+
+    /**
+     * Autowired instance of ImageSearchIndex for substring search without table scans.
+     */
+    @Autowired
+    private ImageSearchIndex imageSearchIndex;
+
+    /**
+     * Autowired instance of ImageDerivativeService for downscaled variants served to displays.
+     */
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    /**
+     * Autowired instance of SlideshowTimelineService for rebuilding the schedules of slideshows showing changed images.
+     */
+    @Autowired
+    private SlideshowTimelineService slideshowTimelineService;
+
+    /**
+     * Autowired instance of SlideshowResponseCache for evicting the cached responses of slideshows showing changed images.
+     */
+    @Autowired
+    private SlideshowResponseCache slideshowResponseCache;
+
+    /**
+     * Autowired instance of ImageBulkRepository for multi-row inserts during imports.
+     */
+    @Autowired
+    private ImageBulkRepository imageBulkRepository;
+
+    /**
+     * Maximum number of image URLs validated at the same time during an import.
+     */
+    @Value("${image.import.validation-concurrency:32}")
+    private int importValidationConcurrency = 32;
+
+    /**
+     * Maximum number of images written with one INSERT statement during an import.
+     */
+    @Value("${image.import.batch-size:500}")
+    private int importBatchSize = 500;
+
+    /**
+     * Whether URLs are validated by fetching their first bytes instead of by file extension.
+     */
+    @Value("${image.validation.sniff-content:true}")
+    private boolean sniffContent = true;
+
     /**
      * Adds a new image to the repository after validating its URL.
      * <p>
      * This method performs the following steps:
      * 1. Validates the URL of the image using the validateImageUrl method.
-     * 2. If the URL is valid, saves the image to the repository.
+     * 2. If the URL is valid, saves the image to the repository and queues it for metadata extraction.
      * 3. If the URL is invalid, returns an error.
      *
      * @param image The Image object to be added to the repository. It should contain
@@ -48,7 +144,10 @@ public class ImageService {
         return validateImageUrl(image.getUrl())
                 .flatMap(valid -> {
                     if (Boolean.TRUE.equals(valid)) {
-                        return imageRepository.save(image);
+                        return imageRepository.save(image)
+                                .doOnNext(imageSearchIndex::put)
+                                .doOnNext(imageMetadataService::submit)
+                                .doOnNext(imageDerivativeService::submit);
                     } else {
                         return Mono.error(new IllegalArgumentException("Invalid image URL: " + image.getUrl()));
                     }
@@ -56,19 +155,137 @@ public class ImageService {
                 .switchIfEmpty(Mono.error(new IllegalArgumentException("Invalid image URL: " + image.getUrl())));
     }
 
+    /**
+     * Imports many images at once.
+     * <p>
+     * The URLs are validated concurrently, at most {@code image.import.validation-concurrency} at a
+     * time, and the valid images are stored with one multi-row INSERT per
+     * {@code image.import.batch-size} images. Results are emitted as soon as their batch is stored,
+     * in input order, one per submitted image.
+     *
+     * @param images The images to import; their IDs are ignored
+     * @return Flux of import results, one per image, in input order
+     */
+    public Flux<ImageImportResult> importImages(Flux<Image> images) {
+        int batchSize = Math.min(importBatchSize, ImageBulkRepository.MAX_ROWS_PER_INSERT);
+        return images.index()
+                .flatMapSequential(row -> checkImportRow(row.getT1(), row.getT2()), importValidationConcurrency)
+                .buffer(batchSize)
+                .concatMap(this::storeImportBatch);
+    }
+
+    private Mono<ImportRow> checkImportRow(long index, Image image) {
+        String problem = checkImportFields(image);
+        if (problem != null) {
+            return Mono.just(new ImportRow(index, image, problem));
+        }
+        return validateImageUrl(image.getUrl())
+                .map(valid -> new ImportRow(index, image, valid ? null : "Invalid image URL: " + image.getUrl()));
+    }
+
+    /**
+     * Checks the constraints of the images table, so that a single bad row does not fail the INSERT of its batch.
+     */
+    private static String checkImportFields(Image image) {
+        if (image.getName() == null || image.getName().isBlank()) {
+            return "name is required";
+        }
+        if (image.getName().length() > MAX_TEXT_LENGTH) {
+            return "name is longer than " + MAX_TEXT_LENGTH + " characters";
+        }
+        if (image.getUrl() != null && image.getUrl().length() > MAX_TEXT_LENGTH) {
+            return "url is longer than " + MAX_TEXT_LENGTH + " characters";
+        }
+        if (image.getDescription() != null && image.getDescription().length() > MAX_TEXT_LENGTH) {
+            return "description is longer than " + MAX_TEXT_LENGTH + " characters";
+        }
+        if (image.getDuration() < 0) {
+            return "duration must not be negative";
+        }
+        return null;
+    }
+
+    private Flux<ImageImportResult> storeImportBatch(List<ImportRow> batch) {
+        List<Image> valid = batch.stream()
+                .filter(row -> row.problem() == null)
+                .map(ImportRow::image)
+                .toList();
+        return imageBulkRepository.insertAll(valid)
+                .collectList()
+                .map(ids -> {
+                    if (ids.size() != valid.size()) {
+                        throw new IllegalStateException("Inserted " + ids.size() + " of " + valid.size() + " images");
+                    }
+                    for (int i = 0; i < valid.size(); i++) {
+                        Image image = valid.get(i);
+                        image.setId(ids.get(i));
+                        imageSearchIndex.put(image);
+                        imageMetadataService.submit(image);
+                        imageDerivativeService.submit(image);
+                    }
+                    return batch.stream().map(row -> row.toResult(null)).toList();
+                })
+                .onErrorResume(e -> {
+                    log.error("Failed to store a batch of {} imported images", valid.size(), e);
+                    return Mono.just(batch.stream().map(row -> row.toResult("Image could not be stored")).toList());
+                })
+                .flatMapIterable(results -> results);
+    }
+
+    /**
+     * Deletes an image and removes it from every slideshow that contains it.
+     * <p>
+     * The memberships are removed, and the versions of the affected slideshows incremented, with a
+     * single set-based statement that returns the IDs of those slideshows; no slideshow is loaded
+     * or saved. Once the transaction commits, the image is dropped from the search index and its
+     * variants are deleted, and the cached membership, timeline and response of each of those
+     * slideshows are evicted, so proof-of-play checks and displays no longer see the image.
+     *
+     * @param id The ID of the image to delete
+     * @return Mono completing once the image is deleted
+     */
+    @Transactional
     public Mono<Void> deleteImage(Long id) {
-        return imageRepository.deleteById(id);
+        return slideshowImageRepository.removeImage(id)
+                .collectList()
+                .flatMap(slideshowIds -> imageRepository.deleteById(id)
+                        .then(AfterCommit.run(() -> {
+                            imageSearchIndex.remove(id);
+                            imageDerivativeService.remove(id);
+                            slideshowIds.forEach(slideshowId -> {
+                                slideshowImageIndex.evict(slideshowId);
+                                slideshowTimelineService.evictSlideshow(slideshowId);
+                                slideshowResponseCache.evict(slideshowId);
+                            });
+                        })));
     }
 
+    /**
+     * Searches images whose URL or name contains the keyword, ignoring case.
+     * Matches are looked up in the in-memory trigram index and loaded by ID; until the index
+     * is built, URLs are searched in the database instead.
+     *
+     * @param keyword The text to search for
+     * @return Flux of matching images, ordered by ID
+     */
     public Flux<Image> searchImages(String keyword) {
-        return imageRepository.findByUrlContainingIgnoreCase(keyword);
+        long[] ids = imageSearchIndex.search(keyword);
+        if (ids == null) {
+            return imageRepository.findByUrlContainingIgnoreCase(keyword);
+        }
+        return Flux.fromStream(Arrays.stream(ids).boxed())
+                .buffer(SEARCH_LOAD_BATCH_SIZE)
+                .concatMap(batch -> imageRepository.findAllById(batch)
+                        .sort(Comparator.comparing(Image::getId)));
     }
 
     /**
      * Validates that the provided URL:
      * 1. Is a properly formatted URL
      * 2. Uses HTTP or HTTPS protocol
-     * 3. Has an allowed image file extension
+     * 3. Holds a JPEG, PNG, GIF, WEBP, BMP, AVIF or SVG image, as detected from its first bytes
+     * <p>
+     * When content sniffing is disabled, the URL only needs an allowed image file extension.
      *
      * @param url The URL to validate
      * @return Mono&lt;Boolean&gt; indicating if the URL is valid
@@ -78,17 +295,50 @@ public class ImageService {
             return Mono.just(false);
         }
 
-        List<String> allowedExtensions = Arrays.asList(".jpg", ".jpeg", ".png", ".gif", ".svg");
-        return Mono.just(allowedExtensions.stream().anyMatch(url.toLowerCase()::endsWith));
+        if (!sniffContent) {
+            String path = url.toLowerCase(Locale.ROOT);
+            return Mono.just(ALLOWED_EXTENSIONS.stream().anyMatch(path::endsWith));
+        }
+        return imageUrlValidator.validate(url)
+                .map(format -> true)
+                .defaultIfEmpty(false);
     }
 
     /**
-     * Gets all images from the repository
+     * Gets one page of images ordered by ID
      *
-     * @return Flux of all images
+     * @param afterId The ID of the last image of the previous page, or null for the first page
+     * @param limit   The maximum number of images on the page
+     * @return Flux of up to {@code limit} images with an ID greater than {@code afterId}
+     * @throws BadRequestException if the limit is out of range
      */
-    public Flux<Image> getAllImages() {
-        return imageRepository.findAll();
+    public Flux<Image> getImages(Long afterId, int limit) {
+        return imageRepository.findPage(KeysetPagination.start(afterId), KeysetPagination.checkLimit(limit));
+    }
+
+    /**
+     * Gets the ETag of a page of images from the version index, without loading the images
+     *
+     * @param afterId The ID of the last image of the previous page, or null for the first page
+     * @param limit   The maximum number of images on the page
+     * @return Mono containing the tag {@link #getImages} would produce for the same page
+     * @throws BadRequestException if the limit is out of range
+     */
+    public Mono<String> getImagePageTag(Long afterId, int limit) {
+        return imageRepository.findVersionPage(KeysetPagination.start(afterId), KeysetPagination.checkLimit(limit))
+                .collectList()
+                .map(EntityTags::of);
+    }
+
+    /**
+     * Streams all images ordered by ID, loading them from the repository page by page as they are consumed
+     *
+     * @param afterId The ID after which the stream starts, or null to stream all images
+     * @return Flux of all images with an ID greater than {@code afterId}
+     */
+    public Flux<Image> streamImages(Long afterId) {
+        return KeysetPagination.stream(KeysetPagination.start(afterId), KeysetPagination.STREAM_PAGE_SIZE,
+                imageRepository::findPage, Image::getId);
     }
 
     /**
@@ -102,31 +352,127 @@ public class ImageService {
                 .switchIfEmpty(Mono.error(new ResourceNotFoundException("Image not found with id: " + id)));
     }
 
+    /**
+     * Gets the ETag of an image from the version index, without loading the image
+     *
+     * @param id The image ID
+     * @return Mono containing the tag of the image, or empty if it does not exist
+     */
+    public Mono<String> getImageTag(Long id) {
+        return imageRepository.findVersionById(id)
+                .map(EntityTags::of);
+    }
+
+    /**
+     * Gets the content of an image from the local cache, downloading it from its URL on first use.
+     *
+     * @param id The image ID
+     * @return Mono containing the cached file of the image
+     * @throws ResourceNotFoundException if no image is found with the given ID
+     */
+    public Mono<ImageContentCache.CachedImage> getImageContent(Long id) {
+        return getImageContent(id, null);
+    }
+
+    /**
+     * Gets the content of an image for a display of the given width.
+     * The smallest downscaled variant at least as wide as requested is returned; the original is
+     * returned when no variant is that wide or the variants have not been rendered yet.
+     *
+     * @param id    The image ID
+     * @param width The width in pixels the display needs, or null for the original
+     * @return Mono containing the file of the variant or the original
+     * @throws ResourceNotFoundException if no image is found with the given ID
+     * @throws BadRequestException       if the width is not positive
+     */
+    public Mono<ImageContentCache.CachedImage> getImageContent(Long id, Integer width) {
+        if (width != null && width <= 0) {
+            return Mono.error(new BadRequestException("width must be positive, was " + width));
+        }
+        return getImage(id)
+                .flatMap(image -> {
+                    ImageContentCache.CachedImage variant = width != null ? imageDerivativeService.find(image, width) : null;
+                    return variant != null ? Mono.just(variant) : imageContentCache.get(image.getUrl());
+                });
+    }
+
+    /**
+     * Updates an existing image in the repository, whatever its current version.
+     *
+     * @param id           The ID of the image to be updated.
+     * @param updatedImage The Image object containing the updated data.
+     * @return A Mono<Image> emitting the updated image.
+     * @throws ResourceNotFoundException if no image is found with the given ID.
+     * @see #updateImage(Long, Image, Long)
+     */
+    public Mono<Image> updateImage(Long id, Image updatedImage) {
+        return updateImage(id, updatedImage, null);
+    }
+
     /**
      * Updates an existing image in the repository.
      * <p>
-     * This method performs the following steps:
-     * 1. Finds the existing image by its ID.
-     * 2. If the image is found, updates its properties with the provided data.
-     * 3. Saves the updated image to the repository.
-     * 4. If the image is not found, throws a ResourceNotFoundException.
+     * The URL is validated the same way as when the image was added. The image is then updated
+     * with a single conditional {@code UPDATE ... RETURNING} statement, which writes the name,
+     * URL, description and duration, clears the metadata when the URL changed and increments the
+     * version. Images left without metadata, because their URL changed or the
+     * extraction has not completed yet, are queued for metadata extraction.
+     * <p>
+     * Only when no row was updated is the version looked up again, to tell a missing image from
+     * one that was changed concurrently.
      *
-     * @param id           The ID of the image to be updated.
-     * @param updatedImage The Image object containing the updated data. It should include
-     *                     the new values for name, URL, description, and duration.
+     * @param id              The ID of the image to be updated.
+     * @param updatedImage    The Image object containing the updated data. It should include
+     *                        the new values for name, URL, description, and duration.
+     * @param expectedVersion The version the update is based on, or null to update any version.
      * @return A Mono<Image> representing the asynchronous result of the operation.
-     * If successful, it contains the updated Image object.
+     * If successful, it contains the updated Image object with its new version.
+     * @throws IllegalArgumentException  if the image URL is invalid.
      * @throws ResourceNotFoundException if no image is found with the given ID.
+     * @throws ConflictException         if the image is no longer at the expected version.
      */
-    public Mono<Image> updateImage(Long id, Image updatedImage) {
-        return imageRepository.findById(id)
-                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Image not found with id: " + id)))
-                .flatMap(existingImage -> {
-                    existingImage.setName(updatedImage.getName());
-                    existingImage.setUrl(updatedImage.getUrl());
-                    existingImage.setDescription(updatedImage.getDescription());
-                    existingImage.setDuration(updatedImage.getDuration());
-                    return imageRepository.save(existingImage);
+    public Mono<Image> updateImage(Long id, Image updatedImage, Long expectedVersion) {
+        return validateImageUrl(updatedImage.getUrl())
+                .flatMap(valid -> {
+                    if (!Boolean.TRUE.equals(valid)) {
+                        return Mono.error(new IllegalArgumentException("Invalid image URL: " + updatedImage.getUrl()));
+                    }
+                    return imageRepository.updateFields(id, updatedImage.getName(), updatedImage.getUrl(),
+                                    updatedImage.getDescription(), updatedImage.getDuration(), expectedVersion)
+                            .switchIfEmpty(Mono.defer(() -> notUpdated(id, expectedVersion)));
+                })
+                .doOnNext(saved -> {
+                    imageSearchIndex.put(saved);
+                    if (saved.getFormat() == null) {
+                        imageMetadataService.submit(saved);
+                        imageDerivativeService.submit(saved);
+                    }
+                    slideshowTimelineService.evictImage(saved.getId());
+                    slideshowResponseCache.evictImage(saved.getId());
                 });
     }
-}
\ No newline at end of file
+
+    private Mono<Image> notUpdated(Long id, Long expectedVersion) {
+        Mono<Image> notFound = Mono.error(new ResourceNotFoundException("Image not found with id: " + id));
+        if (expectedVersion == null) {
+            return notFound;
+        }
+        return imageRepository.findVersionById(id)
+                .flatMap(version -> Mono.<Image>error(new ConflictException("Image", id, expectedVersion)))
+                .switchIfEmpty(notFound);
+    }
+
+    /**
+     * An image submitted for import, with the reason it is rejected, or null if it is valid.
+     */
+    private record ImportRow(long index, Image image, String problem) {
+
+        private ImageImportResult toResult(String storeError) {
+            String reason = problem != null ? problem : storeError;
+            if (reason != null) {
+                return new ImageImportResult(index, null, image.getUrl(), ImageImportResult.Status.REJECTED, reason);
+            }
+            return new ImageImportResult(index, image.getId(), image.getUrl(), ImageImportResult.Status.IMPORTED, null);
+        }
+    }
+}
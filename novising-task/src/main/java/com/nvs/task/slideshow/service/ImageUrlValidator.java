@@ -0,0 +1,130 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ImageFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Confirms that a URL points to an image by looking at the first bytes of the resource.
+ * <p>
+ * Only the first {@code image.validation.probe-bytes} bytes are fetched by the
+ * {@link ImageFetcher} and checked against the magic numbers of the supported
+ * {@link ImageFormat}s. Results, including negative ones, are cached for a configurable time,
+ * and concurrent checks of the same URL share a single request. The fetcher limits the number of
+ * requests running against one host, so bulk imports from the same origin queue up instead of
+ * opening many connections.
+ */
+@Slf4j
+@Component
+public class ImageUrlValidator {
+
+    private final ImageFetcher imageFetcher;
+    private final int probeBytes;
+    private final long cacheTtlMillis;
+    private final long negativeCacheTtlMillis;
+    private final int cacheMaxEntries;
+    private final Clock clock;
+
+    private final Map<String, CachedResult> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new ImageUrlValidator.
+     *
+     * @param imageFetcher     the fetcher used to read the first bytes of each URL
+     * @param probeBytes       the number of leading bytes fetched from each URL
+     * @param cacheTtl         how long a URL found to be an image is remembered
+     * @param negativeCacheTtl how long a URL found not to be an image, or unreachable, is remembered
+     * @param cacheMaxEntries  the maximum number of cached results
+     */
+    @Autowired
+    public ImageUrlValidator(ImageFetcher imageFetcher,
+                             @Value("${image.validation.probe-bytes:1024}") int probeBytes,
+                             @Value("${image.validation.cache-ttl:1h}") Duration cacheTtl,
+                             @Value("${image.validation.negative-cache-ttl:5m}") Duration negativeCacheTtl,
+                             @Value("${image.validation.cache-max-entries:10000}") int cacheMaxEntries) {
+        this(imageFetcher, probeBytes, cacheTtl, negativeCacheTtl, cacheMaxEntries, Clock.systemUTC());
+    }
+
+    ImageUrlValidator(ImageFetcher imageFetcher, int probeBytes, Duration cacheTtl, Duration negativeCacheTtl,
+                      int cacheMaxEntries, Clock clock) {
+        this.imageFetcher = imageFetcher;
+        this.probeBytes = probeBytes;
+        this.cacheTtlMillis = cacheTtl.toMillis();
+        this.negativeCacheTtlMillis = negativeCacheTtl.toMillis();
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Checks whether the URL holds an image of a supported format.
+     *
+     * @param url the URL to check; only absolute HTTP and HTTPS URLs are accepted
+     * @return a Mono emitting the detected format, or empty if the URL is invalid, unreachable
+     * or does not hold a supported image
+     */
+    public Mono<ImageFormat> validate(String url) {
+        URI uri = ImageFetcher.parseHttpUrl(url);
+        if (uri == null) {
+            return Mono.empty();
+        }
+
+        long now = clock.millis();
+        CachedResult cached = cache.compute(url, (key, existing) ->
+                existing != null && !existing.isExpired(now) ? existing : new CachedResult(probe(uri)));
+        if (cache.size() > cacheMaxEntries) {
+            trim(now);
+        }
+        return cached.result.flatMap(Mono::justOrEmpty);
+    }
+
+    private Mono<Optional<ImageFormat>> probe(URI uri) {
+        return imageFetcher.fetchHeader(uri, probeBytes)
+                .map(header -> Optional.ofNullable(ImageFormat.detect(header.bytes(), header.bytes().length)))
+                .defaultIfEmpty(Optional.empty())
+                .onErrorResume(e -> {
+                    log.debug("Could not fetch image header from {}: {}", uri, e.toString());
+                    return Mono.just(Optional.empty());
+                });
+    }
+
+    private void trim(long now) {
+        cache.values().removeIf(entry -> entry.isExpired(now));
+        Iterator<CachedResult> entries = cache.values().iterator();
+        while (cache.size() > cacheMaxEntries && entries.hasNext()) {
+            entries.next();
+            entries.remove();
+        }
+    }
+
+    /**
+     * A shared, possibly still running check of one URL.
+     * The expiry is set once the check completes, so in-flight checks are never evicted as expired.
+     */
+    private final class CachedResult {
+
+        private final Mono<Optional<ImageFormat>> result;
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        private CachedResult(Mono<Optional<ImageFormat>> probe) {
+            this.result = probe
+                    .doOnNext(format -> expiresAt = clock.millis()
+                            + (format.isPresent() ? cacheTtlMillis : negativeCacheTtlMillis))
+                    .cache();
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -1,16 +1,16 @@
 package com.nvs.task.slideshow.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Instant;
+import java.util.List;
 
 /**
  * Service class responsible for producing and sending Kafka messages.
@@ -21,39 +21,62 @@ import java.util.Map;
 @Service
 public class KafkaProducerService {
 
+    /**
+     * Name of the record header describing the payload format.
+     */
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+
     @Autowired
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private ProofOfPlayEventEncoder proofOfPlayEventEncoder;
 
     @Value("${kafka.topic.proof-of-play:proof-of-play}")
     private String proofOfPlayTopic;
 
+    @Value("${kafka.producer.max-in-flight-sends:1024}")
+    private int maxInFlightSends;
+
     /**
      * Sends a proof of play event to Kafka.
      * <p>
      * This method creates an event with slideshow and image information,
-     * serializes it to JSON, and sends it to a Kafka topic.
+     * encodes it with the {@link ProofOfPlayEventEncoder}, and sends it to a Kafka topic.
      *
      * @param slideshowId The unique identifier of the slideshow being played.
      * @param imageId     The unique identifier of the image that was displayed in the slideshow.
-     * @return A Mono<Void> that completes when the message is successfully sent to Kafka.
-     * If an error occurs during JSON processing, the Mono will contain the error.
+     * @return A Mono<Void> that completes when the broker acknowledges the message.
+     * If an error occurs while sending, the Mono will contain the error.
      */
     public Mono<Void> sendProofOfPlayEvent(Long slideshowId, Long imageId) {
-        Map<String, Object> event = new HashMap<>();
-        event.put("slideshowId", slideshowId);
-        event.put("imageId", imageId);
-        event.put("timestamp", LocalDateTime.now().toString());
-        event.put("eventType", "PROOF_OF_PLAY");
-
-        try {
-            String message = objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(proofOfPlayTopic, slideshowId.toString(), message);
-            return Mono.empty();
-        } catch (JsonProcessingException e) {
-            return Mono.error(e);
-        }
+        return send(new ProofOfPlayEvent(slideshowId, imageId, Instant.now()));
+    }
+
+    /**
+     * Sends a batch of proof of play events to Kafka.
+     * <p>
+     * The events are handed to the producer back to back so that it can group them into
+     * as few broker requests as possible. At most {@code kafka.producer.max-in-flight-sends}
+     * events wait for an acknowledgement at any time, so a slow broker holds the caller back
+     * instead of piling up unacknowledged records.
+     *
+     * @param events The events to send, in the order they were recorded.
+     * @return A Mono<Void> that completes when the broker acknowledged every event,
+     * or errors with the first failed send.
+     */
+    public Mono<Void> sendProofOfPlayEvents(List<ProofOfPlayEvent> events) {
+        return Flux.fromIterable(events)
+                .flatMap(this::send, maxInFlightSends)
+                .then();
+    }
+
+    private Mono<Void> send(ProofOfPlayEvent event) {
+        return Mono.fromFuture(() -> {
+            ProducerRecord<String, byte[]> record = new ProducerRecord<>(proofOfPlayTopic,
+                    Long.toString(event.getSlideshowId()), proofOfPlayEventEncoder.encode(event));
+            record.headers().add(CONTENT_TYPE_HEADER, proofOfPlayEventEncoder.contentType());
+            return kafkaTemplate.send(record);
+        }).then();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,390 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.exception.BadRequestException;
+import com.nvs.task.slideshow.model.PlayCountRollup;
+import com.nvs.task.slideshow.model.PlayStats;
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import com.nvs.task.slideshow.model.StatsGranularity;
+import com.nvs.task.slideshow.repository.PlayCountRollupRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps per-slideshow and per-image play counts in minute and hour buckets.
+ * <p>
+ * Every accepted proof-of-play event increments one counter per granularity. Buckets live in a
+ * skip list keyed by their start time, and each counter is a {@link LongAdder}, so recording a
+ * play never takes a lock once the bucket and counter exist. Closed buckets are flushed to the
+ * {@code proof_of_play_rollups} table every {@code proof-of-play.rollups.flush-interval}; only
+ * the increase since the previous flush is written, so late events for a closed bucket are
+ * picked up by the next flush.
+ * <p>
+ * Buckets stay in memory for the configured retention and are dropped afterwards once fully
+ * flushed. A bucket is only dropped while no play is being recorded into it, so a play never
+ * lands in a bucket that is no longer kept. Plays dated in the future are counted at the current
+ * time, so they cannot create buckets that retention never reaches.
+ * <p>
+ * Queries answer the buckets that memory holds completely, those within retention and begun
+ * after this instance started, from memory alone. Only older buckets are read from the database,
+ * with the plays not flushed yet added. Recent buckets therefore count the plays recorded by this
+ * instance only.
+ */
+@Slf4j
+@Service
+public class PlayCountRollupService {
+
+    /**
+     * Upper bound on the number of buckets a single query may span.
+     */
+    static final int MAX_BUCKETS_PER_QUERY = 10_080;
+
+    private final PlayCountRollupRepository playCountRollupRepository;
+    private final Duration flushInterval;
+    private final Map<StatsGranularity, Duration> retention = new EnumMap<>(StatsGranularity.class);
+    private final Clock clock;
+    private final long startedAt;
+
+    private final Map<StatsGranularity, ConcurrentSkipListMap<Long, Bucket>> buckets =
+            new EnumMap<>(StatsGranularity.class);
+
+    private final Scheduler flushScheduler = Schedulers.newSingle("play-count-rollups");
+    private Disposable flushing;
+
+    /**
+     * Constructs a new PlayCountRollupService.
+     *
+     * @param playCountRollupRepository the repository closed buckets are flushed to
+     * @param flushInterval             how often closed buckets are flushed
+     * @param minuteRetention           how long minute buckets are kept in memory
+     * @param hourRetention             how long hour buckets are kept in memory
+     */
+    @Autowired
+    public PlayCountRollupService(PlayCountRollupRepository playCountRollupRepository,
+                                  @Value("${proof-of-play.rollups.flush-interval:10s}") Duration flushInterval,
+                                  @Value("${proof-of-play.rollups.minute-retention:3h}") Duration minuteRetention,
+                                  @Value("${proof-of-play.rollups.hour-retention:48h}") Duration hourRetention) {
+        this(playCountRollupRepository, flushInterval, minuteRetention, hourRetention, Clock.systemUTC());
+    }
+
+    PlayCountRollupService(PlayCountRollupRepository playCountRollupRepository, Duration flushInterval,
+                           Duration minuteRetention, Duration hourRetention, Clock clock) {
+        this.playCountRollupRepository = playCountRollupRepository;
+        this.flushInterval = flushInterval;
+        this.clock = clock;
+        this.startedAt = clock.millis();
+        this.retention.put(StatsGranularity.MINUTE, minuteRetention);
+        this.retention.put(StatsGranularity.HOUR, hourRetention);
+        for (StatsGranularity granularity : StatsGranularity.values()) {
+            buckets.put(granularity, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    /**
+     * Starts flushing closed buckets periodically.
+     */
+    @PostConstruct
+    public void start() {
+        flushing = Flux.interval(flushInterval, flushInterval, flushScheduler)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush(false), 1)
+                .subscribe();
+    }
+
+    /**
+     * Stops the periodic flush and writes every pending counter, including open buckets.
+     */
+    @PreDestroy
+    public void stop() {
+        if (flushing != null) {
+            flushing.dispose();
+        }
+        try {
+            flush(true).block(flushInterval);
+        } catch (Exception e) {
+            log.warn("Play-count rollups were not fully flushed on shutdown", e);
+        } finally {
+            flushScheduler.dispose();
+        }
+    }
+
+    /**
+     * Counts a play in every granularity. A play dated in the future is counted at the current time.
+     *
+     * @param event the accepted proof-of-play event
+     */
+    public void record(ProofOfPlayEvent event) {
+        long playedAt = Math.min(event.getPlayedAt().toEpochMilli(), clock.millis());
+        for (StatsGranularity granularity : StatsGranularity.values()) {
+            ConcurrentSkipListMap<Long, Bucket> timeline = buckets.get(granularity);
+            long start = granularity.bucketStart(playedAt);
+            while (true) {
+                Bucket bucket = timeline.get(start);
+                if (bucket == null) {
+                    bucket = timeline.computeIfAbsent(start, Bucket::new);
+                }
+                if (bucket.enter()) {
+                    try {
+                        bucket.counter(event.getSlideshowId(), event.getImageId()).plays.increment();
+                    } finally {
+                        bucket.exit();
+                    }
+                    break;
+                }
+                // The bucket is being evicted; it is either dropped or reopened right away
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Returns the play counts of a slideshow in the range {@code [from, to)}.
+     * The range is widened to whole buckets. Buckets held completely in memory are answered
+     * without a database round trip. For older buckets the counts stored in the database are
+     * merged with the plays not flushed yet; while a flush is being written, they may be off by
+     * that flush.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param granularity the bucket size
+     * @param from        the inclusive start of the range
+     * @param to          the exclusive end of the range
+     * @return a Mono emitting the play statistics
+     * @throws BadRequestException if the range is empty or spans too many buckets
+     */
+    public Mono<PlayStats> getStats(long slideshowId, StatsGranularity granularity, Instant from, Instant to) {
+        long fromMillis = granularity.bucketStart(from.toEpochMilli());
+        long toMillis = to.toEpochMilli();
+        if (fromMillis >= toMillis) {
+            return Mono.error(new BadRequestException("'from' must be before 'to'"));
+        }
+        if ((toMillis - fromMillis) / granularity.getMillis() > MAX_BUCKETS_PER_QUERY) {
+            return Mono.error(new BadRequestException("The requested range spans more than "
+                    + MAX_BUCKETS_PER_QUERY + " buckets"));
+        }
+
+        long memoryFrom = Math.min(toMillis, Math.max(fromMillis, inMemorySince(granularity)));
+        Mono<List<PlayCountRollup>> stored = memoryFrom > fromMillis
+                ? playCountRollupRepository.findBySlideshow(slideshowId, granularity,
+                        Instant.ofEpochMilli(fromMillis), Instant.ofEpochMilli(memoryFrom)).collectList()
+                : Mono.just(List.of());
+        return stored
+                .map(rollups -> {
+                    TreeMap<Long, Map<Long, Long>> imagePlays = new TreeMap<>();
+                    for (PlayCountRollup rollup : rollups) {
+                        imagePlays.computeIfAbsent(rollup.getBucketStart().toEpochMilli(), start -> new TreeMap<>())
+                                .merge(rollup.getImageId(), rollup.getPlayCount(), Long::sum);
+                    }
+                    addPlays(imagePlays, slideshowId, granularity, fromMillis, memoryFrom, true);
+                    addPlays(imagePlays, slideshowId, granularity, memoryFrom, toMillis, false);
+
+                    List<PlayStats.Bucket> merged = new ArrayList<>(imagePlays.size());
+                    long total = 0;
+                    for (Map.Entry<Long, Map<Long, Long>> bucket : imagePlays.entrySet()) {
+                        long plays = 0;
+                        for (long count : bucket.getValue().values()) {
+                            plays += count;
+                        }
+                        if (plays > 0) {
+                            merged.add(new PlayStats.Bucket(Instant.ofEpochMilli(bucket.getKey()), plays, bucket.getValue()));
+                            total += plays;
+                        }
+                    }
+                    return new PlayStats(slideshowId, granularity, Instant.ofEpochMilli(fromMillis), to, total, merged);
+                });
+    }
+
+    /**
+     * Writes the increase of every counter since its previous flush and drops buckets that are
+     * past retention and fully flushed.
+     *
+     * @param includeOpen whether buckets that have not ended yet are flushed as well
+     * @return a Mono that completes once the increments are stored
+     */
+    Mono<Void> flush(boolean includeOpen) {
+        long now = clock.millis();
+        List<PlayCountRollup> rollups = new ArrayList<>();
+        List<PendingFlush> pending = new ArrayList<>();
+        for (StatsGranularity granularity : StatsGranularity.values()) {
+            ConcurrentNavigableMap<Long, Bucket> closed = includeOpen
+                    ? buckets.get(granularity)
+                    : buckets.get(granularity).headMap(granularity.bucketStart(now));
+            for (Bucket bucket : closed.values()) {
+                Instant bucketStart = Instant.ofEpochMilli(bucket.start);
+                bucket.slideshows.forEach((slideshowId, images) -> images.forEach((imageId, counter) -> {
+                    long plays = counter.plays.sum();
+                    long delta = plays - counter.flushed;
+                    if (delta > 0) {
+                        rollups.add(new PlayCountRollup(granularity, bucketStart, slideshowId, imageId, delta));
+                        pending.add(new PendingFlush(counter, plays));
+                    }
+                }));
+            }
+        }
+        if (rollups.isEmpty()) {
+            evict(now);
+            return Mono.empty();
+        }
+
+        return playCountRollupRepository.incrementAll(rollups)
+                .doOnSuccess(rows -> {
+                    for (PendingFlush flushed : pending) {
+                        flushed.counter.flushed = flushed.plays;
+                    }
+                    evict(now);
+                })
+                .then()
+                .onErrorResume(e -> {
+                    log.error("Failed to flush {} play-count rollups", rollups.size(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private void evict(long now) {
+        for (StatsGranularity granularity : StatsGranularity.values()) {
+            ConcurrentSkipListMap<Long, Bucket> timeline = buckets.get(granularity);
+            for (Bucket bucket : timeline.headMap(horizon(granularity, now)).values()) {
+                // Sealing waits for no one: a bucket being written to is simply kept until the next flush
+                if (bucket.seal()) {
+                    if (bucket.isFlushed()) {
+                        timeline.remove(bucket.start, bucket);
+                    } else {
+                        bucket.unseal();
+                    }
+                }
+            }
+        }
+    }
+
+    private long horizon(StatsGranularity granularity, long now) {
+        return granularity.bucketStart(now - retention.get(granularity).toMillis());
+    }
+
+    /**
+     * Returns the start of the oldest bucket that holds every play recorded for it: buckets
+     * within retention are never dropped, and buckets begun after startup missed no play.
+     */
+    private long inMemorySince(StatsGranularity granularity) {
+        long firstFullBucket = granularity.bucketStart(startedAt + granularity.getMillis() - 1);
+        return Math.max(horizon(granularity, clock.millis()), firstFullBucket);
+    }
+
+    private void addPlays(Map<Long, Map<Long, Long>> imagePlays, long slideshowId,
+                          StatsGranularity granularity, long from, long to, boolean unflushedOnly) {
+        if (from >= to) {
+            return;
+        }
+        for (Bucket bucket : buckets.get(granularity).subMap(from, true, to, false).values()) {
+            Map<Long, Counter> images = bucket.slideshows.get(slideshowId);
+            if (images == null) {
+                continue;
+            }
+            for (Map.Entry<Long, Counter> image : images.entrySet()) {
+                Counter counter = image.getValue();
+                long flushed = unflushedOnly ? counter.flushed : 0;
+                long plays = counter.plays.sum() - flushed;
+                if (plays > 0) {
+                    imagePlays.computeIfAbsent(bucket.start, start -> new TreeMap<>())
+                            .merge(image.getKey(), plays, Long::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counters of all slideshows within one time bucket.
+     */
+    private static final class Bucket {
+
+        private static final int SEALED = -1;
+
+        private final long start;
+        private final ConcurrentHashMap<Long, ConcurrentHashMap<Long, Counter>> slideshows = new ConcurrentHashMap<>();
+        // Number of plays being recorded into the bucket, or SEALED while eviction inspects it
+        private final AtomicInteger writers = new AtomicInteger();
+
+        private Bucket(long start) {
+            this.start = start;
+        }
+
+        private boolean enter() {
+            int current;
+            do {
+                current = writers.get();
+                if (current == SEALED) {
+                    return false;
+                }
+            } while (!writers.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private void exit() {
+            writers.decrementAndGet();
+        }
+
+        private boolean seal() {
+            return writers.compareAndSet(0, SEALED);
+        }
+
+        private void unseal() {
+            writers.set(0);
+        }
+
+        private Counter counter(long slideshowId, long imageId) {
+            ConcurrentHashMap<Long, Counter> images = slideshows.get(slideshowId);
+            if (images == null) {
+                images = slideshows.computeIfAbsent(slideshowId, id -> new ConcurrentHashMap<>());
+            }
+            Counter counter = images.get(imageId);
+            if (counter == null) {
+                counter = images.computeIfAbsent(imageId, id -> new Counter());
+            }
+            return counter;
+        }
+
+        private boolean isFlushed() {
+            for (ConcurrentHashMap<Long, Counter> images : slideshows.values()) {
+                for (Counter counter : images.values()) {
+                    if (counter.plays.sum() != counter.flushed) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Play counter of one image, together with the count already written to the database.
+     * {@code flushed} is only updated by the flush pipeline, which runs one flush at a time.
+     */
+    private static final class Counter {
+
+        private final LongAdder plays = new LongAdder();
+        private volatile long flushed;
+    }
+
+    private record PendingFlush(Counter counter, long plays) {
+    }
+}
@@ -0,0 +1,251 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.exception.ResourceNotFoundException;
+import com.nvs.task.slideshow.model.NowPlaying;
+import com.nvs.task.slideshow.model.PlaybackSession;
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import com.nvs.task.slideshow.util.HashedTimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays slideshows on the server for displays that cannot report their own plays.
+ * <p>
+ * A session follows the compiled {@link SlideshowTimeline} of its slideshow from a fixed start,
+ * the same way {@code GET /slideShow/{id}/now} does, and records a proof of play every time an
+ * image comes on screen. All sessions share one {@link HashedTimingWheel}: each session holds a
+ * single timeout for its next transition, so hundreds of thousands of sessions cost one thread
+ * and O(1) work per transition.
+ * <p>
+ * Changes to a slideshow take effect at the next transition of each session. A session ends
+ * by itself when its slideshow is deleted. Sessions are kept in memory and do not survive a restart.
+ */
+@Slf4j
+@Service
+public class PlaybackService {
+
+    // How long a session waits before checking again a slideshow that has nothing to show, or failed to load
+    private static final Duration IDLE_RECHECK = Duration.ofSeconds(10);
+
+    private final SlideshowTimelineService slideshowTimelineService;
+    private final ProofOfPlayIngestionService proofOfPlayIngestionService;
+    private final int maxSessions;
+    private final HashedTimingWheel wheel;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong droppedPlays = new AtomicLong();
+
+    /**
+     * Constructs a new PlaybackService.
+     *
+     * @param slideshowTimelineService    the service providing the compiled timelines of slideshows
+     * @param proofOfPlayIngestionService the service the plays of the sessions are recorded with
+     * @param tickDuration                the resolution of the transition timer
+     * @param wheelSize                   the number of ticks in one turn of the timer wheel
+     * @param maxSessions                 the maximum number of sessions running at the same time
+     */
+    public PlaybackService(SlideshowTimelineService slideshowTimelineService,
+                           ProofOfPlayIngestionService proofOfPlayIngestionService,
+                           @Value("${playback.tick-duration:100ms}") Duration tickDuration,
+                           @Value("${playback.wheel-size:512}") int wheelSize,
+                           @Value("${playback.max-sessions:500000}") int maxSessions) {
+        this.slideshowTimelineService = slideshowTimelineService;
+        this.proofOfPlayIngestionService = proofOfPlayIngestionService;
+        this.maxSessions = maxSessions;
+        this.wheel = new HashedTimingWheel("playback-timer", tickDuration, wheelSize,
+                e -> log.error("Playback transition failed", e));
+    }
+
+    /**
+     * Starts the transition timer.
+     */
+    @PostConstruct
+    public void start() {
+        wheel.start();
+    }
+
+    /**
+     * Stops the transition timer; running sessions stop recording plays.
+     */
+    @PreDestroy
+    public void stop() {
+        wheel.close();
+    }
+
+    /**
+     * Starts playing a slideshow. The image on screen is recorded right away.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param epochStart  the moment the playback started, or null for the Unix epoch
+     * @return a Mono emitting the new session
+     * @throws ResourceNotFoundException if the slideshow is not found
+     * @throws ResponseStatusException   with 503 if the maximum number of sessions is running
+     */
+    public Mono<PlaybackSession> startSession(Long slideshowId, Instant epochStart) {
+        return slideshowTimelineService.getTimeline(slideshowId)
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Slideshow", slideshowId)))
+                .flatMap(timeline -> {
+                    if (sessions.size() >= maxSessions) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                                "Too many playback sessions, retry later"));
+                    }
+                    Session session = new Session(UUID.randomUUID().toString(), slideshowId,
+                            epochStart != null ? epochStart : Instant.EPOCH, Instant.now());
+                    sessions.put(session.id, session);
+                    play(session, timeline);
+                    return Mono.just(session.toPlaybackSession());
+                });
+    }
+
+    /**
+     * Retrieves a running session.
+     *
+     * @param sessionId the ID of the session
+     * @return a Mono emitting the session
+     * @throws ResourceNotFoundException if no such session is running
+     */
+    public Mono<PlaybackSession> getSession(String sessionId) {
+        Session session = sessions.get(sessionId);
+        return session != null
+                ? Mono.just(session.toPlaybackSession())
+                : Mono.error(new ResourceNotFoundException("Playback session not found with id: " + sessionId));
+    }
+
+    /**
+     * Stops a running session.
+     *
+     * @param sessionId the ID of the session
+     * @return a Mono that completes once the session is stopped
+     * @throws ResourceNotFoundException if no such session is running
+     */
+    public Mono<Void> stopSession(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session == null) {
+            return Mono.error(new ResourceNotFoundException("Playback session not found with id: " + sessionId));
+        }
+        session.stop();
+        return Mono.empty();
+    }
+
+    /**
+     * Returns the number of running sessions.
+     *
+     * @return the number of sessions
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the number of plays that could not be recorded because the proof-of-play queue was full.
+     *
+     * @return the number of dropped plays
+     */
+    public long getDroppedPlays() {
+        return droppedPlays.get();
+    }
+
+    private void advance(Session session) {
+        if (session.stopped) {
+            return;
+        }
+        slideshowTimelineService.getTimeline(session.slideshowId)
+                // The slideshow was deleted
+                .switchIfEmpty(Mono.fromRunnable(() -> end(session)))
+                .subscribe(timeline -> play(session, timeline), e -> {
+                    log.warn("Could not load the timeline of slideshow {}", session.slideshowId, e);
+                    schedule(session, IDLE_RECHECK);
+                });
+    }
+
+    private void play(Session session, SlideshowTimeline timeline) {
+        if (session.stopped) {
+            return;
+        }
+        Instant now = Instant.now();
+        NowPlaying playing = timeline.at(session.epochStart, now);
+        if (playing == null) {
+            session.current = null;
+            schedule(session, IDLE_RECHECK);
+            return;
+        }
+        NowPlaying previous = session.current;
+        if (previous == null || !previous.getStartedAt().equals(playing.getStartedAt())) {
+            session.current = playing;
+            Instant playedAt = playing.getStartedAt().isBefore(session.startedAt) ? session.startedAt : playing.getStartedAt();
+            if (proofOfPlayIngestionService.offer(new ProofOfPlayEvent(session.slideshowId,
+                    playing.getImage().getId(), playedAt))) {
+                session.plays.incrementAndGet();
+            } else {
+                droppedPlays.incrementAndGet();
+            }
+        }
+        schedule(session, Duration.between(now, playing.getEndsAt()));
+    }
+
+    private void schedule(Session session, Duration delay) {
+        if (session.stopped) {
+            return;
+        }
+        session.timeout = wheel.schedule(() -> advance(session), delay);
+        // A stop racing with scheduling must not leave the timeout behind
+        if (session.stopped) {
+            session.timeout.cancel();
+        }
+    }
+
+    private void end(Session session) {
+        sessions.remove(session.id, session);
+        session.stop();
+    }
+
+    /**
+     * The state of a running session.
+     */
+    private static final class Session {
+
+        private final String id;
+        private final Long slideshowId;
+        private final Instant epochStart;
+        private final Instant startedAt;
+        private final AtomicLong plays = new AtomicLong();
+
+        private volatile NowPlaying current;
+        private volatile HashedTimingWheel.Timeout timeout;
+        private volatile boolean stopped;
+
+        Session(String id, Long slideshowId, Instant epochStart, Instant startedAt) {
+            this.id = id;
+            this.slideshowId = slideshowId;
+            this.epochStart = epochStart;
+            this.startedAt = startedAt;
+        }
+
+        void stop() {
+            stopped = true;
+            HashedTimingWheel.Timeout pending = timeout;
+            if (pending != null) {
+                pending.cancel();
+            }
+        }
+
+        PlaybackSession toPlaybackSession() {
+            NowPlaying playing = current;
+            return new PlaybackSession(id, slideshowId, epochStart, startedAt,
+                    playing != null ? playing.getImage().getId() : null, plays.get());
+        }
+    }
+}
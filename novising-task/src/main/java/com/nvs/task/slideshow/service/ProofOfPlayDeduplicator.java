@@ -0,0 +1,136 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.util.RotatingBloomFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+
+/**
+ * Recognizes proof-of-play events that were already accepted within a time window.
+ * <p>
+ * Players retry submissions that timed out, so the same play may arrive several times. Each
+ * play is identified by the idempotency key supplied by the client or, when absent, by the
+ * slideshow, image and client timestamp. Identities are remembered in a
+ * {@link RotatingBloomFilter}, which keeps memory fixed however many events arrive; the price
+ * is a small configurable rate of genuine plays being taken for duplicates.
+ * <p>
+ * Checking and remembering a play is one atomic step, so of several concurrent retries of the
+ * same play exactly one is accepted. A play accepted but then not queued is released: a Bloom
+ * filter cannot forget it, so its identity is set aside and its next submission accepted once.
+ * At most {@value #MAX_RELEASED} identities are set aside; beyond that the oldest are forgotten
+ * and their retries taken for duplicates.
+ * <p>
+ * Plays submitted without idempotency key or client timestamp cannot be told apart from new
+ * plays and are never treated as duplicates.
+ */
+@Component
+public class ProofOfPlayDeduplicator {
+
+    private static final long SEED_1 = 0x9E3779B97F4A7C15L;
+    private static final long SEED_2 = 0xC2B2AE3D27D4EB4FL;
+
+    static final int MAX_RELEASED = 4096;
+
+    private final boolean enabled;
+    private final Clock clock;
+    private final RotatingBloomFilter filter;
+    // Identities of plays accepted but not queued, oldest first
+    private final LinkedHashSet<Long> released = new LinkedHashSet<>();
+
+    /**
+     * Constructs a new ProofOfPlayDeduplicator.
+     *
+     * @param enabled                  whether duplicates are filtered at all
+     * @param window                   how long accepted plays are remembered at least
+     * @param expectedEventsPerWindow  the number of plays expected within one window
+     * @param falsePositiveRate        the acceptable rate of new plays taken for duplicates
+     */
+    @Autowired
+    public ProofOfPlayDeduplicator(@Value("${proof-of-play.dedup.enabled:true}") boolean enabled,
+                                   @Value("${proof-of-play.dedup.window:10m}") Duration window,
+                                   @Value("${proof-of-play.dedup.expected-events-per-window:1000000}") long expectedEventsPerWindow,
+                                   @Value("${proof-of-play.dedup.false-positive-rate:0.0001}") double falsePositiveRate) {
+        this(enabled, window, expectedEventsPerWindow, falsePositiveRate, Clock.systemUTC());
+    }
+
+    ProofOfPlayDeduplicator(boolean enabled, Duration window, long expectedEventsPerWindow,
+                            double falsePositiveRate, Clock clock) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.filter = new RotatingBloomFilter(expectedEventsPerWindow, falsePositiveRate, window.toMillis(), clock.millis());
+    }
+
+    /**
+     * Accepts a play unless the same play was already accepted within the window. Checking and
+     * remembering the play happen atomically.
+     *
+     * @param slideshowId    the ID of the slideshow
+     * @param imageId        the ID of the image
+     * @param playedAt       the client timestamp of the play, or null
+     * @param idempotencyKey the key supplied by the client, or null
+     * @return true if the play is new and is now remembered, false if it is a duplicate
+     */
+    public boolean tryAccept(long slideshowId, long imageId, Instant playedAt, String idempotencyKey) {
+        if (!enabled || (idempotencyKey == null && playedAt == null)) {
+            return true;
+        }
+        long identity = identity(slideshowId, imageId, playedAt, idempotencyKey);
+        synchronized (released) {
+            if (released.remove(identity)) {
+                return true;
+            }
+        }
+        return filter.putIfAbsent(mix(identity ^ SEED_1), mix(identity ^ SEED_2) | 1, clock.millis());
+    }
+
+    /**
+     * Releases a play accepted by {@link #tryAccept} that could not be queued, so that its next
+     * submission is accepted again.
+     *
+     * @param slideshowId    the ID of the slideshow
+     * @param imageId        the ID of the image
+     * @param playedAt       the client timestamp of the play, or null
+     * @param idempotencyKey the key supplied by the client, or null
+     */
+    public void release(long slideshowId, long imageId, Instant playedAt, String idempotencyKey) {
+        if (!enabled || (idempotencyKey == null && playedAt == null)) {
+            return;
+        }
+        long identity = identity(slideshowId, imageId, playedAt, idempotencyKey);
+        synchronized (released) {
+            if (released.size() >= MAX_RELEASED) {
+                released.remove(released.iterator().next());
+            }
+            released.add(identity);
+        }
+    }
+
+    private static long identity(long slideshowId, long imageId, Instant playedAt, String idempotencyKey) {
+        long hash = mix(slideshowId + SEED_1);
+        if (idempotencyKey != null) {
+            // Keys are scoped to the slideshow; the image is part of the play the key stands for
+            for (byte b : idempotencyKey.getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ b) * 0x100000001B3L;
+            }
+            return mix(hash);
+        }
+        hash = mix(hash ^ imageId);
+        hash = mix(hash ^ playedAt.getEpochSecond());
+        return mix(hash ^ playedAt.getNano());
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
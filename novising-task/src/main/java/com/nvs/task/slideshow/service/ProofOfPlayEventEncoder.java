@@ -0,0 +1,229 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Encodes proof-of-play events into Kafka message payloads.
+ * <p>
+ * The event has a fixed shape, so instead of building a map and running it through a
+ * reflective {@code ObjectMapper}, the payload is written directly into a reusable per-thread
+ * scratch buffer and copied out once into an exactly sized array that Kafka can own.
+ * <p>
+ * Two formats are supported, selected with {@code proof-of-play.encoding}:
+ * <ul>
+ *     <li>{@code json} (default): the same JSON document as before,
+ *     {@code {"slideshowId":1,"imageId":2,"timestamp":"2024-05-01T10:15:30.123","eventType":"PROOF_OF_PLAY"}},
+ *     with the timestamp formatted like {@link LocalDateTime#toString()} in the system time zone.</li>
+ *     <li>{@code binary}: a 30-byte big-endian record
+ *     {@code [byte version=1][byte eventType=1][long slideshowId][long imageId][long epochSecond][int nano]}.</li>
+ * </ul>
+ * The format is announced in the {@code content-type} header of every record.
+ */
+@Component
+public class ProofOfPlayEventEncoder {
+
+    /**
+     * Content type of JSON encoded events.
+     */
+    public static final String JSON_CONTENT_TYPE = "application/json";
+
+    /**
+     * Content type of binary encoded events.
+     */
+    public static final String BINARY_CONTENT_TYPE = "application/vnd.nvs.proof-of-play.v1";
+
+    private static final byte BINARY_VERSION = 1;
+    private static final byte EVENT_TYPE_PROOF_OF_PLAY = 1;
+    private static final int BINARY_SIZE = 30;
+
+    private static final byte[] SLIDESHOW_ID_FIELD = ascii("{\"slideshowId\":");
+    private static final byte[] IMAGE_ID_FIELD = ascii(",\"imageId\":");
+    private static final byte[] TIMESTAMP_FIELD = ascii(",\"timestamp\":\"");
+    private static final byte[] EVENT_TYPE_FIELD = ascii("\",\"eventType\":\"PROOF_OF_PLAY\"}");
+    private static final byte[] MIN_LONG = ascii(Long.toString(Long.MIN_VALUE));
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private final boolean binary;
+    private final ZoneId zone;
+    private final byte[] contentType;
+
+    /**
+     * Constructs a new ProofOfPlayEventEncoder.
+     *
+     * @param encoding the payload format, either {@code json} or {@code binary}
+     */
+    @Autowired
+    public ProofOfPlayEventEncoder(@Value("${proof-of-play.encoding:json}") String encoding) {
+        this(encoding, ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructs a new ProofOfPlayEventEncoder using the given time zone for JSON timestamps.
+     *
+     * @param encoding the payload format, either {@code json} or {@code binary}
+     * @param zone     the time zone used to format JSON timestamps
+     */
+    ProofOfPlayEventEncoder(String encoding, ZoneId zone) {
+        if (!"json".equalsIgnoreCase(encoding) && !"binary".equalsIgnoreCase(encoding)) {
+            throw new IllegalArgumentException("Unsupported proof-of-play encoding: " + encoding);
+        }
+        this.binary = "binary".equalsIgnoreCase(encoding);
+        this.zone = zone;
+        this.contentType = ascii(binary ? BINARY_CONTENT_TYPE : JSON_CONTENT_TYPE);
+    }
+
+    /**
+     * Returns the value of the {@code content-type} header for encoded events.
+     * The returned array is shared and must not be modified.
+     *
+     * @return the content type as US-ASCII bytes
+     */
+    public byte[] contentType() {
+        return contentType;
+    }
+
+    /**
+     * Encodes an event in the configured format.
+     *
+     * @param event the event to encode
+     * @return a new array holding exactly the encoded payload
+     */
+    public byte[] encode(ProofOfPlayEvent event) {
+        byte[] buffer = SCRATCH.get();
+        int length = binary ? writeBinary(event, buffer) : writeJson(event, buffer);
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private int writeBinary(ProofOfPlayEvent event, byte[] buffer) {
+        buffer[0] = BINARY_VERSION;
+        buffer[1] = EVENT_TYPE_PROOF_OF_PLAY;
+        putLong(buffer, 2, event.getSlideshowId());
+        putLong(buffer, 10, event.getImageId());
+        putLong(buffer, 18, event.getPlayedAt().getEpochSecond());
+        putInt(buffer, 26, event.getPlayedAt().getNano());
+        return BINARY_SIZE;
+    }
+
+    private int writeJson(ProofOfPlayEvent event, byte[] buffer) {
+        int position = put(buffer, 0, SLIDESHOW_ID_FIELD);
+        position = putDecimal(buffer, position, event.getSlideshowId());
+        position = put(buffer, position, IMAGE_ID_FIELD);
+        position = putDecimal(buffer, position, event.getImageId());
+        position = put(buffer, position, TIMESTAMP_FIELD);
+        position = putLocalDateTime(buffer, position, event.getPlayedAt());
+        return put(buffer, position, EVENT_TYPE_FIELD);
+    }
+
+    /**
+     * Writes the instant in the configured zone, formatted exactly like {@link LocalDateTime#toString()}.
+     */
+    private int putLocalDateTime(byte[] buffer, int position, Instant instant) {
+        long localSecond = instant.getEpochSecond() + zone.getRules().getOffset(instant).getTotalSeconds();
+        long epochDay = Math.floorDiv(localSecond, 86_400);
+        int secondOfDay = (int) Math.floorMod(localSecond, 86_400);
+
+        // Civil date from days since 1970-01-01 (proleptic Gregorian calendar)
+        long days = epochDay + 719_468;
+        long era = Math.floorDiv(days, 146_097);
+        long dayOfEra = days - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year < 0 || year > 9999) {
+            // Outside the four-digit range LocalDate adds signs; not worth a hand-written path
+            return put(buffer, position, ascii(LocalDateTime.ofInstant(instant, zone).toString()));
+        }
+
+        position = putDigits(buffer, position, (int) year, 4);
+        buffer[position++] = '-';
+        position = putDigits(buffer, position, month, 2);
+        buffer[position++] = '-';
+        position = putDigits(buffer, position, day, 2);
+        buffer[position++] = 'T';
+        position = putDigits(buffer, position, secondOfDay / 3_600, 2);
+        buffer[position++] = ':';
+        position = putDigits(buffer, position, secondOfDay / 60 % 60, 2);
+
+        int second = secondOfDay % 60;
+        int nano = instant.getNano();
+        if (second > 0 || nano > 0) {
+            buffer[position++] = ':';
+            position = putDigits(buffer, position, second, 2);
+            if (nano > 0) {
+                buffer[position++] = '.';
+                if (nano % 1_000_000 == 0) {
+                    position = putDigits(buffer, position, nano / 1_000_000, 3);
+                } else if (nano % 1_000 == 0) {
+                    position = putDigits(buffer, position, nano / 1_000, 6);
+                } else {
+                    position = putDigits(buffer, position, nano, 9);
+                }
+            }
+        }
+        return position;
+    }
+
+    private static int putDecimal(byte[] buffer, int position, long value) {
+        if (value == Long.MIN_VALUE) {
+            return put(buffer, position, MIN_LONG);
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits;
+    }
+
+    private static int putDigits(byte[] buffer, int position, int value, int width) {
+        for (int i = position + width - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + width;
+    }
+
+    private static int put(byte[] buffer, int position, byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    private static void putLong(byte[] buffer, int position, long value) {
+        for (int i = 7; i >= 0; i--) {
+            buffer[position + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static void putInt(byte[] buffer, int position, int value) {
+        for (int i = 3; i >= 0; i--) {
+            buffer[position + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,185 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Ingestion stage for proof-of-play events.
+ * <p>
+ * Events are accepted into a bounded in-memory queue and drained by a single background
+ * pipeline that groups them into batches. A batch is flushed to Kafka as soon as it reaches
+ * the configured size or the linger time elapses, whichever happens first. When the queue is
+ * full the caller gets a 503 instead of the service buffering without limit.
+ * <p>
+ * Batches are published off the request threads, and only a bounded number of batches may wait
+ * for broker acknowledgement at once. A slow broker therefore fills the queue and slows intake
+ * down rather than growing the producer buffer.
+ * <p>
+ * A batch the broker does not acknowledge is published again, with exponential backoff, until it
+ * is acknowledged. While the broker is unavailable the batches being retried hold their slots, so
+ * the queue fills up and new events are refused with 503 instead of being accepted and lost.
+ * Delivery is at least once: a retried batch may repeat events the broker already stored. Only
+ * batches still failing when the service stops are dropped.
+ * <p>
+ * When a {@link ProofOfPlayOutbox} is configured, events are appended to it instead and its
+ * relay takes care of publishing them. Accepted events are also handed to the
+ * {@link ProofOfPlayPersistenceService}, when enabled, to be stored in the database, and
+ * counted by the {@link PlayCountRollupService}.
+ */
+@Slf4j
+@Service
+public class ProofOfPlayIngestionService {
+
+    private final KafkaProducerService kafkaProducerService;
+    private final Duration retryBackoff;
+    private final Duration maxRetryBackoff;
+    private final Duration shutdownTimeout;
+    private final BatchingQueue<ProofOfPlayEvent> queue;
+
+    private volatile boolean stopped;
+
+    private ProofOfPlayOutbox outbox;
+
+    private ProofOfPlayPersistenceService persistenceService;
+
+    private PlayCountRollupService playCountRollupService;
+
+    /**
+     * Constructs a new ProofOfPlayIngestionService.
+     *
+     * @param kafkaProducerService the service used to publish flushed batches
+     * @param queueCapacity        the maximum number of events waiting to be flushed
+     * @param batchSize            the maximum number of events per flushed batch
+     * @param maxLinger            the maximum time an event waits before its batch is flushed
+     * @param maxInFlightBatches   the maximum number of batches awaiting broker acknowledgement
+     * @param retryBackoff         the wait before a failed batch is first published again
+     * @param maxRetryBackoff      the longest wait between two attempts to publish a failed batch
+     * @param shutdownTimeout      how long shutdown waits for queued events to be flushed
+     */
+    public ProofOfPlayIngestionService(KafkaProducerService kafkaProducerService,
+                                       @Value("${proof-of-play.ingestion.queue-capacity:16384}") int queueCapacity,
+                                       @Value("${proof-of-play.ingestion.batch-size:500}") int batchSize,
+                                       @Value("${proof-of-play.ingestion.max-linger:50ms}") Duration maxLinger,
+                                       @Value("${proof-of-play.ingestion.max-in-flight-batches:4}") int maxInFlightBatches,
+                                       @Value("${proof-of-play.ingestion.retry-backoff:100ms}") Duration retryBackoff,
+                                       @Value("${proof-of-play.ingestion.max-retry-backoff:10s}") Duration maxRetryBackoff,
+                                       @Value("${proof-of-play.ingestion.shutdown-timeout:10s}") Duration shutdownTimeout) {
+        this.kafkaProducerService = kafkaProducerService;
+        this.retryBackoff = retryBackoff;
+        this.maxRetryBackoff = maxRetryBackoff;
+        this.shutdownTimeout = shutdownTimeout;
+        this.queue = new BatchingQueue<>("proof-of-play-publisher", queueCapacity, batchSize, maxLinger,
+                maxInFlightBatches, this::flush);
+    }
+
+    /**
+     * Routes accepted events to the durable outbox instead of the in-memory queue.
+     *
+     * @param outbox the outbox to append events to
+     */
+    @Autowired(required = false)
+    public void setOutbox(ProofOfPlayOutbox outbox) {
+        this.outbox = outbox;
+    }
+
+    /**
+     * Stores accepted events in the database in addition to publishing them.
+     *
+     * @param persistenceService the service storing proof-of-play rows
+     */
+    @Autowired(required = false)
+    public void setPersistenceService(ProofOfPlayPersistenceService persistenceService) {
+        this.persistenceService = persistenceService;
+    }
+
+    /**
+     * Counts accepted events in the play-count rollups.
+     *
+     * @param playCountRollupService the service keeping play counters
+     */
+    @Autowired(required = false)
+    public void setPlayCountRollupService(PlayCountRollupService playCountRollupService) {
+        this.playCountRollupService = playCountRollupService;
+    }
+
+    /**
+     * Starts the background pipeline that drains the queue in batches.
+     */
+    @PostConstruct
+    public void start() {
+        queue.start();
+    }
+
+    /**
+     * Stops accepting events and waits for the events already queued to be flushed.
+     * Batches that are still failing afterwards are no longer retried.
+     */
+    @PreDestroy
+    public void stop() {
+        try {
+            queue.stop(shutdownTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Proof-of-play queue was not fully flushed on shutdown", e);
+        } finally {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Submits an event for asynchronous delivery.
+     *
+     * @param event the event to deliver
+     * @return a Mono that completes once the event is queued, or errors with 503 if the queue is full
+     */
+    public Mono<Void> submit(ProofOfPlayEvent event) {
+        return Mono.defer(() -> offer(event)
+                ? Mono.empty()
+                : Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Proof-of-play queue is full, retry later")));
+    }
+
+    /**
+     * Tries to add an event to the queue without waiting.
+     *
+     * @param event the event to queue
+     * @return true if the event was queued, false if the queue is full or the service is stopped
+     */
+    public boolean offer(ProofOfPlayEvent event) {
+        boolean accepted = outbox != null ? outbox.append(event) : queue.offer(event);
+        if (accepted && persistenceService != null) {
+            persistenceService.offer(event);
+        }
+        if (accepted && playCountRollupService != null) {
+            playCountRollupService.record(event);
+        }
+        return accepted;
+    }
+
+    private Mono<Void> flush(List<ProofOfPlayEvent> batch) {
+        return Mono.defer(() -> kafkaProducerService.sendProofOfPlayEvents(batch))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, retryBackoff)
+                        .maxBackoff(maxRetryBackoff)
+                        .filter(e -> !stopped)
+                        .doBeforeRetry(signal -> log.warn("Failed to publish {} proof-of-play events, retry {}",
+                                batch.size(), signal.totalRetries() + 1, signal.failure())))
+                .onErrorResume(e -> {
+                    log.error("Dropped {} proof-of-play events that could not be published before shutdown",
+                            batch.size(), e);
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,152 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Durable outbox in front of Kafka for proof-of-play events.
+ * <p>
+ * Events are appended to a local memory-mapped log, which survives a restart of the
+ * application, and a background relay drains the log to Kafka in batches. Records are
+ * acknowledged in the log only after the broker acknowledged them, so delivery is
+ * at-least-once: a batch interrupted by a failure or a restart is sent again.
+ * <p>
+ * The outbox is enabled with {@code proof-of-play.outbox.enabled=true}; while it is active
+ * the ingestion queue hands every event to it instead of publishing directly.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "proof-of-play.outbox", name = "enabled", havingValue = "true")
+public class ProofOfPlayOutbox {
+
+    private final KafkaProducerService kafkaProducerService;
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+    private final int batchSize;
+    private final Duration pollInterval;
+
+    private final Scheduler relayScheduler = Schedulers.newSingle("proof-of-play-outbox-relay");
+
+    private ProofOfPlayOutboxLog outboxLog;
+    private Disposable relay;
+
+    /**
+     * Constructs a new ProofOfPlayOutbox.
+     *
+     * @param kafkaProducerService the service used to publish relayed events
+     * @param directory            the directory holding the outbox segment files
+     * @param recordsPerSegment    the number of events stored in one segment file
+     * @param maxSegments          the maximum number of segment files before appends are refused
+     * @param batchSize            the maximum number of events relayed in one batch
+     * @param pollInterval         how often the relay checks the log for new events
+     */
+    public ProofOfPlayOutbox(KafkaProducerService kafkaProducerService,
+                             @Value("${proof-of-play.outbox.directory:data/outbox}") String directory,
+                             @Value("${proof-of-play.outbox.records-per-segment:524288}") int recordsPerSegment,
+                             @Value("${proof-of-play.outbox.max-segments:64}") int maxSegments,
+                             @Value("${proof-of-play.outbox.batch-size:1000}") int batchSize,
+                             @Value("${proof-of-play.outbox.poll-interval:100ms}") Duration pollInterval) {
+        this.kafkaProducerService = kafkaProducerService;
+        this.directory = Path.of(directory);
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxSegments = maxSegments;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Opens the outbox log and starts the relay.
+     *
+     * @throws IOException if the outbox directory cannot be opened
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        outboxLog = ProofOfPlayOutboxLog.open(directory, recordsPerSegment, maxSegments);
+        log.info("Opened proof-of-play outbox in {} with {} pending events", directory, outboxLog.backlog());
+        relay = Flux.interval(pollInterval, relayScheduler)
+                .onBackpressureDrop()
+                .concatMap(tick -> drain())
+                .subscribe();
+    }
+
+    /**
+     * Stops the relay and closes the outbox log. Undelivered events stay on disk.
+     */
+    @PreDestroy
+    public void stop() {
+        if (relay != null) {
+            relay.dispose();
+        }
+        relayScheduler.dispose();
+        try {
+            if (outboxLog != null) {
+                outboxLog.close();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close proof-of-play outbox", e);
+        }
+    }
+
+    /**
+     * Appends an event to the outbox.
+     *
+     * @param event the event to store
+     * @return true if the event was stored, false if the outbox is full or cannot be written
+     */
+    public boolean append(ProofOfPlayEvent event) {
+        try {
+            return outboxLog.append(event);
+        } catch (IOException e) {
+            log.error("Failed to append to proof-of-play outbox", e);
+            return false;
+        }
+    }
+
+    private Mono<Void> drain() {
+        return Mono.defer(this::relayBatch)
+                .repeat()
+                .takeUntil(relayed -> relayed < batchSize)
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("Proof-of-play outbox relay failed, retrying on next poll", e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Integer> relayBatch() {
+        List<ProofOfPlayEvent> batch = outboxLog.read(batchSize);
+        if (batch.isEmpty()) {
+            return Mono.just(0);
+        }
+        return kafkaProducerService.sendProofOfPlayEvents(batch)
+                // Acknowledgements arrive on the producer I/O thread; continue on the relay thread
+                .publishOn(relayScheduler)
+                .then(Mono.fromRunnable(() -> acknowledge(batch.size())))
+                .thenReturn(batch.size());
+    }
+
+    private void acknowledge(int count) {
+        try {
+            outboxLog.acknowledge(count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of proof-of-play events stored in memory-mapped segment files.
+ * <p>
+ * Every event occupies a fixed-size record, so a record index maps directly to a segment
+ * and an offset inside it. A record is laid out as
+ * {@code [int magic][long slideshowId][long imageId][long epochSecond][int nano]};
+ * the magic number is written last and marks the record as complete, which lets
+ * {@link #open} find the end of the log after a restart. The index of the first
+ * unacknowledged record is kept in a small mapped checkpoint file, and segments that lie
+ * entirely before it are deleted.
+ * <p>
+ * Appends may come from any thread. Reads and acknowledgements are expected from a single
+ * relay thread.
+ */
+final class ProofOfPlayOutboxLog implements Closeable {
+
+    static final int RECORD_SIZE = 32;
+
+    private static final int MAGIC = 0x504F5031;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final FileChannel checkpointChannel;
+    private final MappedByteBuffer checkpoint;
+
+    private long writeIndex;
+    private volatile long publishedWriteIndex;
+    private volatile long readIndex;
+
+    private ProofOfPlayOutboxLog(Path directory, int recordsPerSegment, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxSegments = maxSegments;
+        this.checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+    }
+
+    /**
+     * Opens the log in the given directory, recovering the segments and checkpoint left by a previous run.
+     *
+     * @param directory         the directory holding the segment files
+     * @param recordsPerSegment the number of records stored in one segment file
+     * @param maxSegments       the maximum number of segments kept on disk before appends are refused
+     * @return the opened log
+     * @throws IOException if the directory or its files cannot be accessed
+     */
+    static ProofOfPlayOutboxLog open(Path directory, int recordsPerSegment, int maxSegments) throws IOException {
+        Files.createDirectories(directory);
+        ProofOfPlayOutboxLog log = new ProofOfPlayOutboxLog(directory, recordsPerSegment, maxSegments);
+        log.recover();
+        return log;
+    }
+
+    /**
+     * Appends an event to the end of the log.
+     *
+     * @param event the event to append
+     * @return true if the event was appended, false if the log has reached its segment limit
+     * @throws IOException if a new segment file cannot be created
+     */
+    synchronized boolean append(ProofOfPlayEvent event) throws IOException {
+        long segmentNumber = writeIndex / recordsPerSegment;
+        Segment segment = segments.get(segmentNumber);
+        if (segment == null) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            segment = openSegment(segmentNumber);
+            segments.put(segmentNumber, segment);
+        }
+
+        int offset = offsetOf(writeIndex);
+        MappedByteBuffer buffer = segment.buffer();
+        buffer.putLong(offset + 4, event.getSlideshowId());
+        buffer.putLong(offset + 12, event.getImageId());
+        buffer.putLong(offset + 20, event.getPlayedAt().getEpochSecond());
+        buffer.putInt(offset + 28, event.getPlayedAt().getNano());
+        buffer.putInt(offset, MAGIC);
+
+        writeIndex++;
+        publishedWriteIndex = writeIndex;
+        return true;
+    }
+
+    /**
+     * Reads up to {@code maxRecords} events starting at the first unacknowledged record.
+     *
+     * @param maxRecords the maximum number of events to read
+     * @return the events read, possibly empty
+     */
+    List<ProofOfPlayEvent> read(int maxRecords) {
+        long from = readIndex;
+        long to = Math.min(publishedWriteIndex, from + maxRecords);
+        List<ProofOfPlayEvent> events = new ArrayList<>((int) Math.max(0, to - from));
+        for (long index = from; index < to; index++) {
+            MappedByteBuffer buffer = segments.get(index / recordsPerSegment).buffer();
+            int offset = offsetOf(index);
+            events.add(new ProofOfPlayEvent(
+                    buffer.getLong(offset + 4),
+                    buffer.getLong(offset + 12),
+                    Instant.ofEpochSecond(buffer.getLong(offset + 20), buffer.getInt(offset + 28))));
+        }
+        return events;
+    }
+
+    /**
+     * Marks the given number of records, counted from the first unacknowledged one, as delivered.
+     * The checkpoint is advanced and segments that are no longer needed are deleted.
+     *
+     * @param count the number of records that were delivered
+     * @throws IOException if a consumed segment cannot be deleted
+     */
+    void acknowledge(int count) throws IOException {
+        readIndex += count;
+        checkpoint.putLong(0, readIndex);
+
+        long firstLiveSegment = readIndex / recordsPerSegment;
+        Map<Long, Segment> consumed = segments.headMap(firstLiveSegment);
+        for (Segment segment : consumed.values()) {
+            segment.channel().close();
+            Files.deleteIfExists(segment.path());
+        }
+        consumed.clear();
+    }
+
+    /**
+     * Returns the number of records appended but not yet acknowledged.
+     *
+     * @return the backlog size
+     */
+    long backlog() {
+        return publishedWriteIndex - readIndex;
+    }
+
+    /**
+     * Flushes mapped pages to disk and releases all file handles.
+     *
+     * @throws IOException if a file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.buffer().force();
+            segment.channel().close();
+        }
+        segments.clear();
+        checkpoint.force();
+        checkpointChannel.close();
+    }
+
+    private void recover() throws IOException {
+        readIndex = checkpoint.getLong(0);
+        long firstLiveSegment = readIndex / recordsPerSegment;
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long segmentNumber = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            if (segmentNumber < firstLiveSegment) {
+                Files.deleteIfExists(file);
+            } else {
+                segments.put(segmentNumber, openSegment(segmentNumber));
+            }
+        }
+
+        writeIndex = readIndex;
+        if (!segments.isEmpty()) {
+            Map.Entry<Long, Segment> last = segments.lastEntry();
+            long index = Math.max(readIndex, last.getKey() * recordsPerSegment);
+            long end = (last.getKey() + 1) * recordsPerSegment;
+            MappedByteBuffer buffer = last.getValue().buffer();
+            while (index < end && buffer.getInt(offsetOf(index)) == MAGIC) {
+                index++;
+            }
+            writeIndex = index;
+        }
+        publishedWriteIndex = writeIndex;
+    }
+
+    private Segment openSegment(long segmentNumber) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", segmentNumber, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        return new Segment(path, channel, buffer);
+    }
+
+    private int offsetOf(long index) {
+        return (int) (index % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    private record Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+    }
+}
@@ -0,0 +1,110 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import com.nvs.task.slideshow.repository.ProofOfPlayRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistence stage that stores proof-of-play events in the {@code slideshow_proof_of_play} table.
+ * <p>
+ * Events are collected in a bounded queue and written with one multi-row INSERT per batch.
+ * A batch is written when it reaches {@code proof-of-play.persistence.batch-size} rows or when
+ * {@code proof-of-play.persistence.flush-interval} elapses. Persistence is a secondary copy of
+ * the Kafka stream: when the queue is full the event is still published, but it is not stored
+ * and the number of skipped rows is logged with the next flush.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "proof-of-play.persistence", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ProofOfPlayPersistenceService {
+
+    private final ProofOfPlayRepository proofOfPlayRepository;
+    private final Duration shutdownTimeout;
+    private final BatchingQueue<ProofOfPlayEvent> queue;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Constructs a new ProofOfPlayPersistenceService.
+     *
+     * @param proofOfPlayRepository the repository used to insert batches
+     * @param queueCapacity         the maximum number of events waiting to be written
+     * @param batchSize             the maximum number of rows per INSERT statement
+     * @param flushInterval         the maximum time an event waits before its batch is written
+     * @param maxInFlightBatches    the maximum number of INSERT statements running at the same time
+     * @param shutdownTimeout       how long shutdown waits for queued events to be written
+     */
+    public ProofOfPlayPersistenceService(ProofOfPlayRepository proofOfPlayRepository,
+                                         @Value("${proof-of-play.persistence.queue-capacity:32768}") int queueCapacity,
+                                         @Value("${proof-of-play.persistence.batch-size:1000}") int batchSize,
+                                         @Value("${proof-of-play.persistence.flush-interval:200ms}") Duration flushInterval,
+                                         @Value("${proof-of-play.persistence.max-in-flight-batches:2}") int maxInFlightBatches,
+                                         @Value("${proof-of-play.persistence.shutdown-timeout:10s}") Duration shutdownTimeout) {
+        this.proofOfPlayRepository = proofOfPlayRepository;
+        this.shutdownTimeout = shutdownTimeout;
+        this.queue = new BatchingQueue<>("proof-of-play-persistence", queueCapacity,
+                Math.min(batchSize, ProofOfPlayRepository.MAX_ROWS_PER_INSERT), flushInterval, maxInFlightBatches,
+                this::write);
+    }
+
+    /**
+     * Starts writing queued events to the database.
+     */
+    @PostConstruct
+    public void start() {
+        queue.start();
+    }
+
+    /**
+     * Stops accepting events and waits for the queued ones to be written.
+     */
+    @PreDestroy
+    public void stop() {
+        try {
+            queue.stop(shutdownTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Proof-of-play rows were not fully written on shutdown", e);
+        }
+    }
+
+    /**
+     * Queues an event to be stored without waiting.
+     *
+     * @param event the event to store
+     */
+    public void offer(ProofOfPlayEvent event) {
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private Mono<Void> write(List<ProofOfPlayEvent> batch) {
+        long skipped = dropped.getAndSet(0);
+        if (skipped > 0) {
+            log.warn("Skipped storing {} proof-of-play events because the persistence queue was full", skipped);
+        }
+        return proofOfPlayRepository.insertAll(batch)
+                .doOnNext(inserted -> {
+                    if (inserted < batch.size()) {
+                        log.debug("Skipped storing {} proof-of-play events of deleted slideshows", batch.size() - inserted);
+                    }
+                })
+                .then()
+                .onErrorResume(e -> {
+                    log.error("Failed to store {} proof-of-play events", batch.size(), e);
+                    return Mono.empty();
+                });
+    }
+}
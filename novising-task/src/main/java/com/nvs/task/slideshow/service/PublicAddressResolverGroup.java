@@ -0,0 +1,135 @@
+package com.nvs.task.slideshow.service;
+
+import io.netty.resolver.AbstractAddressResolver;
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Promise;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Resolves the hosts of outbound image requests and refuses every address that is not public.
+ * <p>
+ * The HTTP client connects to the addresses this resolver returns, so the addresses checked are
+ * the addresses connected to: a host whose DNS answer changes between two lookups cannot pass a
+ * check with a public address and then be connected to a private one. IP literals, which the
+ * client would otherwise connect to without resolving, are checked as well. Lookups use the JVM
+ * resolver and run on the bounded elastic scheduler, off the event loop.
+ */
+final class PublicAddressResolverGroup extends AddressResolverGroup<InetSocketAddress> {
+
+    private final HostLookup lookup;
+
+    /**
+     * Creates a resolver group using the JVM resolver.
+     */
+    PublicAddressResolverGroup() {
+        this(InetAddress::getAllByName);
+    }
+
+    /**
+     * Creates a resolver group using the given lookup.
+     *
+     * @param lookup the lookup resolving a host name to its addresses
+     */
+    PublicAddressResolverGroup(HostLookup lookup) {
+        this.lookup = lookup;
+    }
+
+    @Override
+    protected AddressResolver<InetSocketAddress> newResolver(EventExecutor executor) {
+        return new PublicAddressResolver(executor, lookup);
+    }
+
+    /**
+     * Resolves a host name to all of its addresses.
+     */
+    @FunctionalInterface
+    interface HostLookup {
+
+        /**
+         * Resolves a host name.
+         *
+         * @param host the host name or IP literal
+         * @return the addresses of the host
+         * @throws UnknownHostException if the host cannot be resolved
+         */
+        InetAddress[] lookup(String host) throws UnknownHostException;
+    }
+
+    /**
+     * Signals that a host resolved to an address that is not public.
+     */
+    static final class NonPublicAddressException extends UnknownHostException {
+
+        NonPublicAddressException(String host) {
+            super("Host resolves to an address that is not public: " + host);
+        }
+    }
+
+    private static final class PublicAddressResolver extends AbstractAddressResolver<InetSocketAddress> {
+
+        private final HostLookup lookup;
+
+        private PublicAddressResolver(EventExecutor executor, HostLookup lookup) {
+            super(executor, InetSocketAddress.class);
+            this.lookup = lookup;
+        }
+
+        @Override
+        protected boolean doIsResolved(InetSocketAddress address) {
+            // Resolved addresses are IP literals, which must be checked as well
+            return false;
+        }
+
+        @Override
+        protected void doResolve(InetSocketAddress address, Promise<InetSocketAddress> promise) {
+            resolvePublic(address, promise, addresses -> promise.trySuccess(addresses.get(0)));
+        }
+
+        @Override
+        protected void doResolveAll(InetSocketAddress address, Promise<List<InetSocketAddress>> promise) {
+            resolvePublic(address, promise, promise::trySuccess);
+        }
+
+        private void resolvePublic(InetSocketAddress address, Promise<?> promise,
+                                   Consumer<List<InetSocketAddress>> onResolved) {
+            Runnable resolve = () -> {
+                try {
+                    onResolved.accept(publicAddresses(address));
+                } catch (UnknownHostException e) {
+                    promise.tryFailure(e);
+                }
+            };
+            if (address.isUnresolved()) {
+                Schedulers.boundedElastic().schedule(resolve);
+            } else {
+                resolve.run();
+            }
+        }
+
+        private List<InetSocketAddress> publicAddresses(InetSocketAddress address) throws UnknownHostException {
+            InetAddress[] addresses = address.isUnresolved()
+                    ? lookup.lookup(address.getHostString())
+                    : new InetAddress[]{address.getAddress()};
+            if (addresses.length == 0) {
+                throw new UnknownHostException(address.getHostString());
+            }
+            List<InetSocketAddress> resolved = new ArrayList<>(addresses.length);
+            for (InetAddress candidate : addresses) {
+                if (!ImageFetcher.isPublicAddress(candidate)) {
+                    throw new NonPublicAddressException(address.getHostString());
+                }
+                resolved.add(new InetSocketAddress(candidate, address.getPort()));
+            }
+            return resolved;
+        }
+    }
+}
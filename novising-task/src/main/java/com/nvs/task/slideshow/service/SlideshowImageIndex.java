@@ -0,0 +1,123 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.Slideshow;
+import com.nvs.task.slideshow.repository.SlideshowImageRepository;
+import com.nvs.task.slideshow.repository.SlideshowRepository;
+import com.nvs.task.slideshow.util.LongHashSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of the image IDs that belong to each slideshow.
+ * <p>
+ * The proof-of-play path only needs to know whether an image is part of a slideshow,
+ * so instead of querying the slideshow_images table for every event the membership is loaded
+ * once and served from memory afterwards. Writers keep the cache current through
+ * {@link #put(Slideshow)} and {@link #evict(Long)}.
+ * <p>
+ * Each slideshow maps to a primitive {@link LongHashSet}, so a membership check is an
+ * allocation-free O(1) probe. Cached sets are replaced on every write and never modified
+ * after they have been published.
+ * <p>
+ * Memberships changed by another instance, or directly in the database, are picked up once the
+ * cached entry is older than {@code slideshow.membership-cache.ttl}. A membership loaded while
+ * an eviction happened is returned to its caller but not cached.
+ */
+@Component
+public class SlideshowImageIndex {
+
+    private final SlideshowRepository slideshowRepository;
+    private final SlideshowImageRepository slideshowImageRepository;
+
+    private final long ttlNanos;
+
+    private final Map<Long, Entry> imageIdsBySlideshow = new ConcurrentHashMap<>();
+    // Incremented by every eviction; a loaded membership is only cached if no eviction happened meanwhile
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a new SlideshowImageIndex backed by the given repositories.
+     *
+     * @param slideshowRepository      the repository used to check that slideshows missing from the cache exist
+     * @param slideshowImageRepository the repository used to load the images of slideshows missing from the cache
+     * @param ttl                      how long a cached membership is served before it is loaded again
+     */
+    public SlideshowImageIndex(SlideshowRepository slideshowRepository,
+                               SlideshowImageRepository slideshowImageRepository,
+                               @Value("${slideshow.membership-cache.ttl:5m}") Duration ttl) {
+        this.slideshowRepository = slideshowRepository;
+        this.slideshowImageRepository = slideshowImageRepository;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Returns the image IDs of a slideshow, loading them from the repository on a cache miss
+     * or once the cached entry has expired.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @return a Mono emitting the image IDs, or an empty Mono if the slideshow does not exist
+     */
+    public Mono<LongHashSet> getImageIds(Long slideshowId) {
+        Entry cached = imageIdsBySlideshow.get(slideshowId);
+        if (cached != null && System.nanoTime() - cached.loadedAt() < ttlNanos) {
+            return Mono.just(cached.imageIds());
+        }
+        return Mono.defer(() -> {
+            long version = evictions.get();
+            return slideshowRepository.existsById(slideshowId)
+                    .filter(exists -> exists)
+                    .flatMap(exists -> slideshowImageRepository.findImageIds(slideshowId).collectList())
+                    .map(ids -> {
+                        Entry loaded = new Entry(LongHashSet.of(ids), System.nanoTime());
+                        if (evictions.get() == version) {
+                            // A concurrent writer may have stored a newer value in the meantime; keep it
+                            Entry current = imageIdsBySlideshow.compute(slideshowId, (key, previous) ->
+                                    previous != null && previous != cached ? previous : loaded);
+                            // An eviction racing with the store above must not leave the loaded entry behind
+                            if (evictions.get() != version) {
+                                imageIdsBySlideshow.remove(slideshowId, loaded);
+                            }
+                            return current.imageIds();
+                        }
+                        return loaded.imageIds();
+                    });
+        });
+    }
+
+    /**
+     * Stores the current membership of a slideshow, replacing any cached value.
+     *
+     * @param slideshow the slideshow that was just saved
+     */
+    public void put(Slideshow slideshow) {
+        if (slideshow.getId() != null) {
+            imageIdsBySlideshow.put(slideshow.getId(),
+                    new Entry(LongHashSet.of(slideshow.getImageIds()), System.nanoTime()));
+        }
+    }
+
+    /**
+     * Removes a slideshow from the cache.
+     *
+     * @param slideshowId the ID of the slideshow to remove
+     */
+    public void evict(Long slideshowId) {
+        evictions.incrementAndGet();
+        imageIdsBySlideshow.remove(slideshowId);
+    }
+
+    /**
+     * A cached membership and when it was loaded.
+     *
+     * @param imageIds the image IDs of the slideshow
+     * @param loadedAt the {@link System#nanoTime()} at which the membership was loaded or written
+     */
+    private record Entry(LongHashSet imageIds, long loadedAt) {
+    }
+}
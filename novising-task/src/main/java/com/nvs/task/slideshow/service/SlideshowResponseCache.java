@@ -0,0 +1,207 @@
+package com.nvs.task.slideshow.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nvs.task.slideshow.model.EntityVersion;
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.util.EntityTags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of the serialized {@code slideshowOrder} response of each slideshow.
+ * <p>
+ * Slideshows change rarely and are read by every display, so each response is serialized to
+ * JSON once and kept as bytes, both as they are and gzip-compressed, together with its ETag.
+ * Requests are answered by handing the bytes to the response without querying the database or
+ * running Jackson.
+ * <p>
+ * Writers evict an entry whenever the slideshow or one of its images changes. A response built
+ * while an eviction happened is returned to its caller but not cached. Once
+ * {@code slideshow.response-cache.max-entries} responses are cached, further ones are served
+ * without being cached until entries are evicted.
+ */
+@Component
+public class SlideshowResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+
+    private final Map<Long, CachedResponse> responses = new ConcurrentHashMap<>();
+    // Incremented by every eviction; a response is only cached if no eviction happened while it was built
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a new SlideshowResponseCache.
+     *
+     * @param objectMapper the mapper used to serialize responses, the same one used for regular responses
+     * @param maxEntries   the maximum number of cached responses
+     */
+    public SlideshowResponseCache(ObjectMapper objectMapper,
+                                  @Value("${slideshow.response-cache.max-entries:10000}") int maxEntries) {
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the cached response of a slideshow, building it from its images on a cache miss.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param loader      supplies the images of the slideshow in display order
+     * @return a Mono emitting the response; errors of the loader are passed on and not cached
+     */
+    public Mono<CachedResponse> get(Long slideshowId, Supplier<Mono<List<Image>>> loader) {
+        CachedResponse cached = responses.get(slideshowId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.defer(() -> {
+            long version = evictions.get();
+            return loader.get()
+                    .map(this::serialize)
+                    .doOnNext(response -> {
+                        if (evictions.get() == version && responses.size() < maxEntries) {
+                            responses.put(slideshowId, response);
+                            // An eviction racing with the put above must not leave the new entry behind
+                            if (evictions.get() != version) {
+                                responses.remove(slideshowId, response);
+                            }
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Returns the cached response of a slideshow without building it.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @return the response, or null if it is not cached
+     */
+    public CachedResponse peek(Long slideshowId) {
+        return responses.get(slideshowId);
+    }
+
+    /**
+     * Evicts the response of a slideshow that has changed or been deleted.
+     *
+     * @param slideshowId the ID of the slideshow
+     */
+    public void evict(Long slideshowId) {
+        evictions.incrementAndGet();
+        responses.remove(slideshowId);
+    }
+
+    /**
+     * Evicts the responses of all slideshows containing an image that has changed or been deleted.
+     *
+     * @param imageId the ID of the image
+     */
+    public void evictImage(Long imageId) {
+        evictions.incrementAndGet();
+        responses.values().removeIf(response -> response.contains(imageId));
+    }
+
+    /**
+     * Returns whether a client accepts gzip-compressed responses, according to its {@code Accept-Encoding} header.
+     *
+     * @param acceptEncoding the value of the header, or null
+     * @return true if gzip or any encoding is accepted with a non-zero quality
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!coding.equals("gzip") && !coding.equals("x-gzip") && !coding.equals("*")) {
+                continue;
+            }
+            boolean rejected = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        rejected = Double.parseDouble(parameter.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        rejected = true;
+                    }
+                }
+            }
+            if (!rejected) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CachedResponse serialize(List<Image> images) {
+        try {
+            long[] imageIds = images.stream()
+                    .map(Image::getId)
+                    .filter(Objects::nonNull)
+                    .mapToLong(Long::longValue)
+                    .sorted()
+                    .toArray();
+            String etag = EntityTags.of(images.stream()
+                    .map(image -> new EntityVersion(image.getId(), image.getVersion()))
+                    .toList());
+            return CachedResponse.of(objectMapper.writeValueAsBytes(images), imageIds, etag);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Slideshow response cannot be serialized", e);
+        }
+    }
+
+    /**
+     * A serialized response in both encodings.
+     *
+     * @param identity the JSON bytes
+     * @param gzip     the JSON bytes compressed with gzip
+     * @param imageIds the sorted IDs of the images in the response
+     * @param etag     the weak ETag of the response, derived from the versions of its images
+     */
+    public record CachedResponse(byte[] identity, byte[] gzip, long[] imageIds, String etag) {
+
+        /**
+         * Creates a response from its JSON bytes, compressing them.
+         *
+         * @param json     the JSON bytes
+         * @param imageIds the sorted IDs of the images in the response
+         * @param etag     the weak ETag of the response
+         * @return the response
+         */
+        public static CachedResponse of(byte[] json, long[] imageIds, String etag) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new CachedResponse(json, compressed.toByteArray(), imageIds, etag);
+        }
+
+        /**
+         * Returns whether an image is part of the response.
+         *
+         * @param imageId the ID of the image
+         * @return true if the response lists the image
+         */
+        public boolean contains(long imageId) {
+            return Arrays.binarySearch(imageIds, imageId) >= 0;
+        }
+    }
+}
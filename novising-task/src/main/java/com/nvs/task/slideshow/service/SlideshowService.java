@@ -1,14 +1,37 @@
 package com.nvs.task.slideshow.service;
 
 import com.nvs.task.slideshow.exception.BadRequestException;
+import com.nvs.task.slideshow.exception.ConflictException;
 import com.nvs.task.slideshow.exception.ResourceNotFoundException;
+import com.nvs.task.slideshow.model.EntityVersion;
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.NowPlaying;
+import com.nvs.task.slideshow.model.PlaybackSession;
+import com.nvs.task.slideshow.model.PlayStats;
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import com.nvs.task.slideshow.model.ProofOfPlayRecord;
+import com.nvs.task.slideshow.model.ProofOfPlayResult;
 import com.nvs.task.slideshow.model.Slideshow;
+import com.nvs.task.slideshow.model.StatsGranularity;
+import com.nvs.task.slideshow.repository.ImageRepository;
+import com.nvs.task.slideshow.repository.SlideshowImageRepository;
 import com.nvs.task.slideshow.repository.SlideshowRepository;
+import com.nvs.task.slideshow.util.EntityTags;
+import com.nvs.task.slideshow.util.KeysetPagination;
+import com.nvs.task.slideshow.util.LongHashSet;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
 /**
  * Service class for managing slideshow operations.
  * This class provides methods for creating, retrieving, updating, and deleting slideshows,
@@ -21,16 +44,49 @@ public class SlideshowService {
     private SlideshowRepository slideshowRepository;
 
     @Autowired
-    private KafkaProducerService kafkaProducerService;
+    private SlideshowImageRepository slideshowImageRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private SlideshowImageIndex slideshowImageIndex;
+
+    @Autowired
+    private SlideshowTimelineService slideshowTimelineService;
+
+    @Autowired
+    private SlideshowTransitionService slideshowTransitionService;
+
+    @Autowired
+    private SlideshowResponseCache slideshowResponseCache;
+
+    @Autowired
+    private PlaybackService playbackService;
+
+    @Autowired
+    private ProofOfPlayIngestionService proofOfPlayIngestionService;
+
+    @Autowired
+    private PlayCountRollupService playCountRollupService;
+
+    @Autowired
+    private ProofOfPlayDeduplicator proofOfPlayDeduplicator;
 
     /**
-     * Adds a new slideshow to the repository.
+     * Adds a new slideshow to the repository, together with its images.
+     * The membership index is updated once the transaction commits.
      *
      * @param slideshow The Slideshow object to be added
      * @return A Mono emitting the saved Slideshow object
+     * @throws BadRequestException if the slideshow refers to images that do not exist
      */
+    @Transactional
     public Mono<Slideshow> addSlideshow(Slideshow slideshow) {
-        return slideshowRepository.save(slideshow);
+        List<Long> imageIds = slideshow.getImageIds();
+        return slideshowRepository.save(slideshow)
+                .flatMap(saved -> saveImages(saved, imageIds))
+                .flatMap(saved -> AfterCommit.run(() -> slideshowImageIndex.put(saved)).thenReturn(saved));
     }
 
     /**
@@ -40,67 +96,365 @@ public class SlideshowService {
      * @return A Mono that completes when the deletion is done
      */
     public Mono<Void> deleteSlideshow(Long id) {
-        return slideshowRepository.deleteById(id);
+        return slideshowRepository.deleteById(id)
+                .doFinally(signal -> {
+                    slideshowImageIndex.evict(id);
+                    slideshowTimelineService.evictSlideshow(id);
+                    slideshowResponseCache.evict(id);
+                });
     }
 
     /**
      * Retrieves a slideshow from the repository by its ID.
      *
      * @param id The ID of the slideshow to be retrieved
-     * @return A Mono emitting the found Slideshow object, or an error if not found
+     * @return A Mono emitting the found Slideshow object with its image IDs in display order, or an error if not found
      */
     public Mono<Slideshow> getSlideshow(Long id) {
         return slideshowRepository.findById(id)
-                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Slideshow", id)));
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Slideshow", id)))
+                .flatMap(slideshow -> slideshowImageRepository.findImageIds(id)
+                        .collectList()
+                        .map(imageIds -> {
+                            slideshow.setImageIds(imageIds);
+                            return slideshow;
+                        }));
     }
 
     /**
-     * Retrieves all slideshows from the repository.
+     * Retrieves the images of a slideshow in the order they were added to it.
+     * The images are resolved with a single join query, so clients need no follow-up request per image.
      *
-     * @return A Flux emitting all Slideshow objects in the repository
+     * @param id The ID of the slideshow
+     * @return A Flux emitting the images of the slideshow in display order
+     * @throws ResourceNotFoundException if the slideshow is not found
      */
-    public Flux<Slideshow> getAllSlideshows() {
-        return slideshowRepository.findAll();
+    public Flux<Image> getSlideshowOrder(Long id) {
+        return slideshowImageIndex.getImageIds(id)
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Slideshow", id)))
+                .flatMapMany(imageIds -> imageIds.isEmpty()
+                        ? Flux.empty()
+                        : imageRepository.findBySlideshowInOrder(id));
     }
 
     /**
-     * Updates an existing slideshow in the repository.
+     * Retrieves the serialized images of a slideshow in display order, ready to be written to a response.
+     * The response is built once and served from memory until the slideshow or one of its images changes.
+     *
+     * @param id The ID of the slideshow
+     * @return A Mono emitting the JSON array of the images, as it is and gzip-compressed
+     * @throws ResourceNotFoundException if the slideshow is not found
+     */
+    public Mono<SlideshowResponseCache.CachedResponse> getSlideshowOrderResponse(Long id) {
+        return slideshowResponseCache.get(id, () -> getSlideshowOrder(id).collectList());
+    }
+
+    /**
+     * Retrieves the ETag of the images of a slideshow in display order, as served by {@link #getSlideshowOrderResponse}.
+     * The tag of a cached response is returned as it is; otherwise it is computed from the version
+     * indexes, without loading the images.
+     *
+     * @param id The ID of the slideshow
+     * @return A Mono emitting the tag
+     * @throws ResourceNotFoundException if the slideshow is not found
+     */
+    public Mono<String> getSlideshowOrderTag(Long id) {
+        SlideshowResponseCache.CachedResponse cached = slideshowResponseCache.peek(id);
+        if (cached != null) {
+            return Mono.just(cached.etag());
+        }
+        return slideshowImageIndex.getImageIds(id)
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Slideshow", id)))
+                .flatMap(imageIds -> imageIds.isEmpty()
+                        ? Mono.just(List.<EntityVersion>of())
+                        : imageRepository.findVersionsBySlideshowInOrder(id).collectList())
+                .map(EntityTags::of);
+    }
+
+    /**
+     * Retrieves one page of slideshows ordered by ID.
+     *
+     * @param afterId The ID of the last slideshow of the previous page, or null for the first page
+     * @param limit   The maximum number of slideshows on the page
+     * @return A Flux emitting up to {@code limit} slideshows with an ID greater than {@code afterId}
+     * @throws BadRequestException if the limit is out of range
+     */
+    public Flux<Slideshow> getSlideshows(Long afterId, int limit) {
+        return withImageIds(slideshowRepository.findPage(KeysetPagination.start(afterId),
+                KeysetPagination.checkLimit(limit)));
+    }
+
+    /**
+     * Retrieves the ETag of a page of slideshows from the version index, without loading the slideshows.
+     *
+     * @param afterId The ID of the last slideshow of the previous page, or null for the first page
+     * @param limit   The maximum number of slideshows on the page
+     * @return A Mono emitting the tag {@link #getSlideshows} would produce for the same page
+     * @throws BadRequestException if the limit is out of range
+     */
+    public Mono<String> getSlideshowPageTag(Long afterId, int limit) {
+        return slideshowRepository.findVersionPage(KeysetPagination.start(afterId), KeysetPagination.checkLimit(limit))
+                .collectList()
+                .map(EntityTags::of);
+    }
+
+    /**
+     * Streams all slideshows ordered by ID, loading them from the repository page by page as they are consumed.
+     *
+     * @param afterId The ID after which the stream starts, or null to stream all slideshows
+     * @return A Flux emitting all slideshows with an ID greater than {@code afterId}
+     */
+    public Flux<Slideshow> streamSlideshows(Long afterId) {
+        return KeysetPagination.stream(KeysetPagination.start(afterId), KeysetPagination.STREAM_PAGE_SIZE,
+                (pageAfterId, pageSize) -> withImageIds(slideshowRepository.findPage(pageAfterId, pageSize)),
+                Slideshow::getId);
+    }
+
+    /**
+     * Updates an existing slideshow in the repository, whatever its current version.
      *
      * @param id        The ID of the slideshow to be updated
      * @param slideshow The Slideshow object containing updated information
      * @return A Mono emitting the updated Slideshow object, or an error if not found
+     * @see #updateSlideshow(Long, Slideshow, Long)
      */
+    @Transactional
     public Mono<Slideshow> updateSlideshow(Long id, Slideshow slideshow) {
-        return slideshowRepository.findById(id)
+        return updateSlideshow(id, slideshow, null);
+    }
+
+    /**
+     * Updates an existing slideshow in the repository.
+     * The slideshow row is renamed and its version incremented with a single conditional
+     * {@code UPDATE ... RETURNING} statement. Images that stay in the slideshow keep the time
+     * they were added; new images are added after them. The membership index, the timeline and
+     * the cached responses of the slideshow are updated once the transaction commits.
+     *
+     * @param id              The ID of the slideshow to be updated
+     * @param slideshow       The Slideshow object containing updated information
+     * @param expectedVersion The version the update is based on, or null to update any version
+     * @return A Mono emitting the updated Slideshow object with its new version, or an error if not found
+     * @throws BadRequestException if the slideshow refers to images that do not exist
+     * @throws ConflictException   if the slideshow is no longer at the expected version
+     */
+    @Transactional
+    public Mono<Slideshow> updateSlideshow(Long id, Slideshow slideshow, Long expectedVersion) {
+        return slideshowRepository.updateName(id, slideshow.getName(), expectedVersion)
+                .switchIfEmpty(Mono.defer(() -> notUpdated(id, expectedVersion)))
+                .flatMap(saved -> saveImages(saved, slideshow.getImageIds()))
+                .flatMap(saved -> AfterCommit.run(() -> {
+                    slideshowImageIndex.put(saved);
+                    slideshowTimelineService.evictSlideshow(saved.getId());
+                    slideshowResponseCache.evict(saved.getId());
+                }).thenReturn(saved));
+    }
+
+    /**
+     * Finds the image a display is showing now, given the moment it started looping through the slideshow.
+     * The image is looked up in the compiled timeline of the slideshow with a binary search.
+     *
+     * @param id         The ID of the slideshow
+     * @param epochStart The moment the display started the slideshow, or null for the Unix epoch,
+     *                   which keeps all displays using the default on the same image
+     * @return A Mono emitting the image on screen and the time it is shown, or an empty Mono if no image is ever shown
+     * @throws ResourceNotFoundException if the slideshow is not found
+     * @throws BadRequestException       if the start lies in the future
+     */
+    public Mono<NowPlaying> getNowPlaying(Long id, Instant epochStart) {
+        Instant now = Instant.now();
+        Instant start = epochStart != null ? epochStart : Instant.EPOCH;
+        if (start.isAfter(now)) {
+            return Mono.error(new BadRequestException("epochStart must not be in the future"));
+        }
+        return slideshowTimelineService.getTimeline(id)
                 .switchIfEmpty(Mono.error(new ResourceNotFoundException("Slideshow", id)))
-                .flatMap(existingSlideshow -> {
-                    existingSlideshow.setName(slideshow.getName());
-                    existingSlideshow.setImageIds(slideshow.getImageIds());
-                    return slideshowRepository.save(existingSlideshow);
-                });
+                .flatMap(timeline -> Mono.justOrEmpty(timeline.at(start, now)));
+    }
+
+    /**
+     * Streams the image transitions of a slideshow as they happen, following the Unix epoch.
+     * All subscribers of a slideshow share one ticker.
+     *
+     * @param id The ID of the slideshow
+     * @return A Flux emitting the image on screen now and then every image replacing it
+     * @throws ResourceNotFoundException if the slideshow is not found
+     */
+    public Flux<NowPlaying> streamTransitions(Long id) {
+        return slideshowTransitionService.transitions(id);
+    }
+
+    /**
+     * Starts playing a slideshow on the server, recording a proof of play for every image shown.
+     *
+     * @param id         The ID of the slideshow
+     * @param epochStart The moment the playback started, or null for the Unix epoch
+     * @return A Mono emitting the new playback session
+     * @throws ResourceNotFoundException if the slideshow is not found
+     */
+    public Mono<PlaybackSession> startPlayback(Long id, Instant epochStart) {
+        return playbackService.startSession(id, epochStart);
+    }
+
+    /**
+     * Retrieves a running playback session.
+     *
+     * @param sessionId The ID of the session
+     * @return A Mono emitting the session, or an error if it is not running
+     */
+    public Mono<PlaybackSession> getPlayback(String sessionId) {
+        return playbackService.getSession(sessionId);
+    }
+
+    /**
+     * Stops a running playback session.
+     *
+     * @param sessionId The ID of the session
+     * @return A Mono that completes once the session is stopped, or an error if it is not running
+     */
+    public Mono<Void> stopPlayback(String sessionId) {
+        return playbackService.stopSession(sessionId);
     }
 
     /**
      * Records a proof of play for an image in a slideshow.
-     * 1. Updates the slideshow entity with the proof of play record
-     * 2. Sends a Kafka event with the proof of play information
+     * 1. Checks the image against the cached membership of the slideshow
+     * 2. Queues a proof of play event, which is published to Kafka in batches
      *
      * @param slideshowId The ID of the slideshow
      * @param imageId     The ID of the image that was displayed
-     * @return A Mono that completes when both operations are done
+     * @return A Mono that completes once the event is queued for delivery
      * @throws ResourceNotFoundException if the slideshow is not found
      * @throws BadRequestException       if the image is not part of the slideshow
      */
     public Mono<Void> recordProofOfPlay(Long slideshowId, Long imageId) {
-        return slideshowRepository.findById(slideshowId)
+        return recordProofOfPlay(slideshowId, imageId, null, null);
+    }
+
+    /**
+     * Records a proof of play for an image in a slideshow, ignoring retries.
+     * A play that was already accepted within the deduplication window, identified by its
+     * idempotency key or else by its client timestamp, completes without being queued again.
+     *
+     * @param slideshowId    The ID of the slideshow
+     * @param imageId        The ID of the image that was displayed
+     * @param playedAt       The client timestamp of the play, or null to use the time of receipt
+     * @param idempotencyKey The key identifying the play across retries, or null
+     * @return A Mono that completes once the event is queued for delivery or found to be a duplicate
+     * @throws ResourceNotFoundException if the slideshow is not found
+     * @throws BadRequestException       if the image is not part of the slideshow
+     */
+    public Mono<Void> recordProofOfPlay(Long slideshowId, Long imageId, Instant playedAt, String idempotencyKey) {
+        return slideshowImageIndex.getImageIds(slideshowId)
                 .switchIfEmpty(Mono.error(new ResourceNotFoundException("Slideshow", slideshowId)))
-                .flatMap(slideshow -> {
-                    if (!slideshow.getImageIds().contains(imageId)) {
+                .flatMap(imageIds -> {
+                    if (!imageIds.contains(imageId)) {
                         return Mono.error(new BadRequestException("Image with id " + imageId +
                                 " is not part of slideshow with id " + slideshowId));
                     }
+                    if (!proofOfPlayDeduplicator.tryAccept(slideshowId, imageId, playedAt, idempotencyKey)) {
+                        return Mono.empty();
+                    }
 
-                    return kafkaProducerService.sendProofOfPlayEvent(slideshowId, imageId);
+                    ProofOfPlayEvent event = new ProofOfPlayEvent(slideshowId, imageId,
+                            playedAt != null ? playedAt : Instant.now());
+                    return proofOfPlayIngestionService.submit(event)
+                            .doOnError(e -> proofOfPlayDeduplicator.release(slideshowId, imageId,
+                                    playedAt, idempotencyKey));
                 });
     }
-}
\ No newline at end of file
+
+    /**
+     * Records a batch of proofs of play for a slideshow.
+     * The slideshow membership is resolved once for the whole batch, and each record is checked
+     * and queued as it arrives, so large replays are processed in a single pass. Records already
+     * accepted within the deduplication window are reported as duplicates and not queued again.
+     *
+     * @param slideshowId The ID of the slideshow
+     * @param records     The records to be recorded, in the order they were played
+     * @return A Flux emitting one result per record, in submission order
+     * @throws ResourceNotFoundException if the slideshow is not found
+     */
+    public Flux<ProofOfPlayResult> recordProofOfPlayBatch(Long slideshowId, Flux<ProofOfPlayRecord> records) {
+        return slideshowImageIndex.getImageIds(slideshowId)
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Slideshow", slideshowId)))
+                .flatMapMany(imageIds -> records.index()
+                        .map(indexed -> recordProofOfPlay(slideshowId, imageIds, indexed.getT1(), indexed.getT2())));
+    }
+
+    /**
+     * Retrieves the play counts of a slideshow over a time range.
+     * When no range is given, the last hour up to now is returned.
+     *
+     * @param slideshowId The ID of the slideshow
+     * @param from        The inclusive start of the range, or null
+     * @param to          The exclusive end of the range, or null for now
+     * @param granularity The bucket size, {@code minute} or {@code hour}
+     * @return A Mono emitting the play counts per bucket and image
+     * @throws ResourceNotFoundException if the slideshow is not found
+     * @throws BadRequestException       if the granularity or range is invalid
+     */
+    public Mono<PlayStats> getPlayStats(Long slideshowId, Instant from, Instant to, String granularity) {
+        return Mono.fromCallable(() -> StatsGranularity.parse(granularity))
+                .flatMap(bucketSize -> slideshowImageIndex.getImageIds(slideshowId)
+                        .switchIfEmpty(Mono.error(new ResourceNotFoundException("Slideshow", slideshowId)))
+                        .flatMap(imageIds -> {
+                            Instant end = to != null ? to : Instant.now();
+                            Instant start = from != null ? from : end.minus(Duration.ofHours(1));
+                            return playCountRollupService.getStats(slideshowId, bucketSize, start, end);
+                        }));
+    }
+
+    private Mono<Slideshow> saveImages(Slideshow slideshow, List<Long> imageIds) {
+        if (imageIds != null && imageIds.stream().anyMatch(Objects::isNull)) {
+            return Mono.error(new BadRequestException("Image IDs must not be null"));
+        }
+        List<Long> distinct = imageIds == null ? List.of() : List.copyOf(new LinkedHashSet<>(imageIds));
+        return slideshowImageRepository.replaceImages(slideshow.getId(), distinct)
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new BadRequestException("Slideshow refers to images that do not exist"))
+                .then(Mono.fromSupplier(() -> {
+                    slideshow.setImageIds(distinct);
+                    return slideshow;
+                }));
+    }
+
+    private Mono<Slideshow> notUpdated(Long id, Long expectedVersion) {
+        Mono<Slideshow> notFound = Mono.error(new ResourceNotFoundException("Slideshow", id));
+        if (expectedVersion == null) {
+            return notFound;
+        }
+        return slideshowRepository.findVersionById(id)
+                .flatMap(version -> Mono.<Slideshow>error(new ConflictException("Slideshow", id, expectedVersion)))
+                .switchIfEmpty(notFound);
+    }
+
+    private Flux<Slideshow> withImageIds(Flux<Slideshow> slideshows) {
+        return slideshows.collectList()
+                .flatMapMany(page -> slideshowImageRepository.findImageIds(page.stream().map(Slideshow::getId).toList())
+                        .flatMapIterable(imageIds -> {
+                            page.forEach(slideshow -> slideshow.setImageIds(
+                                    imageIds.getOrDefault(slideshow.getId(), List.of())));
+                            return page;
+                        }));
+    }
+
+    private ProofOfPlayResult recordProofOfPlay(Long slideshowId, LongHashSet imageIds, long index, ProofOfPlayRecord record) {
+        Long imageId = record.getImageId();
+        if (imageId == null || !imageIds.contains(imageId)) {
+            return new ProofOfPlayResult(index, imageId, ProofOfPlayResult.Status.REJECTED,
+                    "Image with id " + imageId + " is not part of slideshow with id " + slideshowId);
+        }
+
+        if (!proofOfPlayDeduplicator.tryAccept(slideshowId, imageId, record.getPlayedAt(), record.getIdempotencyKey())) {
+            return new ProofOfPlayResult(index, imageId, ProofOfPlayResult.Status.DUPLICATE, null);
+        }
+
+        Instant playedAt = record.getPlayedAt() != null ? record.getPlayedAt() : Instant.now();
+        if (!proofOfPlayIngestionService.offer(new ProofOfPlayEvent(slideshowId, imageId, playedAt))) {
+            proofOfPlayDeduplicator.release(slideshowId, imageId, record.getPlayedAt(), record.getIdempotencyKey());
+            return new ProofOfPlayResult(index, imageId, ProofOfPlayResult.Status.REJECTED,
+                    "Proof-of-play queue is full, retry later");
+        }
+        return new ProofOfPlayResult(index, imageId, ProofOfPlayResult.Status.ACCEPTED, null);
+    }
+}
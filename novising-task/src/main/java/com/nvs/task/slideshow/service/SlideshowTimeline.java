@@ -0,0 +1,117 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.NowPlaying;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The compiled playback schedule of a slideshow.
+ * <p>
+ * Holds the images in display order together with the prefix sums of their durations, so the
+ * image on screen at any moment of a looping playback is found by a binary search instead of
+ * walking the images. Images without a positive duration are never on screen and are left out.
+ * Instances are immutable.
+ */
+public final class SlideshowTimeline {
+
+    private final Long slideshowId;
+    // Sorted IDs of all images of the slideshow, including those that are never on screen
+    private final long[] imageIds;
+    private final Image[] images;
+    // ends[i] is the offset in milliseconds, from the start of a loop, at which images[i] leaves the screen
+    private final long[] ends;
+
+    private SlideshowTimeline(Long slideshowId, long[] imageIds, Image[] images, long[] ends) {
+        this.slideshowId = slideshowId;
+        this.imageIds = imageIds;
+        this.images = images;
+        this.ends = ends;
+    }
+
+    /**
+     * Compiles the timeline of a slideshow.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param images      the images of the slideshow in display order
+     * @return the compiled timeline
+     */
+    public static SlideshowTimeline compile(Long slideshowId, List<Image> images) {
+        Image[] shown = images.stream()
+                .filter(image -> image.getDuration() > 0)
+                .toArray(Image[]::new);
+        long[] ends = new long[shown.length];
+        long end = 0;
+        for (int i = 0; i < shown.length; i++) {
+            end += shown[i].getDuration() * 1000L;
+            ends[i] = end;
+        }
+        long[] imageIds = images.stream()
+                .filter(image -> image.getId() != null)
+                .mapToLong(Image::getId)
+                .sorted()
+                .toArray();
+        return new SlideshowTimeline(slideshowId, imageIds, shown, ends);
+    }
+
+    /**
+     * Returns whether no image of the slideshow is ever on screen.
+     *
+     * @return true if the timeline holds no image
+     */
+    public boolean isEmpty() {
+        return images.length == 0;
+    }
+
+    /**
+     * Returns the time one loop through all images takes.
+     *
+     * @return the duration of a loop
+     */
+    public Duration getLoopDuration() {
+        return Duration.ofMillis(images.length == 0 ? 0 : ends[ends.length - 1]);
+    }
+
+    /**
+     * Returns whether an image was part of the slideshow when the timeline was compiled,
+     * whether or not it is ever on screen.
+     *
+     * @param imageId the ID of the image
+     * @return true if the image belongs to the slideshow
+     */
+    public boolean contains(long imageId) {
+        return Arrays.binarySearch(imageIds, imageId) >= 0;
+    }
+
+    /**
+     * Finds the image on screen at a moment of a playback that started at {@code epochStart}
+     * and has looped through the images since.
+     *
+     * @param epochStart the moment the playback started
+     * @param at         the moment to look up
+     * @return the image on screen and the time it is shown, or null if the timeline is empty
+     */
+    public NowPlaying at(Instant epochStart, Instant at) {
+        if (images.length == 0) {
+            return null;
+        }
+        long loopLength = ends[ends.length - 1];
+        Duration sinceStart = Duration.between(epochStart, at);
+        // Rounded down rather than toward zero, so moments before the start fall into the previous loop
+        long elapsed = sinceStart.getSeconds() * 1000 + sinceStart.getNano() / 1_000_000;
+        long loop = Math.floorDiv(elapsed, loopLength);
+        long offset = elapsed - loop * loopLength;
+        // The image on screen is the first one ending after the offset
+        int index = Arrays.binarySearch(ends, offset);
+        index = index >= 0 ? index + 1 : -index - 1;
+        long start = index == 0 ? 0 : ends[index - 1];
+        // Counted from the playback start rather than back from the moment looked up, so that
+        // every lookup within the same showing returns the same instants
+        Instant startedAt = epochStart.plusMillis(loop * loopLength + start);
+        return new NowPlaying(slideshowId, index, images[index], startedAt,
+                startedAt.plusMillis(ends[index] - start));
+    }
+}
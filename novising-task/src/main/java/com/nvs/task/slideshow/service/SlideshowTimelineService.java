@@ -0,0 +1,90 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.repository.ImageRepository;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the compiled {@link SlideshowTimeline} of each slideshow.
+ * <p>
+ * A timeline is compiled from the images of the slideshow on first use and served from memory
+ * afterwards. Writers evict it whenever the membership of a slideshow or the duration of one of
+ * its images may have changed, and the next lookup compiles it again. A timeline compiled while
+ * an eviction happened is returned to its caller but not cached, so an outdated schedule is never kept.
+ */
+@Service
+public class SlideshowTimelineService {
+
+    private final ImageRepository imageRepository;
+    private final SlideshowImageIndex slideshowImageIndex;
+
+    private final Map<Long, SlideshowTimeline> timelines = new ConcurrentHashMap<>();
+    // Incremented by every eviction; a compiled timeline is only cached if no eviction happened meanwhile
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a new SlideshowTimelineService.
+     *
+     * @param imageRepository     the repository used to load the images of a slideshow in display order
+     * @param slideshowImageIndex the membership cache used to tell whether a slideshow exists
+     */
+    public SlideshowTimelineService(ImageRepository imageRepository, SlideshowImageIndex slideshowImageIndex) {
+        this.imageRepository = imageRepository;
+        this.slideshowImageIndex = slideshowImageIndex;
+    }
+
+    /**
+     * Returns the timeline of a slideshow, compiling it on a cache miss.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @return a Mono emitting the timeline, or an empty Mono if the slideshow does not exist
+     */
+    public Mono<SlideshowTimeline> getTimeline(Long slideshowId) {
+        SlideshowTimeline cached = timelines.get(slideshowId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.defer(() -> {
+            long version = evictions.get();
+            return slideshowImageIndex.getImageIds(slideshowId)
+                    .flatMap(imageIds -> imageIds.isEmpty()
+                            ? Mono.just(SlideshowTimeline.compile(slideshowId, List.of()))
+                            : imageRepository.findBySlideshowInOrder(slideshowId).collectList()
+                            .map(images -> SlideshowTimeline.compile(slideshowId, images)))
+                    .doOnNext(timeline -> {
+                        if (evictions.get() == version) {
+                            timelines.put(slideshowId, timeline);
+                            // An eviction racing with the put above must not leave the new entry behind
+                            if (evictions.get() != version) {
+                                timelines.remove(slideshowId, timeline);
+                            }
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Evicts the timeline of a slideshow whose images have changed.
+     *
+     * @param slideshowId the ID of the slideshow
+     */
+    public void evictSlideshow(Long slideshowId) {
+        evictions.incrementAndGet();
+        timelines.remove(slideshowId);
+    }
+
+    /**
+     * Evicts the timelines of all slideshows showing an image that has changed or been deleted.
+     *
+     * @param imageId the ID of the image
+     */
+    public void evictImage(Long imageId) {
+        evictions.incrementAndGet();
+        timelines.values().removeIf(timeline -> timeline.contains(imageId));
+    }
+}
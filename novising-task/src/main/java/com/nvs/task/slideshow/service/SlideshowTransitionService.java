@@ -0,0 +1,86 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.exception.ResourceNotFoundException;
+import com.nvs.task.slideshow.model.NowPlaying;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pushes the image transitions of slideshows to any number of subscribers.
+ * <p>
+ * Each slideshow that has subscribers runs a single ticker, which looks up the image on screen in
+ * the compiled {@link SlideshowTimeline} and sleeps until that image ends. All subscribers of the
+ * slideshow share the ticker, so the cost of a slideshow does not grow with its audience. A new
+ * subscriber receives the image currently on screen right away. The ticker stops, and is dropped,
+ * when its last subscriber leaves.
+ * <p>
+ * Playback follows the Unix epoch, like {@code GET /slideShow/{id}/now} without a start, so every
+ * display of a slideshow shows the same image. Changes to a slideshow take effect at the next transition.
+ */
+@Service
+public class SlideshowTransitionService {
+
+    private final SlideshowTimelineService slideshowTimelineService;
+
+    private final Map<Long, Flux<NowPlaying>> tickers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new SlideshowTransitionService.
+     *
+     * @param slideshowTimelineService the service providing the compiled timelines of slideshows
+     */
+    public SlideshowTransitionService(SlideshowTimelineService slideshowTimelineService) {
+        this.slideshowTimelineService = slideshowTimelineService;
+    }
+
+    /**
+     * Subscribes to the image transitions of a slideshow.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @return a Flux emitting the image on screen now and then every image replacing it;
+     * it completes if the slideshow has no image to show
+     * @throws ResourceNotFoundException if the slideshow is not found
+     */
+    public Flux<NowPlaying> transitions(Long slideshowId) {
+        return tickers.computeIfAbsent(slideshowId, this::ticker);
+    }
+
+    /**
+     * Returns the number of slideshows that currently run a ticker.
+     *
+     * @return the number of tickers
+     */
+    public int getTickerCount() {
+        return tickers.size();
+    }
+
+    private Flux<NowPlaying> ticker(Long slideshowId) {
+        AtomicReference<Flux<NowPlaying>> self = new AtomicReference<>();
+        Mono<NowPlaying> current = Mono.defer(() -> slideshowTimelineService.getTimeline(slideshowId))
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Slideshow", slideshowId)))
+                .flatMap(timeline -> Mono.justOrEmpty(timeline.at(Instant.EPOCH, Instant.now())));
+        Flux<NowPlaying> ticker = current
+                .expand(playing -> Mono.delay(untilEnd(playing)).then(current))
+                // A timer firing a little early looks up the same showing again; the timeline reports
+                // one start per showing, so the repeat is recognised and dropped
+                .distinctUntilChanged(NowPlaying::getStartedAt)
+                // Runs when the last subscriber leaves, or on completion or error
+                .doFinally(signal -> tickers.remove(slideshowId, self.get()))
+                .replay(1)
+                .refCount();
+        self.set(ticker);
+        return ticker;
+    }
+
+    private static Duration untilEnd(NowPlaying playing) {
+        Duration remaining = Duration.between(Instant.now(), playing.getEndsAt());
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+}
@@ -0,0 +1,113 @@
+package com.nvs.task.slideshow.util;
+
+import com.nvs.task.slideshow.exception.BadRequestException;
+import com.nvs.task.slideshow.model.EntityVersion;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Builds and compares the ETags of images and slideshows.
+ * <p>
+ * Tags are derived from the versions of the rows a response is made of, not from its bytes, so
+ * they can be computed from the version indexes alone. They are weak because the same versions
+ * are served both as they are and gzip-compressed.
+ */
+public final class EntityTags {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    // Number of digest bytes kept in a tag
+    private static final int TAG_BYTES = 16;
+
+    private EntityTags() {
+    }
+
+    /**
+     * Returns the tag of a single row.
+     *
+     * @param version the version of the row, or null if it was never stored
+     * @return the weak ETag, quoted
+     */
+    public static String of(Long version) {
+        return "W/\"" + (version != null ? version : 0L) + "\"";
+    }
+
+    /**
+     * Returns the tag of a list of rows. The tag changes whenever a row is added, removed,
+     * moved or written.
+     *
+     * @param versions the IDs and versions of the rows, in the order they are listed
+     * @return the weak ETag, quoted
+     */
+    public static String of(List<EntityVersion> versions) {
+        MessageDigest digest = sha256();
+        ByteBuffer pair = ByteBuffer.allocate(2 * Long.BYTES);
+        for (EntityVersion version : versions) {
+            pair.clear();
+            pair.putLong(version.getId() != null ? version.getId() : 0L);
+            pair.putLong(version.getVersion() != null ? version.getVersion() : 0L);
+            digest.update(pair.array());
+        }
+        return "W/\"" + HEX.formatHex(digest.digest(), 0, TAG_BYTES) + "\"";
+    }
+
+    /**
+     * Returns whether an {@code If-None-Match} header matches a tag, using the weak comparison
+     * the header calls for.
+     *
+     * @param ifNoneMatch the value of the header: {@code *} or a comma-separated list of tags
+     * @param tag         the current tag of the resource
+     * @return true if the client already holds the current representation
+     */
+    public static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null || tag == null) {
+            return false;
+        }
+        String opaque = opaque(tag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || opaque(trimmed).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the version an {@code If-Match} header asks an update to be based on.
+     *
+     * @param ifMatch the value of the header: {@code *} or the tag of a single row, weak or strong
+     * @return the version, or null if the header is absent or {@code *}, which match any version
+     * @throws BadRequestException if the header is not the tag of a single row
+     */
+    public static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String opaque = opaque(ifMatch.trim());
+        if (opaque.length() >= 2 && opaque.startsWith("\"") && opaque.endsWith("\"")) {
+            try {
+                return Long.parseLong(opaque.substring(1, opaque.length() - 1));
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+        }
+        throw new BadRequestException("If-Match must be the ETag of the resource, was " + ifMatch);
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
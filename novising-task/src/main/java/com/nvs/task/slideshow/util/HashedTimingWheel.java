@@ -0,0 +1,296 @@
+package com.nvs.task.slideshow.util;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A timer for very large numbers of short-lived timeouts, run by a single thread.
+ * <p>
+ * Time is divided into ticks of a fixed duration, and the wheel is a ring of buckets with one
+ * bucket per tick. A timeout is placed in the bucket of the tick it expires in, together with the
+ * number of full turns of the wheel still to go; every tick the worker thread visits one bucket and
+ * runs the timeouts whose turns are used up. Scheduling and cancelling are O(1) and lock-free, and
+ * the cost of a tick depends on the timeouts in one bucket only, not on all timeouts pending.
+ * <p>
+ * Timeouts expire up to one tick late, never early. Tasks run on the worker thread and must not
+ * block; long work should be handed off to another executor. A task that throws does not stop the
+ * wheel; the exception is passed to the handler given at construction.
+ */
+public final class HashedTimingWheel implements AutoCloseable {
+
+    // Upper bound on the newly scheduled timeouts moved into the wheel per tick, so a burst cannot stall expiry
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Consumer<Throwable> exceptionHandler;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final Thread worker;
+
+    private volatile long startNanos;
+    private volatile boolean running;
+    // Only accessed by the worker thread
+    private long tick;
+
+    /**
+     * Creates a wheel. The worker thread is started by {@link #start()}.
+     *
+     * @param name             the name of the worker thread
+     * @param tickDuration     the duration of a tick, which is the resolution of the timer
+     * @param wheelSize        the number of buckets, rounded up to a power of two
+     * @param exceptionHandler receives the exceptions thrown by tasks
+     */
+    public HashedTimingWheel(String name, Duration tickDuration, int wheelSize, Consumer<Throwable> exceptionHandler) {
+        if (tickDuration.toMillis() < 1) {
+            throw new IllegalArgumentException("Tick duration must be at least 1ms: " + tickDuration);
+        }
+        if (wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("Wheel size must be between 1 and 2^30: " + wheelSize);
+        }
+        this.tickNanos = tickDuration.toNanos();
+        int size = Integer.highestOneBit(wheelSize) == wheelSize ? wheelSize : Integer.highestOneBit(wheelSize) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.exceptionHandler = exceptionHandler;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Starts the worker thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        running = true;
+        worker.start();
+    }
+
+    /**
+     * Stops the worker thread. Timeouts still pending never run.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Schedules a task to run once after a delay.
+     *
+     * @param task  the task to run on the worker thread
+     * @param delay the delay; zero or negative delays expire on the next tick
+     * @return the handle used to cancel the timeout
+     * @throws IllegalStateException if the wheel is not running
+     */
+    public Timeout schedule(Runnable task, Duration delay) {
+        if (!running) {
+            throw new IllegalStateException("Timing wheel is not running");
+        }
+        long deadline = System.nanoTime() - startNanos + Math.max(0, delay.toNanos());
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of timeouts that have been scheduled and have neither run nor been cancelled.
+     *
+     * @return the number of pending timeouts
+     */
+    public long pendingTimeouts() {
+        return pending.get();
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = (tick + 1) * tickNanos;
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            removeCancelled();
+            transferScheduled();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = scheduled.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != Timeout.PENDING) {
+                continue;
+            }
+            // Deadlines already in the past go into the current bucket and expire on this tick
+            long expiryTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.rounds = (expiryTick - tick) / wheel.length;
+            wheel[(int) (expiryTick & mask)].add(timeout);
+        }
+    }
+
+    private void handle(Throwable e) {
+        try {
+            exceptionHandler.accept(e);
+        } catch (RuntimeException ignored) {
+            // A failing handler must not stop the wheel
+        }
+    }
+
+    /**
+     * A scheduled task, which can be cancelled until it runs.
+     */
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final HashedTimingWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        // Only accessed by the worker thread
+        private long rounds;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(HashedTimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout, unless it has already run.
+         *
+         * @return true if the task will not run because of this call
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.pending.decrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        /**
+         * Returns whether the timeout was cancelled.
+         *
+         * @return true if {@link #cancel()} succeeded
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            wheel.pending.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                wheel.handle(e);
+            }
+        }
+    }
+
+    /**
+     * A doubly linked list of the timeouts expiring on one slot of the wheel. Only used by the worker thread.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            } else {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.rounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.nvs.task.slideshow.util;
+
+import com.nvs.task.slideshow.exception.BadRequestException;
+import com.nvs.task.slideshow.model.Image;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads images from CSV lines for the bulk import endpoint.
+ * <p>
+ * The first non-blank line is a header naming the columns; {@code url} is required, and
+ * {@code name}, {@code description} and {@code duration} are read when present. Other columns
+ * are ignored. Fields may be quoted with double quotes, and a quote inside a quoted field is
+ * written twice. Fields cannot span lines.
+ */
+public final class ImageCsvReader {
+
+    private ImageCsvReader() {
+    }
+
+    /**
+     * Converts CSV lines into images, one per non-blank line after the header.
+     *
+     * @param lines the lines of the CSV document, without line terminators
+     * @return a Flux emitting the images in input order; errors with {@link BadRequestException}
+     * if the header has no {@code url} column or a duration is not a number
+     */
+    public static Flux<Image> read(Flux<String> lines) {
+        return Flux.defer(() -> {
+            Columns header = new Columns();
+            return lines.index()
+                    .filter(line -> !line.getT2().isBlank())
+                    .<Image>handle((line, sink) -> {
+                        long lineNumber = line.getT1() + 1;
+                        List<String> fields = parseLine(stripCarriageReturn(line.getT2()));
+                        if (header.url < 0) {
+                            header.read(fields);
+                            if (header.url < 0) {
+                                sink.error(new BadRequestException("CSV header has no url column"));
+                            }
+                            return;
+                        }
+                        try {
+                            sink.next(header.toImage(fields));
+                        } catch (NumberFormatException e) {
+                            sink.error(new BadRequestException("Line " + lineNumber + ": duration is not a number"));
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Splits one CSV line into its fields.
+     *
+     * @param line the line without line terminator
+     * @return the unquoted fields
+     */
+    public static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String stripCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /**
+     * Positions of the known columns, or -1 for absent ones.
+     */
+    private static final class Columns {
+
+        private int name = -1;
+        private int url = -1;
+        private int description = -1;
+        private int duration = -1;
+
+        private void read(List<String> fields) {
+            for (int i = 0; i < fields.size(); i++) {
+                // Spreadsheet exports often start with a byte order mark
+                switch (fields.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT)) {
+                    case "name" -> name = i;
+                    case "url" -> url = i;
+                    case "description" -> description = i;
+                    case "duration" -> duration = i;
+                    default -> {
+                        // Unknown columns are ignored
+                    }
+                }
+            }
+        }
+
+        private Image toImage(List<String> fields) {
+            Image image = new Image();
+            image.setName(field(fields, name));
+            image.setUrl(field(fields, url));
+            image.setDescription(field(fields, description));
+            String seconds = field(fields, duration);
+            if (seconds != null) {
+                image.setDuration(Integer.parseInt(seconds));
+            }
+            return image;
+        }
+
+        private static String field(List<String> fields, int column) {
+            if (column < 0 || column >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(column).trim();
+            return value.isEmpty() ? null : value;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.nvs.task.slideshow.util;
+
+import com.nvs.task.slideshow.model.ImageFormat;
+import com.nvs.task.slideshow.model.ImageMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the format and pixel dimensions of an image from its leading bytes,
+ * without decoding the image.
+ * <p>
+ * PNG, GIF, BMP and WEBP store their dimensions within the first 30 bytes. JPEG stores them in
+ * the first start-of-frame segment, which follows any EXIF or ICC segments and may therefore be
+ * tens of kilobytes into the file. AVIF dimensions are taken from the first {@code ispe} box and
+ * SVG dimensions from plain numeric {@code width} and {@code height} attributes of the root element.
+ */
+public final class ImageHeaderParser {
+
+    private static final Pattern SVG_ROOT = Pattern.compile("<svg\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SVG_WIDTH = Pattern.compile("\\swidth\\s*=\\s*[\"']\\s*(\\d+)(?:\\.\\d+)?\\s*(?:px)?\\s*[\"']");
+    private static final Pattern SVG_HEIGHT = Pattern.compile("\\sheight\\s*=\\s*[\"']\\s*(\\d+)(?:\\.\\d+)?\\s*(?:px)?\\s*[\"']");
+
+    private ImageHeaderParser() {
+    }
+
+    /**
+     * Parses the leading bytes of an image.
+     *
+     * @param header   the leading bytes
+     * @param byteSize the size of the whole image in bytes, or null if unknown
+     * @return the metadata, or null if the bytes do not start a supported image
+     */
+    public static ImageMetadata parse(byte[] header, Long byteSize) {
+        ImageFormat format = ImageFormat.detect(header, header.length);
+        if (format == null) {
+            return null;
+        }
+        int[] size = switch (format) {
+            case JPEG -> jpegSize(header);
+            case PNG -> header.length >= 24 && ascii(header, 12, "IHDR")
+                    ? new int[]{int32be(header, 16), int32be(header, 20)} : null;
+            case GIF -> header.length >= 10 ? new int[]{uint16le(header, 6), uint16le(header, 8)} : null;
+            case BMP -> header.length >= 26 ? new int[]{int32le(header, 18), Math.abs(int32le(header, 22))} : null;
+            case WEBP -> webpSize(header);
+            case AVIF -> avifSize(header);
+            case SVG -> svgSize(header);
+        };
+        if (size == null || size[0] <= 0 || size[1] <= 0) {
+            return new ImageMetadata(format, null, null, byteSize);
+        }
+        return new ImageMetadata(format, size[0], size[1], byteSize);
+    }
+
+    private static int[] jpegSize(byte[] b) {
+        int i = 2;
+        while (i + 9 <= b.length) {
+            if ((b[i] & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = b[i + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte before a marker
+                i++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                // Markers without a length field
+                i += 2;
+                continue;
+            }
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                return new int[]{uint16be(b, i + 7), uint16be(b, i + 5)};
+            }
+            i += 2 + uint16be(b, i + 2);
+        }
+        return null;
+    }
+
+    private static int[] webpSize(byte[] b) {
+        if (b.length >= 30 && ascii(b, 12, "VP8 ")
+                && (b[23] & 0xFF) == 0x9D && (b[24] & 0xFF) == 0x01 && (b[25] & 0xFF) == 0x2A) {
+            return new int[]{uint16le(b, 26) & 0x3FFF, uint16le(b, 28) & 0x3FFF};
+        }
+        if (b.length >= 25 && ascii(b, 12, "VP8L") && (b[20] & 0xFF) == 0x2F) {
+            int bits = int32le(b, 21);
+            return new int[]{(bits & 0x3FFF) + 1, ((bits >>> 14) & 0x3FFF) + 1};
+        }
+        if (b.length >= 30 && ascii(b, 12, "VP8X")) {
+            return new int[]{uint24le(b, 24) + 1, uint24le(b, 27) + 1};
+        }
+        return null;
+    }
+
+    private static int[] avifSize(byte[] b) {
+        for (int i = 4; i + 16 <= b.length; i++) {
+            if (ascii(b, i, "ispe")) {
+                return new int[]{int32be(b, i + 8), int32be(b, i + 12)};
+            }
+        }
+        return null;
+    }
+
+    private static int[] svgSize(byte[] b) {
+        Matcher root = SVG_ROOT.matcher(new String(b, StandardCharsets.UTF_8));
+        if (!root.find()) {
+            return null;
+        }
+        Matcher width = SVG_WIDTH.matcher(root.group());
+        Matcher height = SVG_HEIGHT.matcher(root.group());
+        if (!width.find() || !height.find()) {
+            return null;
+        }
+        try {
+            return new int[]{Integer.parseInt(width.group(1)), Integer.parseInt(height.group(1))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean ascii(byte[] b, int offset, String expected) {
+        if (offset + expected.length() > b.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (b[offset + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int uint16be(byte[] b, int offset) {
+        return (b[offset] & 0xFF) << 8 | (b[offset + 1] & 0xFF);
+    }
+
+    private static int uint16le(byte[] b, int offset) {
+        return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int uint24le(byte[] b, int offset) {
+        return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8 | (b[offset + 2] & 0xFF) << 16;
+    }
+
+    private static int int32be(byte[] b, int offset) {
+        return (b[offset] & 0xFF) << 24 | (b[offset + 1] & 0xFF) << 16 | (b[offset + 2] & 0xFF) << 8 | (b[offset + 3] & 0xFF);
+    }
+
+    private static int int32le(byte[] b, int offset) {
+        return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8 | (b[offset + 2] & 0xFF) << 16 | (b[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,82 @@
+package com.nvs.task.slideshow.util;
+
+import com.nvs.task.slideshow.exception.BadRequestException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Helpers for paging through tables by ID.
+ * <p>
+ * A page is requested with the last ID the client has seen, {@code WHERE id > :afterId ORDER BY id
+ * LIMIT :limit}, so every page is an index range scan no matter how deep into the table it is,
+ * and rows inserted or deleted concurrently never shift the following pages.
+ */
+public final class KeysetPagination {
+
+    /**
+     * The page size used when the client does not ask for one.
+     */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /**
+     * The largest page size a client may ask for.
+     */
+    public static final int MAX_LIMIT = 1000;
+
+    /**
+     * The number of rows loaded per query when a whole table is streamed.
+     */
+    public static final int STREAM_PAGE_SIZE = 500;
+
+    private KeysetPagination() {
+    }
+
+    /**
+     * Returns the ID after which the first page starts.
+     *
+     * @param afterId the ID requested by the client, or null for the first page
+     * @return the ID to compare against
+     */
+    public static long start(Long afterId) {
+        return afterId != null ? afterId : 0L;
+    }
+
+    /**
+     * Checks that a requested page size lies between 1 and {@link #MAX_LIMIT}.
+     *
+     * @param limit the requested page size
+     * @return the page size
+     * @throws BadRequestException if the page size is out of range
+     */
+    public static int checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_LIMIT + ", was " + limit);
+        }
+        return limit;
+    }
+
+    /**
+     * Streams all rows after the given ID by loading one page at a time.
+     * The next page is only queried once the previous one has been requested downstream, so
+     * a slow consumer holds at most a couple of pages in memory and no database connection
+     * while it is reading.
+     *
+     * @param afterId  the ID after which the stream starts
+     * @param pageSize the number of rows loaded per query
+     * @param loader   loads up to {@code pageSize} rows with an ID greater than the given one, ordered by ID
+     * @param idOf     returns the ID of a row
+     * @param <T>      the type of the rows
+     * @return a Flux emitting the rows in ID order
+     */
+    public static <T> Flux<T> stream(long afterId, int pageSize, BiFunction<Long, Integer, Flux<T>> loader,
+                                     Function<T, Long> idOf) {
+        return loader.apply(afterId, pageSize).collectList()
+                .expand(page -> page.size() < pageSize
+                        ? Mono.empty()
+                        : loader.apply(idOf.apply(page.get(page.size() - 1)), pageSize).collectList())
+                .concatMapIterable(page -> page, 1);
+    }
+}
@@ -0,0 +1,258 @@
+package com.nvs.task.slideshow.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.LongConsumer;
+
+/**
+ * Set of primitive {@code long} values backed by an open-addressing hash table with linear probing.
+ * <p>
+ * Unlike a {@code Set<Long>}, lookups neither box the value nor follow object references,
+ * which makes {@link #contains(long)} allocation-free and O(1) on average. The table is kept
+ * at most half full. Zero is used as the empty-slot marker and tracked separately.
+ * <p>
+ * This class is not thread-safe. Instances that are shared between threads must not be
+ * modified after they have been published.
+ */
+public final class LongHashSet {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] slots;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    /**
+     * Creates an empty set sized for the given number of values.
+     *
+     * @param expectedSize the number of values the set should hold without resizing
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        this.slots = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Creates an empty set.
+     */
+    public LongHashSet() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * Creates a set holding the given values. {@code null} elements are ignored.
+     *
+     * @param values the values to add, may be {@code null}
+     * @return a new set
+     */
+    public static LongHashSet of(Collection<Long> values) {
+        if (values == null) {
+            return new LongHashSet();
+        }
+        LongHashSet set = new LongHashSet(values.size());
+        for (Long value : values) {
+            if (value != null) {
+                set.add(value);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Checks whether the set holds the given value.
+     *
+     * @param value the value to look for
+     * @return true if the value is present
+     */
+    public boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        long[] table = slots;
+        int index = mix(value) & mask;
+        long current;
+        while ((current = table[index]) != 0) {
+            if (current == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value the value to add
+     * @return true if the value was not present before
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int index = mix(value) & mask;
+        long current;
+        while ((current = slots[index]) != 0) {
+            if (current == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        size++;
+        if (size * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param value the value to remove
+     * @return true if the value was present
+     */
+    public boolean remove(long value) {
+        if (value == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int index = mix(value) & mask;
+        long current;
+        while ((current = slots[index]) != 0) {
+            if (current == value) {
+                slots[index] = 0;
+                size--;
+                closeGap(index);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of values in the set.
+     *
+     * @return the size of the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the set is empty.
+     *
+     * @return true if the set holds no values
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Passes every value of the set to the given consumer, in no particular order.
+     *
+     * @param consumer the consumer receiving the values
+     */
+    public void forEach(LongConsumer consumer) {
+        if (containsZero) {
+            consumer.accept(0);
+        }
+        for (long value : slots) {
+            if (value != 0) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Copies the values of the set into a new array, in no particular order.
+     *
+     * @return an array holding every value of the set
+     */
+    public long[] toArray() {
+        long[] values = new long[size];
+        int position = 0;
+        if (containsZero) {
+            values[position++] = 0;
+        }
+        for (long value : slots) {
+            if (value != 0) {
+                values[position++] = value;
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        long[] values = toArray();
+        Arrays.sort(values);
+        return Arrays.toString(values);
+    }
+
+    /**
+     * Re-inserts the entries following a removed slot so that no probe sequence is broken.
+     */
+    private void closeGap(int removed) {
+        int gap = removed;
+        int index = (gap + 1) & mask;
+        long current;
+        while ((current = slots[index]) != 0) {
+            int home = mix(current) & mask;
+            // Move the entry into the gap if its home slot does not lie cyclically in (gap, index]
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                slots[gap] = current;
+                slots[index] = 0;
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        mask = capacity - 1;
+        for (long value : old) {
+            if (value != 0) {
+                int index = mix(value) & mask;
+                while (slots[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                slots[index] = value;
+            }
+        }
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = Math.max(MIN_CAPACITY, (long) expectedSize * 2);
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("Set too large: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    /**
+     * MurmurHash3 finalizer, spreading sequential IDs over the whole table.
+     */
+    private static int mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+}
@@ -0,0 +1,166 @@
+package com.nvs.task.slideshow.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter that forgets entries after a time window.
+ * <p>
+ * Two generations of bits are kept: entries are added to the current one and looked up in
+ * both. Every {@code window} the current generation becomes the previous one and a fresh,
+ * empty generation takes its place, so an entry is remembered for at least one window and at
+ * most two. Memory is fixed at construction and does not depend on the number of entries.
+ * <p>
+ * The filter may report an entry it has never seen (with roughly the configured false
+ * positive rate when no more than the expected number of entries arrive per window), but never
+ * misses an entry added within the last window. Lookups and insertions are lock-free; only
+ * rotation and {@link #putIfAbsent} synchronize.
+ * <p>
+ * Entries are identified by two independent 64-bit hashes supplied by the caller, which are
+ * combined by double hashing into the bit positions.
+ */
+public final class RotatingBloomFilter {
+
+    private final long bitSize;
+    private final int hashFunctions;
+    private final long windowMillis;
+
+    private volatile Generations generations;
+
+    /**
+     * Creates a filter sized for the given load.
+     *
+     * @param expectedEntriesPerWindow the number of entries expected within one window
+     * @param falsePositiveRate        the acceptable false positive rate at that load
+     * @param windowMillis             how long entries are remembered at least, in milliseconds
+     * @param nowMillis                the current time in milliseconds
+     */
+    public RotatingBloomFilter(long expectedEntriesPerWindow, double falsePositiveRate, long windowMillis, long nowMillis) {
+        if (expectedEntriesPerWindow <= 0) {
+            throw new IllegalArgumentException("Expected entries must be positive: " + expectedEntriesPerWindow);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Window must be positive: " + windowMillis);
+        }
+        long bits = (long) Math.ceil(-expectedEntriesPerWindow * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long words = Math.max(1, (bits + 63) >>> 6);
+        if (words > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Filter too large for " + expectedEntriesPerWindow + " entries");
+        }
+        this.bitSize = words << 6;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / expectedEntriesPerWindow * Math.log(2)));
+        this.windowMillis = windowMillis;
+        this.generations = new Generations(new AtomicLongArray((int) words), new AtomicLongArray((int) words),
+                nowMillis + windowMillis);
+    }
+
+    /**
+     * Returns whether the entry may have been added within the last one to two windows.
+     *
+     * @param hash1     the first hash of the entry
+     * @param hash2     the second hash of the entry
+     * @param nowMillis the current time in milliseconds
+     * @return false if the entry was definitely not added, true if it probably was
+     */
+    public boolean mightContain(long hash1, long hash2, long nowMillis) {
+        Generations current = rotate(nowMillis);
+        return contains(current.current, hash1, hash2) || contains(current.previous, hash1, hash2);
+    }
+
+    /**
+     * Adds an entry to the current generation.
+     *
+     * @param hash1     the first hash of the entry
+     * @param hash2     the second hash of the entry
+     * @param nowMillis the current time in milliseconds
+     */
+    public void put(long hash1, long hash2, long nowMillis) {
+        set(rotate(nowMillis).current, hash1, hash2);
+    }
+
+    /**
+     * Adds an entry unless it may already have been added, as one atomic step: of several
+     * threads adding the same entry at once, exactly one is told that it was absent.
+     *
+     * @param hash1     the first hash of the entry
+     * @param hash2     the second hash of the entry
+     * @param nowMillis the current time in milliseconds
+     * @return true if the entry was added, false if it probably was already present
+     */
+    public synchronized boolean putIfAbsent(long hash1, long hash2, long nowMillis) {
+        Generations current = rotate(nowMillis);
+        if (contains(current.current, hash1, hash2) || contains(current.previous, hash1, hash2)) {
+            return false;
+        }
+        set(current.current, hash1, hash2);
+        return true;
+    }
+
+    /**
+     * Returns the number of bits in each generation.
+     *
+     * @return the bit size
+     */
+    public long bitSize() {
+        return bitSize;
+    }
+
+    /**
+     * Returns the number of bit positions set per entry.
+     *
+     * @return the number of hash functions
+     */
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    private void set(AtomicLongArray bits, long hash1, long hash2) {
+        long combined = hash1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long index = Long.remainderUnsigned(combined, bitSize);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            if ((bits.get(word) & mask) == 0) {
+                bits.getAndAccumulate(word, mask, (value, bit) -> value | bit);
+            }
+            combined += hash2;
+        }
+    }
+
+    private boolean contains(AtomicLongArray bits, long hash1, long hash2) {
+        long combined = hash1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long index = Long.remainderUnsigned(combined, bitSize);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+            combined += hash2;
+        }
+        return true;
+    }
+
+    private Generations rotate(long nowMillis) {
+        Generations current = generations;
+        if (nowMillis < current.rotateAt) {
+            return current;
+        }
+        synchronized (this) {
+            current = generations;
+            if (nowMillis < current.rotateAt) {
+                return current;
+            }
+            int words = current.current.length();
+            long elapsedWindows = (nowMillis - current.rotateAt) / windowMillis + 1;
+            AtomicLongArray previous = elapsedWindows == 1 ? current.current : new AtomicLongArray(words);
+            current = new Generations(new AtomicLongArray(words), previous,
+                    current.rotateAt + elapsedWindows * windowMillis);
+            generations = current;
+            return current;
+        }
+    }
+
+    private record Generations(AtomicLongArray current, AtomicLongArray previous, long rotateAt) {
+    }
+}
@@ -11,11 +11,13 @@
  * - slideshows: Contains details about slideshows
  * - slideshow_images: Join table linking slideshows and images
  * - slideshow_proof_of_play: Records when images in slideshows are played
+ * - proof_of_play_rollups: Play counts per slideshow and image by minute and by hour
  *
  * Indexes are created on frequently queried columns for improved performance.
  */
 
 -- Drop tables if they exist (with IF EXISTS to prevent errors)
+DROP TABLE IF EXISTS proof_of_play_rollups;
 DROP TABLE IF EXISTS slideshow_proof_of_play;
 DROP TABLE IF EXISTS slideshow_images;
 DROP TABLE IF EXISTS slideshows;
@@ -32,6 +34,11 @@ DROP TABLE IF EXISTS images;
  * - url: URL or path to the image file (required)
  * - description: Optional description of the image
  * - duration: Display duration of the image in seconds (default: 10)
+ * - format: Image format detected from the content (NULL until extracted)
+ * - width: Width of the image in pixels
+ * - height: Height of the image in pixels
+ * - byte_size: Size of the image file in bytes
+ * - version: Incremented by every write, sent to clients as the ETag of the image
  */
 CREATE TABLE IF NOT EXISTS images
 (
@@ -39,7 +46,12 @@ CREATE TABLE IF NOT EXISTS images
     name        VARCHAR(255) NOT NULL,
     url         VARCHAR(255) NOT NULL,
     description VARCHAR(255),
-    duration    INT          NOT NULL DEFAULT 10
+    duration    INT          NOT NULL DEFAULT 10,
+    format      VARCHAR(16),
+    width       INT,
+    height      INT,
+    byte_size   BIGINT,
+    version     BIGINT       NOT NULL DEFAULT 0
 );
 
 /*
@@ -51,40 +63,44 @@ CREATE TABLE IF NOT EXISTS images
  * - id: Unique identifier for each slideshow (auto-incrementing)
  * - name: Name of the slideshow (required)
  * - description: Optional description of the slideshow
- * - image_ids: Comma-separated list of image IDs (deprecated, use slideshow_images table instead)
  * - created_at: Timestamp of when the slideshow was created
+ * - version: Incremented by every write, sent to clients as the ETag of the slideshow
  */
 CREATE TABLE IF NOT EXISTS slideshows
 (
     id          SERIAL PRIMARY KEY,
     name        VARCHAR(255) NOT NULL,
     description VARCHAR(255),
-    image_ids   TEXT,
-    created_at  TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    created_at  TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    version     BIGINT       NOT NULL DEFAULT 0
 );
 
 /*
  * Create join table for slideshows and images
  *
- * Associates images with slideshows and specifies their order.
+ * Associates images with slideshows and specifies their order. Images are shown
+ * in the order they were added, and images added together by their position.
  *
  * Columns:
  * - slideshow_id: ID of the slideshow (foreign key to slideshows table)
  * - image_id: ID of the image (foreign key to images table)
  * - position: Order of the image within the slideshow
+ * - added_at: Timestamp of when the image was added to the slideshow
  */
 CREATE TABLE IF NOT EXISTS slideshow_images
 (
     slideshow_id INTEGER REFERENCES slideshows (id) ON DELETE CASCADE,
     image_id     INTEGER REFERENCES images (id) ON DELETE CASCADE,
-    position     INTEGER NOT NULL,
+    position     INTEGER                  NOT NULL,
+    added_at     TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
     PRIMARY KEY (slideshow_id, image_id)
 );
 
 /*
  * Create proof of play table
  *
- * Records when images in slideshows are played.
+ * Records when images in slideshows are played. Rows are written in batches
+ * by the proof of play persistence stage.
  *
  * Columns:
  * - id: Unique identifier for each play record (auto-incrementing)
@@ -94,19 +110,47 @@ CREATE TABLE IF NOT EXISTS slideshow_images
  */
 CREATE TABLE IF NOT EXISTS slideshow_proof_of_play
 (
-    id           SERIAL PRIMARY KEY,
+    id           BIGSERIAL PRIMARY KEY,
     slideshow_id BIGINT NOT NULL,
     image_id     BIGINT NOT NULL,
     played_at    TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (slideshow_id) REFERENCES slideshows (id) ON DELETE CASCADE
 );
 
+/*
+ * Create play count rollups table
+ *
+ * Holds play counters flushed from the in-memory rollups. Flushes add to the
+ * stored play_count, so a bucket may be written several times.
+ *
+ * Columns:
+ * - slideshow_id: ID of the slideshow being played
+ * - granularity: Bucket size (MINUTE or HOUR)
+ * - bucket_start: Start of the time bucket
+ * - image_id: ID of the image being played
+ * - play_count: Number of plays within the bucket
+ */
+CREATE TABLE IF NOT EXISTS proof_of_play_rollups
+(
+    slideshow_id BIGINT                   NOT NULL,
+    granularity  VARCHAR(10)              NOT NULL,
+    bucket_start TIMESTAMP WITH TIME ZONE NOT NULL,
+    image_id     BIGINT                   NOT NULL,
+    play_count   BIGINT                   NOT NULL,
+    PRIMARY KEY (slideshow_id, granularity, bucket_start, image_id)
+);
+
 /*
  * Create indexes for better performance
  *
  * These indexes improve query performance on frequently accessed columns.
+ * The (id, version) indexes answer conditional requests with index-only scans.
  */
 CREATE INDEX IF NOT EXISTS idx_images_url ON images (url);
+CREATE INDEX IF NOT EXISTS idx_images_version ON images (id, version);
 CREATE INDEX IF NOT EXISTS idx_slideshows_name ON slideshows (name);
+CREATE INDEX IF NOT EXISTS idx_slideshows_version ON slideshows (id, version);
+CREATE INDEX IF NOT EXISTS idx_slideshow_images_order ON slideshow_images (slideshow_id, added_at, position, image_id);
+CREATE INDEX IF NOT EXISTS idx_slideshow_images_image_id ON slideshow_images (image_id);
 CREATE INDEX IF NOT EXISTS idx_proof_of_play_slideshow_id ON slideshow_proof_of_play (slideshow_id);
 CREATE INDEX IF NOT EXISTS idx_proof_of_play_image_id ON slideshow_proof_of_play (image_id);
\ No newline at end of file
@@ -0,0 +1,153 @@
+package com.nvs.task.slideshow.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for MeteredConnectionFactory and AdaptiveConnectionLimit.
+ * Verifies that acquisitions are timed, that connections are held to the adaptive limit until
+ * closed, and that the limit grows and shrinks within its bounds by acquire time.
+ */
+@ExtendWith(MockitoExtension.class)
+class MeteredConnectionFactoryTest {
+
+    private static final Duration TARGET = Duration.ofMillis(10);
+    private static final Duration INTERVAL = Duration.ofSeconds(5);
+
+    @Mock
+    private ConnectionFactory pool;
+
+    @Mock
+    private Connection connection;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        lenient().doReturn(Mono.just(connection)).when(pool).create();
+        lenient().doReturn(Mono.empty()).when(connection).close();
+    }
+
+    /**
+     * Tests that every acquisition is timed and that the pool stays reachable behind the decorator.
+     */
+    @Test
+    void timesAcquisitions() {
+        MeteredConnectionFactory factory = new MeteredConnectionFactory(pool, null, registry, "connectionFactory");
+
+        assertSame(connection, factory.create().block());
+        assertSame(connection, factory.create().block());
+
+        assertEquals(2, registry.get("r2dbc.pool.acquire").tag("name", "connectionFactory").timer().count());
+        assertSame(pool, factory.unwrap());
+        assertTrue(registry.find("r2dbc.pool.limit").gauges().isEmpty());
+    }
+
+    /**
+     * Tests that an acquisition beyond the limit waits until a connection is closed.
+     */
+    @Test
+    void holdsConnectionsToTheLimit() {
+        AdaptiveConnectionLimit limit = limit(1, 4, 1);
+        MeteredConnectionFactory factory = new MeteredConnectionFactory(pool, limit, registry, "connectionFactory");
+
+        Connection first = factory.create().block();
+        AtomicReference<Connection> second = new AtomicReference<>();
+        factory.create().subscribe(second::set);
+
+        assertNull(second.get());
+        assertEquals(1, registry.get("r2dbc.pool.limit.pending").gauge().value());
+        assertSame(connection, ((Wrapped<?>) first).unwrap());
+
+        Mono.from(first.close()).block();
+
+        assertNotNull(second.get());
+        assertEquals(1, limit.active());
+        assertEquals(0, limit.pending());
+        Mono.from(second.get().close()).block();
+        // Closing twice does not return the permit twice
+        Mono.from(second.get().close()).block();
+        assertEquals(0, limit.active());
+    }
+
+    /**
+     * Tests that the limit grows when acquisitions are slower than the target and wakes waiting acquisitions.
+     */
+    @Test
+    void growsWhenAcquisitionsAreSlow() {
+        AdaptiveConnectionLimit limit = limit(1, 4, 1);
+        limit.acquire().block();
+        AtomicReference<AdaptiveConnectionLimit.Permit> waiting = new AtomicReference<>();
+        limit.acquire().subscribe(waiting::set);
+
+        // Slow acquisitions within the interval leave the limit alone
+        limit.record(TARGET.multipliedBy(5).toNanos());
+        assertEquals(1, limit.limit());
+
+        clock.addAndGet(INTERVAL.toNanos());
+        limit.record(TARGET.multipliedBy(5).toNanos());
+
+        assertEquals(2, limit.limit());
+        assertNotNull(waiting.get());
+        assertEquals(2, limit.active());
+
+        for (int i = 0; i < 5; i++) {
+            clock.addAndGet(INTERVAL.toNanos());
+            limit.record(TARGET.multipliedBy(5).toNanos());
+        }
+        assertEquals(4, limit.limit());
+    }
+
+    /**
+     * Tests that the limit shrinks to its lower bound when acquisitions are fast and it is never reached.
+     */
+    @Test
+    void shrinksWhenTheLimitIsNotNeeded() {
+        AdaptiveConnectionLimit limit = limit(2, 8, 4);
+
+        for (int i = 0; i < 5; i++) {
+            clock.addAndGet(INTERVAL.toNanos());
+            limit.record(TARGET.dividedBy(10).toNanos());
+        }
+
+        assertEquals(2, limit.limit());
+    }
+
+    /**
+     * Tests that a waiting acquisition that is cancelled neither holds nor leaks a permit.
+     */
+    @Test
+    void forgetsCancelledAcquisitions() {
+        AdaptiveConnectionLimit limit = limit(1, 1, 1);
+        AdaptiveConnectionLimit.Permit first = limit.acquire().block();
+        Disposable second = limit.acquire().subscribe();
+
+        assertEquals(1, limit.pending());
+        second.dispose();
+        assertEquals(0, limit.pending());
+
+        first.release();
+        assertEquals(0, limit.active());
+    }
+
+    private AdaptiveConnectionLimit limit(int minSize, int maxSize, int initialSize) {
+        return new AdaptiveConnectionLimit(minSize, maxSize, initialSize, TARGET, INTERVAL, clock::get);
+    }
+}
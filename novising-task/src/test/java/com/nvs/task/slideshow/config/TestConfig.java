@@ -1,9 +1,25 @@
 package com.nvs.task.slideshow.config;
 
+import com.nvs.task.slideshow.repository.ImageBulkRepository;
 import com.nvs.task.slideshow.repository.ImageRepository;
+import com.nvs.task.slideshow.repository.SlideshowImageRepository;
 import com.nvs.task.slideshow.repository.SlideshowRepository;
+import com.nvs.task.slideshow.service.ImageContentCache;
+import com.nvs.task.slideshow.service.ImageDerivativeService;
+import com.nvs.task.slideshow.service.ImageMetadataService;
+import com.nvs.task.slideshow.service.ImageSearchIndex;
+import com.nvs.task.slideshow.service.ImageUrlValidator;
 import com.nvs.task.slideshow.service.KafkaProducerService;
+import com.nvs.task.slideshow.service.PlayCountRollupService;
+import com.nvs.task.slideshow.service.PlaybackService;
+import com.nvs.task.slideshow.service.ProofOfPlayDeduplicator;
+import com.nvs.task.slideshow.service.ProofOfPlayEventEncoder;
+import com.nvs.task.slideshow.service.ProofOfPlayIngestionService;
+import com.nvs.task.slideshow.service.SlideshowImageIndex;
+import com.nvs.task.slideshow.service.SlideshowResponseCache;
 import com.nvs.task.slideshow.service.SlideshowService;
+import com.nvs.task.slideshow.service.SlideshowTimelineService;
+import com.nvs.task.slideshow.service.SlideshowTransitionService;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
@@ -51,6 +67,106 @@ public class TestConfig {
         return Mockito.mock(ImageRepository.class);
     }
 
+    /**
+     * Creates a mock ImageBulkRepository bean.
+     *
+     * @return A mock ImageBulkRepository
+     */
+    @Bean
+    public ImageBulkRepository imageBulkRepository() {
+        return Mockito.mock(ImageBulkRepository.class);
+    }
+
+    /**
+     * Creates a mock ImageUrlValidator bean, so that no test fetches remote URLs.
+     *
+     * @return A mock ImageUrlValidator
+     */
+    @Bean
+    public ImageUrlValidator imageUrlValidator() {
+        return Mockito.mock(ImageUrlValidator.class);
+    }
+
+    /**
+     * Creates a mock ImageMetadataService bean, so that no background extraction runs in tests.
+     *
+     * @return A mock ImageMetadataService
+     */
+    @Bean
+    public ImageMetadataService imageMetadataService() {
+        return Mockito.mock(ImageMetadataService.class);
+    }
+
+    /**
+     * Creates a mock ImageContentCache bean, so that no test writes cache files.
+     *
+     * @return A mock ImageContentCache
+     */
+    @Bean
+    public ImageContentCache imageContentCache() {
+        return Mockito.mock(ImageContentCache.class);
+    }
+
+    /**
+     * Creates a mock ImageDerivativeService bean, so that no test renders variants.
+     *
+     * @return A mock ImageDerivativeService
+     */
+    @Bean
+    public ImageDerivativeService imageDerivativeService() {
+        return Mockito.mock(ImageDerivativeService.class);
+    }
+
+    /**
+     * Creates a mock SlideshowImageRepository bean.
+     *
+     * @return A mock SlideshowImageRepository
+     */
+    @Bean
+    public SlideshowImageRepository slideshowImageRepository() {
+        return Mockito.mock(SlideshowImageRepository.class);
+    }
+
+    /**
+     * Creates a mock SlideshowImageIndex bean, so that image deletions evict no real membership.
+     *
+     * @return A mock SlideshowImageIndex
+     */
+    @Bean
+    public SlideshowImageIndex slideshowImageIndex() {
+        return Mockito.mock(SlideshowImageIndex.class);
+    }
+
+    /**
+     * Creates a mock SlideshowTimelineService bean, so that image changes evict no real timeline.
+     *
+     * @return A mock SlideshowTimelineService
+     */
+    @Bean
+    public SlideshowTimelineService slideshowTimelineService() {
+        return Mockito.mock(SlideshowTimelineService.class);
+    }
+
+    /**
+     * Creates a mock SlideshowResponseCache bean, so that image changes evict no real response.
+     *
+     * @return A mock SlideshowResponseCache
+     */
+    @Bean
+    public SlideshowResponseCache slideshowResponseCache() {
+        return Mockito.mock(SlideshowResponseCache.class);
+    }
+
+    /**
+     * Creates a mock ImageSearchIndex bean; searches return null, so the repository is queried.
+     *
+     * @return A mock ImageSearchIndex
+     */
+    @Bean
+    public ImageSearchIndex imageSearchIndex() {
+        return Mockito.mock(ImageSearchIndex.class);
+    }
+
     /**
      * Creates a mock DatabaseClient bean.
      *
@@ -62,15 +178,25 @@ public class TestConfig {
     }
 
     /**
-     * Creates a mock KafkaTemplate bean for String key-value pairs.
+     * Creates a mock KafkaTemplate bean for String keys and pre-encoded byte array values.
      *
-     * @return A mock KafkaTemplate<String, String>
+     * @return A mock KafkaTemplate<String, byte[]>
      */
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
+    public KafkaTemplate<String, byte[]> kafkaTemplate() {
         return Mockito.mock(KafkaTemplate.class);
     }
 
+    /**
+     * Creates a JSON ProofOfPlayEventEncoder bean for the KafkaProducerService.
+     *
+     * @return A ProofOfPlayEventEncoder writing JSON payloads
+     */
+    @Bean
+    public ProofOfPlayEventEncoder proofOfPlayEventEncoder() {
+        return new ProofOfPlayEventEncoder("json");
+    }
+
     /**
      * Creates a mock KafkaProducerService bean.
      *
@@ -81,6 +207,56 @@ public class TestConfig {
         return Mockito.mock(KafkaProducerService.class);
     }
 
+    /**
+     * Creates a mock ProofOfPlayIngestionService bean, so that no test queues events for Kafka.
+     *
+     * @return A mock ProofOfPlayIngestionService
+     */
+    @Bean
+    public ProofOfPlayIngestionService proofOfPlayIngestionService() {
+        return Mockito.mock(ProofOfPlayIngestionService.class);
+    }
+
+    /**
+     * Creates a mock PlayCountRollupService bean, so that no test flushes play counts.
+     *
+     * @return A mock PlayCountRollupService
+     */
+    @Bean
+    public PlayCountRollupService playCountRollupService() {
+        return Mockito.mock(PlayCountRollupService.class);
+    }
+
+    /**
+     * Creates a mock ProofOfPlayDeduplicator bean, so that no test remembers submissions.
+     *
+     * @return A mock ProofOfPlayDeduplicator
+     */
+    @Bean
+    public ProofOfPlayDeduplicator proofOfPlayDeduplicator() {
+        return Mockito.mock(ProofOfPlayDeduplicator.class);
+    }
+
+    /**
+     * Creates a mock SlideshowTransitionService bean, so that no test runs a ticker.
+     *
+     * @return A mock SlideshowTransitionService
+     */
+    @Bean
+    public SlideshowTransitionService slideshowTransitionService() {
+        return Mockito.mock(SlideshowTransitionService.class);
+    }
+
+    /**
+     * Creates a mock PlaybackService bean, so that no test resolves playback state.
+     *
+     * @return A mock PlaybackService
+     */
+    @Bean
+    public PlaybackService playbackService() {
+        return Mockito.mock(PlaybackService.class);
+    }
+
     /**
      * Creates a mock SlideshowService bean.
      *
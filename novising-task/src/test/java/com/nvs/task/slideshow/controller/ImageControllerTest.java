@@ -1,16 +1,21 @@
 package com.nvs.task.slideshow.controller;
 
 import com.nvs.task.slideshow.config.TestConfig;
+import com.nvs.task.slideshow.exception.ConflictException;
 import com.nvs.task.slideshow.exception.ResourceNotFoundException;
 import com.nvs.task.slideshow.model.ErrorResponse;
 import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.ImageImportResult;
+import com.nvs.task.slideshow.service.ImageContentCache;
 import com.nvs.task.slideshow.service.ImageService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -20,6 +25,8 @@ import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
@@ -115,8 +122,42 @@ public class ImageControllerTest {
     }
 
     /**
-     * Tests retrieving all images.
-     * Verifies that all images are returned correctly.
+     * Tests that an image is returned with its version as ETag, and that a client holding
+     * that version gets a 304 answered from the version index.
+     */
+    @Test
+    public void testGetImageNotModified() {
+        image.setVersion(3L);
+        when(imageService.getImage(1L)).thenReturn(Mono.just(image));
+        when(imageService.getImageTag(1L)).thenReturn(Mono.just("W/\"3\""));
+
+        webTestClient.get()
+                .uri("/api/images/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"3\"");
+
+        webTestClient.get()
+                .uri("/api/images/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"3\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        webTestClient.get()
+                .uri("/api/images/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"2\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"3\"");
+
+        verify(imageService, times(2)).getImage(1L);
+        verify(imageService, times(2)).getImageTag(1L);
+    }
+
+    /**
+     * Tests retrieving a page of images.
+     * Verifies that a full page links to the next one, which starts after its last image.
      */
     @Test
     public void testGetAllImages() {
@@ -125,17 +166,58 @@ public class ImageControllerTest {
         image2.setUrl("http://example.com/image2.jpg");
         image2.setDuration(10);
 
-        when(imageService.getAllImages()).thenReturn(Flux.just(image, image2));
+        when(imageService.getImages(null, 2)).thenReturn(Flux.just(image, image2));
 
         webTestClient.get()
-                .uri("/api/images")
+                .uri("/api/images?limit=2")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.LINK, link -> assertThat(link)
+                        .contains("after=2")
+                        .contains("limit=2")
+                        .endsWith("rel=\"next\""))
                 .expectBodyList(Image.class)
                 .hasSize(2);
     }
 
+    /**
+     * Tests that the last page of images carries no link to a next page.
+     */
+    @Test
+    public void testGetLastPageOfImages() {
+        when(imageService.getImages(1L, 100)).thenReturn(Flux.just(image));
+
+        webTestClient.get()
+                .uri("/api/images?after=1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.LINK)
+                .expectBodyList(Image.class)
+                .hasSize(1);
+    }
+
+    /**
+     * Tests streaming all images as NDJSON.
+     */
+    @Test
+    public void testStreamAllImages() {
+        Image image2 = new Image(2L, "http://example.com/image2.jpg");
+        when(imageService.streamImages(null)).thenReturn(Flux.just(image, image2));
+
+        webTestClient.get()
+                .uri("/api/images")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Image.class)
+                .value(images -> assertThat(images).extracting(Image::getId).containsExactly(1L, 2L));
+
+        verify(imageService, never()).getImages(any(), anyInt());
+    }
+
     /**
      * Tests the scenario of requesting a non-existent image.
      * Verifies that a proper error response is returned when an image is not found.
@@ -222,7 +304,7 @@ public class ImageControllerTest {
         updatedImage.setName("Updated Image");
         updatedImage.setDescription("An updated image for testing");
 
-        when(imageService.updateImage(eq(imageId), any(Image.class))).thenReturn(Mono.just(updatedImage));
+        when(imageService.updateImage(eq(imageId), any(Image.class), isNull())).thenReturn(Mono.just(updatedImage));
 
         webTestClient.put()
                 .uri("/api/images/" + imageId)
@@ -233,7 +315,7 @@ public class ImageControllerTest {
                 .expectBody(Image.class)
                 .isEqualTo(updatedImage);
 
-        verify(imageService, times(1)).updateImage(eq(imageId), any(Image.class));
+        verify(imageService, times(1)).updateImage(eq(imageId), any(Image.class), isNull());
     }
 
     /**
@@ -250,7 +332,7 @@ public class ImageControllerTest {
         updatedImage.setName("Non-existent Image");
         updatedImage.setDescription("An image that doesn't exist");
 
-        when(imageService.updateImage(eq(nonExistentId), any(Image.class)))
+        when(imageService.updateImage(eq(nonExistentId), any(Image.class), isNull()))
                 .thenReturn(Mono.error(new ResourceNotFoundException("Image not found with id: " + nonExistentId)));
 
         webTestClient.put()
@@ -266,7 +348,58 @@ public class ImageControllerTest {
                     assertThat(response.getMessage()).isEqualTo("Image not found with id: " + nonExistentId);
                 });
 
-        verify(imageService, times(1)).updateImage(eq(nonExistentId), any(Image.class));
+        verify(imageService, times(1)).updateImage(eq(nonExistentId), any(Image.class), isNull());
+    }
+
+    /**
+     * Tests a conditional update of an image.
+     * Verifies that the version in If-Match is passed on, that the new version is returned as
+     * ETag, and that an update based on an outdated version gets a 409.
+     */
+    @Test
+    public void testUpdateImageIfMatch() {
+        Image updatedImage = new Image(1L, "http://example.com/updated-image.jpg");
+        updatedImage.setName("Updated Image");
+        updatedImage.setVersion(4L);
+        when(imageService.updateImage(eq(1L), any(Image.class), eq(3L))).thenReturn(Mono.just(updatedImage));
+        when(imageService.updateImage(eq(1L), any(Image.class), eq(2L)))
+                .thenReturn(Mono.error(new ConflictException("Image", 1L, 2L)));
+
+        webTestClient.put()
+                .uri("/api/images/1")
+                .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(updatedImage)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"4\"");
+
+        webTestClient.put()
+                .uri("/api/images/1")
+                .header(HttpHeaders.IF_MATCH, "W/\"2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(updatedImage)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody(ErrorResponse.class)
+                .value(response -> assertThat(response.getMessage())
+                        .isEqualTo("Image with id 1 is no longer at version 2"));
+    }
+
+    /**
+     * Tests that an If-Match header that is not the ETag of an image is rejected.
+     */
+    @Test
+    public void testUpdateImageWithInvalidIfMatch() {
+        webTestClient.put()
+                .uri("/api/images/1")
+                .header(HttpHeaders.IF_MATCH, "\"abc\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(image)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(imageService, never()).updateImage(anyLong(), any(Image.class), any());
     }
 
     /**
@@ -380,4 +513,128 @@ public class ImageControllerTest {
 
         verify(imageService, times(1)).getImage(imageId);
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests serving cached image content.
+     * Verifies that the file is returned with its content type and a strong ETag.
+     */
+    @Test
+    public void testGetImageContent(@TempDir Path tempDir) throws IOException {
+        byte[] bytes = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        when(imageService.getImageContent(1L, null)).thenReturn(Mono.just(cachedImage(tempDir, bytes)));
+
+        webTestClient.get()
+                .uri("/api/images/1/content")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.IMAGE_PNG)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"abc123\"")
+                .expectHeader().valueEquals("X-Content-Type-Options", "nosniff")
+                .expectBody(byte[].class).isEqualTo(bytes);
+    }
+
+    /**
+     * Tests that the requested display width is passed on, so that a downscaled variant can be served.
+     */
+    @Test
+    public void testGetImageContentForWidth(@TempDir Path tempDir) throws IOException {
+        when(imageService.getImageContent(1L, 480)).thenReturn(Mono.just(cachedImage(tempDir, new byte[]{1, 2, 3})));
+
+        webTestClient.get()
+                .uri("/api/images/1/content?width=480")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class).isEqualTo(new byte[]{1, 2, 3});
+
+        verify(imageService, times(1)).getImageContent(1L, 480);
+    }
+
+    /**
+     * Tests that a request with a matching If-None-Match header gets a 304 without body.
+     */
+    @Test
+    public void testGetImageContentNotModified(@TempDir Path tempDir) throws IOException {
+        when(imageService.getImageContent(1L, null)).thenReturn(Mono.just(cachedImage(tempDir, new byte[]{1, 2, 3})));
+
+        webTestClient.get()
+                .uri("/api/images/1/content")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"abc123\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    /**
+     * Tests that a Range request gets only the requested bytes.
+     */
+    @Test
+    public void testGetImageContentRange(@TempDir Path tempDir) throws IOException {
+        byte[] bytes = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        when(imageService.getImageContent(1L, null)).thenReturn(Mono.just(cachedImage(tempDir, bytes)));
+
+        webTestClient.get()
+                .uri("/api/images/1/content")
+                .header(HttpHeaders.RANGE, "bytes=2-4")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 2-4/10")
+                .expectBody(byte[].class).isEqualTo(new byte[]{3, 4, 5});
+    }
+
+    /**
+     * Tests importing images from NDJSON.
+     * Verifies that the result of every image is streamed back.
+     */
+    @Test
+    public void testImportImagesFromNdjson() {
+        when(imageService.importImages(any())).thenAnswer(invocation -> {
+            Flux<Image> images = invocation.getArgument(0);
+            return images.index().map(row -> new ImageImportResult(row.getT1(), row.getT1() + 10,
+                    row.getT2().getUrl(), ImageImportResult.Status.IMPORTED, null));
+        });
+
+        webTestClient.post()
+                .uri("/api/images/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"name\":\"a\",\"url\":\"http://example.com/a.jpg\"}\n"
+                        + "{\"name\":\"b\",\"url\":\"http://example.com/b.jpg\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ImageImportResult.class)
+                .value(results -> assertThat(results)
+                        .extracting(ImageImportResult::getUrl)
+                        .containsExactly("http://example.com/a.jpg", "http://example.com/b.jpg"));
+    }
+
+    /**
+     * Tests importing images from CSV.
+     * Verifies that the rows are read by their header and the results returned as a JSON array.
+     */
+    @Test
+    public void testImportImagesFromCsv() {
+        when(imageService.importImages(any())).thenAnswer(invocation -> {
+            Flux<Image> images = invocation.getArgument(0);
+            return images.index().map(row -> new ImageImportResult(row.getT1(), null, row.getT2().getUrl(),
+                    ImageImportResult.Status.REJECTED, row.getT2().getName()));
+        });
+
+        webTestClient.post()
+                .uri("/api/images/import")
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue("url,name\r\nhttp://example.com/a.jpg,\"Sunset, beach\"\r\nhttp://example.com/b.jpg,b\r\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ImageImportResult.class)
+                .value(results -> assertThat(results)
+                        .extracting(ImageImportResult::getMessage)
+                        .containsExactly("Sunset, beach", "b"));
+    }
+
+    private static ImageContentCache.CachedImage cachedImage(Path directory, byte[] bytes) throws IOException {
+        Path file = Files.write(directory.resolve("image"), bytes);
+        return new ImageContentCache.CachedImage(file, MediaType.IMAGE_PNG_VALUE, bytes.length, "abc123",
+                Instant.parse("2024-05-01T12:00:00Z"));
+    }
+}
@@ -1,9 +1,15 @@
 package com.nvs.task.slideshow.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nvs.task.slideshow.config.TestConfig;
 import com.nvs.task.slideshow.exception.ResourceNotFoundException;
 import com.nvs.task.slideshow.model.ErrorResponse;
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.NowPlaying;
+import com.nvs.task.slideshow.model.PlaybackSession;
+import com.nvs.task.slideshow.model.ProofOfPlayResult;
 import com.nvs.task.slideshow.model.Slideshow;
+import com.nvs.task.slideshow.service.SlideshowResponseCache;
 import com.nvs.task.slideshow.service.SlideshowService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,14 +17,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
@@ -38,6 +50,9 @@ class SlideshowControllerTest {
     @Autowired
     private SlideshowService slideshowService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     private Slideshow slideshow;
     private String slideshowJson;
     private String updateSlideshowJson;
@@ -121,12 +136,16 @@ class SlideshowControllerTest {
     /**
      * Tests retrieving the order of a slideshow.
      * This method verifies that the controller correctly handles GET requests
-     * to retrieve a slideshow's order and returns the expected response.
+     * to retrieve a slideshow's order and returns the resolved images in order.
      */
     @Test
-    void testGetSlideshowOrder() {
+    void testGetSlideshowOrder() throws IOException {
         // Mock the service response
-        when(slideshowService.getSlideshow(anyLong())).thenReturn(Mono.just(slideshow));
+        Image first = new Image(102L, "https://example.com/first.jpg");
+        Image second = new Image(101L, "https://example.com/second.jpg");
+        when(slideshowService.getSlideshowOrderResponse(anyLong())).thenReturn(Mono.just(
+                SlideshowResponseCache.CachedResponse.of(objectMapper.writeValueAsBytes(List.of(first, second)),
+                        new long[]{101L, 102L}, "W/\"order\"")));
 
         // Perform the test
         webTestClient.get()
@@ -134,11 +153,163 @@ class SlideshowControllerTest {
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus().isOk()
-                .expectBody(Slideshow.class)
-                .isEqualTo(slideshow);
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"order\"")
+                .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+                .expectBodyList(Image.class)
+                .isEqualTo(List.of(first, second));
 
         // Verify the service method was called with the correct parameter
-        verify(slideshowService, times(1)).getSlideshow(1L);
+        verify(slideshowService, times(1)).getSlideshowOrderResponse(1L);
+    }
+
+    /**
+     * Tests that the order of a slideshow is served gzip-compressed to clients accepting it.
+     */
+    @Test
+    void testGetSlideshowOrderGzip() throws IOException {
+        Image first = new Image(102L, "https://example.com/first.jpg");
+        byte[] json = objectMapper.writeValueAsBytes(List.of(first));
+        when(slideshowService.getSlideshowOrderResponse(1L))
+                .thenReturn(Mono.just(SlideshowResponseCache.CachedResponse.of(json, new long[]{102L}, "W/\"order\"")));
+
+        byte[] body = webTestClient.get()
+                .uri("/api/slideShow/1/slideshowOrder")
+                .header(HttpHeaders.ACCEPT_ENCODING, "br;q=1.0, gzip;q=0.8")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertThat(gzip.readAllBytes()).isEqualTo(json);
+        }
+    }
+
+    /**
+     * Tests that a client holding the current order of a slideshow gets a 304 without the images being loaded.
+     */
+    @Test
+    void testGetSlideshowOrderNotModified() {
+        when(slideshowService.getSlideshowOrderTag(1L)).thenReturn(Mono.just("W/\"order\""));
+
+        webTestClient.get()
+                .uri("/api/slideShow/1/slideshowOrder")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"order\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"order\"")
+                .expectBody().isEmpty();
+
+        verify(slideshowService, never()).getSlideshowOrderResponse(anyLong());
+    }
+
+    /**
+     * Tests looking up the image a display should be showing now.
+     * Verifies that the start of the playback is passed on and the image is returned.
+     */
+    @Test
+    void testGetNowPlaying() {
+        Instant epochStart = Instant.parse("2024-01-01T00:00:00Z");
+        NowPlaying nowPlaying = new NowPlaying(1L, 0, new Image(101L, "https://example.com/first.jpg"),
+                epochStart, epochStart.plusSeconds(10));
+        when(slideshowService.getNowPlaying(1L, epochStart)).thenReturn(Mono.just(nowPlaying));
+
+        webTestClient.get()
+                .uri("/api/slideShow/1/now?epochStart={epochStart}", epochStart)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(NowPlaying.class)
+                .isEqualTo(nowPlaying);
+    }
+
+    /**
+     * Tests that a slideshow without an image to show answers with no content.
+     */
+    @Test
+    void testGetNowPlayingEmptySlideshow() {
+        when(slideshowService.getNowPlaying(eq(1L), isNull())).thenReturn(Mono.empty());
+
+        webTestClient.get()
+                .uri("/api/slideShow/1/now")
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    /**
+     * Tests streaming the transitions of a slideshow as Server-Sent Events.
+     */
+    @Test
+    void testStreamTransitions() {
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        NowPlaying first = new NowPlaying(1L, 0, new Image(101L, "https://example.com/first.jpg"),
+                start, start.plusSeconds(10));
+        NowPlaying second = new NowPlaying(1L, 1, new Image(102L, "https://example.com/second.jpg"),
+                start.plusSeconds(10), start.plusSeconds(15));
+        when(slideshowService.streamTransitions(1L)).thenReturn(Flux.just(first, second));
+
+        webTestClient.get()
+                .uri("/api/slideShow/1/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                .returnResult(NowPlaying.class)
+                .getResponseBody()
+                .as(StepVerifier::create)
+                .expectNext(first, second)
+                .verifyComplete();
+    }
+
+    /**
+     * Tests starting, retrieving and stopping a server-side playback session.
+     */
+    @Test
+    void testPlaybackSession() {
+        Instant epochStart = Instant.parse("2024-01-01T00:00:00Z");
+        PlaybackSession session = new PlaybackSession("session-1", 1L, epochStart, epochStart.plusSeconds(60), 101L, 1);
+        when(slideshowService.startPlayback(1L, epochStart)).thenReturn(Mono.just(session));
+        when(slideshowService.getPlayback("session-1")).thenReturn(Mono.just(session));
+        when(slideshowService.stopPlayback("session-1")).thenReturn(Mono.empty());
+
+        webTestClient.post()
+                .uri("/api/slideShow/1/playback?epochStart={epochStart}", epochStart)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(PlaybackSession.class)
+                .isEqualTo(session);
+
+        webTestClient.get()
+                .uri("/api/playback/session-1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(PlaybackSession.class)
+                .isEqualTo(session);
+
+        webTestClient.delete()
+                .uri("/api/playback/session-1")
+                .exchange()
+                .expectStatus().isNoContent();
+
+        verify(slideshowService, times(1)).stopPlayback("session-1");
+    }
+
+    /**
+     * Tests that an unknown playback session is reported as not found.
+     */
+    @Test
+    void testPlaybackSessionNotFound() {
+        when(slideshowService.getPlayback("missing"))
+                .thenReturn(Mono.error(new ResourceNotFoundException("Playback session not found with id: missing")));
+
+        webTestClient.get()
+                .uri("/api/playback/missing")
+                .exchange()
+                .expectStatus().isNotFound();
     }
 
     /**
@@ -149,7 +320,7 @@ class SlideshowControllerTest {
     @Test
     void testRecordProofOfPlay() {
         // Mock the service response
-        when(slideshowService.recordProofOfPlay(anyLong(), anyLong())).thenReturn(Mono.empty());
+        when(slideshowService.recordProofOfPlay(anyLong(), anyLong(), isNull(), isNull())).thenReturn(Mono.empty());
 
         // Perform the test
         webTestClient.post()
@@ -159,13 +330,65 @@ class SlideshowControllerTest {
                 .expectStatus().isCreated();
 
         // Verify the service method was called with the correct parameters
-        verify(slideshowService, times(1)).recordProofOfPlay(1L, 101L);
+        verify(slideshowService, times(1)).recordProofOfPlay(1L, 101L, null, null);
+    }
+
+    /**
+     * Tests that the idempotency key and client timestamp of a proof of play are passed to the service.
+     */
+    @Test
+    void testRecordProofOfPlayWithIdempotencyKey() {
+        Instant playedAt = Instant.parse("2023-06-15T14:30:45Z");
+        when(slideshowService.recordProofOfPlay(1L, 101L, playedAt, "play-42")).thenReturn(Mono.empty());
+
+        webTestClient.post()
+                .uri("/api/slideShow/{id}/proof-of-play/{imageId}?playedAt={playedAt}", 1L, 101L, playedAt.toString())
+                .header("Idempotency-Key", "play-42")
+                .exchange()
+                .expectStatus().isCreated();
+
+        verify(slideshowService, times(1)).recordProofOfPlay(1L, 101L, playedAt, "play-42");
+    }
+
+    /**
+     * Tests recording a batch of proofs of play.
+     * This method verifies that the controller accepts a JSON array of records
+     * and returns one result per record.
+     *
+     * @throws IOException If there's an error reading the JSON file.
+     */
+    @Test
+    void testRecordProofOfPlayBatch() throws IOException {
+        ClassPathResource batchResource = new ClassPathResource("payloads/proof-of-play-batch.json");
+        String batchJson = new String(Files.readAllBytes(batchResource.getFile().toPath()));
+
+        ProofOfPlayResult accepted = new ProofOfPlayResult(0, 101L, ProofOfPlayResult.Status.ACCEPTED, null);
+        ProofOfPlayResult rejected = new ProofOfPlayResult(2, 999L, ProofOfPlayResult.Status.REJECTED,
+                "Image with id 999 is not part of slideshow with id 1");
+
+        // Consume the request body so that the records are decoded like in the real service
+        when(slideshowService.recordProofOfPlayBatch(eq(1L), any()))
+                .thenAnswer(invocation -> invocation.<Flux<?>>getArgument(1)
+                        .thenMany(Flux.just(accepted, rejected)));
+
+        webTestClient.post()
+                .uri("/api/slideShow/{id}/proof-of-play", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(batchJson)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ProofOfPlayResult.class)
+                .hasSize(2)
+                .contains(accepted, rejected);
+
+        verify(slideshowService, times(1)).recordProofOfPlayBatch(eq(1L), any());
     }
 
     /**
-     * Tests retrieving all slideshows.
+     * Tests retrieving the first page of slideshows.
      * This method verifies that the controller correctly handles GET requests
-     * to retrieve all slideshows and returns the expected response.
+     * without paging parameters and returns the expected response.
      */
     @Test
     void testGetAllSlideshows() {
@@ -179,7 +402,7 @@ class SlideshowControllerTest {
         slideshow2.setName("Test Slideshow 2");
 
         // Mock the service response
-        when(slideshowService.getAllSlideshows()).thenReturn(Flux.just(slideshow1, slideshow2));
+        when(slideshowService.getSlideshows(null, 100)).thenReturn(Flux.just(slideshow1, slideshow2));
 
         // Perform the test
         webTestClient.get()
@@ -187,12 +410,35 @@ class SlideshowControllerTest {
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
                 .expectBodyList(Slideshow.class)
                 .hasSize(2)
                 .contains(slideshow1, slideshow2);
 
         // Verify the service method was called
-        verify(slideshowService, times(1)).getAllSlideshows();
+        verify(slideshowService, times(1)).getSlideshows(null, 100);
+    }
+
+    /**
+     * Tests streaming all slideshows as NDJSON, starting after a given ID.
+     */
+    @Test
+    void testStreamAllSlideshows() {
+        Slideshow slideshow2 = new Slideshow();
+        slideshow2.setId(2L);
+        slideshow2.setName("Test Slideshow 2");
+        when(slideshowService.streamSlideshows(1L)).thenReturn(Flux.just(slideshow2));
+
+        webTestClient.get()
+                .uri("/api/slideshows?after=1")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Slideshow.class)
+                .contains(slideshow2);
+
+        verify(slideshowService, times(1)).streamSlideshows(1L);
     }
 
     /**
@@ -209,7 +455,7 @@ class SlideshowControllerTest {
         updatedSlideshow.setImageIds(Arrays.asList(201L, 202L));
 
         // Mock the service response
-        when(slideshowService.updateSlideshow(eq(1L), any(Slideshow.class))).thenReturn(Mono.just(updatedSlideshow));
+        when(slideshowService.updateSlideshow(eq(1L), any(Slideshow.class), isNull())).thenReturn(Mono.just(updatedSlideshow));
 
         // Perform the test
         webTestClient.put()
@@ -222,7 +468,7 @@ class SlideshowControllerTest {
                 .isEqualTo(updatedSlideshow);
 
         // Verify the service method was called with the correct parameters
-        verify(slideshowService, times(1)).updateSlideshow(eq(1L), any(Slideshow.class));
+        verify(slideshowService, times(1)).updateSlideshow(eq(1L), any(Slideshow.class), isNull());
     }
 
     /**
@@ -233,7 +479,7 @@ class SlideshowControllerTest {
     @Test
     void testGetSlideshowNotFound() {
         // Mock the service response for a not found scenario
-        when(slideshowService.getSlideshow(99L))
+        when(slideshowService.getSlideshowOrderResponse(99L))
                 .thenReturn(Mono.error(new ResourceNotFoundException("Slideshow not found with id: 99")));
 
         // Perform the test
@@ -250,7 +496,7 @@ class SlideshowControllerTest {
                 });
 
         // Verify the service method was called with the correct parameter
-        verify(slideshowService, times(1)).getSlideshow(99L);
+        verify(slideshowService, times(1)).getSlideshowOrderResponse(99L);
     }
 
     /**
@@ -261,7 +507,7 @@ class SlideshowControllerTest {
     @Test
     void testUpdateSlideshowNotFound() {
         // Mock the service response for a not found scenario
-        when(slideshowService.updateSlideshow(eq(99L), any(Slideshow.class)))
+        when(slideshowService.updateSlideshow(eq(99L), any(Slideshow.class), isNull()))
                 .thenReturn(Mono.error(new ResourceNotFoundException("Slideshow", 99L)));
 
         // Perform the test
@@ -279,7 +525,7 @@ class SlideshowControllerTest {
                 });
 
         // Verify the service method was called with the correct parameters
-        verify(slideshowService, times(1)).updateSlideshow(eq(99L), any(Slideshow.class));
+        verify(slideshowService, times(1)).updateSlideshow(eq(99L), any(Slideshow.class), isNull());
     }
 
     /**
@@ -290,7 +536,7 @@ class SlideshowControllerTest {
     @Test
     void testRecordProofOfPlayNotFound() {
         // Mock the service response for a not found scenario
-        when(slideshowService.recordProofOfPlay(99L, 101L))
+        when(slideshowService.recordProofOfPlay(99L, 101L, null, null))
                 .thenReturn(Mono.error(new ResourceNotFoundException("Slideshow", 99L)));
 
         // Perform the test
@@ -306,6 +552,6 @@ class SlideshowControllerTest {
                 });
 
         // Verify the service method was called with the correct parameters
-        verify(slideshowService, times(1)).recordProofOfPlay(99L, 101L);
+        verify(slideshowService, times(1)).recordProofOfPlay(99L, 101L, null, null);
     }
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+package com.nvs.task.slideshow.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ImageContentCache.
+ * Uses a local stub HTTP server as image origin to verify that each image is downloaded once,
+ * that the cache stays within its size limit and survives restarts, and that origin errors,
+ * content that is not an image and private hosts are refused.
+ */
+class ImageContentCacheTest {
+
+    private static final byte[] PNG_BYTES = Arrays.copyOf(
+            new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}, 400);
+
+    @TempDir
+    Path cacheDirectory;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String baseUrl;
+    private ImageContentCache cache;
+
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        cache = newCache(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that concurrent and later requests for the same image share a single download.
+     */
+    @Test
+    void downloadsEachImageOnce() throws IOException {
+        String url = baseUrl + "/a.png";
+
+        StepVerifier.create(Flux.range(0, 5).flatMap(i -> cache.get(url)))
+                .expectNextCount(5)
+                .verifyComplete();
+        StepVerifier.create(cache.get(url))
+                .assertNext(cached -> {
+                    assertEquals("image/png", cached.contentType());
+                    assertEquals(PNG_BYTES.length, cached.size());
+                    assertEquals(64, cached.sha256().length());
+                })
+                .verifyComplete();
+
+        assertEquals(1, hits.get("/a.png").get());
+        assertArrayEquals(PNG_BYTES, Files.readAllBytes(cache.get(url).block().file()));
+    }
+
+    /**
+     * Tests that the least recently used image is evicted when the size limit is exceeded.
+     */
+    @Test
+    void evictsLeastRecentlyUsed() {
+        cache.get(baseUrl + "/a.png").block();
+        cache.get(baseUrl + "/b.png").block();
+        cache.get(baseUrl + "/a.png").block();
+        cache.get(baseUrl + "/c.png").block();
+
+        assertEquals(800, cache.size());
+        cache.get(baseUrl + "/a.png").block();
+        cache.get(baseUrl + "/b.png").block();
+        assertEquals(1, hits.get("/a.png").get());
+        assertEquals(2, hits.get("/b.png").get());
+    }
+
+    /**
+     * Tests that missing and oversized images are reported as 502 and not cached.
+     */
+    @Test
+    void reportsOriginErrors() throws IOException {
+        StepVerifier.create(cache.get(baseUrl + "/missing.png"))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        StepVerifier.create(cache.get(baseUrl + "/huge.png"))
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        assertEquals(0, cache.size());
+        try (var files = Files.list(cacheDirectory.resolve("entries"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * Tests that content not recognized as an image is neither cached nor served.
+     */
+    @Test
+    void refusesContentThatIsNotAnImage() throws IOException {
+        StepVerifier.create(cache.get(baseUrl + "/page.png"))
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        assertEquals(0, cache.size());
+        try (var files = Files.list(cacheDirectory.resolve("entries"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * Tests that cached images are kept across restarts and that files the cache did not create are left alone.
+     */
+    @Test
+    void keepsEntriesAcrossRestarts() throws IOException {
+        Path unrelated = Files.writeString(cacheDirectory.resolve("notes.txt"), "keep me");
+        Path unrelatedEntry = Files.writeString(cacheDirectory.resolve("entries").resolve("notes.txt"), "keep me too");
+        cache.get(baseUrl + "/a.png").block();
+
+        ImageContentCache restarted = newCache(true);
+
+        assertEquals(PNG_BYTES.length, restarted.size());
+        StepVerifier.create(restarted.get(baseUrl + "/a.png"))
+                .assertNext(cached -> assertEquals("image/png", cached.contentType()))
+                .verifyComplete();
+        assertEquals(1, hits.get("/a.png").get());
+        assertTrue(Files.exists(unrelated));
+        assertTrue(Files.exists(unrelatedEntry));
+    }
+
+    /**
+     * Tests that hosts resolving to loopback, link-local or private addresses are not fetched.
+     */
+    @Test
+    void refusesPrivateHosts() throws IOException {
+        ImageContentCache publicOnly = newCache(false);
+
+        StepVerifier.create(publicOnly.get(baseUrl + "/a.png"))
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        assertNull(hits.get("/a.png"));
+        assertFalse(ImageFetcher.isPublicAddress(InetAddress.getByName("127.0.0.1")));
+        assertFalse(ImageFetcher.isPublicAddress(InetAddress.getByName("169.254.169.254")));
+        assertFalse(ImageFetcher.isPublicAddress(InetAddress.getByName("10.1.2.3")));
+        assertFalse(ImageFetcher.isPublicAddress(InetAddress.getByName("100.64.0.1")));
+        assertFalse(ImageFetcher.isPublicAddress(InetAddress.getByName("::1")));
+        assertFalse(ImageFetcher.isPublicAddress(InetAddress.getByName("fd00::1")));
+        assertFalse(ImageFetcher.isPublicAddress(InetAddress.getByName("::ffff:192.168.0.1")));
+        assertTrue(ImageFetcher.isPublicAddress(InetAddress.getByName("93.184.216.34")));
+        assertTrue(ImageFetcher.isPublicAddress(InetAddress.getByName("2606:2800:220:1::1")));
+    }
+
+    private ImageContentCache newCache(boolean allowPrivateHosts) throws IOException {
+        ImageFetcher imageFetcher = new ImageFetcher(WebClient.builder(), Duration.ofSeconds(5), Duration.ofSeconds(5), 4,
+                allowPrivateHosts);
+        ImageContentCache created = new ImageContentCache(imageFetcher, cacheDirectory, 1000, 500, Clock.systemUTC());
+        created.init();
+        return created;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        hits.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+        try {
+            if (path.equals("/missing.png")) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] body = switch (path) {
+                case "/huge.png" -> new byte[1000];
+                case "/page.png" -> "<html><body>internal</body></html>".getBytes(StandardCharsets.UTF_8);
+                default -> PNG_BYTES;
+            };
+            // Served as a generic binary to check that the content type is taken from the content
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.Image;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for ImageDerivativeService.
+ * Renders variants of generated images to verify their sizes, the choice of the closest
+ * variant, the cleanup of deleted images and the restoring of variants after a restart.
+ */
+@ExtendWith(MockitoExtension.class)
+class ImageDerivativeServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private ImageContentCache imageContentCache;
+
+    private ImageDerivativeService imageDerivativeService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        imageDerivativeService = new ImageDerivativeService(imageContentCache, directory.resolve("derivatives"),
+                new int[]{960, 480, 4000}, 1, 16, 50_000_000, 0.85f, Clock.systemUTC());
+        imageDerivativeService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageDerivativeService.stop();
+    }
+
+    /**
+     * Tests that variants narrower than the original are rendered with the original aspect ratio
+     * and that the smallest variant at least as wide as requested is chosen.
+     */
+    @Test
+    void rendersVariantsAndChoosesClosest() throws Exception {
+        Image image = original(1L, "https://example.com/beach.jpg", 2000, 1000, BufferedImage.TYPE_INT_RGB, "jpg");
+
+        assertTrue(imageDerivativeService.submit(image));
+        ImageContentCache.CachedImage small = awaitVariant(image, 300);
+
+        assertEquals("image/jpeg", small.contentType());
+        BufferedImage rendered = ImageIO.read(small.file().toFile());
+        assertEquals(480, rendered.getWidth());
+        assertEquals(240, rendered.getHeight());
+        assertEquals(960, ImageIO.read(imageDerivativeService.find(image, 481).file().toFile()).getWidth());
+        assertNull(imageDerivativeService.find(image, 1200), "wider than every variant narrower than the original");
+    }
+
+    /**
+     * Tests that images with transparency keep it by being encoded as PNG.
+     */
+    @Test
+    void keepsTransparency() throws Exception {
+        Image image = original(2L, "https://example.com/logo.png", 1000, 1000, BufferedImage.TYPE_INT_ARGB, "png");
+
+        imageDerivativeService.submit(image);
+        ImageContentCache.CachedImage variant = awaitVariant(image, 480);
+
+        assertEquals("image/png", variant.contentType());
+        assertTrue(ImageIO.read(variant.file().toFile()).getColorModel().hasAlpha());
+    }
+
+    /**
+     * Tests that requesting a variant that has not been rendered queues the image and serves the original.
+     */
+    @Test
+    void queuesMissingVariantsOnRequest() throws Exception {
+        Image image = original(3L, "https://example.com/alps.jpg", 1200, 800, BufferedImage.TYPE_INT_RGB, "jpg");
+
+        assertNull(imageDerivativeService.find(image, 480));
+        assertNotNull(awaitVariant(image, 480));
+        verify(imageContentCache, atLeastOnce()).get(image.getUrl());
+    }
+
+    /**
+     * Tests that the variants of a deleted image are removed from disk.
+     */
+    @Test
+    void removesVariantsOfDeletedImages() throws Exception {
+        Image image = original(4L, "https://example.com/forest.jpg", 1200, 800, BufferedImage.TYPE_INT_RGB, "jpg");
+        imageDerivativeService.submit(image);
+        Path file = awaitVariant(image, 480).file();
+
+        imageDerivativeService.remove(image.getId());
+
+        assertFalse(Files.exists(file));
+    }
+
+    /**
+     * Tests that variants are restored after a restart without rendering them again, and that
+     * variants no image lists any more are deleted.
+     */
+    @Test
+    void restoresVariantsAfterRestart() throws Exception {
+        Image kept = original(5L, "https://example.com/lake.jpg", 1200, 800, BufferedImage.TYPE_INT_RGB, "jpg");
+        Image orphaned = original(6L, "https://example.com/desert.png", 1000, 1000, BufferedImage.TYPE_INT_ARGB, "png");
+        imageDerivativeService.submit(kept);
+        imageDerivativeService.submit(orphaned);
+        Path keptFile = awaitVariant(kept, 480).file();
+        Path orphanedFile = awaitVariant(orphaned, 480).file();
+        imageDerivativeService.stop();
+        Files.delete(directory.resolve("derivatives").resolve("images").resolve("6"));
+
+        imageDerivativeService = new ImageDerivativeService(imageContentCache, directory.resolve("derivatives"),
+                new int[]{960, 480, 4000}, 1, 16, 50_000_000, 0.85f, Clock.systemUTC());
+        imageDerivativeService.init();
+
+        ImageContentCache.CachedImage restored = imageDerivativeService.find(kept, 300);
+        assertNotNull(restored);
+        assertEquals(keptFile, restored.file());
+        assertEquals("image/jpeg", restored.contentType());
+        assertTrue(Files.exists(keptFile));
+        assertFalse(Files.exists(orphanedFile));
+        verify(imageContentCache, times(1)).get(kept.getUrl());
+    }
+
+    private Image original(Long id, String url, int width, int height, int type, String format) throws IOException {
+        Path file = directory.resolve("original-" + id + "." + format);
+        ImageIO.write(new BufferedImage(width, height, type), format, file.toFile());
+        when(imageContentCache.get(url)).thenReturn(Mono.just(new ImageContentCache.CachedImage(file,
+                "image/" + format, Files.size(file), "sha-" + id, Instant.now())));
+        return new Image(id, url);
+    }
+
+    private ImageContentCache.CachedImage awaitVariant(Image image, int width) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            ImageContentCache.CachedImage variant = imageDerivativeService.find(image, width);
+            if (variant != null) {
+                return variant;
+            }
+            Thread.sleep(50);
+        }
+        return fail("No variant was rendered");
+    }
+}
@@ -0,0 +1,109 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.repository.ImageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for ImageMetadataService.
+ * Verifies that queued images have their header parsed and stored, and that the backfill
+ * queues every image without metadata.
+ */
+@ExtendWith(MockitoExtension.class)
+class ImageMetadataServiceTest {
+
+    private static final byte[] PNG_HEADER = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n',
+            0, 0, 0, 13, 'I', 'H', 'D', 'R',
+            0, 0, 0x07, (byte) 0x80, 0, 0, 0x04, 0x38};
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageFetcher imageFetcher;
+
+    private ImageMetadataService imageMetadataService;
+
+    @BeforeEach
+    void setUp() {
+        imageMetadataService = new ImageMetadataService(imageRepository, imageFetcher, 65536, 2,
+                Duration.ZERO, 16, false);
+        imageMetadataService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageMetadataService.stop();
+    }
+
+    /**
+     * Tests that the metadata of a submitted image is read from its header and stored.
+     */
+    @Test
+    void extractsAndStoresMetadata() {
+        Image image = new Image(1L, "https://example.com/image.png");
+        when(imageFetcher.fetchHeader(URI.create(image.getUrl()), 65536))
+                .thenReturn(Mono.just(new ImageFetcher.ImageHeader(PNG_HEADER, 4096L)));
+        when(imageRepository.updateMetadata(anyLong(), anyString(), anyString(), any(), any(), any()))
+                .thenReturn(Mono.just(1));
+
+        imageMetadataService.submit(image);
+
+        verify(imageRepository, timeout(1000))
+                .updateMetadata(1L, "https://example.com/image.png", "PNG", 1920, 1080, 4096L);
+    }
+
+    /**
+     * Tests that a failed fetch is logged and does not stop later extractions.
+     */
+    @Test
+    void continuesAfterFailedFetch() {
+        Image broken = new Image(1L, "https://example.com/broken.png");
+        Image image = new Image(2L, "https://example.com/image.png");
+        when(imageFetcher.fetchHeader(URI.create(broken.getUrl()), 65536))
+                .thenReturn(Mono.error(new IllegalStateException("connection refused")));
+        when(imageFetcher.fetchHeader(URI.create(image.getUrl()), 65536))
+                .thenReturn(Mono.just(new ImageFetcher.ImageHeader(PNG_HEADER, null)));
+        when(imageRepository.updateMetadata(anyLong(), anyString(), anyString(), any(), any(), any()))
+                .thenReturn(Mono.just(1));
+
+        imageMetadataService.submit(broken);
+        imageMetadataService.submit(image);
+
+        verify(imageRepository, timeout(1000))
+                .updateMetadata(2L, "https://example.com/image.png", "PNG", 1920, 1080, null);
+        verify(imageRepository, never()).updateMetadata(eq(1L), anyString(), anyString(), any(), any(), any());
+    }
+
+    /**
+     * Tests that the backfill queues every stored image without metadata.
+     */
+    @Test
+    void backfillQueuesImagesWithoutMetadata() {
+        when(imageRepository.findWithoutMetadata()).thenReturn(Flux.just(
+                new Image(1L, "https://example.com/1.png"),
+                new Image(2L, "https://example.com/2.png")));
+        when(imageFetcher.fetchHeader(any(URI.class), anyInt())).thenReturn(Mono.empty());
+
+        StepVerifier.create(imageMetadataService.backfill())
+                .expectNext(2L)
+                .verifyComplete();
+
+        verify(imageFetcher, timeout(1000).times(2)).fetchHeader(any(URI.class), eq(65536));
+    }
+}
@@ -0,0 +1,125 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.repository.ImageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for ImageSearchIndex.
+ * Verifies that substring searches over URLs and names match those of a scan,
+ * and that the index follows added, changed and removed images.
+ */
+@ExtendWith(MockitoExtension.class)
+class ImageSearchIndexTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    private ImageSearchIndex imageSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        imageSearchIndex = new ImageSearchIndex(imageRepository);
+    }
+
+    /**
+     * Tests that searches are not answered before the index is built.
+     */
+    @Test
+    void returnsNullUntilBuilt() {
+        assertNull(imageSearchIndex.search("cat"));
+        assertFalse(imageSearchIndex.isReady());
+    }
+
+    /**
+     * Tests that the build loads every stored image.
+     */
+    @Test
+    void buildsFromRepository() {
+        when(imageRepository.findAll()).thenReturn(Flux.just(
+                image(1L, "https://example.com/cat.jpg", null),
+                image(2L, "https://example.com/dog.png", "Sleepy Cat")));
+
+        StepVerifier.create(imageSearchIndex.build()).verifyComplete();
+
+        assertTrue(imageSearchIndex.isReady());
+        assertEquals(2, imageSearchIndex.size());
+        assertArrayEquals(new long[]{1L, 2L}, imageSearchIndex.search("cat"));
+    }
+
+    /**
+     * Tests that URLs and names are matched as case-insensitive substrings.
+     */
+    @Test
+    void matchesSubstringsOfUrlsAndNames() {
+        build(image(1L, "https://example.com/Beach-Sunset.jpg", null),
+                image(2L, "https://example.com/mountain.png", "Sunset over the Alps"),
+                image(3L, "https://example.com/forest.gif", "Morning"));
+
+        assertArrayEquals(new long[]{1L, 2L}, imageSearchIndex.search("SUNSET"));
+        assertArrayEquals(new long[]{1L}, imageSearchIndex.search("beach-sun"));
+        assertArrayEquals(new long[]{1L, 2L, 3L}, imageSearchIndex.search("example.com/"));
+        assertArrayEquals(new long[0], imageSearchIndex.search("sunrise"));
+    }
+
+    /**
+     * Tests that candidates sharing all trigrams of the keyword, but not the keyword itself, are rejected.
+     */
+    @Test
+    void rejectsCandidatesWithoutTheKeyword() {
+        build(image(1L, "https://example.com/abcd-bcde.jpg", null));
+
+        assertArrayEquals(new long[0], imageSearchIndex.search("abcde"));
+        assertArrayEquals(new long[]{1L}, imageSearchIndex.search("bcde"));
+    }
+
+    /**
+     * Tests that keywords shorter than a trigram are still matched.
+     */
+    @Test
+    void matchesShortKeywords() {
+        build(image(1L, "https://example.com/a.jpg", null),
+                image(2L, "https://example.com/b.png", "Q"));
+
+        assertArrayEquals(new long[]{2L}, imageSearchIndex.search("q"));
+        assertArrayEquals(new long[]{1L}, imageSearchIndex.search("jp"));
+        assertArrayEquals(new long[]{1L, 2L}, imageSearchIndex.search(""));
+    }
+
+    /**
+     * Tests that updated images are found by their new URL only and removed images are not found.
+     */
+    @Test
+    void followsUpdatesAndRemovals() {
+        build(image(1L, "https://example.com/cat.jpg", null),
+                image(2L, "https://example.com/cats.png", null));
+
+        imageSearchIndex.put(image(1L, "https://example.com/dog.jpg", null));
+        imageSearchIndex.remove(2L);
+        imageSearchIndex.put(image(3L, "https://example.com/bobcat.webp", null));
+
+        assertArrayEquals(new long[]{3L}, imageSearchIndex.search("cat"));
+        assertArrayEquals(new long[]{1L}, imageSearchIndex.search("dog"));
+        assertEquals(2, imageSearchIndex.size());
+    }
+
+    private void build(Image... images) {
+        when(imageRepository.findAll()).thenReturn(Flux.just(images));
+        imageSearchIndex.build().block();
+    }
+
+    private static Image image(Long id, String url, String name) {
+        Image image = new Image(id, url);
+        image.setName(name);
+        return image;
+    }
+}
@@ -1,20 +1,41 @@
 package com.nvs.task.slideshow.service;
 
 import com.nvs.task.slideshow.config.TestConfig;
+import com.nvs.task.slideshow.exception.BadRequestException;
+import com.nvs.task.slideshow.exception.ConflictException;
 import com.nvs.task.slideshow.exception.ResourceNotFoundException;
 import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.ImageFormat;
+import com.nvs.task.slideshow.model.ImageImportResult;
+import com.nvs.task.slideshow.repository.ImageBulkRepository;
 import com.nvs.task.slideshow.repository.ImageRepository;
+import com.nvs.task.slideshow.repository.SlideshowImageRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.AbstractReactiveTransactionManager;
+import org.springframework.transaction.reactive.GenericReactiveTransaction;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 /**
@@ -31,14 +52,48 @@ class ImageServiceTest {
     @Autowired
     private ImageRepository imageRepository;
 
+    @Autowired
+    private ImageUrlValidator imageUrlValidator;
+
+    @Autowired
+    private ImageMetadataService imageMetadataService;
+
+    @Autowired
+    private ImageSearchIndex imageSearchIndex;
+
+    @Autowired
+    private ImageBulkRepository imageBulkRepository;
+
+    @Autowired
+    private ImageContentCache imageContentCache;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private SlideshowTimelineService slideshowTimelineService;
+
+    @Autowired
+    private SlideshowResponseCache slideshowResponseCache;
+
+    @Autowired
+    private SlideshowImageRepository slideshowImageRepository;
+
+    @Autowired
+    private SlideshowImageIndex slideshowImageIndex;
+
     /**
      * Set up method to initialize mocks before each test.
-     * This method opens mocks and resets the imageRepository.
+     * This method opens mocks and resets the imageRepository and the imageUrlValidator,
+     * which by default finds no image behind any URL.
      */
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        reset(imageRepository);
+        reset(imageRepository, imageUrlValidator, imageMetadataService, imageSearchIndex, imageBulkRepository,
+                imageContentCache, imageDerivativeService, slideshowTimelineService,
+                slideshowResponseCache, slideshowImageRepository, slideshowImageIndex);
+        when(imageUrlValidator.validate(anyString())).thenReturn(Mono.empty());
     }
 
     /**
@@ -51,6 +106,7 @@ class ImageServiceTest {
         Image testImage = new Image();
         testImage.setUrl("https://example.com/image.jpg");
 
+        when(imageUrlValidator.validate("https://example.com/image.jpg")).thenReturn(Mono.just(ImageFormat.JPEG));
         when(imageRepository.save(any(Image.class))).thenReturn(Mono.just(testImage));
 
         // Act
@@ -62,6 +118,8 @@ class ImageServiceTest {
                 .verifyComplete();
 
         verify(imageRepository, times(1)).save(testImage);
+        verify(imageMetadataService, times(1)).submit(testImage);
+        verify(imageSearchIndex, times(1)).put(testImage);
     }
 
     /**
@@ -90,12 +148,14 @@ class ImageServiceTest {
 
     /**
      * Test method to verify the deletion of an image.
-     * It checks if the delete operation is called on the repository and completes successfully.
+     * It checks if the image is removed from its slideshows with one statement, deleted, and
+     * the cached state of every affected slideshow evicted.
      */
     @Test
     void testDeleteImage() {
         // Arrange
         Long imageId = 1L;
+        when(slideshowImageRepository.removeImage(imageId)).thenReturn(Flux.just(10L, 11L));
         when(imageRepository.deleteById(imageId)).thenReturn(Mono.empty());
 
         // Act
@@ -105,7 +165,44 @@ class ImageServiceTest {
         StepVerifier.create(result)
                 .verifyComplete();
 
+        verify(slideshowImageRepository, times(1)).removeImage(imageId);
         verify(imageRepository, times(1)).deleteById(imageId);
+        verify(imageSearchIndex, times(1)).remove(imageId);
+        for (Long slideshowId : List.of(10L, 11L)) {
+            verify(slideshowImageIndex, times(1)).evict(slideshowId);
+            verify(slideshowTimelineService, times(1)).evictSlideshow(slideshowId);
+            verify(slideshowResponseCache, times(1)).evict(slideshowId);
+        }
+    }
+
+    /**
+     * Test method to verify that deleting an image inside a transaction leaves the caches alone
+     * until the transaction commits, and entirely when it rolls back.
+     */
+    @Test
+    void testDeleteImageEvictsAfterCommit() {
+        // Arrange
+        Long imageId = 1L;
+        when(slideshowImageRepository.removeImage(imageId)).thenReturn(Flux.just(10L));
+        when(imageRepository.deleteById(imageId)).thenReturn(Mono.empty());
+        TransactionalOperator transactionalOperator = TransactionalOperator.create(new StubTransactionManager());
+
+        // Act & Assert
+        StepVerifier.create(transactionalOperator.transactional(imageService.deleteImage(imageId)
+                        .then(Mono.error(new IllegalStateException("Rolled back")))))
+                .expectError(IllegalStateException.class)
+                .verify();
+        verifyNoInteractions(imageSearchIndex, imageDerivativeService, slideshowImageIndex,
+                slideshowTimelineService, slideshowResponseCache);
+
+        StepVerifier.create(transactionalOperator.transactional(imageService.deleteImage(imageId)
+                        .then(Mono.fromRunnable(() -> verifyNoInteractions(slideshowResponseCache)))))
+                .verifyComplete();
+        verify(imageSearchIndex, times(1)).remove(imageId);
+        verify(imageDerivativeService, times(1)).remove(imageId);
+        verify(slideshowImageIndex, times(1)).evict(10L);
+        verify(slideshowTimelineService, times(1)).evictSlideshow(10L);
+        verify(slideshowResponseCache, times(1)).evict(10L);
     }
 
     /**
@@ -131,11 +228,39 @@ class ImageServiceTest {
     }
 
     /**
-     * Test method to verify the validation of image URLs with allowed file extensions.
-     * It checks if images with valid extensions (jpg, png, gif, svg) are accepted.
+     * Test method to verify that searches are answered from the search index once it is built.
+     * It checks if only the matching images are loaded by ID and the URL scan is not used.
+     */
+    @Test
+    void testSearchImagesUsesIndex() {
+        // Arrange
+        Image first = new Image();
+        first.setId(1L);
+        first.setUrl("https://example.com/cat.jpg");
+        Image second = new Image();
+        second.setId(2L);
+        second.setUrl("https://example.com/cats.png");
+        when(imageSearchIndex.search("cat")).thenReturn(new long[]{1L, 2L});
+        when(imageRepository.findAllById(anyIterable())).thenReturn(Flux.just(second, first));
+
+        // Act
+        Flux<Image> result = imageService.searchImages("cat");
+
+        // Assert
+        StepVerifier.create(result)
+                .expectNext(first, second)
+                .verifyComplete();
+
+        verify(imageRepository, never()).findByUrlContainingIgnoreCase(anyString());
+    }
+
+    /**
+     * Test method to verify the validation of image URLs whose content is an image.
+     * It checks if images detected by the validator (jpg, png, gif, svg) are accepted.
      */
     @Test
     void testValidateImageUrlWithAllowedExtensions() {
+        when(imageUrlValidator.validate(anyString())).thenReturn(Mono.just(ImageFormat.PNG));
         // Arrange
         String[] validUrls = {
                 "https://example.com/image.jpg",
@@ -181,18 +306,41 @@ class ImageServiceTest {
     }
 
     /**
-     * Test method to verify the retrieval of all images.
-     * It checks if all images are correctly returned from the repository.
+     * Test method to verify that a URL with an image extension is rejected when
+     * its content is not an image.
      */
     @Test
-    void testGetAllImages() {
+    void testAddImageRejectedWhenContentIsNotAnImage() {
         // Arrange
-        Image image1 = new Image(1L, "https://example.com/image1.jpg");
-        Image image2 = new Image(2L, "https://example.com/image2.png");
-        when(imageRepository.findAll()).thenReturn(Flux.just(image1, image2));
+        String url = "https://example.com/not-really.jpg";
+        Image image = new Image();
+        image.setUrl(url);
+
+        // Act & Assert
+        StepVerifier.create(imageService.addImage(image))
+                .expectErrorMatches(throwable ->
+                        throwable instanceof IllegalArgumentException &&
+                                throwable.getMessage().equals("Invalid image URL: " + url)
+                )
+                .verify();
+
+        verify(imageUrlValidator, times(1)).validate(url);
+        verify(imageRepository, never()).save(any(Image.class));
+    }
+
+    /**
+     * Test method to verify the retrieval of a page of images.
+     * It checks if the page starts after the given ID and is limited to the requested size.
+     */
+    @Test
+    void testGetImages() {
+        // Arrange
+        Image image1 = new Image(11L, "https://example.com/image1.jpg");
+        Image image2 = new Image(12L, "https://example.com/image2.png");
+        when(imageRepository.findPage(10L, 2)).thenReturn(Flux.just(image1, image2));
 
         // Act
-        Flux<Image> result = imageService.getAllImages();
+        Flux<Image> result = imageService.getImages(10L, 2);
 
         // Assert
         StepVerifier.create(result)
@@ -200,7 +348,32 @@ class ImageServiceTest {
                 .expectNext(image2)
                 .verifyComplete();
 
-        verify(imageRepository, times(1)).findAll();
+        verify(imageRepository, times(1)).findPage(10L, 2);
+    }
+
+    /**
+     * Test method to verify that streaming all images loads them page by page.
+     * It checks if each page starts after the last ID of the previous one and the stream
+     * ends with the first page that is not full.
+     */
+    @Test
+    void testStreamImagesLoadsPageByPage() {
+        // Arrange
+        List<Image> firstPage = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            firstPage.add(new Image(id, "https://example.com/image" + id + ".jpg"));
+        }
+        Image last = new Image(501L, "https://example.com/image501.jpg");
+        when(imageRepository.findPage(0L, 500)).thenReturn(Flux.fromIterable(firstPage));
+        when(imageRepository.findPage(500L, 500)).thenReturn(Flux.just(last));
+
+        // Act & Assert
+        StepVerifier.create(imageService.streamImages(null))
+                .expectNextSequence(firstPage)
+                .expectNext(last)
+                .verifyComplete();
+
+        verify(imageRepository, times(2)).findPage(anyLong(), eq(500));
     }
 
     /**
@@ -234,7 +407,9 @@ class ImageServiceTest {
         // Arrange
         Long nonExistentId = 999L;
         Image updatedImage = new Image(nonExistentId, "https://example.com/updated.jpg");
-        when(imageRepository.findById(nonExistentId)).thenReturn(Mono.empty());
+        when(imageUrlValidator.validate(updatedImage.getUrl())).thenReturn(Mono.just(ImageFormat.JPEG));
+        when(imageRepository.updateFields(eq(nonExistentId), any(), anyString(), any(), anyInt(), isNull()))
+                .thenReturn(Mono.empty());
 
         // Act
         Mono<Image> result = imageService.updateImage(nonExistentId, updatedImage);
@@ -247,10 +422,29 @@ class ImageServiceTest {
                 )
                 .verify();
 
-        verify(imageRepository, times(1)).findById(nonExistentId);
+        verify(imageRepository, never()).findVersionById(anyLong());
         verify(imageRepository, never()).save(any(Image.class));
     }
 
+    /**
+     * Test method to verify that an update based on an outdated version fails with a conflict.
+     */
+    @Test
+    void testUpdateImageConflict() {
+        Image updatedImage = new Image(1L, "https://example.com/updated.jpg");
+        when(imageUrlValidator.validate(updatedImage.getUrl())).thenReturn(Mono.just(ImageFormat.JPEG));
+        when(imageRepository.updateFields(eq(1L), any(), anyString(), any(), anyInt(), eq(3L)))
+                .thenReturn(Mono.empty());
+        when(imageRepository.findVersionById(1L)).thenReturn(Mono.just(5L));
+
+        StepVerifier.create(imageService.updateImage(1L, updatedImage, 3L))
+                .expectError(ConflictException.class)
+                .verify();
+
+        verify(imageSearchIndex, never()).put(any(Image.class));
+        verify(slideshowResponseCache, never()).evictImage(anyLong());
+    }
+
     /**
      * Test method to verify the successful update of an existing image.
      * It checks if the image is correctly updated and saved in the repository.
@@ -259,11 +453,11 @@ class ImageServiceTest {
     void testUpdateImageSuccessfully() {
         // Arrange
         Long imageId = 1L;
-        Image existingImage = new Image(imageId, "https://example.com/old-image.jpg");
         Image updatedImage = new Image(imageId, "https://example.com/new-image.png");
 
-        when(imageRepository.findById(imageId)).thenReturn(Mono.just(existingImage));
-        when(imageRepository.save(any(Image.class))).thenReturn(Mono.just(updatedImage));
+        when(imageUrlValidator.validate(updatedImage.getUrl())).thenReturn(Mono.just(ImageFormat.PNG));
+        when(imageRepository.updateFields(imageId, null, updatedImage.getUrl(), null, 0, null))
+                .thenReturn(Mono.just(updatedImage));
 
         // Act
         Mono<Image> result = imageService.updateImage(imageId, updatedImage);
@@ -273,7 +467,169 @@ class ImageServiceTest {
                 .expectNext(updatedImage)
                 .verifyComplete();
 
-        verify(imageRepository, times(1)).findById(imageId);
-        verify(imageRepository, times(1)).save(updatedImage);
+        verify(imageRepository, never()).findById(anyLong());
+        verify(imageRepository, never()).save(any(Image.class));
+        verify(imageMetadataService, times(1)).submit(updatedImage);
+        verify(slideshowTimelineService, times(1)).evictImage(imageId);
+        verify(slideshowResponseCache, times(1)).evictImage(imageId);
+    }
+
+    /**
+     * Test method to verify that an update pointing the image at a URL without an image is rejected
+     * before anything is written.
+     */
+    @Test
+    void testUpdateImageWithInvalidUrl() {
+        Image updatedImage = new Image(1L, "http://169.254.169.254/latest/meta-data/");
+
+        StepVerifier.create(imageService.updateImage(1L, updatedImage))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verify(imageRepository, never()).updateFields(anyLong(), any(), any(), any(), anyInt(), any());
+        verify(slideshowResponseCache, never()).evictImage(anyLong());
+    }
+
+    /**
+     * Test method to verify a bulk import.
+     * It checks if valid images are stored with a single insert and every image gets a result
+     * in input order, with rejected images explaining why.
+     */
+    @Test
+    void testImportImages() {
+        // Arrange
+        Image valid = image("Beach", "https://example.com/beach.jpg");
+        Image unnamed = image(null, "https://example.com/forest.jpg");
+        Image notAnImage = image("Readme", "https://example.com/readme.txt");
+        Image alsoValid = image("Alps", "https://example.com/alps.png");
+        when(imageUrlValidator.validate("https://example.com/beach.jpg")).thenReturn(Mono.just(ImageFormat.JPEG));
+        when(imageUrlValidator.validate("https://example.com/alps.png")).thenReturn(Mono.just(ImageFormat.PNG));
+        when(imageBulkRepository.insertAll(List.of(valid, alsoValid))).thenReturn(Flux.just(7L, 8L));
+
+        // Act
+        Flux<ImageImportResult> result = imageService.importImages(Flux.just(valid, unnamed, notAnImage, alsoValid));
+
+        // Assert
+        StepVerifier.create(result)
+                .expectNext(new ImageImportResult(0, 7L, valid.getUrl(), ImageImportResult.Status.IMPORTED, null))
+                .expectNext(new ImageImportResult(1, null, unnamed.getUrl(), ImageImportResult.Status.REJECTED,
+                        "name is required"))
+                .expectNext(new ImageImportResult(2, null, notAnImage.getUrl(), ImageImportResult.Status.REJECTED,
+                        "Invalid image URL: " + notAnImage.getUrl()))
+                .expectNext(new ImageImportResult(3, 8L, alsoValid.getUrl(), ImageImportResult.Status.IMPORTED, null))
+                .verifyComplete();
+
+        verify(imageBulkRepository, times(1)).insertAll(anyList());
+        verify(imageUrlValidator, never()).validate(unnamed.getUrl());
+        verify(imageSearchIndex, times(1)).put(valid);
+        verify(imageMetadataService, times(1)).submit(alsoValid);
+    }
+
+    /**
+     * Test method to verify that a failed insert rejects the images of its batch instead of failing the import.
+     */
+    @Test
+    void testImportImagesWhenInsertFails() {
+        // Arrange
+        Image valid = image("Beach", "https://example.com/beach.jpg");
+        when(imageUrlValidator.validate(valid.getUrl())).thenReturn(Mono.just(ImageFormat.JPEG));
+        when(imageBulkRepository.insertAll(anyList())).thenReturn(Flux.error(new IllegalStateException("connection lost")));
+
+        // Act & Assert
+        StepVerifier.create(imageService.importImages(Flux.just(valid)))
+                .expectNext(new ImageImportResult(0, null, valid.getUrl(), ImageImportResult.Status.REJECTED,
+                        "Image could not be stored"))
+                .verifyComplete();
+
+        verify(imageMetadataService, never()).submit(any(Image.class));
+    }
+
+    /**
+     * Test method to verify that a rendered variant is served for a display width.
+     * It checks if the original is not fetched when a variant is available.
+     */
+    @Test
+    void testGetImageContentServesVariant() {
+        // Arrange
+        Image image = new Image(1L, "https://example.com/beach.jpg");
+        ImageContentCache.CachedImage variant = new ImageContentCache.CachedImage(Path.of("variant"),
+                "image/jpeg", 100, "abc", Instant.EPOCH);
+        when(imageRepository.findById(1L)).thenReturn(Mono.just(image));
+        when(imageDerivativeService.find(image, 480)).thenReturn(variant);
+
+        // Act & Assert
+        StepVerifier.create(imageService.getImageContent(1L, 480))
+                .expectNext(variant)
+                .verifyComplete();
+
+        verify(imageContentCache, never()).get(anyString());
+    }
+
+    /**
+     * Test method to verify that the original is served until a variant is available.
+     */
+    @Test
+    void testGetImageContentFallsBackToOriginal() {
+        // Arrange
+        Image image = new Image(1L, "https://example.com/beach.jpg");
+        ImageContentCache.CachedImage original = new ImageContentCache.CachedImage(Path.of("original"),
+                "image/jpeg", 1000, "def", Instant.EPOCH);
+        when(imageRepository.findById(1L)).thenReturn(Mono.just(image));
+        when(imageContentCache.get(image.getUrl())).thenReturn(Mono.just(original));
+
+        // Act & Assert
+        StepVerifier.create(imageService.getImageContent(1L, 480))
+                .expectNext(original)
+                .verifyComplete();
+
+        verify(imageDerivativeService, times(1)).find(image, 480);
+    }
+
+    /**
+     * Test method to verify that a width that is not positive is rejected.
+     */
+    @Test
+    void testGetImageContentRejectsInvalidWidth() {
+        StepVerifier.create(imageService.getImageContent(1L, 0))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        verify(imageRepository, never()).findById(anyLong());
+    }
+
+    /**
+     * A transaction manager without a resource, running the synchronizations of its transactions.
+     */
+    private static class StubTransactionManager extends AbstractReactiveTransactionManager {
+
+        @Override
+        protected Object doGetTransaction(TransactionSynchronizationManager synchronizationManager) {
+            return new Object();
+        }
+
+        @Override
+        protected Mono<Void> doBegin(TransactionSynchronizationManager synchronizationManager, Object transaction,
+                                     TransactionDefinition definition) {
+            return Mono.empty();
+        }
+
+        @Override
+        protected Mono<Void> doCommit(TransactionSynchronizationManager synchronizationManager,
+                                      GenericReactiveTransaction status) {
+            return Mono.empty();
+        }
+
+        @Override
+        protected Mono<Void> doRollback(TransactionSynchronizationManager synchronizationManager,
+                                        GenericReactiveTransaction status) {
+            return Mono.empty();
+        }
+    }
+
+    private static Image image(String name, String url) {
+        Image image = new Image();
+        image.setName(name);
+        image.setUrl(url);
+        return image;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,164 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ImageFormat;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ImageUrlValidator.
+ * Runs the validator against a local stub HTTP server to verify format detection,
+ * request sharing, result caching and the per-host concurrency limit.
+ */
+class ImageUrlValidatorTest {
+
+    private static final byte[] PNG_HEADER = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13};
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String baseUrl;
+
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final List<String> rangeHeaders = new CopyOnWriteArrayList<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that a PNG is detected from a ranged request for its first bytes.
+     */
+    @Test
+    void detectsImageFromFirstBytes() {
+        StepVerifier.create(validator(4).validate(baseUrl + "/image.png"))
+                .expectNext(ImageFormat.PNG)
+                .verifyComplete();
+
+        assertEquals(List.of("bytes=0-1023"), rangeHeaders);
+    }
+
+    /**
+     * Tests that resources which are not images, missing resources and non-HTTP URLs are rejected.
+     */
+    @Test
+    void rejectsNonImages() {
+        ImageUrlValidator validator = validator(4);
+
+        StepVerifier.create(validator.validate(baseUrl + "/page.jpg")).verifyComplete();
+        StepVerifier.create(validator.validate(baseUrl + "/missing.png")).verifyComplete();
+        StepVerifier.create(validator.validate("ftp://127.0.0.1/image.png")).verifyComplete();
+        StepVerifier.create(validator.validate("invalid-url")).verifyComplete();
+
+        assertEquals(1, hits.get("/page.jpg").get());
+        assertEquals(1, hits.get("/missing.png").get());
+    }
+
+    /**
+     * Tests that concurrent checks of the same URL share one request and later checks use the cache.
+     */
+    @Test
+    void sharesConcurrentChecksAndCachesResults() {
+        ImageUrlValidator validator = validator(4);
+        String url = baseUrl + "/slow/image.png";
+
+        StepVerifier.create(Flux.range(0, 10).flatMap(i -> validator.validate(url)))
+                .expectNextCount(10)
+                .verifyComplete();
+        StepVerifier.create(validator.validate(url))
+                .expectNext(ImageFormat.PNG)
+                .verifyComplete();
+
+        assertEquals(1, hits.get("/slow/image.png").get());
+    }
+
+    /**
+     * Tests that no more than the configured number of requests run against one host at once.
+     */
+    @Test
+    void limitsConcurrentRequestsPerHost() {
+        ImageUrlValidator validator = validator(2);
+
+        StepVerifier.create(Flux.range(0, 8).flatMap(i -> validator.validate(baseUrl + "/slow/" + i + ".png")))
+                .expectNextCount(8)
+                .verifyComplete();
+
+        assertTrue(maxActive.get() <= 2, "max concurrent requests: " + maxActive.get());
+    }
+
+    private ImageUrlValidator validator(int maxConcurrencyPerHost) {
+        ImageFetcher imageFetcher = new ImageFetcher(WebClient.builder(), Duration.ofSeconds(5), Duration.ofSeconds(5),
+                maxConcurrencyPerHost, true);
+        return new ImageUrlValidator(imageFetcher, 1024, Duration.ofHours(1), Duration.ofMinutes(5), 100,
+                Clock.systemUTC());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        hits.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null) {
+            rangeHeaders.add(range);
+        }
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            if (path.startsWith("/slow/")) {
+                Thread.sleep(100);
+            }
+            if (path.endsWith("/missing.png")) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if (path.endsWith(".png")) {
+                respond(exchange, 206, "image/png", PNG_HEADER);
+            } else {
+                respond(exchange, 200, "text/html", "<html><body>Not an image</body></html>".getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for KafkaProducerService.
+ * Verifies that the returned Mono follows the broker acknowledgement of each send.
+ */
+@ExtendWith(MockitoExtension.class)
+class KafkaProducerServiceTest {
+
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Spy
+    private ProofOfPlayEventEncoder proofOfPlayEventEncoder = new ProofOfPlayEventEncoder("json");
+
+    @InjectMocks
+    private KafkaProducerService kafkaProducerService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(kafkaProducerService, "proofOfPlayTopic", "proof-of-play");
+        ReflectionTestUtils.setField(kafkaProducerService, "maxInFlightSends", 16);
+    }
+
+    /**
+     * Tests that the Mono does not complete before the broker acknowledges the record.
+     */
+    @Test
+    void completesOnAcknowledgement() {
+        CompletableFuture<SendResult<String, byte[]>> ack = new CompletableFuture<>();
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(ack);
+
+        StepVerifier.create(kafkaProducerService.sendProofOfPlayEvent(1L, 101L))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(50))
+                .then(() -> ack.complete(null))
+                .verifyComplete();
+    }
+
+    /**
+     * Tests that records are keyed by slideshow and carry the encoded payload and its content type.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendsEncodedRecord() {
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        ProofOfPlayEvent event = new ProofOfPlayEvent(1L, 101L, Instant.parse("2024-05-01T10:15:30Z"));
+
+        StepVerifier.create(kafkaProducerService.sendProofOfPlayEvents(List.of(event)))
+                .verifyComplete();
+
+        ArgumentCaptor<ProducerRecord<String, byte[]>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(captor.capture());
+        ProducerRecord<String, byte[]> record = captor.getValue();
+        assertEquals("proof-of-play", record.topic());
+        assertEquals("1", record.key());
+        assertArrayEquals(proofOfPlayEventEncoder.encode(event), record.value());
+        assertArrayEquals("application/json".getBytes(),
+                record.headers().lastHeader(KafkaProducerService.CONTENT_TYPE_HEADER).value());
+    }
+
+    /**
+     * Tests that a failed send surfaces as an error of the batch.
+     */
+    @Test
+    void propagatesSendFailure() {
+        CompletableFuture<SendResult<String, byte[]>> ok = CompletableFuture.completedFuture(null);
+        CompletableFuture<SendResult<String, byte[]>> failed = CompletableFuture.failedFuture(new IllegalStateException("broker down"));
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(ok, failed);
+
+        List<ProofOfPlayEvent> batch = List.of(
+                new ProofOfPlayEvent(1L, 101L, Instant.now()),
+                new ProofOfPlayEvent(1L, 102L, Instant.now()));
+
+        StepVerifier.create(kafkaProducerService.sendProofOfPlayEvents(batch))
+                .expectErrorMessage("broker down")
+                .verify();
+
+        verify(kafkaTemplate, times(2)).send(any(ProducerRecord.class));
+    }
+}
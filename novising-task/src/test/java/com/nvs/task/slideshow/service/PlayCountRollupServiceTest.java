@@ -0,0 +1,264 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.exception.BadRequestException;
+import com.nvs.task.slideshow.model.PlayCountRollup;
+import com.nvs.task.slideshow.model.PlayStats;
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import com.nvs.task.slideshow.model.StatsGranularity;
+import com.nvs.task.slideshow.repository.PlayCountRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for PlayCountRollupService.
+ * Verifies bucketing, that only increments are flushed, that eviction loses no play, and how
+ * queries split a range between memory and database.
+ */
+@ExtendWith(MockitoExtension.class)
+class PlayCountRollupServiceTest {
+
+    private static final Instant NOW = Instant.parse("2024-05-01T12:30:30Z");
+
+    @Mock
+    private PlayCountRollupRepository playCountRollupRepository;
+
+    private final TestClock clock = new TestClock();
+
+    private PlayCountRollupService rollupService;
+
+    @BeforeEach
+    void setUp() {
+        // Started long enough ago that every bucket within retention is held completely in memory
+        rollupService = startedAt(NOW.minus(Duration.ofDays(3)));
+    }
+
+    /**
+     * Tests that recent plays are counted from memory alone, grouped per minute and image.
+     */
+    @Test
+    void getStatsFromMemory() {
+        rollupService.record(new ProofOfPlayEvent(1L, 101L, Instant.parse("2024-05-01T12:28:05Z")));
+        rollupService.record(new ProofOfPlayEvent(1L, 101L, Instant.parse("2024-05-01T12:28:55Z")));
+        rollupService.record(new ProofOfPlayEvent(1L, 102L, Instant.parse("2024-05-01T12:28:30Z")));
+        rollupService.record(new ProofOfPlayEvent(1L, 102L, Instant.parse("2024-05-01T12:29:00Z")));
+        rollupService.record(new ProofOfPlayEvent(2L, 201L, Instant.parse("2024-05-01T12:29:10Z")));
+
+        StepVerifier.create(rollupService.getStats(1L, StatsGranularity.MINUTE,
+                        Instant.parse("2024-05-01T12:00:00Z"), NOW))
+                .assertNext(stats -> {
+                    assertEquals(4, stats.getTotalPlays());
+                    assertEquals(List.of(
+                            new PlayStats.Bucket(Instant.parse("2024-05-01T12:28:00Z"), 3, Map.of(101L, 2L, 102L, 1L)),
+                            new PlayStats.Bucket(Instant.parse("2024-05-01T12:29:00Z"), 1, Map.of(102L, 1L))),
+                            stats.getBuckets());
+                })
+                .verifyComplete();
+
+        verify(playCountRollupRepository, never()).findBySlideshow(anyLong(), any(), any(), any());
+    }
+
+    /**
+     * Tests that buckets begun before startup are read from the database, with the plays not
+     * flushed yet added and those already flushed not counted twice.
+     */
+    @Test
+    void getStatsAfterRestartReadsEarlierBucketsFromDatabase() {
+        rollupService = startedAt(Instant.parse("2024-05-01T12:28:30Z"));
+        Instant minute = Instant.parse("2024-05-01T12:28:00Z");
+        Instant nextMinute = Instant.parse("2024-05-01T12:29:00Z");
+        when(playCountRollupRepository.incrementAll(anyList())).thenReturn(Mono.just(1L));
+        rollupService.record(new ProofOfPlayEvent(1L, 101L, minute.plusSeconds(35)));
+        rollupService.record(new ProofOfPlayEvent(1L, 101L, nextMinute.plusSeconds(5)));
+        StepVerifier.create(rollupService.flush(false)).verifyComplete();
+        rollupService.record(new ProofOfPlayEvent(1L, 101L, minute.plusSeconds(40)));
+        // One play flushed by this instance, four before the restart
+        when(playCountRollupRepository.findBySlideshow(eq(1L), eq(StatsGranularity.MINUTE), any(Instant.class), any(Instant.class)))
+                .thenReturn(Flux.just(new PlayCountRollup(StatsGranularity.MINUTE, minute, 1L, 101L, 5)));
+
+        StepVerifier.create(rollupService.getStats(1L, StatsGranularity.MINUTE,
+                        Instant.parse("2024-05-01T12:00:00Z"), NOW))
+                .assertNext(stats -> {
+                    assertEquals(7, stats.getTotalPlays());
+                    assertEquals(List.of(
+                            new PlayStats.Bucket(minute, 6, Map.of(101L, 6L)),
+                            new PlayStats.Bucket(nextMinute, 1, Map.of(101L, 1L))), stats.getBuckets());
+                })
+                .verifyComplete();
+
+        verify(playCountRollupRepository).findBySlideshow(1L, StatsGranularity.MINUTE,
+                Instant.parse("2024-05-01T12:00:00Z"), nextMinute);
+    }
+
+    /**
+     * Tests that ranges older than the in-memory retention are read from the database.
+     */
+    @Test
+    void getStatsFromDatabaseBeyondRetention() {
+        Instant bucket = Instant.parse("2024-05-01T08:00:00Z");
+        when(playCountRollupRepository.findBySlideshow(eq(1L), eq(StatsGranularity.MINUTE), any(Instant.class), any(Instant.class)))
+                .thenReturn(Flux.just(
+                        new PlayCountRollup(StatsGranularity.MINUTE, bucket, 1L, 101L, 5),
+                        new PlayCountRollup(StatsGranularity.MINUTE, bucket, 1L, 102L, 2)));
+        rollupService.record(new ProofOfPlayEvent(1L, 101L, Instant.parse("2024-05-01T12:00:10Z")));
+
+        StepVerifier.create(rollupService.getStats(1L, StatsGranularity.MINUTE,
+                        Instant.parse("2024-05-01T08:00:00Z"), NOW))
+                .assertNext(stats -> {
+                    assertEquals(8, stats.getTotalPlays());
+                    assertEquals(2, stats.getBuckets().size());
+                    assertEquals(new PlayStats.Bucket(bucket, 7, Map.of(101L, 5L, 102L, 2L)), stats.getBuckets().get(0));
+                })
+                .verifyComplete();
+
+        verify(playCountRollupRepository).findBySlideshow(1L, StatsGranularity.MINUTE,
+                Instant.parse("2024-05-01T08:00:00Z"), Instant.parse("2024-05-01T09:30:00Z"));
+    }
+
+    /**
+     * Tests that only closed buckets are flushed and that a second flush writes only new plays.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushWritesIncrementsOfClosedBuckets() {
+        when(playCountRollupRepository.incrementAll(anyList())).thenReturn(Mono.just(1L));
+        Instant closedMinute = Instant.parse("2024-05-01T12:29:00Z");
+        rollupService.record(new ProofOfPlayEvent(1L, 101L, closedMinute.plusSeconds(5)));
+        rollupService.record(new ProofOfPlayEvent(1L, 101L, closedMinute.plusSeconds(6)));
+        rollupService.record(new ProofOfPlayEvent(1L, 101L, NOW));
+
+        StepVerifier.create(rollupService.flush(false)).verifyComplete();
+        rollupService.record(new ProofOfPlayEvent(1L, 101L, closedMinute.plusSeconds(7)));
+        StepVerifier.create(rollupService.flush(false)).verifyComplete();
+
+        ArgumentCaptor<List<PlayCountRollup>> captor = ArgumentCaptor.forClass(List.class);
+        verify(playCountRollupRepository, times(2)).incrementAll(captor.capture());
+        assertEquals(List.of(new PlayCountRollup(StatsGranularity.MINUTE, closedMinute, 1L, 101L, 2)),
+                captor.getAllValues().get(0));
+        assertEquals(List.of(new PlayCountRollup(StatsGranularity.MINUTE, closedMinute, 1L, 101L, 1)),
+                captor.getAllValues().get(1));
+    }
+
+    /**
+     * Tests that plays dated in the future are counted in the current bucket.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void countsFuturePlaysAtTheCurrentTime() {
+        when(playCountRollupRepository.incrementAll(anyList())).thenReturn(Mono.just(1L));
+        rollupService.record(new ProofOfPlayEvent(1L, 101L, NOW.plus(Duration.ofDays(365))));
+
+        StepVerifier.create(rollupService.flush(true)).verifyComplete();
+
+        ArgumentCaptor<List<PlayCountRollup>> captor = ArgumentCaptor.forClass(List.class);
+        verify(playCountRollupRepository).incrementAll(captor.capture());
+        assertEquals(List.of(
+                        new PlayCountRollup(StatsGranularity.MINUTE, Instant.parse("2024-05-01T12:30:00Z"), 1L, 101L, 1),
+                        new PlayCountRollup(StatsGranularity.HOUR, Instant.parse("2024-05-01T12:00:00Z"), 1L, 101L, 1)),
+                captor.getValue());
+    }
+
+    /**
+     * Tests that plays recorded while flushes evict the buckets they land in are all flushed.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void evictionLosesNoPlay() throws InterruptedException {
+        AtomicLong flushedPlays = new AtomicLong();
+        when(playCountRollupRepository.incrementAll(anyList())).thenAnswer(invocation -> {
+            for (PlayCountRollup rollup : (List<PlayCountRollup>) invocation.getArgument(0)) {
+                if (rollup.getGranularity() == StatsGranularity.MINUTE) {
+                    flushedPlays.addAndGet(rollup.getPlayCount());
+                }
+            }
+            return Mono.just(1L);
+        });
+        // Past retention, so every flush evicts the bucket once it is fully flushed
+        Instant playedAt = NOW.minus(Duration.ofDays(1));
+        int threads = 4;
+        int playsPerThread = 20_000;
+
+        List<Thread> recorders = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread recorder = new Thread(() -> {
+                for (int play = 0; play < playsPerThread; play++) {
+                    rollupService.record(new ProofOfPlayEvent(1L, 101L, playedAt));
+                }
+            });
+            recorder.start();
+            recorders.add(recorder);
+        }
+        boolean recording = true;
+        while (recording) {
+            rollupService.flush(false).block();
+            recording = recorders.stream().anyMatch(Thread::isAlive);
+        }
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+        rollupService.flush(true).block();
+
+        assertEquals((long) threads * playsPerThread, flushedPlays.get());
+    }
+
+    /**
+     * Tests that ranges spanning too many buckets are rejected.
+     */
+    @Test
+    void getStatsRejectsOversizedRange() {
+        StepVerifier.create(rollupService.getStats(1L, StatsGranularity.MINUTE, Instant.EPOCH, NOW))
+                .expectError(BadRequestException.class)
+                .verify();
+    }
+
+    private PlayCountRollupService startedAt(Instant startedAt) {
+        clock.now = startedAt;
+        PlayCountRollupService service = new PlayCountRollupService(playCountRollupRepository,
+                Duration.ofSeconds(10), Duration.ofHours(3), Duration.ofHours(48), clock);
+        clock.now = NOW;
+        return service;
+    }
+
+    /**
+     * A UTC clock that tests set explicitly.
+     */
+    private static final class TestClock extends Clock {
+
+        private volatile Instant now = NOW;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
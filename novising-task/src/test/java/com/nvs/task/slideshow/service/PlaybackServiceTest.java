@@ -0,0 +1,155 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.exception.ResourceNotFoundException;
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.PlaybackSession;
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for PlaybackService.
+ * Plays slideshows of one-second images in real time to verify that every image shown is
+ * recorded as a proof of play and that sessions end when stopped or when their slideshow is deleted.
+ */
+@ExtendWith(MockitoExtension.class)
+class PlaybackServiceTest {
+
+    @Mock
+    private SlideshowTimelineService slideshowTimelineService;
+
+    @Mock
+    private ProofOfPlayIngestionService proofOfPlayIngestionService;
+
+    private PlaybackService playbackService;
+
+    @BeforeEach
+    void setUp() {
+        playbackService = new PlaybackService(slideshowTimelineService, proofOfPlayIngestionService,
+                Duration.ofMillis(10), 64, 2);
+        playbackService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        playbackService.stop();
+    }
+
+    /**
+     * Tests that the image on screen is recorded when the session starts and its successor when it comes on screen.
+     */
+    @Test
+    void recordsEveryImageShown() {
+        givenTimeline();
+        when(proofOfPlayIngestionService.offer(any(ProofOfPlayEvent.class))).thenReturn(true);
+
+        PlaybackSession session = playbackService.startSession(1L, null).block();
+
+        assertNotNull(session);
+        assertEquals(1L, session.getSlideshowId());
+        assertEquals(Instant.EPOCH, session.getEpochStart());
+        assertEquals(1, session.getPlayCount());
+
+        ArgumentCaptor<ProofOfPlayEvent> events = ArgumentCaptor.forClass(ProofOfPlayEvent.class);
+        verify(proofOfPlayIngestionService, timeout(3000).atLeast(2)).offer(events.capture());
+        ProofOfPlayEvent first = events.getAllValues().get(0);
+        ProofOfPlayEvent second = events.getAllValues().get(1);
+        assertEquals(1L, second.getSlideshowId());
+        assertNotEquals(first.getImageId(), second.getImageId());
+        assertFalse(second.getPlayedAt().isBefore(first.getPlayedAt()));
+    }
+
+    /**
+     * Tests that a stopped session records no further plays and is no longer found.
+     */
+    @Test
+    void stopsSessions() throws InterruptedException {
+        givenTimeline();
+        when(proofOfPlayIngestionService.offer(any(ProofOfPlayEvent.class))).thenReturn(true);
+        PlaybackSession session = playbackService.startSession(1L, null).block();
+
+        StepVerifier.create(playbackService.stopSession(session.getId())).verifyComplete();
+        Thread.sleep(1_500);
+
+        verify(proofOfPlayIngestionService, times(1)).offer(any(ProofOfPlayEvent.class));
+        StepVerifier.create(playbackService.getSession(session.getId()))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+        assertEquals(0, playbackService.getSessionCount());
+    }
+
+    /**
+     * Tests that a session ends by itself once its slideshow is gone.
+     */
+    @Test
+    void endsSessionsOfDeletedSlideshows() throws InterruptedException {
+        when(slideshowTimelineService.getTimeline(1L))
+                .thenReturn(Mono.just(timeline()))
+                .thenReturn(Mono.empty());
+        when(proofOfPlayIngestionService.offer(any(ProofOfPlayEvent.class))).thenReturn(true);
+
+        playbackService.startSession(1L, null).block();
+
+        awaitNoSessions();
+        verify(slideshowTimelineService, times(2)).getTimeline(1L);
+        verify(proofOfPlayIngestionService, times(1)).offer(any(ProofOfPlayEvent.class));
+    }
+
+    /**
+     * Tests that unknown slideshows and sessions beyond the limit are rejected.
+     */
+    @Test
+    void rejectsUnknownSlideshowsAndTooManySessions() {
+        when(slideshowTimelineService.getTimeline(99L)).thenReturn(Mono.empty());
+        StepVerifier.create(playbackService.startSession(99L, null))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+
+        givenTimeline();
+        when(proofOfPlayIngestionService.offer(any(ProofOfPlayEvent.class))).thenReturn(true);
+        playbackService.startSession(1L, null).block();
+        playbackService.startSession(1L, null).block();
+
+        StepVerifier.create(playbackService.startSession(1L, null))
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    private void awaitNoSessions() throws InterruptedException {
+        for (int attempt = 0; attempt < 60; attempt++) {
+            if (playbackService.getSessionCount() == 0) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("The session did not end");
+    }
+
+    private void givenTimeline() {
+        when(slideshowTimelineService.getTimeline(1L)).thenReturn(Mono.just(timeline()));
+    }
+
+    private static SlideshowTimeline timeline() {
+        Image first = new Image(101L, "https://example.com/first.jpg");
+        first.setDuration(1);
+        Image second = new Image(102L, "https://example.com/second.jpg");
+        second.setDuration(1);
+        return SlideshowTimeline.compile(1L, List.of(first, second));
+    }
+}
@@ -0,0 +1,100 @@
+package com.nvs.task.slideshow.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test class for ProofOfPlayEventEncoder.
+ * Verifies that the JSON output matches the previous Jackson-based payload
+ * and that the binary layout is as documented.
+ */
+class ProofOfPlayEventEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Tests that the JSON payload is equivalent to the map-based payload for various timestamps and zones.
+     */
+    @Test
+    void jsonMatchesPreviousPayload() throws IOException {
+        String[] instants = {
+                "2024-05-01T10:15:30Z",
+                "2024-05-01T10:15:00Z",
+                "2024-05-01T00:00:00Z",
+                "2024-02-29T23:59:59.5Z",
+                "2024-12-31T23:59:59.123456Z",
+                "1999-01-01T01:02:03.000000007Z",
+                "1970-01-01T00:00:00Z"
+        };
+        for (String zoneId : new String[]{"UTC", "Europe/Berlin", "America/Los_Angeles", "Asia/Kolkata"}) {
+            ZoneId zone = ZoneId.of(zoneId);
+            ProofOfPlayEventEncoder encoder = new ProofOfPlayEventEncoder("json", zone);
+            for (String value : instants) {
+                Instant playedAt = Instant.parse(value);
+                ProofOfPlayEvent event = new ProofOfPlayEvent(42L, -7L, playedAt);
+
+                Map<String, Object> expected = new HashMap<>();
+                expected.put("slideshowId", 42L);
+                expected.put("imageId", -7L);
+                expected.put("timestamp", LocalDateTime.ofInstant(playedAt, zone).toString());
+                expected.put("eventType", "PROOF_OF_PLAY");
+
+                assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(expected)),
+                        objectMapper.readTree(encoder.encode(event)), value + " in " + zoneId);
+            }
+        }
+    }
+
+    /**
+     * Tests that extreme identifiers are written correctly.
+     */
+    @Test
+    void jsonWritesExtremeIdentifiers() throws IOException {
+        ProofOfPlayEventEncoder encoder = new ProofOfPlayEventEncoder("json", ZoneId.of("UTC"));
+
+        byte[] payload = encoder.encode(new ProofOfPlayEvent(Long.MAX_VALUE, Long.MIN_VALUE, Instant.EPOCH));
+
+        assertEquals(Long.MAX_VALUE, objectMapper.readTree(payload).get("slideshowId").asLong());
+        assertEquals(Long.MIN_VALUE, objectMapper.readTree(payload).get("imageId").asLong());
+    }
+
+    /**
+     * Tests the binary layout.
+     */
+    @Test
+    void binaryLayout() {
+        ProofOfPlayEventEncoder encoder = new ProofOfPlayEventEncoder("binary", ZoneId.of("UTC"));
+        Instant playedAt = Instant.parse("2024-05-01T10:15:30.123456789Z");
+
+        ByteBuffer payload = ByteBuffer.wrap(encoder.encode(new ProofOfPlayEvent(1L, 101L, playedAt)));
+
+        assertEquals(30, payload.remaining());
+        assertEquals(1, payload.get());
+        assertEquals(1, payload.get());
+        assertEquals(1L, payload.getLong());
+        assertEquals(101L, payload.getLong());
+        assertEquals(playedAt.getEpochSecond(), payload.getLong());
+        assertEquals(playedAt.getNano(), payload.getInt());
+        assertEquals(ProofOfPlayEventEncoder.BINARY_CONTENT_TYPE, new String(encoder.contentType()));
+    }
+
+    /**
+     * Tests that unknown encodings are rejected at startup.
+     */
+    @Test
+    void rejectsUnknownEncoding() {
+        assertThrows(IllegalArgumentException.class, () -> new ProofOfPlayEventEncoder("avro"));
+    }
+}
@@ -0,0 +1,119 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for ProofOfPlayIngestionService.
+ * Verifies that queued events are flushed in size- and time-bounded batches, that batches
+ * the broker fails are published again, and that a full queue rejects new events.
+ */
+@ExtendWith(MockitoExtension.class)
+class ProofOfPlayIngestionServiceTest {
+
+    private static final Duration RETRY_BACKOFF = Duration.ofMillis(10);
+
+    @Mock
+    private KafkaProducerService kafkaProducerService;
+
+    private ProofOfPlayIngestionService ingestionService;
+
+    @AfterEach
+    void tearDown() {
+        if (ingestionService != null) {
+            ingestionService.stop();
+        }
+    }
+
+    /**
+     * Tests that a full batch is flushed without waiting for the linger time.
+     */
+    @Test
+    void flushesFullBatch() {
+        when(kafkaProducerService.sendProofOfPlayEvents(anyList())).thenReturn(Mono.empty());
+        ingestionService = new ProofOfPlayIngestionService(kafkaProducerService, 1024, 2,
+                Duration.ofMinutes(1), 4, RETRY_BACKOFF, RETRY_BACKOFF, Duration.ofSeconds(5));
+        ingestionService.start();
+
+        StepVerifier.create(ingestionService.submit(event(101L)).then(ingestionService.submit(event(102L))))
+                .verifyComplete();
+
+        verify(kafkaProducerService, timeout(1000)).sendProofOfPlayEvents(List.of(event(101L), event(102L)));
+    }
+
+    /**
+     * Tests that a partial batch is flushed once the linger time elapses.
+     */
+    @Test
+    void flushesPartialBatchAfterLinger() {
+        when(kafkaProducerService.sendProofOfPlayEvents(anyList())).thenReturn(Mono.empty());
+        ingestionService = new ProofOfPlayIngestionService(kafkaProducerService, 1024, 100,
+                Duration.ofMillis(20), 4, RETRY_BACKOFF, RETRY_BACKOFF, Duration.ofSeconds(5));
+        ingestionService.start();
+
+        StepVerifier.create(ingestionService.submit(event(101L)))
+                .verifyComplete();
+
+        verify(kafkaProducerService, timeout(1000)).sendProofOfPlayEvents(List.of(event(101L)));
+    }
+
+    /**
+     * Tests that a batch the broker fails is published again instead of being dropped.
+     */
+    @Test
+    void retriesFailedBatch() {
+        when(kafkaProducerService.sendProofOfPlayEvents(anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("Broker unavailable")))
+                .thenReturn(Mono.error(new IllegalStateException("Broker unavailable")))
+                .thenReturn(Mono.empty());
+        ingestionService = new ProofOfPlayIngestionService(kafkaProducerService, 1024, 2,
+                Duration.ofMinutes(1), 4, RETRY_BACKOFF, RETRY_BACKOFF, Duration.ofSeconds(5));
+        ingestionService.start();
+
+        StepVerifier.create(ingestionService.submit(event(101L)).then(ingestionService.submit(event(102L))))
+                .verifyComplete();
+
+        verify(kafkaProducerService, timeout(1000).times(3))
+                .sendProofOfPlayEvents(List.of(event(101L), event(102L)));
+    }
+
+    /**
+     * Tests that events are rejected with a ResponseStatusException once the queue is full.
+     */
+    @Test
+    void rejectsWhenQueueIsFull() {
+        // The pipeline is not started, so nothing drains the queue
+        ingestionService = new ProofOfPlayIngestionService(kafkaProducerService, 8, 100,
+                Duration.ofMillis(20), 4, RETRY_BACKOFF, RETRY_BACKOFF, Duration.ofSeconds(5));
+
+        int accepted = 0;
+        while (ingestionService.offer(event(101L)) && accepted < 10_000) {
+            accepted++;
+        }
+        assertFalse(ingestionService.offer(event(101L)));
+
+        StepVerifier.create(ingestionService.submit(event(101L)))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        verifyNoInteractions(kafkaProducerService);
+    }
+
+    private static ProofOfPlayEvent event(long imageId) {
+        return new ProofOfPlayEvent(1L, imageId, Instant.EPOCH);
+    }
+}
@@ -0,0 +1,89 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ProofOfPlayOutboxLog.
+ * Verifies appending, reading and acknowledging records, recovery after a restart
+ * and cleanup of consumed segment files.
+ */
+class ProofOfPlayOutboxLogTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that appended events are read back unchanged and in order.
+     */
+    @Test
+    void appendAndRead() throws IOException {
+        try (ProofOfPlayOutboxLog log = ProofOfPlayOutboxLog.open(directory, 4, 8)) {
+            Instant playedAt = Instant.parse("2024-05-01T10:15:30.123456789Z");
+            assertTrue(log.append(new ProofOfPlayEvent(1L, 101L, playedAt)));
+            assertTrue(log.append(new ProofOfPlayEvent(1L, 102L, playedAt)));
+
+            List<ProofOfPlayEvent> events = log.read(10);
+
+            assertEquals(List.of(new ProofOfPlayEvent(1L, 101L, playedAt), new ProofOfPlayEvent(1L, 102L, playedAt)), events);
+            assertEquals(2, log.backlog());
+        }
+    }
+
+    /**
+     * Tests that unacknowledged events survive reopening the log and acknowledged ones do not reappear.
+     */
+    @Test
+    void recoversAfterRestart() throws IOException {
+        try (ProofOfPlayOutboxLog log = ProofOfPlayOutboxLog.open(directory, 4, 8)) {
+            for (long imageId = 1; imageId <= 6; imageId++) {
+                log.append(new ProofOfPlayEvent(1L, imageId, Instant.EPOCH));
+            }
+            log.acknowledge(log.read(3).size());
+        }
+
+        try (ProofOfPlayOutboxLog log = ProofOfPlayOutboxLog.open(directory, 4, 8)) {
+            assertEquals(3, log.backlog());
+            assertEquals(List.of(4L, 5L, 6L), log.read(10).stream().map(ProofOfPlayEvent::getImageId).toList());
+
+            log.append(new ProofOfPlayEvent(1L, 7L, Instant.EPOCH));
+            assertEquals(7L, log.read(10).get(3).getImageId());
+        }
+    }
+
+    /**
+     * Tests that fully acknowledged segments are deleted and that appends stop at the segment limit.
+     */
+    @Test
+    void deletesConsumedSegmentsAndRespectsLimit() throws IOException {
+        try (ProofOfPlayOutboxLog log = ProofOfPlayOutboxLog.open(directory, 2, 2)) {
+            assertTrue(log.append(new ProofOfPlayEvent(1L, 1L, Instant.EPOCH)));
+            assertTrue(log.append(new ProofOfPlayEvent(1L, 2L, Instant.EPOCH)));
+            assertTrue(log.append(new ProofOfPlayEvent(1L, 3L, Instant.EPOCH)));
+            assertTrue(log.append(new ProofOfPlayEvent(1L, 4L, Instant.EPOCH)));
+            assertFalse(log.append(new ProofOfPlayEvent(1L, 5L, Instant.EPOCH)));
+            assertEquals(2, segmentCount());
+
+            log.acknowledge(log.read(2).size());
+
+            assertEquals(1, segmentCount());
+            assertTrue(log.append(new ProofOfPlayEvent(1L, 5L, Instant.EPOCH)));
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).count();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import com.nvs.task.slideshow.repository.ProofOfPlayRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for ProofOfPlayPersistenceService.
+ * Verifies that events are written with one multi-row insert per batch
+ * and that a failed insert does not stop later batches.
+ */
+@ExtendWith(MockitoExtension.class)
+class ProofOfPlayPersistenceServiceTest {
+
+    @Mock
+    private ProofOfPlayRepository proofOfPlayRepository;
+
+    private ProofOfPlayPersistenceService persistenceService;
+
+    @BeforeEach
+    void setUp() {
+        persistenceService = new ProofOfPlayPersistenceService(proofOfPlayRepository, 1024, 3,
+                Duration.ofMillis(20), 1, Duration.ofSeconds(5));
+        persistenceService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        persistenceService.stop();
+    }
+
+    /**
+     * Tests that queued events are grouped into batches of the configured size.
+     */
+    @Test
+    void writesEventsInBatches() {
+        when(proofOfPlayRepository.insertAll(anyList())).thenReturn(Mono.just(3L));
+
+        for (long imageId = 1; imageId <= 3; imageId++) {
+            persistenceService.offer(new ProofOfPlayEvent(1L, imageId, Instant.EPOCH));
+        }
+
+        verify(proofOfPlayRepository, timeout(1000)).insertAll(List.of(
+                new ProofOfPlayEvent(1L, 1L, Instant.EPOCH),
+                new ProofOfPlayEvent(1L, 2L, Instant.EPOCH),
+                new ProofOfPlayEvent(1L, 3L, Instant.EPOCH)));
+    }
+
+    /**
+     * Tests that a failed insert is logged and the next batch is still written.
+     */
+    @Test
+    void continuesAfterFailedInsert() {
+        when(proofOfPlayRepository.insertAll(anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("database unavailable")))
+                .thenReturn(Mono.just(1L));
+
+        persistenceService.offer(new ProofOfPlayEvent(1L, 1L, Instant.EPOCH));
+        verify(proofOfPlayRepository, timeout(1000).times(1)).insertAll(anyList());
+
+        persistenceService.offer(new ProofOfPlayEvent(1L, 2L, Instant.EPOCH));
+        verify(proofOfPlayRepository, timeout(1000)).insertAll(List.of(new ProofOfPlayEvent(1L, 2L, Instant.EPOCH)));
+    }
+}
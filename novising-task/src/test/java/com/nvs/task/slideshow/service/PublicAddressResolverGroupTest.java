@@ -0,0 +1,99 @@
+package com.nvs.task.slideshow.service;
+
+import io.netty.resolver.AddressResolver;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for PublicAddressResolverGroup.
+ * Uses a stub lookup to verify that hosts resolving to public addresses are resolved, and that
+ * hosts and IP literals resolving to a private address are refused on every resolution.
+ */
+class PublicAddressResolverGroupTest {
+
+    private final DefaultEventExecutor executor = new DefaultEventExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownGracefully();
+    }
+
+    /**
+     * Tests that a host resolving to public addresses is resolved to all of them.
+     */
+    @Test
+    void resolvesPublicHost() throws Exception {
+        AddressResolver<InetSocketAddress> resolver = resolver(host -> new InetAddress[]{
+                InetAddress.getByName("93.184.216.34"), InetAddress.getByName("2606:2800:220:1::1")});
+
+        Future<List<InetSocketAddress>> resolved = resolver.resolveAll(
+                InetSocketAddress.createUnresolved("images.example.com", 443)).await();
+
+        assertTrue(resolved.isSuccess());
+        assertEquals(List.of(new InetSocketAddress(InetAddress.getByName("93.184.216.34"), 443),
+                new InetSocketAddress(InetAddress.getByName("2606:2800:220:1::1"), 443)), resolved.getNow());
+    }
+
+    /**
+     * Tests that a host is refused if any of its addresses is private.
+     */
+    @Test
+    void refusesHostResolvingToPrivateAddress() throws Exception {
+        AddressResolver<InetSocketAddress> resolver = resolver(host -> new InetAddress[]{
+                InetAddress.getByName("93.184.216.34"), InetAddress.getByName("169.254.169.254")});
+
+        Future<InetSocketAddress> resolved = resolver.resolve(
+                InetSocketAddress.createUnresolved("images.example.com", 80)).await();
+
+        assertFalse(resolved.isSuccess());
+        assertInstanceOf(PublicAddressResolverGroup.NonPublicAddressException.class, resolved.cause());
+    }
+
+    /**
+     * Tests that a host whose DNS answer changes to a private address is refused when it does,
+     * since every connection is checked against its own lookup.
+     */
+    @Test
+    void refusesReboundHost() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        AddressResolver<InetSocketAddress> resolver = resolver(host -> new InetAddress[]{
+                InetAddress.getByName(lookups.getAndIncrement() == 0 ? "93.184.216.34" : "127.0.0.1")});
+        InetSocketAddress address = InetSocketAddress.createUnresolved("rebind.example.com", 80);
+
+        assertTrue(resolver.resolve(address).await().isSuccess());
+
+        Future<InetSocketAddress> rebound = resolver.resolve(address).await();
+        assertFalse(rebound.isSuccess());
+        assertInstanceOf(PublicAddressResolverGroup.NonPublicAddressException.class, rebound.cause());
+    }
+
+    /**
+     * Tests that a private IP literal is refused without a lookup.
+     */
+    @Test
+    void refusesPrivateLiteral() throws Exception {
+        AddressResolver<InetSocketAddress> resolver = resolver(host -> {
+            throw new UnknownHostException("unexpected lookup: " + host);
+        });
+
+        Future<InetSocketAddress> resolved = resolver.resolve(
+                new InetSocketAddress(InetAddress.getByName("10.0.0.1"), 80)).await();
+
+        assertFalse(resolved.isSuccess());
+        assertInstanceOf(PublicAddressResolverGroup.NonPublicAddressException.class, resolved.cause());
+    }
+
+    private AddressResolver<InetSocketAddress> resolver(PublicAddressResolverGroup.HostLookup lookup) {
+        return new PublicAddressResolverGroup(lookup).getResolver(executor);
+    }
+}
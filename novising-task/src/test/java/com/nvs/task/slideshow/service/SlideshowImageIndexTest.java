@@ -0,0 +1,85 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.repository.SlideshowImageRepository;
+import com.nvs.task.slideshow.repository.SlideshowRepository;
+import com.nvs.task.slideshow.util.LongHashSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for SlideshowImageIndex.
+ * Verifies that memberships are loaded once, loaded again after an eviction or once their time
+ * to live has passed, and that unknown slideshows are not cached.
+ */
+@ExtendWith(MockitoExtension.class)
+class SlideshowImageIndexTest {
+
+    @Mock
+    private SlideshowRepository slideshowRepository;
+
+    @Mock
+    private SlideshowImageRepository slideshowImageRepository;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(slideshowRepository.existsById(1L)).thenReturn(Mono.just(true));
+        lenient().when(slideshowImageRepository.findImageIds(1L))
+                .thenReturn(Flux.just(101L, 102L))
+                .thenReturn(Flux.just(101L, 103L));
+    }
+
+    /**
+     * Tests that a membership is served from memory until it is evicted.
+     */
+    @Test
+    void loadsAgainAfterEviction() {
+        SlideshowImageIndex index = new SlideshowImageIndex(slideshowRepository, slideshowImageRepository,
+                Duration.ofMinutes(5));
+
+        assertTrue(index.getImageIds(1L).block().contains(102L));
+        assertTrue(index.getImageIds(1L).block().contains(102L));
+        verify(slideshowImageRepository, times(1)).findImageIds(1L);
+
+        index.evict(1L);
+        LongHashSet reloaded = index.getImageIds(1L).block();
+
+        assertFalse(reloaded.contains(102L));
+        assertTrue(reloaded.contains(103L));
+    }
+
+    /**
+     * Tests that an expired membership is loaded again, so changes made elsewhere are picked up.
+     */
+    @Test
+    void loadsAgainOnceExpired() {
+        SlideshowImageIndex index = new SlideshowImageIndex(slideshowRepository, slideshowImageRepository,
+                Duration.ZERO);
+
+        assertTrue(index.getImageIds(1L).block().contains(102L));
+        assertTrue(index.getImageIds(1L).block().contains(103L));
+        verify(slideshowImageRepository, times(2)).findImageIds(1L);
+    }
+
+    /**
+     * Tests that slideshows that do not exist are answered with an empty Mono.
+     */
+    @Test
+    void ignoresUnknownSlideshows() {
+        when(slideshowRepository.existsById(99L)).thenReturn(Mono.just(false));
+        SlideshowImageIndex index = new SlideshowImageIndex(slideshowRepository, slideshowImageRepository,
+                Duration.ofMinutes(5));
+
+        assertNull(index.getImageIds(99L).block());
+        verify(slideshowImageRepository, never()).findImageIds(99L);
+    }
+}
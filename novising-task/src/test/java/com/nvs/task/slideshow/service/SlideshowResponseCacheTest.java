@@ -0,0 +1,109 @@
+package com.nvs.task.slideshow.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nvs.task.slideshow.model.Image;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SlideshowResponseCache.
+ * Verifies that responses are serialized once, served in both encodings and evicted when
+ * their slideshow or one of their images changes.
+ */
+class SlideshowResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private SlideshowResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SlideshowResponseCache(objectMapper, 2);
+    }
+
+    /**
+     * Tests that a response is built once and that both encodings hold the same JSON.
+     */
+    @Test
+    void servesCachedResponsesInBothEncodings() throws IOException {
+        SlideshowResponseCache.CachedResponse first = cache.get(1L, this::load).block();
+        SlideshowResponseCache.CachedResponse second = cache.get(1L, this::load).block();
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertArrayEquals(objectMapper.writeValueAsBytes(images()), first.identity());
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(first.gzip()))) {
+            assertArrayEquals(first.identity(), gzip.readAllBytes());
+        }
+    }
+
+    /**
+     * Tests that responses are rebuilt after their slideshow or one of their images is evicted.
+     */
+    @Test
+    void evictsBySlideshowAndByImage() {
+        cache.get(1L, this::load).block();
+        cache.evict(1L);
+        cache.get(1L, this::load).block();
+        assertEquals(2, loads.get());
+
+        cache.evictImage(999L);
+        cache.get(1L, this::load).block();
+        assertEquals(2, loads.get());
+
+        cache.evictImage(102L);
+        cache.get(1L, this::load).block();
+        assertEquals(3, loads.get());
+    }
+
+    /**
+     * Tests that failed loads and responses beyond the maximum number of entries are not cached.
+     */
+    @Test
+    void doesNotCacheErrorsOrBeyondMaxEntries() {
+        StepVerifier.create(cache.get(1L, () -> Mono.error(new IllegalStateException("down"))))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        cache.get(1L, this::load).block();
+        cache.get(2L, this::load).block();
+        cache.get(3L, this::load).block();
+        cache.get(3L, this::load).block();
+
+        assertEquals(4, loads.get());
+    }
+
+    /**
+     * Tests the parsing of the Accept-Encoding header.
+     */
+    @Test
+    void acceptsGzip() {
+        assertTrue(SlideshowResponseCache.acceptsGzip("gzip"));
+        assertTrue(SlideshowResponseCache.acceptsGzip("br, GZIP;q=0.5"));
+        assertTrue(SlideshowResponseCache.acceptsGzip("*"));
+        assertFalse(SlideshowResponseCache.acceptsGzip(null));
+        assertFalse(SlideshowResponseCache.acceptsGzip("br"));
+        assertFalse(SlideshowResponseCache.acceptsGzip("gzip;q=0"));
+    }
+
+    private Mono<List<Image>> load() {
+        loads.incrementAndGet();
+        return Mono.just(images());
+    }
+
+    private static List<Image> images() {
+        return List.of(new Image(101L, "https://example.com/first.jpg"),
+                new Image(102L, "https://example.com/second.jpg"));
+    }
+}
@@ -1,21 +1,38 @@
 package com.nvs.task.slideshow.service;
 
 import com.nvs.task.slideshow.exception.BadRequestException;
+import com.nvs.task.slideshow.exception.ConflictException;
 import com.nvs.task.slideshow.exception.ResourceNotFoundException;
+import com.nvs.task.slideshow.model.EntityVersion;
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.ProofOfPlayEvent;
+import com.nvs.task.slideshow.model.ProofOfPlayRecord;
+import com.nvs.task.slideshow.model.ProofOfPlayResult;
 import com.nvs.task.slideshow.model.Slideshow;
+import com.nvs.task.slideshow.repository.ImageRepository;
+import com.nvs.task.slideshow.repository.SlideshowImageRepository;
 import com.nvs.task.slideshow.repository.SlideshowRepository;
+import com.nvs.task.slideshow.util.EntityTags;
+import com.nvs.task.slideshow.util.LongHashSet;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
@@ -33,7 +50,34 @@ class SlideshowServiceTest {
     private SlideshowRepository slideshowRepository;
 
     @Mock
-    private KafkaProducerService kafkaProducerService;
+    private SlideshowImageRepository slideshowImageRepository;
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private SlideshowImageIndex slideshowImageIndex;
+
+    @Mock
+    private SlideshowTimelineService slideshowTimelineService;
+
+    @Mock
+    private SlideshowTransitionService slideshowTransitionService;
+
+    @Mock
+    private PlaybackService playbackService;
+
+    @Mock
+    private SlideshowResponseCache slideshowResponseCache;
+
+    @Mock
+    private ProofOfPlayIngestionService proofOfPlayIngestionService;
+
+    @Mock
+    private PlayCountRollupService playCountRollupService;
+
+    @Mock
+    private ProofOfPlayDeduplicator proofOfPlayDeduplicator;
 
     @InjectMocks
     private SlideshowService slideshowService;
@@ -50,17 +94,52 @@ class SlideshowServiceTest {
 
     /**
      * Tests the addition of a new slideshow.
-     * Verifies that the slideshow is correctly saved and returned.
+     * Verifies that the slideshow is correctly saved and returned, and that its images are stored.
      */
     @Test
     void addSlideshow() {
         when(slideshowRepository.save(any(Slideshow.class))).thenReturn(Mono.just(slideshow));
+        when(slideshowImageRepository.replaceImages(anyLong(), any())).thenReturn(Mono.empty());
 
         StepVerifier.create(slideshowService.addSlideshow(slideshow))
                 .expectNext(slideshow)
                 .verifyComplete();
 
         verify(slideshowRepository, times(1)).save(any(Slideshow.class));
+        verify(slideshowImageRepository, times(1)).replaceImages(1L, List.of(101L, 102L, 103L));
+        verify(slideshowImageIndex, times(1)).put(slideshow);
+    }
+
+    /**
+     * Tests that repeated image IDs are stored once, at their first position.
+     */
+    @Test
+    void addSlideshowStoresRepeatedImagesOnce() {
+        slideshow.setImageIds(Arrays.asList(102L, 101L, 102L));
+        when(slideshowRepository.save(any(Slideshow.class))).thenReturn(Mono.just(slideshow));
+        when(slideshowImageRepository.replaceImages(anyLong(), any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(slideshowService.addSlideshow(slideshow))
+                .expectNextMatches(saved -> saved.getImageIds().equals(List.of(102L, 101L)))
+                .verifyComplete();
+
+        verify(slideshowImageRepository, times(1)).replaceImages(1L, List.of(102L, 101L));
+    }
+
+    /**
+     * Tests that a slideshow referring to unknown images is rejected as a bad request.
+     */
+    @Test
+    void addSlideshowWithUnknownImage() {
+        when(slideshowRepository.save(any(Slideshow.class))).thenReturn(Mono.just(slideshow));
+        when(slideshowImageRepository.replaceImages(anyLong(), any()))
+                .thenReturn(Mono.error(new DataIntegrityViolationException("violates foreign key constraint")));
+
+        StepVerifier.create(slideshowService.addSlideshow(slideshow))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        verify(slideshowImageIndex, never()).put(any(Slideshow.class));
     }
 
     /**
@@ -75,6 +154,7 @@ class SlideshowServiceTest {
                 .verifyComplete();
 
         verify(slideshowRepository, times(1)).deleteById(1L);
+        verify(slideshowResponseCache, times(1)).evict(1L);
     }
 
     /**
@@ -84,9 +164,10 @@ class SlideshowServiceTest {
     @Test
     void getSlideshow() {
         when(slideshowRepository.findById(anyLong())).thenReturn(Mono.just(slideshow));
+        when(slideshowImageRepository.findImageIds(1L)).thenReturn(Flux.just(103L, 101L));
 
         StepVerifier.create(slideshowService.getSlideshow(1L))
-                .expectNext(slideshow)
+                .expectNextMatches(found -> found.getImageIds().equals(List.of(103L, 101L)))
                 .verifyComplete();
 
         verify(slideshowRepository, times(1)).findById(1L);
@@ -110,23 +191,36 @@ class SlideshowServiceTest {
     }
 
     /**
-     * Tests retrieving all slideshows.
-     * Verifies that all slideshows are correctly returned.
+     * Tests retrieving a page of slideshows.
+     * Verifies that the page starts after the given ID and is limited to the requested size.
      */
     @Test
-    void getAllSlideshows() {
+    void getSlideshows() {
         Slideshow slideshow2 = new Slideshow();
         slideshow2.setId(2L);
         slideshow2.setName("Test Slideshow 2");
 
-        when(slideshowRepository.findAll()).thenReturn(Flux.just(slideshow, slideshow2));
+        when(slideshowRepository.findPage(0L, 2)).thenReturn(Flux.just(slideshow, slideshow2));
+        when(slideshowImageRepository.findImageIds(List.of(1L, 2L))).thenReturn(Mono.just(Map.of(1L, List.of(102L))));
 
-        StepVerifier.create(slideshowService.getAllSlideshows())
-                .expectNext(slideshow)
-                .expectNext(slideshow2)
+        StepVerifier.create(slideshowService.getSlideshows(null, 2))
+                .expectNextMatches(found -> found == slideshow && found.getImageIds().equals(List.of(102L)))
+                .expectNextMatches(found -> found == slideshow2 && found.getImageIds().isEmpty())
                 .verifyComplete();
 
-        verify(slideshowRepository, times(1)).findAll();
+        verify(slideshowRepository, times(1)).findPage(0L, 2);
+        verify(slideshowImageRepository, times(1)).findImageIds(List.of(1L, 2L));
+    }
+
+    /**
+     * Tests that page sizes outside the allowed range are rejected.
+     */
+    @Test
+    void getSlideshowsRejectsInvalidLimit() {
+        assertThrows(BadRequestException.class, () -> slideshowService.getSlideshows(null, 0));
+        assertThrows(BadRequestException.class, () -> slideshowService.getSlideshows(null, 1001));
+
+        verifyNoInteractions(slideshowRepository);
     }
 
     /**
@@ -139,15 +233,25 @@ class SlideshowServiceTest {
         updatedSlideshow.setName("Updated Slideshow");
         updatedSlideshow.setImageIds(Arrays.asList(201L, 202L));
 
-        when(slideshowRepository.findById(anyLong())).thenReturn(Mono.just(slideshow));
-        when(slideshowRepository.save(any(Slideshow.class))).thenReturn(Mono.just(updatedSlideshow));
+        Slideshow renamed = new Slideshow();
+        renamed.setId(1L);
+        renamed.setName("Updated Slideshow");
+        renamed.setVersion(4L);
 
-        StepVerifier.create(slideshowService.updateSlideshow(1L, updatedSlideshow))
-                .expectNext(updatedSlideshow)
+        when(slideshowRepository.updateName(1L, "Updated Slideshow", 3L)).thenReturn(Mono.just(renamed));
+        when(slideshowImageRepository.replaceImages(anyLong(), any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(slideshowService.updateSlideshow(1L, updatedSlideshow, 3L))
+                .expectNextMatches(saved -> saved.getName().equals("Updated Slideshow")
+                        && saved.getVersion() == 4L
+                        && saved.getImageIds().equals(List.of(201L, 202L)))
                 .verifyComplete();
 
-        verify(slideshowRepository, times(1)).findById(1L);
-        verify(slideshowRepository, times(1)).save(any(Slideshow.class));
+        verify(slideshowRepository, never()).findById(anyLong());
+        verify(slideshowRepository, never()).save(any(Slideshow.class));
+        verify(slideshowImageRepository, times(1)).replaceImages(1L, List.of(201L, 202L));
+        verify(slideshowTimelineService, times(1)).evictSlideshow(1L);
+        verify(slideshowResponseCache, times(1)).evict(1L);
     }
 
     /**
@@ -159,7 +263,7 @@ class SlideshowServiceTest {
         Slideshow updatedSlideshow = new Slideshow();
         updatedSlideshow.setName("Updated Slideshow");
 
-        when(slideshowRepository.findById(anyLong())).thenReturn(Mono.empty());
+        when(slideshowRepository.updateName(1L, "Updated Slideshow", null)).thenReturn(Mono.empty());
 
         StepVerifier.create(slideshowService.updateSlideshow(1L, updatedSlideshow))
                 .expectErrorMatches(throwable ->
@@ -167,24 +271,190 @@ class SlideshowServiceTest {
                                 throwable.getMessage().contains("Slideshow not found with id: 1"))
                 .verify();
 
-        verify(slideshowRepository, times(1)).findById(1L);
-        verify(slideshowRepository, never()).save(any(Slideshow.class));
+        verify(slideshowRepository, never()).findVersionById(anyLong());
+        verifyNoInteractions(slideshowImageRepository);
+    }
+
+    /**
+     * Tests that an update based on an outdated version fails with a conflict and changes nothing.
+     */
+    @Test
+    void updateSlideshowConflict() {
+        Slideshow updatedSlideshow = new Slideshow();
+        updatedSlideshow.setName("Updated Slideshow");
+
+        when(slideshowRepository.updateName(1L, "Updated Slideshow", 3L)).thenReturn(Mono.empty());
+        when(slideshowRepository.findVersionById(1L)).thenReturn(Mono.just(5L));
+
+        StepVerifier.create(slideshowService.updateSlideshow(1L, updatedSlideshow, 3L))
+                .expectError(ConflictException.class)
+                .verify();
+
+        verifyNoInteractions(slideshowImageRepository);
+        verify(slideshowResponseCache, never()).evict(anyLong());
+    }
+
+    /**
+     * Tests retrieving the images of a slideshow in display order.
+     * Verifies that the images are resolved with the join query.
+     */
+    @Test
+    void getSlideshowOrder() {
+        Image first = new Image(103L, "https://example.com/first.jpg");
+        Image second = new Image(101L, "https://example.com/second.jpg");
+        when(slideshowImageIndex.getImageIds(1L)).thenReturn(Mono.just(LongHashSet.of(List.of(101L, 103L))));
+        when(imageRepository.findBySlideshowInOrder(1L)).thenReturn(Flux.just(first, second));
+
+        StepVerifier.create(slideshowService.getSlideshowOrder(1L))
+                .expectNext(first, second)
+                .verifyComplete();
+
+        verify(imageRepository, times(1)).findBySlideshowInOrder(1L);
+    }
+
+    /**
+     * Tests that the ETag of the order of a slideshow is computed from the versions of its images
+     * while no response is cached, and taken from the cached response once there is one.
+     */
+    @Test
+    void getSlideshowOrderTag() {
+        List<EntityVersion> versions = List.of(new EntityVersion(103L, 2L), new EntityVersion(101L, 0L));
+        when(slideshowImageIndex.getImageIds(1L)).thenReturn(Mono.just(LongHashSet.of(List.of(101L, 103L))));
+        when(imageRepository.findVersionsBySlideshowInOrder(1L)).thenReturn(Flux.fromIterable(versions));
+
+        StepVerifier.create(slideshowService.getSlideshowOrderTag(1L))
+                .expectNext(EntityTags.of(versions))
+                .verifyComplete();
+        verify(imageRepository, never()).findBySlideshowInOrder(anyLong());
+
+        when(slideshowResponseCache.peek(1L)).thenReturn(
+                SlideshowResponseCache.CachedResponse.of(new byte[0], new long[]{101L, 103L}, "W/\"cached\""));
+
+        StepVerifier.create(slideshowService.getSlideshowOrderTag(1L))
+                .expectNext("W/\"cached\"")
+                .verifyComplete();
+        verify(imageRepository, times(1)).findVersionsBySlideshowInOrder(1L);
+    }
+
+    /**
+     * Tests that the order of an empty slideshow is returned without querying images.
+     */
+    @Test
+    void getSlideshowOrderEmpty() {
+        when(slideshowImageIndex.getImageIds(1L)).thenReturn(Mono.just(new LongHashSet()));
+
+        StepVerifier.create(slideshowService.getSlideshowOrder(1L))
+                .verifyComplete();
+
+        verifyNoInteractions(imageRepository);
+    }
+
+    /**
+     * Tests that the image on screen is looked up in the compiled timeline of the slideshow.
+     */
+    @Test
+    void getNowPlaying() {
+        Image image = new Image(101L, "https://example.com/first.jpg");
+        image.setDuration(10);
+        when(slideshowTimelineService.getTimeline(1L))
+                .thenReturn(Mono.just(SlideshowTimeline.compile(1L, List.of(image))));
+
+        StepVerifier.create(slideshowService.getNowPlaying(1L, Instant.now().minusSeconds(5)))
+                .expectNextMatches(nowPlaying -> nowPlaying.getSlideshowId().equals(1L)
+                        && nowPlaying.getImage() == image
+                        && nowPlaying.getPosition() == 0)
+                .verifyComplete();
+    }
+
+    /**
+     * Tests that a start in the future is rejected before the timeline is looked up.
+     */
+    @Test
+    void getNowPlayingRejectsFutureStart() {
+        StepVerifier.create(slideshowService.getNowPlaying(1L, Instant.now().plusSeconds(60)))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        verifyNoInteractions(slideshowTimelineService);
+    }
+
+    /**
+     * Tests that looking up the image on screen of a non-existent slideshow is reported as not found.
+     */
+    @Test
+    void getNowPlayingNotFound() {
+        when(slideshowTimelineService.getTimeline(1L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(slideshowService.getNowPlaying(1L, null))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+    }
+
+    /**
+     * Tests that the order of a non-existent slideshow is reported as not found.
+     */
+    @Test
+    void getSlideshowOrderNotFound() {
+        when(slideshowImageIndex.getImageIds(1L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(slideshowService.getSlideshowOrder(1L))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+
+        verifyNoInteractions(imageRepository);
     }
 
     /**
      * Tests recording a proof of play for a slideshow.
-     * Verifies that the proof of play event is correctly sent to Kafka.
+     * Verifies that the membership is checked against the index and the event is queued for delivery.
      */
     @Test
     void recordProofOfPlay() {
-        when(slideshowRepository.findById(anyLong())).thenReturn(Mono.just(slideshow));
-        when(kafkaProducerService.sendProofOfPlayEvent(anyLong(), anyLong())).thenReturn(Mono.empty());
+        when(slideshowImageIndex.getImageIds(anyLong())).thenReturn(Mono.just(LongHashSet.of(List.of(101L, 102L, 103L))));
+        when(proofOfPlayDeduplicator.tryAccept(1L, 101L, null, null)).thenReturn(true);
+        when(proofOfPlayIngestionService.submit(any(ProofOfPlayEvent.class))).thenReturn(Mono.empty());
 
         StepVerifier.create(slideshowService.recordProofOfPlay(1L, 101L))
                 .verifyComplete();
 
-        verify(slideshowRepository).findById(1L);
-        verify(kafkaProducerService).sendProofOfPlayEvent(1L, 101L);
+        verify(slideshowImageIndex).getImageIds(1L);
+        verify(proofOfPlayIngestionService).submit(argThat(event ->
+                event.getSlideshowId() == 1L && event.getImageId() == 101L && event.getPlayedAt() != null));
+        verify(slideshowRepository, never()).findById(anyLong());
+    }
+
+    /**
+     * Tests that a retried proof of play is acknowledged without being queued again.
+     */
+    @Test
+    void recordProofOfPlayDuplicate() {
+        Instant playedAt = Instant.parse("2023-06-15T14:30:45Z");
+        when(slideshowImageIndex.getImageIds(anyLong())).thenReturn(Mono.just(LongHashSet.of(List.of(101L, 102L, 103L))));
+        when(proofOfPlayDeduplicator.tryAccept(1L, 101L, playedAt, "play-42")).thenReturn(false);
+
+        StepVerifier.create(slideshowService.recordProofOfPlay(1L, 101L, playedAt, "play-42"))
+                .verifyComplete();
+
+        verify(proofOfPlayIngestionService, never()).submit(any(ProofOfPlayEvent.class));
+        verify(proofOfPlayDeduplicator, never()).release(anyLong(), anyLong(), any(), any());
+    }
+
+    /**
+     * Tests that a play the queue refuses is released, so that the retry of it is accepted.
+     */
+    @Test
+    void recordProofOfPlayQueueFull() {
+        Instant playedAt = Instant.parse("2023-06-15T14:30:45Z");
+        when(slideshowImageIndex.getImageIds(anyLong())).thenReturn(Mono.just(LongHashSet.of(List.of(101L, 102L, 103L))));
+        when(proofOfPlayDeduplicator.tryAccept(1L, 101L, playedAt, "play-42")).thenReturn(true);
+        when(proofOfPlayIngestionService.submit(any(ProofOfPlayEvent.class)))
+                .thenReturn(Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE)));
+
+        StepVerifier.create(slideshowService.recordProofOfPlay(1L, 101L, playedAt, "play-42"))
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        verify(proofOfPlayDeduplicator).release(1L, 101L, playedAt, "play-42");
     }
 
     /**
@@ -193,7 +463,7 @@ class SlideshowServiceTest {
      */
     @Test
     void recordProofOfPlaySlideshowNotFound() {
-        when(slideshowRepository.findById(anyLong())).thenReturn(Mono.empty());
+        when(slideshowImageIndex.getImageIds(anyLong())).thenReturn(Mono.empty());
 
         StepVerifier.create(slideshowService.recordProofOfPlay(1L, 101L))
                 .expectErrorMatches(throwable ->
@@ -201,8 +471,8 @@ class SlideshowServiceTest {
                                 throwable.getMessage().contains("Slideshow not found with id: 1"))
                 .verify();
 
-        verify(slideshowRepository, times(1)).findById(1L);
-        verify(slideshowRepository, never()).save(any(Slideshow.class));
+        verify(slideshowImageIndex, times(1)).getImageIds(1L);
+        verify(proofOfPlayIngestionService, never()).submit(any(ProofOfPlayEvent.class));
     }
 
     /**
@@ -211,7 +481,7 @@ class SlideshowServiceTest {
      */
     @Test
     void recordProofOfPlayImageNotInSlideshow() {
-        when(slideshowRepository.findById(anyLong())).thenReturn(Mono.just(slideshow));
+        when(slideshowImageIndex.getImageIds(anyLong())).thenReturn(Mono.just(LongHashSet.of(List.of(101L, 102L, 103L))));
 
         StepVerifier.create(slideshowService.recordProofOfPlay(1L, 999L))
                 .expectErrorMatches(throwable ->
@@ -219,8 +489,53 @@ class SlideshowServiceTest {
                                 throwable.getMessage().contains("Image with id 999 is not part of slideshow with id 1"))
                 .verify();
 
-        verify(slideshowRepository, times(1)).findById(1L);
-        verify(slideshowRepository, never()).save(any(Slideshow.class));
-        verify(kafkaProducerService, never()).sendProofOfPlayEvent(anyLong(), anyLong());
+        verify(slideshowImageIndex, times(1)).getImageIds(1L);
+        verify(proofOfPlayIngestionService, never()).submit(any(ProofOfPlayEvent.class));
+    }
+
+    /**
+     * Tests recording a batch of proofs of play.
+     * Verifies that membership is resolved once and every record gets its own result.
+     */
+    @Test
+    void recordProofOfPlayBatch() {
+        Instant playedAt = Instant.parse("2023-06-15T14:30:45Z");
+        when(slideshowImageIndex.getImageIds(anyLong())).thenReturn(Mono.just(LongHashSet.of(List.of(101L, 102L, 103L))));
+        when(proofOfPlayDeduplicator.tryAccept(anyLong(), anyLong(), any(), any())).thenReturn(true);
+        when(proofOfPlayIngestionService.offer(any(ProofOfPlayEvent.class))).thenReturn(true, false);
+
+        Flux<ProofOfPlayRecord> records = Flux.just(
+                new ProofOfPlayRecord(101L, playedAt),
+                new ProofOfPlayRecord(999L, playedAt),
+                new ProofOfPlayRecord(102L, playedAt));
+
+        StepVerifier.create(slideshowService.recordProofOfPlayBatch(1L, records))
+                .expectNext(new ProofOfPlayResult(0, 101L, ProofOfPlayResult.Status.ACCEPTED, null))
+                .expectNext(new ProofOfPlayResult(1, 999L, ProofOfPlayResult.Status.REJECTED,
+                        "Image with id 999 is not part of slideshow with id 1"))
+                .expectNext(new ProofOfPlayResult(2, 102L, ProofOfPlayResult.Status.REJECTED,
+                        "Proof-of-play queue is full, retry later"))
+                .verifyComplete();
+
+        verify(slideshowImageIndex, times(1)).getImageIds(1L);
+        verify(proofOfPlayIngestionService).offer(new ProofOfPlayEvent(1L, 101L, playedAt));
+        verify(proofOfPlayDeduplicator, never()).release(1L, 101L, playedAt, null);
+        verify(proofOfPlayDeduplicator).release(1L, 102L, playedAt, null);
+    }
+
+    /**
+     * Tests that batch records already accepted earlier are reported as duplicates.
+     */
+    @Test
+    void recordProofOfPlayBatchDuplicate() {
+        Instant playedAt = Instant.parse("2023-06-15T14:30:45Z");
+        when(slideshowImageIndex.getImageIds(anyLong())).thenReturn(Mono.just(LongHashSet.of(List.of(101L, 102L, 103L))));
+        when(proofOfPlayDeduplicator.tryAccept(1L, 101L, playedAt, null)).thenReturn(false);
+
+        StepVerifier.create(slideshowService.recordProofOfPlayBatch(1L, Flux.just(new ProofOfPlayRecord(101L, playedAt))))
+                .expectNext(new ProofOfPlayResult(0, 101L, ProofOfPlayResult.Status.DUPLICATE, null))
+                .verifyComplete();
+
+        verify(proofOfPlayIngestionService, never()).offer(any(ProofOfPlayEvent.class));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.NowPlaying;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SlideshowTimeline.
+ * Verifies the lookup of the image on screen at image boundaries, across loops and at
+ * sub-millisecond moments, and the handling of images that are never shown.
+ */
+class SlideshowTimelineTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final SlideshowTimeline timeline = SlideshowTimeline.compile(1L,
+            List.of(image(101L, 10), image(102L, 0), image(103L, 5), image(104L, 15)));
+
+    /**
+     * Tests that each moment maps to the image whose time slot contains it.
+     */
+    @Test
+    void findsImageOnScreen() {
+        assertPlaying(0, 101L, 0, 10);
+        assertPlaying(9_999, 101L, 0, 10);
+        assertPlaying(10_000, 103L, 10, 15);
+        assertPlaying(14_000, 103L, 10, 15);
+        assertPlaying(29_999, 104L, 15, 30);
+    }
+
+    /**
+     * Tests that playback loops back to the first image after the last one.
+     */
+    @Test
+    void loopsThroughImages() {
+        assertEquals(Duration.ofSeconds(30), timeline.getLoopDuration());
+        assertPlaying(30_000, 101L, 30, 40);
+        assertPlaying(3 * 30_000 + 12_000, 103L, 100, 105);
+    }
+
+    /**
+     * Tests that every moment within a showing, down to the nanosecond, reports the same instants.
+     */
+    @Test
+    void reportsOneStartPerShowing() {
+        NowPlaying early = timeline.at(START, START.plusSeconds(31).plusNanos(123_456));
+        NowPlaying late = timeline.at(START, START.plusSeconds(39).plusNanos(999_999));
+
+        assertEquals(START.plusSeconds(30), early.getStartedAt());
+        assertEquals(early.getStartedAt(), late.getStartedAt());
+        assertEquals(early.getEndsAt(), late.getEndsAt());
+        assertEquals(START.minusSeconds(15), timeline.at(START, START.minusNanos(1)).getStartedAt());
+    }
+
+    /**
+     * Tests that images without a duration are skipped but still belong to the slideshow.
+     */
+    @Test
+    void skipsImagesWithoutDuration() {
+        assertTrue(timeline.contains(102L));
+        assertFalse(timeline.contains(105L));
+        for (long millis = 0; millis < 30_000; millis += 500) {
+            assertNotEquals(102L, timeline.at(START, START.plusMillis(millis)).getImage().getId());
+        }
+    }
+
+    /**
+     * Tests that a slideshow without any image to show has no image on screen.
+     */
+    @Test
+    void emptyTimelineHasNothingOnScreen() {
+        SlideshowTimeline empty = SlideshowTimeline.compile(2L, List.of(image(201L, 0)));
+
+        assertTrue(empty.isEmpty());
+        assertEquals(Duration.ZERO, empty.getLoopDuration());
+        assertNull(empty.at(START, START.plusSeconds(42)));
+    }
+
+    private void assertPlaying(long millis, long imageId, long startSecond, long endSecond) {
+        NowPlaying nowPlaying = timeline.at(START, START.plusMillis(millis));
+
+        assertEquals(1L, nowPlaying.getSlideshowId());
+        assertEquals(imageId, nowPlaying.getImage().getId());
+        assertEquals(START.plusSeconds(startSecond), nowPlaying.getStartedAt());
+        assertEquals(START.plusSeconds(endSecond), nowPlaying.getEndsAt());
+    }
+
+    private static Image image(long id, int duration) {
+        Image image = new Image(id, "https://example.com/" + id + ".jpg");
+        image.setDuration(duration);
+        return image;
+    }
+}
@@ -0,0 +1,104 @@
+package com.nvs.task.slideshow.service;
+
+import com.nvs.task.slideshow.exception.ResourceNotFoundException;
+import com.nvs.task.slideshow.model.Image;
+import com.nvs.task.slideshow.model.NowPlaying;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for SlideshowTransitionService.
+ * Plays slideshows of one-second images in real time to verify that transitions are pushed,
+ * that subscribers share one ticker and that idle tickers are dropped.
+ */
+@ExtendWith(MockitoExtension.class)
+class SlideshowTransitionServiceTest {
+
+    @Mock
+    private SlideshowTimelineService slideshowTimelineService;
+
+    private SlideshowTransitionService slideshowTransitionService;
+
+    @BeforeEach
+    void setUp() {
+        slideshowTransitionService = new SlideshowTransitionService(slideshowTimelineService);
+    }
+
+    /**
+     * Tests that the image on screen is pushed first and its successor when it ends.
+     */
+    @Test
+    void pushesTransitions() {
+        givenTimeline(1L);
+        AtomicReference<NowPlaying> first = new AtomicReference<>();
+
+        StepVerifier.create(slideshowTransitionService.transitions(1L).take(2))
+                .consumeNextWith(first::set)
+                .assertNext(next -> {
+                    assertEquals(first.get().getEndsAt(), next.getStartedAt());
+                    assertNotEquals(first.get().getImage().getId(), next.getImage().getId());
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(0, slideshowTransitionService.getTickerCount());
+    }
+
+    /**
+     * Tests that subscribers of one slideshow share a ticker and that a late subscriber
+     * receives the image on screen without another timeline lookup.
+     */
+    @Test
+    void sharesOneTickerPerSlideshow() {
+        givenTimeline(1L);
+        assertSame(slideshowTransitionService.transitions(1L), slideshowTransitionService.transitions(1L));
+
+        Disposable viewer = slideshowTransitionService.transitions(1L).subscribe();
+        StepVerifier.create(slideshowTransitionService.transitions(1L).take(1))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1, slideshowTransitionService.getTickerCount());
+        verify(slideshowTimelineService, atMost(2)).getTimeline(1L);
+
+        viewer.dispose();
+        assertEquals(0, slideshowTransitionService.getTickerCount());
+    }
+
+    /**
+     * Tests that a non-existent slideshow is reported as not found and leaves no ticker behind.
+     */
+    @Test
+    void failsForUnknownSlideshow() {
+        when(slideshowTimelineService.getTimeline(99L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(slideshowTransitionService.transitions(99L))
+                .expectError(ResourceNotFoundException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(0, slideshowTransitionService.getTickerCount());
+    }
+
+    private void givenTimeline(Long slideshowId) {
+        Image first = new Image(101L, "https://example.com/first.jpg");
+        first.setDuration(1);
+        Image second = new Image(102L, "https://example.com/second.jpg");
+        second.setDuration(1);
+        when(slideshowTimelineService.getTimeline(slideshowId))
+                .thenReturn(Mono.just(SlideshowTimeline.compile(slideshowId, List.of(first, second))));
+    }
+}
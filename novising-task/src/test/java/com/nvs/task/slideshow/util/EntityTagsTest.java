@@ -0,0 +1,58 @@
+package com.nvs.task.slideshow.util;
+
+import com.nvs.task.slideshow.exception.BadRequestException;
+import com.nvs.task.slideshow.model.EntityVersion;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for EntityTags.
+ * Verifies that list tags change with every added, removed, moved or written row, that
+ * {@code If-None-Match} headers are compared weakly and that {@code If-Match} headers are parsed.
+ */
+class EntityTagsTest {
+
+    /**
+     * Tests that the tag of a list depends on the IDs, versions and order of its rows.
+     */
+    @Test
+    void listTagsFollowVersionsAndOrder() {
+        List<EntityVersion> versions = List.of(new EntityVersion(1L, 0L), new EntityVersion(2L, 5L));
+        String tag = EntityTags.of(versions);
+
+        assertEquals(tag, EntityTags.of(List.of(new EntityVersion(1L, 0L), new EntityVersion(2L, 5L))));
+        assertNotEquals(tag, EntityTags.of(List.of(new EntityVersion(1L, 0L), new EntityVersion(2L, 6L))));
+        assertNotEquals(tag, EntityTags.of(List.of(new EntityVersion(2L, 5L), new EntityVersion(1L, 0L))));
+        assertNotEquals(tag, EntityTags.of(List.of(new EntityVersion(1L, 0L))));
+        assertTrue(tag.startsWith("W/\""));
+        assertEquals("W/\"7\"", EntityTags.of(7L));
+    }
+
+    /**
+     * Tests the weak comparison of If-None-Match headers.
+     */
+    @Test
+    void matchesIfNoneMatch() {
+        assertTrue(EntityTags.matches("W/\"7\"", "W/\"7\""));
+        assertTrue(EntityTags.matches("\"6\", \"7\"", "W/\"7\""));
+        assertTrue(EntityTags.matches("*", "W/\"7\""));
+        assertFalse(EntityTags.matches("W/\"6\"", "W/\"7\""));
+        assertFalse(EntityTags.matches(null, "W/\"7\""));
+    }
+
+    /**
+     * Tests reading the expected version of an update from an If-Match header.
+     */
+    @Test
+    void parsesIfMatchVersions() {
+        assertEquals(3L, EntityTags.parseVersion("W/\"3\""));
+        assertEquals(3L, EntityTags.parseVersion(" \"3\" "));
+        assertNull(EntityTags.parseVersion(null));
+        assertNull(EntityTags.parseVersion("*"));
+        assertThrows(BadRequestException.class, () -> EntityTags.parseVersion("\"abc\""));
+        assertThrows(BadRequestException.class, () -> EntityTags.parseVersion("\"3\", \"4\""));
+    }
+}
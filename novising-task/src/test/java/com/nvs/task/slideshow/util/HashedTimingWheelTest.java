@@ -0,0 +1,104 @@
+package com.nvs.task.slideshow.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for HashedTimingWheel.
+ * Verifies that timeouts never expire early, including those spanning several turns of the
+ * wheel, and that cancelled and failing tasks are handled.
+ */
+class HashedTimingWheelTest {
+
+    private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+    private HashedTimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new HashedTimingWheel("test-timer", Duration.ofMillis(5), 8, failures::add);
+        wheel.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.close();
+    }
+
+    /**
+     * Tests that timeouts shorter and longer than one turn of the wheel expire after their delay.
+     */
+    @Test
+    void expiresTimeoutsAfterTheirDelay() throws InterruptedException {
+        int count = 2_000;
+        CountDownLatch expired = new CountDownLatch(count);
+        AtomicInteger early = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            long delayMillis = i % 200;
+            long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            wheel.schedule(() -> {
+                if (System.nanoTime() < due) {
+                    early.incrementAndGet();
+                }
+                expired.countDown();
+            }, Duration.ofMillis(delayMillis));
+        }
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+        assertEquals(0, wheel.pendingTimeouts());
+    }
+
+    /**
+     * Tests that a cancelled timeout does not run.
+     */
+    @Test
+    void skipsCancelledTimeouts() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        HashedTimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, Duration.ofMillis(50));
+        CountDownLatch later = new CountDownLatch(1);
+        wheel.schedule(later::countDown, Duration.ofMillis(100));
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertTrue(timeout.isCancelled());
+    }
+
+    /**
+     * Tests that a failing task is reported and does not stop the wheel.
+     */
+    @Test
+    void survivesFailingTasks() throws InterruptedException {
+        wheel.schedule(() -> {
+            throw new IllegalStateException("broken task");
+        }, Duration.ZERO);
+        CountDownLatch next = new CountDownLatch(1);
+        wheel.schedule(next::countDown, Duration.ofMillis(20));
+
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+        assertEquals(1, failures.size());
+        assertEquals("broken task", failures.get(0).getMessage());
+    }
+
+    /**
+     * Tests that no timeout can be scheduled once the wheel is closed.
+     */
+    @Test
+    void rejectsTimeoutsAfterClose() {
+        wheel.close();
+
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(() -> { }, Duration.ZERO));
+    }
+}
@@ -0,0 +1,75 @@
+package com.nvs.task.slideshow.util;
+
+import com.nvs.task.slideshow.exception.BadRequestException;
+import com.nvs.task.slideshow.model.Image;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ImageCsvReader.
+ * Verifies field splitting with quotes and the mapping of columns by header name.
+ */
+class ImageCsvReaderTest {
+
+    /**
+     * Tests that quoted fields may contain commas and doubled quotes.
+     */
+    @Test
+    void parsesQuotedFields() {
+        assertEquals(List.of("a", "b, c", "say \"hi\"", ""),
+                ImageCsvReader.parseLine("a,\"b, c\",\"say \"\"hi\"\"\","));
+    }
+
+    /**
+     * Tests that columns are found by header name in any order and unknown columns are ignored.
+     */
+    @Test
+    void mapsColumnsByHeader() {
+        Flux<String> lines = Flux.just(
+                "\uFEFFDuration,URL,extra,Name\r",
+                "",
+                "5,https://example.com/a.jpg,x,Sunset\r",
+                ",https://example.com/b.jpg,y,");
+
+        StepVerifier.create(ImageCsvReader.read(lines))
+                .assertNext(image -> {
+                    assertEquals("https://example.com/a.jpg", image.getUrl());
+                    assertEquals("Sunset", image.getName());
+                    assertEquals(5, image.getDuration());
+                    assertNull(image.getDescription());
+                })
+                .assertNext(image -> {
+                    assertEquals("https://example.com/b.jpg", image.getUrl());
+                    assertNull(image.getName());
+                    assertEquals(0, image.getDuration());
+                })
+                .verifyComplete();
+    }
+
+    /**
+     * Tests that a header without a url column is rejected.
+     */
+    @Test
+    void rejectsHeaderWithoutUrl() {
+        StepVerifier.create(ImageCsvReader.read(Flux.just("name,duration", "a,5")))
+                .expectError(BadRequestException.class)
+                .verify();
+    }
+
+    /**
+     * Tests that a duration that is not a number is reported with its line.
+     */
+    @Test
+    void rejectsInvalidDuration() {
+        Flux<Image> images = ImageCsvReader.read(Flux.just("url,duration", "https://example.com/a.jpg,ten"));
+
+        StepVerifier.create(images)
+                .expectErrorMatches(e -> e instanceof BadRequestException && e.getMessage().equals("Line 2: duration is not a number"))
+                .verify();
+    }
+}
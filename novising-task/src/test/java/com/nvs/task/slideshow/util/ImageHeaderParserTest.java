@@ -0,0 +1,71 @@
+package com.nvs.task.slideshow.util;
+
+import com.nvs.task.slideshow.model.ImageFormat;
+import com.nvs.task.slideshow.model.ImageMetadata;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ImageHeaderParser.
+ * Verifies format and dimension detection from the leading bytes of real encoded images.
+ */
+class ImageHeaderParserTest {
+
+    /**
+     * Tests that PNG, GIF, JPEG and BMP dimensions are read from images encoded by ImageIO.
+     */
+    @Test
+    void readsDimensionsOfEncodedImages() throws IOException {
+        assertEquals(new ImageMetadata(ImageFormat.PNG, 320, 200, 1234L), ImageHeaderParser.parse(encode("png", 320, 200), 1234L));
+        assertEquals(new ImageMetadata(ImageFormat.GIF, 64, 48, null), ImageHeaderParser.parse(encode("gif", 64, 48), null));
+        assertEquals(new ImageMetadata(ImageFormat.JPEG, 800, 600, null), ImageHeaderParser.parse(encode("jpg", 800, 600), null));
+        assertEquals(new ImageMetadata(ImageFormat.BMP, 17, 9, null), ImageHeaderParser.parse(encode("bmp", 17, 9), null));
+    }
+
+    /**
+     * Tests that only the leading bytes are needed for formats with a fixed header.
+     */
+    @Test
+    void readsDimensionsFromTruncatedHeader() throws IOException {
+        byte[] png = Arrays.copyOf(encode("png", 1920, 1080), 32);
+
+        assertEquals(new ImageMetadata(ImageFormat.PNG, 1920, 1080, 99L), ImageHeaderParser.parse(png, 99L));
+    }
+
+    /**
+     * Tests SVG dimensions from the root element attributes.
+     */
+    @Test
+    void readsSvgDimensions() {
+        byte[] svg = "<?xml version=\"1.0\"?>\n<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"120\" height=\"80px\"></svg>"
+                .getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(new ImageMetadata(ImageFormat.SVG, 120, 80, null), ImageHeaderParser.parse(svg, null));
+    }
+
+    /**
+     * Tests that a recognized format with unreadable dimensions still reports the format,
+     * and that other content is not recognized.
+     */
+    @Test
+    void handlesIncompleteAndUnknownContent() {
+        byte[] jpegStart = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16};
+
+        assertEquals(new ImageMetadata(ImageFormat.JPEG, null, null, null), ImageHeaderParser.parse(jpegStart, null));
+        assertNull(ImageHeaderParser.parse("<html></html>".getBytes(StandardCharsets.UTF_8), null));
+    }
+
+    private static byte[] encode(String format, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,74 @@
+package com.nvs.task.slideshow.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LongHashSet.
+ * Verifies membership, resizing, removal and the handling of the zero value.
+ */
+class LongHashSetTest {
+
+    /**
+     * Tests that values added from a collection are found and others are not.
+     */
+    @Test
+    void containsAddedValues() {
+        LongHashSet set = LongHashSet.of(List.of(101L, 102L, 103L));
+
+        assertTrue(set.contains(101L));
+        assertTrue(set.contains(103L));
+        assertFalse(set.contains(104L));
+        assertEquals(3, set.size());
+    }
+
+    /**
+     * Tests that zero and negative values are handled like any other value.
+     */
+    @Test
+    void handlesZeroAndNegativeValues() {
+        LongHashSet set = new LongHashSet();
+
+        assertFalse(set.contains(0L));
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.add(-1L));
+
+        assertTrue(set.contains(0L));
+        assertTrue(set.contains(-1L));
+        assertEquals(2, set.size());
+        assertTrue(set.remove(0L));
+        assertFalse(set.contains(0L));
+    }
+
+    /**
+     * Tests the set against a HashSet with random additions and removals, growing past several resizes.
+     */
+    @Test
+    void matchesJavaSetUnderRandomOperations() {
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            long value = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (long value = 0; value < 5_000; value++) {
+            assertEquals(expected.contains(value), set.contains(value), "value " + value);
+        }
+        assertEquals(expected.size(), set.toArray().length);
+    }
+}
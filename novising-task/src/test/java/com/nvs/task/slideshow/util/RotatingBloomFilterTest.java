@@ -0,0 +1,110 @@
+package com.nvs.task.slideshow.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for RotatingBloomFilter.
+ * Verifies that entries are remembered for one window, forgotten after two, that
+ * {@code putIfAbsent} is atomic, and that the false positive rate stays close to the configured one.
+ */
+class RotatingBloomFilterTest {
+
+    private static final long WINDOW = 60_000;
+
+    /**
+     * Tests that an added entry is found until two rotations have passed.
+     */
+    @Test
+    void remembersEntriesForOneToTwoWindows() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.01, WINDOW, 0);
+
+        assertFalse(filter.mightContain(1, 3, 0));
+        filter.put(1, 3, 0);
+        assertTrue(filter.mightContain(1, 3, 10));
+        assertTrue(filter.mightContain(1, 3, WINDOW + 1));
+        assertFalse(filter.mightContain(1, 3, 2 * WINDOW + 1));
+    }
+
+    /**
+     * Tests that of concurrent additions of the same entry exactly one finds it absent.
+     */
+    @Test
+    void putIfAbsentAcceptsAnEntryOnce() throws InterruptedException {
+        RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.01, WINDOW, 0);
+        AtomicInteger added = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                if (filter.putIfAbsent(5, 9, 10)) {
+                    added.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, added.get());
+        assertTrue(filter.mightContain(5, 9, WINDOW + 1));
+        assertFalse(filter.putIfAbsent(5, 9, WINDOW + 1));
+        assertTrue(filter.putIfAbsent(5, 9, 3 * WINDOW));
+    }
+
+    /**
+     * Tests that a long pause clears both generations at once.
+     */
+    @Test
+    void forgetsEverythingAfterLongPause() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.01, WINDOW, 0);
+        filter.put(7, 11, WINDOW - 1);
+
+        assertFalse(filter.mightContain(7, 11, 10 * WINDOW));
+    }
+
+    /**
+     * Tests that the false positive rate at the expected load is close to the configured one.
+     */
+    @Test
+    void falsePositiveRateAtExpectedLoad() {
+        int entries = 10_000;
+        RotatingBloomFilter filter = new RotatingBloomFilter(entries, 0.01, WINDOW, 0);
+        for (long i = 0; i < entries; i++) {
+            filter.put(mix(i), mix(~i) | 1, 0);
+        }
+
+        int falsePositives = 0;
+        for (long i = entries; i < 11 * entries; i++) {
+            if (filter.mightContain(mix(i), mix(~i) | 1, 0)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2 * entries * 10 * 0.01, "false positives: " + falsePositives);
+    }
+
+    /**
+     * Tests that invalid sizing parameters are rejected.
+     */
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new RotatingBloomFilter(0, 0.01, WINDOW, 0));
+        assertThrows(IllegalArgumentException.class, () -> new RotatingBloomFilter(1000, 1.5, WINDOW, 0));
+        assertThrows(IllegalArgumentException.class, () -> new RotatingBloomFilter(1000, 0.01, 0, 0));
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}